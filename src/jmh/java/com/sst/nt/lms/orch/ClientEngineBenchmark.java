@@ -0,0 +1,83 @@
+package com.sst.nt.lms.orch;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import com.sst.nt.lms.orch.config.HttpClientProperties;
+import com.sst.nt.lms.orch.util.DownstreamServiceInterceptor;
+import com.sst.nt.lms.orch.util.PooledClientHttpRequestFactory;
+
+/**
+ * Compares the pooled HTTP client engine with the JDK {@code HttpURLConnection}
+ * factory that the REST delegate used to default to, against a local stub.
+ *
+ * @author Jonathan Lovelace
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(16)
+public class ClientEngineBenchmark {
+	/**
+	 * Which client engine to measure.
+	 */
+	@Param({ "simple", "pooled" })
+	public String engine;
+	/**
+	 * The stub downstream service.
+	 */
+	private StubServer server;
+	/**
+	 * The pooled engine, if that is the one being measured.
+	 */
+	private PooledClientHttpRequestFactory pooled;
+	/**
+	 * The REST delegate under test.
+	 */
+	private RestTemplate restTemplate;
+	/**
+	 * The URL requested.
+	 */
+	private String url;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		server = new StubServer("[{\"id\":1,\"name\":\"Author One\"},"
+				+ "{\"id\":2,\"name\":\"Author Two\"}]");
+		url = server.getBaseUrl() + "/authors/";
+		if ("pooled".equals(engine)) {
+			pooled = new PooledClientHttpRequestFactory(new HttpClientProperties());
+			restTemplate = new RestTemplate(pooled);
+		} else {
+			restTemplate = new RestTemplate(new SimpleClientHttpRequestFactory());
+		}
+		restTemplate.getInterceptors().add(new DownstreamServiceInterceptor());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		if (pooled != null) {
+			pooled.destroy();
+		}
+		server.close();
+	}
+
+	@Benchmark
+	public String getAuthors() {
+		return restTemplate.getForObject(url, String.class);
+	}
+}
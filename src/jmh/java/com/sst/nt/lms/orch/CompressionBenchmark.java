@@ -0,0 +1,92 @@
+package com.sst.nt.lms.orch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.util.StreamUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sst.nt.lms.orch.model.Borrower;
+
+/**
+ * Measures the CPU side of response compression for a {@code /borrowers} list
+ * of typical sizes: serializing it as-is, serializing and gzipping it (what the
+ * servlet container does for a client that accepts gzip), and gunzipping it
+ * (what the HTTP client does for a downstream service that sent it gzipped).
+ * The bandwidth side, the uncompressed and compressed sizes, is printed once
+ * per trial.
+ *
+ * @author Jonathan Lovelace
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CompressionBenchmark {
+	/**
+	 * How many borrowers are in the list.
+	 */
+	@Param({ "10", "1000", "20000" })
+	public int borrowers;
+	/**
+	 * The JSON mapper.
+	 */
+	private final ObjectMapper mapper = new ObjectMapper();
+	/**
+	 * The list to serialize.
+	 */
+	private List<Borrower> list;
+	/**
+	 * The list, serialized and gzipped.
+	 */
+	private byte[] compressed;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		list = new ArrayList<>(borrowers);
+		for (int i = 1; i <= borrowers; i++) {
+			list.add(new Borrower(i, "Borrower " + i, i + " Main Street, Springfield",
+					String.format("555-%04d", i % 10000)));
+		}
+		final byte[] plain = mapper.writeValueAsBytes(list);
+		compressed = gzip();
+		System.out.printf("%n%d borrowers: %d bytes, %d gzipped (%.1f%%)%n", borrowers,
+				plain.length, compressed.length, 100.0 * compressed.length / plain.length);
+	}
+
+	@Benchmark
+	public byte[] serialize() throws IOException {
+		return mapper.writeValueAsBytes(list);
+	}
+
+	@Benchmark
+	public byte[] gzip() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+			mapper.writeValue(out, list);
+		}
+		return bytes.toByteArray();
+	}
+
+	@Benchmark
+	public byte[] gunzip() throws IOException {
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+			return StreamUtils.copyToByteArray(in);
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package com.sst.nt.lms.orch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.sst.nt.lms.orch.model.Book;
+import com.sst.nt.lms.orch.model.Branch;
+import com.sst.nt.lms.orch.model.CopiesMatrix;
+import com.sst.nt.lms.orch.util.CopiesMatrices;
+
+/**
+ * Compares the all-branches copies matrix in the librarian service's nested
+ * form, keyed by branches' and books' string forms, with our columnar form:
+ * the time to write and read each, and the time to convert the one to the
+ * other. The sizes of both, plain and gzipped, are printed once per trial.
+ *
+ * @author Jonathan Lovelace
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CopiesMatrixBenchmark {
+	/**
+	 * How many branches there are.
+	 */
+	@Param({ "10", "50" })
+	public int branchCount;
+	/**
+	 * How many books each branch has.
+	 */
+	@Param({ "200", "1000" })
+	public int bookCount;
+	/**
+	 * The nested form, as objects.
+	 */
+	private Map<Branch, Map<Book, Integer>> nested;
+	/**
+	 * The nested form, as JSON.
+	 */
+	private byte[] nestedJson;
+	/**
+	 * The nested form, as read back.
+	 */
+	private Map<String, Map<String, Integer>> nestedRead;
+	/**
+	 * All branches.
+	 */
+	private List<Branch> branches;
+	/**
+	 * All books.
+	 */
+	private List<Book> books;
+	/**
+	 * The columnar form, as objects.
+	 */
+	private CopiesMatrix columnar;
+	/**
+	 * The columnar form, as JSON.
+	 */
+	private byte[] columnarJson;
+	/**
+	 * The writer for both forms.
+	 */
+	private ObjectWriter writer;
+	/**
+	 * The reader for the nested form.
+	 */
+	private ObjectReader nestedReader;
+	/**
+	 * The reader for the columnar form.
+	 */
+	private ObjectReader columnarReader;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		final ObjectMapper mapper = SampleModels.mapper();
+		writer = mapper.writer();
+		nestedReader = mapper
+				.readerFor(new TypeReference<Map<String, Map<String, Integer>>>() {});
+		columnarReader = mapper.readerFor(CopiesMatrix.class);
+		nested = SampleModels.copiesMatrix(branchCount, bookCount);
+		nestedJson = writer.writeValueAsBytes(nested);
+		nestedRead = nestedReader.readValue(nestedJson);
+		branches = new ArrayList<>(nested.keySet());
+		books = new ArrayList<>(nested.values().iterator().next().keySet());
+		columnar = convert();
+		if (columnar.getUnresolved() != 0) {
+			throw new IllegalStateException(columnar.getUnresolved() + " counts unresolved");
+		}
+		columnarJson = writer.writeValueAsBytes(columnar);
+		System.out.printf("%n%d branches x %d books: nested %d bytes (%d gzipped), "
+				+ "columnar %d bytes (%d gzipped)%n", branchCount, bookCount,
+				nestedJson.length, gzip(nestedJson), columnarJson.length,
+				gzip(columnarJson));
+	}
+
+	/**
+	 * Get the size of some bytes once gzipped.
+	 * @param bytes the bytes
+	 * @return their gzipped size
+	 * @throws IOException never, in practice
+	 */
+	private static int gzip(final byte[] bytes) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(bytes);
+		}
+		return out.size();
+	}
+
+	@Benchmark
+	public byte[] writeNested() throws IOException {
+		return writer.writeValueAsBytes(nested);
+	}
+
+	@Benchmark
+	public Map<String, Map<String, Integer>> readNested() throws IOException {
+		return nestedReader.readValue(nestedJson);
+	}
+
+	@Benchmark
+	public CopiesMatrix convert() {
+		return CopiesMatrices.columnar(nestedRead, branches, books);
+	}
+
+	@Benchmark
+	public byte[] writeColumnar() throws IOException {
+		return writer.writeValueAsBytes(columnar);
+	}
+
+	@Benchmark
+	public CopiesMatrix readColumnar() throws IOException {
+		return columnarReader.readValue(columnarJson);
+	}
+}
@@ -0,0 +1,189 @@
+package com.sst.nt.lms.orch;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.sst.nt.lms.orch.model.BranchCopies;
+import com.sst.nt.lms.orch.model.Loan;
+
+/**
+ * In-process stand-ins for the {@code admin}, {@code borrower-service}, and
+ * {@code librarian-service} services, answering the URL shapes our controllers
+ * call with model objects like the real services', so that the orchestrator
+ * can be run and loaded on one machine without Eureka. Every list a stub
+ * answers with has the same configurable number of items, and every answer is
+ * delayed by the same configurable latency; the bodies are rendered once, up
+ * front, so the stubs cost little next to the orchestrator itself.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class DownstreamStubs implements AutoCloseable {
+	/**
+	 * A path segment holding a numeric ID.
+	 */
+	private static final String ID = "/\\d+";
+	/**
+	 * The stub administrator service.
+	 */
+	private final StubServer admin;
+	/**
+	 * The stub borrower service.
+	 */
+	private final StubServer borrowers;
+	/**
+	 * The stub librarian service.
+	 */
+	private final StubServer librarian;
+
+	/**
+	 * Start the stubs, each on an ephemeral local port.
+	 *
+	 * @param items how many items each list answered with has
+	 * @param latencyMillis how long each stub waits before answering
+	 * @throws IOException if a stub cannot be started
+	 */
+	public DownstreamStubs(final int items, final long latencyMillis) throws IOException {
+		final ObjectWriter writer = SampleModels.mapper().writer();
+		final List<Loan> loans = SampleModels.loans(1, items);
+		final Loan loan = loans.get(0);
+		final BranchCopies copies = new BranchCopies(loan.getBook(), loan.getBranch(), 3);
+		final Routes adminRoutes = new Routes(writer)
+				.add("GET /book" + ID, loan.getBook())
+				.add("GET /author" + ID, loan.getBook().getAuthor())
+				.add("GET /publisher" + ID, loan.getBook().getPublisher())
+				.add("GET /branch" + ID, loan.getBranch())
+				.add("GET /borrower" + ID, loan.getBorrower())
+				.add("GET /books", list(items, SampleModels::book))
+				.add("GET /authors", list(items, i -> SampleModels.book(i).getAuthor()))
+				.add("GET /publishers",
+						list(items, i -> SampleModels.book(i).getPublisher()))
+				.add("GET /branches", list(items, SampleModels::branch))
+				.add("GET /borrowers", list(items, SampleModels::borrower))
+				.add("GET /borrowers" + ID + "/loans", loans)
+				.add("PUT /loan/book" + ID + "/branch" + ID + "/borrower" + ID + "/due", loan)
+				.add("GET /loan/book" + ID + "/branch" + ID + "/borrower" + ID + "/due",
+						LocalDate.of(2019, 8, 1));
+		final Routes borrowerRoutes = new Routes(writer)
+				.add("GET /borrowers" + ID + "/loans", loans)
+				.add("GET /borrowers" + ID + "/branches", list(items, SampleModels::branch))
+				.add("POST /borrowers" + ID + "/branches" + ID + "/books" + ID, loan)
+				.add("DELETE /borrowers" + ID + "/branches" + ID + "/books" + ID, loan)
+				.add("GET /borrowers" + ID + "/branches" + ID + "/books" + ID, loan)
+				.add("GET /borrowers" + ID, loan.getBorrower())
+				.add("GET /branches" + ID + "/copies", list(items,
+						i -> new BranchCopies(SampleModels.book(i), loan.getBranch(), i % 7)))
+				.add("GET /branches" + ID, loan.getBranch())
+				.add("GET /branches", list(items, SampleModels::branch))
+				.add("GET /books" + ID, loan.getBook());
+		final Routes librarianRoutes = new Routes(writer)
+				.add("GET /librarian/branches/books/copies",
+						SampleModels.copiesMatrix(10, items))
+				.add("(GET|PUT) /librarian/branches" + ID + "/books" + ID, copies)
+				.add("(GET|PUT) /librarian/branches" + ID, loan.getBranch())
+				.add("GET /librarian/branches", list(items, SampleModels::branch))
+				.add("GET /librarian/books" + ID, loan.getBook())
+				.add("GET /librarian/books", list(items, SampleModels::book));
+		admin = new StubServer(adminRoutes, latencyMillis);
+		borrowers = new StubServer(borrowerRoutes, latencyMillis);
+		librarian = new StubServer(librarianRoutes, latencyMillis);
+	}
+
+	/**
+	 * Make a list of sample items.
+	 * @param count how many
+	 * @param item the item with a given index
+	 * @param <T> the type of item
+	 * @return the list
+	 */
+	private static <T> List<T> list(final int count, final IntFunction<T> item) {
+		final List<T> list = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			list.add(item.apply(i));
+		}
+		return list;
+	}
+
+	/**
+	 * Get the command-line arguments that point the orchestrator's load balancer
+	 * at the stubs instead of Eureka.
+	 * @return the arguments
+	 */
+	public String[] arguments() {
+		return new String[] { "--eureka.client.enabled=false",
+				"--ribbon.eureka.enabled=false",
+				"--admin.ribbon.listOfServers=" + hostAndPort(admin),
+				"--borrower-service.ribbon.listOfServers=" + hostAndPort(borrowers),
+				"--librarian-service.ribbon.listOfServers=" + hostAndPort(librarian) };
+	}
+
+	/**
+	 * Get where a stub listens.
+	 * @param stub the stub
+	 * @return its host and port
+	 */
+	private static String hostAndPort(final StubServer stub) {
+		return stub.getBaseUrl().substring("http://".length());
+	}
+
+	@Override
+	public void close() throws Exception {
+		admin.close();
+		borrowers.close();
+		librarian.close();
+	}
+
+	/**
+	 * The answers of one stub, matched against each request's method and path
+	 * in the order they were added, ignoring any trailing slash.
+	 */
+	private static final class Routes implements Function<String, byte[]> {
+		/**
+		 * The writer to render bodies with.
+		 */
+		private final ObjectWriter writer;
+		/**
+		 * The rendered bodies, by the pattern of requests they answer.
+		 */
+		private final Map<Pattern, byte[]> routes = new LinkedHashMap<>();
+
+		/**
+		 * Constructor.
+		 * @param writer the writer to render bodies with
+		 */
+		protected Routes(final ObjectWriter writer) {
+			this.writer = writer;
+		}
+
+		/**
+		 * Add an answer.
+		 * @param pattern the method and path it answers, as a regular expression
+		 * @param body the object to answer with, to be rendered as JSON
+		 * @return this
+		 * @throws JsonProcessingException if the body cannot be rendered
+		 */
+		protected Routes add(final String pattern, final Object body)
+				throws JsonProcessingException {
+			routes.put(Pattern.compile(pattern + "/?"), writer.writeValueAsBytes(body));
+			return this;
+		}
+
+		@Override
+		public byte[] apply(final String request) {
+			for (final Map.Entry<Pattern, byte[]> route : routes.entrySet()) {
+				if (route.getKey().matcher(request).matches()) {
+					return route.getValue();
+				}
+			}
+			return null;
+		}
+	}
+}
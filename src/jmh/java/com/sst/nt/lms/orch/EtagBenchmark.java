@@ -0,0 +1,159 @@
+package com.sst.nt.lms.orch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+/**
+ * Measures what the entity-tag filter adds to a GET: buffering and hashing the
+ * body for an unconditional request, and the same plus the comparison for a
+ * conditional one that ends in 304, against writing the body untagged.
+ *
+ * @author Jonathan Lovelace
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EtagBenchmark {
+	/**
+	 * Size of the response body, in bytes.
+	 */
+	@Param({ "1024", "65536", "1048576" })
+	public int bodySize;
+	/**
+	 * The filter under test.
+	 */
+	private final ShallowEtagHeaderFilter filter = new ShallowEtagHeaderFilter();
+	/**
+	 * A handler that writes the response body.
+	 */
+	private Servlet servlet;
+	/**
+	 * The tag the filter gives that body.
+	 */
+	private String etag;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, ServletException {
+		final byte[] record = "{\"cardNo\":1,\"name\":\"Borrower\",\"address\":\"1 Main St\"},"
+				.getBytes(StandardCharsets.UTF_8);
+		final byte[] body = new byte[bodySize];
+		for (int i = 0; i < bodySize; i++) {
+			body[i] = record[i % record.length];
+		}
+		servlet = new HttpServlet() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void doGet(final HttpServletRequest request,
+					final HttpServletResponse response) throws IOException {
+				response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+				response.getOutputStream().write(body);
+			}
+		};
+		etag = tagged().getHeader(HttpHeaders.ETAG);
+	}
+
+	/**
+	 * A response that keeps status and headers but discards the body in bulk; the
+	 * mock response's own stream writes byte by byte, which would swamp what we
+	 * are measuring.
+	 */
+	private static final class DiscardingResponse extends HttpServletResponseWrapper {
+		/**
+		 * The stream the body goes to.
+		 */
+		private final ServletOutputStream stream = new ServletOutputStream() {
+			@Override
+			public void write(final int b) {
+				// discard
+			}
+
+			@Override
+			public void write(final byte[] bytes, final int offset, final int length) {
+				// discard
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(final WriteListener listener) {
+				throw new UnsupportedOperationException();
+			}
+		};
+
+		/**
+		 * Constructor.
+		 */
+		DiscardingResponse() {
+			super(new MockHttpServletResponse());
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() {
+			return stream;
+		}
+	}
+
+	/**
+	 * Helper method to build a GET request.
+	 * @return the request
+	 */
+	private static MockHttpServletRequest request() {
+		return new MockHttpServletRequest("GET", "/borrowers");
+	}
+
+	@Benchmark
+	public HttpServletResponse untagged() throws IOException, ServletException {
+		final HttpServletResponse response = new DiscardingResponse();
+		servlet.service(request(), response);
+		return response;
+	}
+
+	@Benchmark
+	public HttpServletResponse tagged() throws IOException, ServletException {
+		final HttpServletResponse response = new DiscardingResponse();
+		filter.doFilter(request(), response, new MockFilterChain(servlet));
+		return response;
+	}
+
+	@Benchmark
+	public HttpServletResponse notModified() throws IOException, ServletException {
+		final MockHttpServletRequest request = request();
+		request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+		final HttpServletResponse response = new DiscardingResponse();
+		filter.doFilter(request, response, new MockFilterChain(servlet));
+		if (response.getStatus() != HttpServletResponse.SC_NOT_MODIFIED) {
+			throw new IllegalStateException("Expected 304, got " + response.getStatus());
+		}
+		return response;
+	}
+}
@@ -0,0 +1,102 @@
+package com.sst.nt.lms.orch;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Compares the blocking and reactive execution modes under more concurrent
+ * clients than the servlet container has worker threads, against a downstream
+ * service that takes a fixed time to answer. Sample-time mode reports the
+ * latency percentiles, throughput mode the sustained request rate.
+ *
+ * @author Jonathan Lovelace
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(64)
+public class ExecutionModeBenchmark {
+	/**
+	 * The execution mode under test.
+	 */
+	@Param({ "blocking", "reactive" })
+	public String mode;
+	/**
+	 * How long the stub administrator service takes to answer.
+	 */
+	@Param({ "50" })
+	public long downstreamDelay;
+	/**
+	 * How many servlet worker threads the orchestrator gets.
+	 */
+	@Param({ "16" })
+	public int workerThreads;
+	/**
+	 * The stub administrator service.
+	 */
+	private StubServer admin;
+	/**
+	 * The orchestrator under test.
+	 */
+	private ConfigurableApplicationContext context;
+	/**
+	 * The client driving the orchestrator.
+	 */
+	private CloseableHttpClient client;
+	/**
+	 * The URL requested.
+	 */
+	private String url;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		admin = new StubServer("[{\"cardNo\":1,\"name\":\"Borrower One\"},"
+				+ "{\"cardNo\":2,\"name\":\"Borrower Two\"}]", downstreamDelay);
+		context = new SpringApplicationBuilder(NovaTechOrchestratorApplication.class)
+				// As arguments rather than default properties, which
+				// application.properties would override.
+				.run("--server.port=0", "--eureka.client.enabled=false",
+						"--ribbon.eureka.enabled=false",
+						"--server.tomcat.max-threads=" + workerThreads,
+						"--orch.execution-mode=" + mode,
+						"--admin.ribbon.listOfServers="
+								+ admin.getBaseUrl().substring("http://".length()));
+		final int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+		// Borrowers rather than authors, since catalog reads are cached in blocking mode.
+		url = "http://127.0.0.1:" + port + "/borrowers";
+		client = HttpClients.custom().setMaxConnTotal(256).setMaxConnPerRoute(256)
+				.build();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		client.close();
+		context.close();
+		admin.close();
+	}
+
+	@Benchmark
+	public String getBorrowers() throws IOException {
+		return client.execute(new HttpGet(url),
+				response -> EntityUtils.toString(response.getEntity()));
+	}
+}
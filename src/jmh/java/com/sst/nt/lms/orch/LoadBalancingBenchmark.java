@@ -0,0 +1,117 @@
+package com.sst.nt.lms.orch;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Compares round-robin instance selection with the latency-aware rule, against
+ * three instances of the administrator service of which one has slowed down.
+ * Sample-time mode reports the latency percentiles the clients see. There are
+ * few clients, so that the orchestrator's own CPU is not what limits them.
+ *
+ * @author Jonathan Lovelace
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+public class LoadBalancingBenchmark {
+	/**
+	 * The load-balancing rule under test.
+	 */
+	@Param({ "round-robin", "peak-ewma" })
+	public String rule;
+	/**
+	 * The execution mode under test.
+	 */
+	@Param({ "blocking", "reactive" })
+	public String mode;
+	/**
+	 * How long the healthy instances take to answer.
+	 */
+	@Param({ "5" })
+	public long fastDelay;
+	/**
+	 * How long the degraded instance takes to answer.
+	 */
+	@Param({ "200" })
+	public long slowDelay;
+	/**
+	 * The stub administrator service instances.
+	 */
+	private StubServer[] instances;
+	/**
+	 * The orchestrator under test.
+	 */
+	private ConfigurableApplicationContext context;
+	/**
+	 * The client driving the orchestrator.
+	 */
+	private CloseableHttpClient client;
+	/**
+	 * The URL requested.
+	 */
+	private String url;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		final String body = "[{\"cardNo\":1,\"name\":\"Borrower One\"},"
+				+ "{\"cardNo\":2,\"name\":\"Borrower Two\"}]";
+		instances = new StubServer[] { new StubServer(body, fastDelay),
+				new StubServer(body, fastDelay), new StubServer(body, slowDelay) };
+		final StringBuilder servers = new StringBuilder();
+		for (final StubServer instance : instances) {
+			if (servers.length() > 0) {
+				servers.append(',');
+			}
+			servers.append(instance.getBaseUrl().substring("http://".length()));
+		}
+		context = new SpringApplicationBuilder(NovaTechOrchestratorApplication.class)
+				// As arguments rather than default properties, which
+				// application.properties would override.
+				.run("--server.port=0", "--eureka.client.enabled=false",
+						"--ribbon.eureka.enabled=false", "--orch.execution-mode=" + mode,
+						"--orch.load-balancing.rule=" + rule,
+						"--admin.ribbon.listOfServers=" + servers);
+		final int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+		// Borrowers rather than authors, since catalog reads are cached in blocking
+		// mode; nor are they hedged, which would hide the slow instance.
+		url = "http://127.0.0.1:" + port + "/borrowers";
+		client = HttpClients.custom().setMaxConnTotal(64).setMaxConnPerRoute(64)
+				.build();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		client.close();
+		context.close();
+		for (final StubServer instance : instances) {
+			instance.close();
+		}
+	}
+
+	@Benchmark
+	public String getBorrowers() throws IOException {
+		return client.execute(new HttpGet(url),
+				response -> EntityUtils.toString(response.getEntity()));
+	}
+}
@@ -0,0 +1,208 @@
+package com.sst.nt.lms.orch;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * An end-to-end load test: the orchestrator, run against
+ * {@link DownstreamStubs} with the configured latency and list sizes, driven
+ * over HTTP by a mix of clients on our busiest routes, weighted by how many
+ * threads each route gets. JMH reports each route separately within the mix:
+ * sample-time mode gives its latency percentiles, and throughput mode its
+ * request rate while sharing the orchestrator with the rest.
+ *
+ * <p>IDs are drawn at random from a range wider than the catalog cache holds,
+ * so that catalog reads mostly go downstream as they would in production. Any
+ * answer other than 2xx fails the run, so that a fast error is never mistaken
+ * for a fast route.
+ *
+ * @author Jonathan Lovelace
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LoadTestBenchmark {
+	/**
+	 * The range IDs are drawn from.
+	 */
+	private static final int IDS = 10_000;
+	/**
+	 * The execution mode under test.
+	 */
+	@Param({ "blocking" })
+	public String mode;
+	/**
+	 * How long each stub service takes to answer, in milliseconds.
+	 */
+	@Param({ "5" })
+	public long latency;
+	/**
+	 * How many items each list a stub service answers with has.
+	 */
+	@Param({ "50" })
+	public int items;
+	/**
+	 * The stub downstream services.
+	 */
+	private DownstreamStubs stubs;
+	/**
+	 * The orchestrator under test.
+	 */
+	private ConfigurableApplicationContext context;
+	/**
+	 * The client driving the orchestrator.
+	 */
+	private CloseableHttpClient client;
+	/**
+	 * The orchestrator's base URL.
+	 */
+	private String base;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		stubs = new DownstreamStubs(items, latency);
+		context = new SpringApplicationBuilder(NovaTechOrchestratorApplication.class)
+				// As arguments rather than default properties, which
+				// application.properties would override.
+				.run(concat(stubs.arguments(), "--server.port=0",
+						"--orch.execution-mode=" + mode));
+		base = "http://127.0.0.1:"
+				+ ((WebServerApplicationContext) context).getWebServer().getPort();
+		client = HttpClients.custom().setMaxConnTotal(256).setMaxConnPerRoute(256)
+				.build();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		client.close();
+		context.close();
+		stubs.close();
+	}
+
+	/**
+	 * Join two arrays of arguments.
+	 * @param first the first arguments
+	 * @param rest the rest
+	 * @return all of them
+	 */
+	private static String[] concat(final String[] first, final String... rest) {
+		final String[] all = new String[first.length + rest.length];
+		System.arraycopy(first, 0, all, 0, first.length);
+		System.arraycopy(rest, 0, all, first.length, rest.length);
+		return all;
+	}
+
+	/**
+	 * Get a random ID.
+	 * @return an ID
+	 */
+	private static int id() {
+		return ThreadLocalRandom.current().nextInt(1, IDS);
+	}
+
+	/**
+	 * Send a request and read its response.
+	 * @param request the request
+	 * @return the response body
+	 * @throws IOException on I/O error, or if the response is not 2xx
+	 */
+	private String send(final HttpUriRequest request) throws IOException {
+		return client.execute(request, (final HttpResponse response) -> {
+			final int status = response.getStatusLine().getStatusCode();
+			final String body = EntityUtils.toString(response.getEntity());
+			if (status / 100 != 2) {
+				throw new IOException(request.getMethod() + ' ' + request.getURI()
+						+ " answered " + status + ": " + body);
+			}
+			return body;
+		});
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(4)
+	public String getBook() throws IOException {
+		return send(new HttpGet(base + "/book/" + id()));
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(4)
+	public String getBranchCopies() throws IOException {
+		return send(new HttpGet(base + "/branches/" + id() + "/books/" + id()));
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(3)
+	public String getAllBorrowedBooks() throws IOException {
+		return send(new HttpGet(base + "/borrowers/" + id() + "/loans"));
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(2)
+	public String getDashboard() throws IOException {
+		return send(new HttpGet(base + "/borrowers/" + id() + "/dashboard"));
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public String getBorrowers() throws IOException {
+		return send(new HttpGet(base + "/borrowers"));
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public String getAllCopies() throws IOException {
+		return send(new HttpGet(base + "/branches/books/copies"));
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public String borrowBook() throws IOException {
+		return send(new HttpPost(base + "/borrowers/" + id() + "/branches/" + id()
+				+ "/books/" + id()));
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public String overrideDueDate() throws IOException {
+		final HttpPut request = new HttpPut(base + "/loan/book/" + id() + "/branch/"
+				+ id() + "/borrower/" + id() + "/due");
+		request.setEntity(new StringEntity("{\"dueDate\":\"2019-08-01\"}",
+				ContentType.APPLICATION_JSON));
+		return send(request);
+	}
+}
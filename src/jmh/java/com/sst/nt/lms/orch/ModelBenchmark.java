@@ -0,0 +1,74 @@
+package com.sst.nt.lms.orch;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.sst.nt.lms.orch.model.Loan;
+import com.sst.nt.lms.orch.util.MapBuilder;
+
+/**
+ * Measures the model operations that run once per element whenever loans are
+ * put in sets or compared, and the map builder behind our small composite
+ * responses. Equal loans are distinct but equivalent objects, as they would be
+ * after being read from two responses, and so are compared field by field down
+ * to their books' authors and publishers.
+ *
+ * @author Jonathan Lovelace
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ModelBenchmark {
+	/**
+	 * A loan.
+	 */
+	private Loan loan;
+	/**
+	 * A distinct loan equal to it.
+	 */
+	private Loan equal;
+	/**
+	 * A loan of another book to the same borrower from another branch.
+	 */
+	private Loan other;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		final List<Loan> loans = SampleModels.loans(1, 2);
+		loan = loans.get(0);
+		equal = SampleModels.loans(1, 1).get(0);
+		other = loans.get(1);
+	}
+
+	@Benchmark
+	public int loanHashCode() {
+		return loan.hashCode();
+	}
+
+	@Benchmark
+	public boolean loanEqualsEqual() {
+		return loan.equals(equal);
+	}
+
+	@Benchmark
+	public boolean loanEqualsOther() {
+		return loan.equals(other);
+	}
+
+	@Benchmark
+	public Map<String, Object> mapBuilder() {
+		return new MapBuilder<String, Object>().entry("borrower", loan.getBorrower())
+				.entry("book", loan.getBook()).entry("branch", loan.getBranch())
+				.entry("dueDate", loan.getDueDate()).build();
+	}
+}
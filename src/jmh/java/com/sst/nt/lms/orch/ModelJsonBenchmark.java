@@ -0,0 +1,137 @@
+package com.sst.nt.lms.orch;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.sst.nt.lms.orch.model.Loan;
+
+/**
+ * Measures Jackson reading and writing the model graphs we pass through most: a
+ * borrower's loans, each carrying its book (with author and publisher),
+ * borrower, and branch; and the all-branches copies matrix, whose branch and
+ * book keys are written as their string forms and so can only be read back as
+ * strings. Each graph has its own state, so each is only measured at its own
+ * sizes.
+ *
+ * @author Jonathan Lovelace
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ModelJsonBenchmark {
+	/**
+	 * A borrower's loans.
+	 */
+	@State(Scope.Benchmark)
+	public static class Loans {
+		/**
+		 * How many loans the borrower has.
+		 */
+		@Param({ "1", "100" })
+		public int loanCount;
+		/**
+		 * The loans, as objects.
+		 */
+		protected List<Loan> loans;
+		/**
+		 * The loans, as JSON.
+		 */
+		protected byte[] json;
+		/**
+		 * The writer for them.
+		 */
+		protected ObjectWriter writer;
+		/**
+		 * The reader for them.
+		 */
+		protected ObjectReader reader;
+
+		@Setup(Level.Trial)
+		public void setUp() throws IOException {
+			final ObjectMapper mapper = SampleModels.mapper();
+			writer = mapper.writer();
+			reader = mapper.readerFor(new TypeReference<List<Loan>>() {});
+			loans = SampleModels.loans(1, loanCount);
+			json = writer.writeValueAsBytes(loans);
+		}
+	}
+
+	/**
+	 * The copies matrix.
+	 */
+	@State(Scope.Benchmark)
+	public static class Copies {
+		/**
+		 * How many branches it covers.
+		 */
+		@Param({ "10" })
+		public int branchCount;
+		/**
+		 * How many books each branch has.
+		 */
+		@Param({ "200" })
+		public int bookCount;
+		/**
+		 * The matrix, as objects.
+		 */
+		protected Object copies;
+		/**
+		 * The matrix, as JSON.
+		 */
+		protected byte[] json;
+		/**
+		 * The writer for it.
+		 */
+		protected ObjectWriter writer;
+		/**
+		 * The reader for it.
+		 */
+		protected ObjectReader reader;
+
+		@Setup(Level.Trial)
+		public void setUp() throws IOException {
+			final ObjectMapper mapper = SampleModels.mapper();
+			writer = mapper.writer();
+			reader = mapper
+					.readerFor(new TypeReference<Map<String, Map<String, Integer>>>() {});
+			copies = SampleModels.copiesMatrix(branchCount, bookCount);
+			json = writer.writeValueAsBytes(copies);
+		}
+	}
+
+	@Benchmark
+	public byte[] writeLoans(final Loans state) throws IOException {
+		return state.writer.writeValueAsBytes(state.loans);
+	}
+
+	@Benchmark
+	public List<Loan> readLoans(final Loans state) throws IOException {
+		return state.reader.readValue(state.json);
+	}
+
+	@Benchmark
+	public byte[] writeCopiesMatrix(final Copies state) throws IOException {
+		return state.writer.writeValueAsBytes(state.copies);
+	}
+
+	@Benchmark
+	public Map<String, Map<String, Integer>> readCopiesMatrix(final Copies state)
+			throws IOException {
+		return state.reader.readValue(state.json);
+	}
+}
@@ -0,0 +1,104 @@
+package com.sst.nt.lms.orch;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+
+import com.sst.nt.lms.orch.controller.BorrowerController;
+import com.sst.nt.lms.orch.model.Loan;
+
+/**
+ * Measures one full round trip through the orchestrator in blocking mode: a
+ * borrower's loans fetched from a stub borrower service through the
+ * load-balanced REST delegate and every interceptor on it, and parsed into
+ * model objects. It is measured both calling the controller directly and as a
+ * client would, over HTTP through our filters and back out as JSON, so the
+ * cost of each half can be told apart.
+ *
+ * @author Jonathan Lovelace
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RoundTripBenchmark {
+	/**
+	 * How many loans the borrower has.
+	 */
+	@Param({ "10" })
+	public int loanCount;
+	/**
+	 * The stub borrower service.
+	 */
+	private StubServer borrowers;
+	/**
+	 * The orchestrator under test.
+	 */
+	private ConfigurableApplicationContext context;
+	/**
+	 * The controller under test.
+	 */
+	private BorrowerController controller;
+	/**
+	 * The client driving the orchestrator over HTTP.
+	 */
+	private CloseableHttpClient client;
+	/**
+	 * The URL requested over HTTP.
+	 */
+	private String url;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		borrowers = new StubServer(SampleModels.mapper()
+				.writeValueAsString(SampleModels.loans(1, loanCount)));
+		context = new SpringApplicationBuilder(NovaTechOrchestratorApplication.class)
+				// As arguments rather than default properties, which
+				// application.properties would override.
+				.run("--server.port=0", "--eureka.client.enabled=false",
+						"--ribbon.eureka.enabled=false",
+						"--orch.execution-mode=blocking",
+						"--borrower-service.ribbon.listOfServers="
+								+ borrowers.getBaseUrl().substring("http://".length()));
+		controller = context.getBean(BorrowerController.class);
+		final int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+		url = "http://127.0.0.1:" + port + "/borrowers/1/loans";
+		client = HttpClients.createDefault();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		client.close();
+		context.close();
+		borrowers.close();
+	}
+
+	@Benchmark
+	public ResponseEntity<List<Loan>> controller() {
+		return controller.getAllBorrowedBooks(1);
+	}
+
+	@Benchmark
+	public String overHttp() throws IOException {
+		return client.execute(new HttpGet(url),
+				response -> EntityUtils.toString(response.getEntity()));
+	}
+}
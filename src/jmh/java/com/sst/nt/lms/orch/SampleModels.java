@@ -0,0 +1,118 @@
+package com.sst.nt.lms.orch;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sst.nt.lms.orch.model.Author;
+import com.sst.nt.lms.orch.model.Book;
+import com.sst.nt.lms.orch.model.Borrower;
+import com.sst.nt.lms.orch.model.Branch;
+import com.sst.nt.lms.orch.model.Loan;
+import com.sst.nt.lms.orch.model.Publisher;
+
+/**
+ * Realistic model graphs for benchmarks to work on, built the same way every
+ * time so that runs are comparable.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class SampleModels {
+	/**
+	 * How many distinct authors, publishers, and branches the books and loans are
+	 * spread over.
+	 */
+	private static final int SPREAD = 16;
+
+	/**
+	 * Do not instantiate.
+	 */
+	private SampleModels() {
+		// Static helpers only.
+	}
+
+	/**
+	 * Get an object mapper configured as Spring Boot configures the one our
+	 * message converters use.
+	 * @return the mapper
+	 */
+	public static ObjectMapper mapper() {
+		return Jackson2ObjectMapperBuilder.json()
+				.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+	}
+
+	/**
+	 * Get a book.
+	 * @param id its ID
+	 * @return the book, with its author and publisher
+	 */
+	public static Book book(final int id) {
+		return new Book(id, "Book Title " + id,
+				new Author(id % SPREAD, "Author Name " + id % SPREAD),
+				new Publisher(id % SPREAD, "Publisher " + id % SPREAD,
+						id % SPREAD + " Press Way", "555-01" + id % SPREAD));
+	}
+
+	/**
+	 * Get a branch.
+	 * @param id its ID
+	 * @return the branch
+	 */
+	public static Branch branch(final int id) {
+		return new Branch(id, "Branch " + id, id + " Library Street");
+	}
+
+	/**
+	 * Get a borrower.
+	 * @param cardNo the borrower's card number
+	 * @return the borrower
+	 */
+	public static Borrower borrower(final int cardNo) {
+		return new Borrower(cardNo, "Borrower " + cardNo, cardNo + " Reader Road",
+				"555-0199");
+	}
+
+	/**
+	 * Get a borrower's loans, each of a different book.
+	 * @param cardNo the borrower's card number
+	 * @param count how many loans
+	 * @return the loans
+	 */
+	public static List<Loan> loans(final int cardNo, final int count) {
+		final Borrower borrower = borrower(cardNo);
+		final LocalDateTime dateOut = LocalDateTime.of(2019, 7, 1, 10, 30);
+		final List<Loan> loans = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			loans.add(new Loan(book(i), borrower, branch(i % SPREAD),
+					dateOut.plusDays(i % 28), LocalDate.of(2019, 7, 22).plusDays(i % 28)));
+		}
+		return loans;
+	}
+
+	/**
+	 * Get the number of copies of every book in every branch, in the shape the
+	 * librarian service's {@code getAllCopies} answers with.
+	 * @param branches how many branches
+	 * @param books how many books each branch has
+	 * @return the copies matrix
+	 */
+	public static Map<Branch, Map<Book, Integer>> copiesMatrix(final int branches,
+			final int books) {
+		final Map<Branch, Map<Book, Integer>> matrix = new LinkedHashMap<>();
+		for (int i = 0; i < branches; i++) {
+			final Map<Book, Integer> copies = new LinkedHashMap<>();
+			for (int j = 0; j < books; j++) {
+				copies.put(book(j), (i + j) % 7);
+			}
+			matrix.put(branch(i), copies);
+		}
+		return matrix;
+	}
+}
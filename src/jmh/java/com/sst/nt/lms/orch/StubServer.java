@@ -0,0 +1,129 @@
+package com.sst.nt.lms.orch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.function.Function;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.startup.Tomcat;
+
+/**
+ * A minimal in-process HTTP server standing in for a downstream service in
+ * benchmarks. Every request is answered with the same JSON body, or with the
+ * body a responder chooses for its method and path, optionally after a fixed
+ * delay to simulate a slow service.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class StubServer implements AutoCloseable {
+	/**
+	 * The underlying server.
+	 */
+	private final Tomcat tomcat;
+
+	/**
+	 * Start a server on an ephemeral local port that answers immediately.
+	 *
+	 * @param body the JSON body to answer every request with
+	 * @throws IOException if the server cannot be started
+	 */
+	public StubServer(final String body) throws IOException {
+		this(body, 0);
+	}
+
+	/**
+	 * Start a server on an ephemeral local port.
+	 *
+	 * @param body the JSON body to answer every request with
+	 * @param delayMillis how long to wait before answering each request
+	 * @throws IOException if the server cannot be started
+	 */
+	public StubServer(final String body, final long delayMillis) throws IOException {
+		this(constant(body.getBytes(StandardCharsets.UTF_8)), delayMillis);
+	}
+
+	/**
+	 * Start a server on an ephemeral local port that answers each request as a
+	 * responder says. Responders should choose among bodies made in advance, so
+	 * that the stub costs little next to what is being measured.
+	 *
+	 * @param responder given a request's method and path, separated by a space
+	 *        (e.g. {@code GET /book/7}), the JSON body to answer it with, or null
+	 *        to answer 404
+	 * @param delayMillis how long to wait before answering each request
+	 * @throws IOException if the server cannot be started
+	 */
+	public StubServer(final Function<String, byte[]> responder, final long delayMillis)
+			throws IOException {
+		final File baseDir = Files.createTempDirectory("stub-server").toFile();
+		tomcat = new Tomcat();
+		tomcat.setBaseDir(baseDir.getAbsolutePath());
+		tomcat.setPort(0);
+		tomcat.getConnector().setAttribute("address", "127.0.0.1");
+		tomcat.getConnector().setAttribute("maxKeepAliveRequests", "-1");
+		final StandardContext context = (StandardContext) tomcat.addContext("",
+				baseDir.getAbsolutePath());
+		// Tomcat's leak prevention reflects into java.io, which newer JDKs forbid.
+		context.setClearReferencesObjectStreamClassCaches(false);
+		Tomcat.addServlet(context, "stub", new HttpServlet() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void service(final HttpServletRequest request,
+					final HttpServletResponse response) throws IOException {
+				if (delayMillis > 0) {
+					try {
+						Thread.sleep(delayMillis);
+					} catch (final InterruptedException except) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				final byte[] bytes = responder
+						.apply(request.getMethod() + ' ' + request.getRequestURI());
+				if (bytes == null) {
+					response.sendError(HttpServletResponse.SC_NOT_FOUND);
+					return;
+				}
+				response.setContentType("application/json");
+				response.setContentLength(bytes.length);
+				response.getOutputStream().write(bytes);
+			}
+		});
+		context.addServletMappingDecoded("/*", "stub");
+		try {
+			tomcat.start();
+		} catch (final LifecycleException except) {
+			throw new IOException("Failed to start stub server", except);
+		}
+	}
+
+	/**
+	 * Get a responder that answers every request with the same body.
+	 * @param body the body
+	 * @return the responder
+	 */
+	private static Function<String, byte[]> constant(final byte[] body) {
+		return request -> body;
+	}
+
+	/**
+	 * Get the base URL of the server.
+	 * @return the base URL, without a trailing slash
+	 */
+	public String getBaseUrl() {
+		return "http://127.0.0.1:" + tomcat.getConnector().getLocalPort();
+	}
+
+	@Override
+	public void close() throws LifecycleException {
+		tomcat.stop();
+		tomcat.destroy();
+	}
+}
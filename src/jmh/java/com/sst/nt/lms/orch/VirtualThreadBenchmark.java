@@ -0,0 +1,205 @@
+package com.sst.nt.lms.orch;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Compares handling requests on the servlet container's pool of platform
+ * threads with handling each on a virtual thread of its own, in blocking
+ * execution mode, by how many concurrent clients each can serve at the
+ * downstream service's own latency, and at what cost in threads and memory.
+ *
+ * <p>Each invocation sends a burst of that many requests at once and waits
+ * for all of them, so the average time per burst stays at the downstream delay
+ * while the orchestrator keeps up with the burst, and grows in steps of that
+ * delay once requests have to queue for a thread: the largest burst still
+ * answered in about the delay is the most concurrency it sustains. Answers
+ * other than 2xx are counted as {@code failed} rather than ending the run, so
+ * that shedding load is not mistaken for serving it. After each iteration the
+ * peak number of live platform threads and the peak heap use during it are
+ * printed; run with {@code -prof gc} for allocation per burst as well.
+ *
+ * <p>The stub downstream service and the client are non-blocking, so that
+ * neither limits the concurrency being measured, and the orchestrator's
+ * bulkheads, concurrency limits and circuit breakers are off and its
+ * connection pool is sized for the largest burst, for the same reason. The
+ * virtual-thread trials need Java 21 or later; on an earlier runtime the
+ * orchestrator refuses to start with them.
+ *
+ * @author Jonathan Lovelace
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VirtualThreadBenchmark {
+	/**
+	 * What requests are handled on.
+	 */
+	@Param({ "platform", "virtual" })
+	public String threads;
+	/**
+	 * How many requests each burst sends at once.
+	 */
+	@Param({ "100", "400", "1600" })
+	public int clients;
+	/**
+	 * How long the stub administrator service takes to answer.
+	 */
+	@Param({ "100" })
+	public long downstreamDelay;
+	/**
+	 * The stub administrator service.
+	 */
+	private DisposableServer admin;
+	/**
+	 * The orchestrator under test.
+	 */
+	private ConfigurableApplicationContext context;
+	/**
+	 * The connections the client keeps to the orchestrator, one per concurrent
+	 * request.
+	 */
+	private ConnectionProvider connections;
+	/**
+	 * The client driving the orchestrator.
+	 */
+	private HttpClient client;
+	/**
+	 * How long to wait for a burst to be answered before giving up on the run.
+	 */
+	private Duration burstTimeout;
+
+	/**
+	 * How many requests in the bursts were answered 2xx, and how many were not.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Outcomes {
+		/**
+		 * Requests answered 2xx.
+		 */
+		public long succeeded;
+		/**
+		 * Requests answered otherwise, or not at all.
+		 */
+		public long failed;
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		final String body = "[{\"cardNo\":1,\"name\":\"Borrower One\"},"
+				+ "{\"cardNo\":2,\"name\":\"Borrower Two\"}]";
+		admin = HttpServer.create().host("127.0.0.1").port(0)
+				.route(routes -> routes.route(request -> true,
+						(request, response) -> response
+								.header("Content-Type", "application/json")
+								.sendString(Mono.just(body)
+										.delayElement(Duration.ofMillis(downstreamDelay)))))
+				.bindNow();
+		final String pool = Integer.toString(clients * 2);
+		context = new SpringApplicationBuilder(NovaTechOrchestratorApplication.class)
+				// As arguments rather than default properties, which
+				// application.properties would override.
+				.run("--server.port=0", "--eureka.client.enabled=false",
+						"--ribbon.eureka.enabled=false", "--orch.execution-mode=blocking",
+						"--orch.virtual-threads.enabled=" + "virtual".equals(threads),
+						"--server.tomcat.accept-count=" + pool,
+						"--orch.http-client.max-per-route=" + pool,
+						"--orch.http-client.services[admin].max-total=" + pool,
+						"--orch.bulkhead.enabled=false",
+						"--orch.concurrency-limit.enabled=false",
+						"--orch.circuit-breaker.enabled=false",
+						"--admin.ribbon.listOfServers=127.0.0.1:" + admin.port());
+		final int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+		connections = ConnectionProvider.fixed("virtual-thread-benchmark", clients);
+		client = HttpClient.create(connections).baseUrl("http://127.0.0.1:" + port);
+		burstTimeout = Duration.ofMillis(downstreamDelay * clients + 30_000);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		connections.dispose();
+		context.close();
+		admin.disposeNow();
+	}
+
+	@Setup(Level.Iteration)
+	public void resetPeaks() {
+		ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+		for (final MemoryPoolMXBean memoryPool : heapPools()) {
+			memoryPool.resetPeakUsage();
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void printPeaks() {
+		final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		long heap = 0;
+		for (final MemoryPoolMXBean memoryPool : heapPools()) {
+			heap += memoryPool.getPeakUsage().getUsed();
+		}
+		System.out.printf("%n%s threads, %d clients: peak %d platform threads, "
+				+ "peak heap %d MB%n", threads, clients, threadBean.getPeakThreadCount(),
+				heap >> 20);
+	}
+
+	/**
+	 * Get the memory pools that make up the heap.
+	 * @return the heap's memory pools
+	 */
+	private static List<MemoryPoolMXBean> heapPools() {
+		final List<MemoryPoolMXBean> retval = new ArrayList<>();
+		for (final MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (memoryPool.getType() == MemoryType.HEAP) {
+				retval.add(memoryPool);
+			}
+		}
+		return retval;
+	}
+
+	@Benchmark
+	public void burst(final Outcomes outcomes) {
+		final List<Integer> statuses = Flux.range(0, clients)
+				// Borrowers rather than authors, since catalog reads are cached.
+				.flatMap(i -> client.get().uri("/borrowers")
+						.responseSingle((response, content) -> content.asByteArray()
+								.thenReturn(response.status().code()))
+						.onErrorReturn(0), clients)
+				.collectList().block(burstTimeout);
+		for (final int status : statuses) {
+			if (status >= 200 && status < 300) {
+				outcomes.succeeded++;
+			} else {
+				outcomes.failed++;
+			}
+		}
+	}
+}
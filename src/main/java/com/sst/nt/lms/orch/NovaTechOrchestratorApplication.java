@@ -2,26 +2,66 @@ package com.sst.nt.lms.orch;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import com.sst.nt.lms.orch.util.BulkheadInterceptor;
+import com.sst.nt.lms.orch.util.CircuitBreakerInterceptor;
+import com.sst.nt.lms.orch.util.ConcurrencyLimitInterceptor;
+import com.sst.nt.lms.orch.util.DeadlineInterceptor;
+import com.sst.nt.lms.orch.util.DownstreamMetricsInterceptor;
+import com.sst.nt.lms.orch.util.DownstreamServiceInterceptor;
+import com.sst.nt.lms.orch.util.HedgingRequestFactory;
+import com.sst.nt.lms.orch.util.HopByHopHeaderInterceptor;
 import com.sst.nt.lms.orch.util.RestTemplateResponseErrorHandler;
+import com.sst.nt.lms.orch.util.SingleFlightInterceptor;
 
 @SpringBootApplication
+@EnableCaching
 public class NovaTechOrchestratorApplication {
 
 	public static void main(String[] args) {
 		SpringApplication.run(NovaTechOrchestratorApplication.class, args);
 	}
 
+	/**
+	 * The REST delegate the controllers use to reach downstream services. Our
+	 * interceptors work on logical service URLs, so they must come before the
+	 * load balancer's, which is appended to the list after this bean is created.
+	 *
+	 * @param requestFactory the pooled HTTP client engine, which hedges slow GETs
+	 * @param singleFlight the interceptor that coalesces identical GETs
+	 * @param downstreamMetrics the timing of each downstream call
+	 * @param deadlines the per-call deadlines
+	 * @param concurrencyLimits the per-service adaptive concurrency limits
+	 * @param bulkheads the per-service bulkheads
+	 * @param circuitBreakers the per-service circuit breakers
+	 * @return the REST delegate
+	 */
 	@Bean
 	@LoadBalanced
-	public RestTemplate getRestTemplate() {
-		RestTemplate restTemplate = new RestTemplate();
+	public RestTemplate getRestTemplate(
+			final HedgingRequestFactory requestFactory,
+			final SingleFlightInterceptor singleFlight,
+			final DownstreamMetricsInterceptor downstreamMetrics,
+			final DeadlineInterceptor deadlines,
+			final ConcurrencyLimitInterceptor concurrencyLimits,
+			final BulkheadInterceptor bulkheads,
+			final CircuitBreakerInterceptor circuitBreakers) {
+		RestTemplate restTemplate = new RestTemplate(requestFactory);
 		restTemplate.setErrorHandler(new RestTemplateResponseErrorHandler());
+		restTemplate.getInterceptors().add(singleFlight);
+		restTemplate.getInterceptors().add(new DownstreamServiceInterceptor());
+		restTemplate.getInterceptors().add(downstreamMetrics);
+		restTemplate.getInterceptors().add(deadlines);
+		restTemplate.getInterceptors().add(concurrencyLimits);
+		restTemplate.getInterceptors().add(bulkheads);
+		restTemplate.getInterceptors().add(circuitBreakers);
+		restTemplate.getInterceptors().add(new HopByHopHeaderInterceptor());
 		return restTemplate;
 	}
 
@@ -0,0 +1,140 @@
+package com.sst.nt.lms.orch.config;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for the bulkheads that cap how many calls may be in flight to each
+ * downstream service at once, so that one slow service cannot tie up every
+ * servlet thread and starve requests bound for the others. The limits here are
+ * the defaults, which can be overridden per service under
+ * {@code orch.bulkhead.services[<service>]}.
+ *
+ * @author Jonathan Lovelace
+ */
+@ConfigurationProperties(prefix = "orch.bulkhead")
+public class BulkheadProperties {
+	/**
+	 * Whether to use bulkheads at all.
+	 */
+	private boolean enabled = true;
+	/**
+	 * The most calls that may be in flight to one service at once.
+	 */
+	private int maxConcurrentCalls = 40;
+	/**
+	 * The most callers that may wait for a slot when a service's calls are all
+	 * in flight; any more are rejected at once.
+	 */
+	private int maxQueued = 20;
+	/**
+	 * How long a queued caller waits for a slot before it is rejected.
+	 */
+	private Duration maxWait = Duration.ofMillis(500);
+	/**
+	 * Per-service overrides of the limits, keyed by service name.
+	 */
+	private Map<String, Limits> services = new HashMap<>();
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getMaxConcurrentCalls() {
+		return maxConcurrentCalls;
+	}
+
+	public void setMaxConcurrentCalls(final int maxConcurrentCalls) {
+		this.maxConcurrentCalls = maxConcurrentCalls;
+	}
+
+	public int getMaxQueued() {
+		return maxQueued;
+	}
+
+	public void setMaxQueued(final int maxQueued) {
+		this.maxQueued = maxQueued;
+	}
+
+	public Duration getMaxWait() {
+		return maxWait;
+	}
+
+	public void setMaxWait(final Duration maxWait) {
+		this.maxWait = maxWait;
+	}
+
+	public Map<String, Limits> getServices() {
+		return services;
+	}
+
+	public void setServices(final Map<String, Limits> services) {
+		this.services = services;
+	}
+
+	/**
+	 * Get the concurrency limit of the given service's bulkhead.
+	 * @param service the name of the service
+	 * @return its configured limit, or the default
+	 */
+	public int maxConcurrentCallsFor(final String service) {
+		final Limits limits = services.get(service);
+		if (limits == null || limits.getMaxConcurrentCalls() == null) {
+			return maxConcurrentCalls;
+		} else {
+			return limits.getMaxConcurrentCalls();
+		}
+	}
+
+	/**
+	 * Get the queue limit of the given service's bulkhead.
+	 * @param service the name of the service
+	 * @return its configured limit, or the default
+	 */
+	public int maxQueuedFor(final String service) {
+		final Limits limits = services.get(service);
+		if (limits == null || limits.getMaxQueued() == null) {
+			return maxQueued;
+		} else {
+			return limits.getMaxQueued();
+		}
+	}
+
+	/**
+	 * Bulkhead limits for a single service; unset values fall back to the
+	 * defaults.
+	 */
+	public static class Limits {
+		/**
+		 * The most calls that may be in flight to this service at once.
+		 */
+		private Integer maxConcurrentCalls;
+		/**
+		 * The most callers that may wait for a slot with this service.
+		 */
+		private Integer maxQueued;
+
+		public Integer getMaxConcurrentCalls() {
+			return maxConcurrentCalls;
+		}
+
+		public void setMaxConcurrentCalls(final Integer maxConcurrentCalls) {
+			this.maxConcurrentCalls = maxConcurrentCalls;
+		}
+
+		public Integer getMaxQueued() {
+			return maxQueued;
+		}
+
+		public void setMaxQueued(final Integer maxQueued) {
+			this.maxQueued = maxQueued;
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package com.sst.nt.lms.orch.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for the circuit breakers that stop us calling a downstream service
+ * that is failing or too slow. Each logical service has a breaker of its own,
+ * and all of them use these settings.
+ *
+ * @author Jonathan Lovelace
+ */
+@ConfigurationProperties(prefix = "orch.circuit-breaker")
+public class CircuitBreakerProperties {
+	/**
+	 * Whether to use circuit breakers at all.
+	 */
+	private boolean enabled = true;
+	/**
+	 * How many of a service's most recent calls the failure and slow-call rates
+	 * are computed over.
+	 */
+	private int windowSize = 20;
+	/**
+	 * How many calls must be in the window before the breaker may open.
+	 */
+	private int minimumCalls = 10;
+	/**
+	 * Percentage of failed calls (I/O errors and 5xx responses) in the window at
+	 * or above which the breaker opens.
+	 */
+	private int failureRateThreshold = 50;
+	/**
+	 * How long a call may take before it counts as slow.
+	 */
+	private Duration slowCallDuration = Duration.ofSeconds(2);
+	/**
+	 * Percentage of slow calls in the window at or above which the breaker opens.
+	 */
+	private int slowCallRateThreshold = 80;
+	/**
+	 * How long an open breaker rejects calls before letting probes through.
+	 */
+	private Duration openDuration = Duration.ofSeconds(10);
+	/**
+	 * How many probe calls a half-open breaker lets through, and judges the
+	 * service's recovery by.
+	 */
+	private int halfOpenCalls = 3;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	public void setWindowSize(final int windowSize) {
+		this.windowSize = windowSize;
+	}
+
+	public int getMinimumCalls() {
+		return minimumCalls;
+	}
+
+	public void setMinimumCalls(final int minimumCalls) {
+		this.minimumCalls = minimumCalls;
+	}
+
+	public int getFailureRateThreshold() {
+		return failureRateThreshold;
+	}
+
+	public void setFailureRateThreshold(final int failureRateThreshold) {
+		this.failureRateThreshold = failureRateThreshold;
+	}
+
+	public Duration getSlowCallDuration() {
+		return slowCallDuration;
+	}
+
+	public void setSlowCallDuration(final Duration slowCallDuration) {
+		this.slowCallDuration = slowCallDuration;
+	}
+
+	public int getSlowCallRateThreshold() {
+		return slowCallRateThreshold;
+	}
+
+	public void setSlowCallRateThreshold(final int slowCallRateThreshold) {
+		this.slowCallRateThreshold = slowCallRateThreshold;
+	}
+
+	public Duration getOpenDuration() {
+		return openDuration;
+	}
+
+	public void setOpenDuration(final Duration openDuration) {
+		this.openDuration = openDuration;
+	}
+
+	public int getHalfOpenCalls() {
+		return halfOpenCalls;
+	}
+
+	public void setHalfOpenCalls(final int halfOpenCalls) {
+		this.halfOpenCalls = halfOpenCalls;
+	}
+}
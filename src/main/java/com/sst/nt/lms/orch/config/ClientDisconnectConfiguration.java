@@ -0,0 +1,41 @@
+package com.sst.nt.lms.orch.config;
+
+import javax.servlet.DispatcherType;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import com.sst.nt.lms.orch.util.ClientDisconnectFilter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Configuration of how we notice clients that go away before they have been
+ * answered, so that downstream exchanges on their behalf are abandoned.
+ *
+ * @author Jonathan Lovelace
+ */
+@Configuration
+public class ClientDisconnectConfiguration {
+	/**
+	 * The filter that watches for failed writes to clients. It runs outside the
+	 * entity-tag filter, which buffers responses and writes them out only at
+	 * the end.
+	 *
+	 * @param registry the registry to count disconnects in
+	 * @return its registration
+	 */
+	@Bean
+	public FilterRegistrationBean<ClientDisconnectFilter> clientDisconnectFilter(
+			final MeterRegistry registry) {
+		final FilterRegistrationBean<ClientDisconnectFilter> registration =
+				new FilterRegistrationBean<>(new ClientDisconnectFilter(registry));
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+		// Asynchronous (reactive-mode) handlers write their responses on the
+		// async dispatch.
+		registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC);
+		return registration;
+	}
+}
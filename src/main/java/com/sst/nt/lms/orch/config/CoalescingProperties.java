@@ -0,0 +1,48 @@
+package com.sst.nt.lms.orch.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for collapsing identical concurrent GET requests to downstream
+ * services into a single request.
+ *
+ * @author Jonathan Lovelace
+ */
+@ConfigurationProperties(prefix = "orch.coalescing")
+public class CoalescingProperties {
+	/**
+	 * Whether to coalesce requests at all.
+	 */
+	private boolean enabled = true;
+	/**
+	 * Ant-style patterns of the downstream routes to coalesce, matched against
+	 * "/" followed by the service name and path of the request, such as
+	 * {@code /admin/book/5}. Routes whose responses are streamed through to the
+	 * client (see {@link com.sst.nt.lms.orch.util.Passthrough}), such as a
+	 * branch's copies from the borrower service, must not be listed:
+	 * a coalesced response is read whole into memory so that it can be shared,
+	 * which would undo the streaming.
+	 */
+	private List<String> routes = new ArrayList<>(Arrays.asList("/admin/book/*",
+			"/librarian-service/librarian/branches/*"));
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public List<String> getRoutes() {
+		return routes;
+	}
+
+	public void setRoutes(final List<String> routes) {
+		this.routes = routes;
+	}
+}
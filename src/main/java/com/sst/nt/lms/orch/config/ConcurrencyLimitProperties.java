@@ -0,0 +1,117 @@
+package com.sst.nt.lms.orch.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for the adaptive concurrency limits on calls to each downstream
+ * service. Where a bulkhead's limit is fixed, these follow the service: the
+ * limit grows while its response times stay near their long-run level, and
+ * shrinks as they rise above it or calls fail outright, so that excess requests
+ * are shed at once rather than piling onto a service that is already
+ * struggling.
+ *
+ * @author Jonathan Lovelace
+ */
+@ConfigurationProperties(prefix = "orch.concurrency-limit")
+public class ConcurrencyLimitProperties {
+	/**
+	 * Whether to limit concurrency adaptively at all.
+	 */
+	private boolean enabled = true;
+	/**
+	 * The limit a service starts with, before anything is known of it.
+	 */
+	private int initialLimit = 20;
+	/**
+	 * The lowest the limit may fall.
+	 */
+	private int minLimit = 4;
+	/**
+	 * The highest the limit may rise. There is no point in this exceeding the
+	 * service's bulkhead limit.
+	 */
+	private int maxLimit = 40;
+	/**
+	 * How many calls' response times are averaged before the limit is adjusted.
+	 */
+	private int windowSize = 10;
+	/**
+	 * How far above its long-run average a service's recent response time may
+	 * rise, as a multiple, before the limit starts to shrink.
+	 */
+	private double tolerance = 1.5;
+	/**
+	 * How much of the way to its newly computed value the limit moves at each
+	 * adjustment, between 0 and 1.
+	 */
+	private double smoothing = 0.2;
+	/**
+	 * What the limit is multiplied by when a call fails with an I/O error or an
+	 * overload status (429 or 503).
+	 */
+	private double backoffRatio = 0.9;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getInitialLimit() {
+		return initialLimit;
+	}
+
+	public void setInitialLimit(final int initialLimit) {
+		this.initialLimit = initialLimit;
+	}
+
+	public int getMinLimit() {
+		return minLimit;
+	}
+
+	public void setMinLimit(final int minLimit) {
+		this.minLimit = minLimit;
+	}
+
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+	public void setMaxLimit(final int maxLimit) {
+		this.maxLimit = maxLimit;
+	}
+
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	public void setWindowSize(final int windowSize) {
+		this.windowSize = windowSize;
+	}
+
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	public void setTolerance(final double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	public double getSmoothing() {
+		return smoothing;
+	}
+
+	public void setSmoothing(final double smoothing) {
+		this.smoothing = smoothing;
+	}
+
+	public double getBackoffRatio() {
+		return backoffRatio;
+	}
+
+	public void setBackoffRatio(final double backoffRatio) {
+		this.backoffRatio = backoffRatio;
+	}
+}
@@ -0,0 +1,49 @@
+package com.sst.nt.lms.orch.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import com.sst.nt.lms.orch.util.DeadlineFilter;
+import com.sst.nt.lms.orch.util.DeadlineInterceptor;
+
+/**
+ * Configuration of deadlines: reading our clients' deadlines from their
+ * requests, and giving every downstream call a time budget that is passed on
+ * and enforced.
+ *
+ * @author Jonathan Lovelace
+ */
+@Configuration
+@EnableConfigurationProperties(DeadlineProperties.class)
+public class DeadlineConfiguration {
+	/**
+	 * The filter that makes a client's deadline that of the thread handling its
+	 * request. It runs first, so the deadline covers all our work on the request.
+	 *
+	 * @param properties the deadline settings
+	 * @return its registration
+	 */
+	@Bean
+	public FilterRegistrationBean<DeadlineFilter> deadlineFilter(
+			final DeadlineProperties properties) {
+		final FilterRegistrationBean<DeadlineFilter> registration =
+				new FilterRegistrationBean<>(new DeadlineFilter(properties.getHeader()));
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+		return registration;
+	}
+
+	/**
+	 * The per-call deadlines, applied to both the blocking and the non-blocking
+	 * REST delegate.
+	 *
+	 * @param properties the deadline settings
+	 * @return the interceptor
+	 */
+	@Bean
+	public DeadlineInterceptor deadlineInterceptor(final DeadlineProperties properties) {
+		return new DeadlineInterceptor(properties);
+	}
+}
@@ -0,0 +1,61 @@
+package com.sst.nt.lms.orch.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for how long each downstream call may take. A call's budget is the
+ * timeout for its route, cut short if our own client's deadline comes first;
+ * whatever is left of it is passed on to the downstream service, and the call
+ * is aborted if it runs out.
+ *
+ * @author Jonathan Lovelace
+ */
+@ConfigurationProperties(prefix = "orch.deadline")
+public class DeadlineProperties {
+	/**
+	 * The request header carrying how many milliseconds the caller will wait for
+	 * an answer: read from our clients' requests, and set on every downstream
+	 * call.
+	 */
+	private String header = "X-Request-Timeout";
+	/**
+	 * How long a downstream call may take, if its route matches none of
+	 * {@link #routes}.
+	 */
+	private Duration defaultTimeout = Duration.ofSeconds(5);
+	/**
+	 * How long calls to particular downstream routes may take, keyed by
+	 * Ant-style patterns matched against "/" followed by the service name and
+	 * path of the request, such as {@code /admin/book/5}. The first matching
+	 * pattern, in the order given, wins.
+	 */
+	private Map<String, Duration> routes = new LinkedHashMap<>();
+
+	public String getHeader() {
+		return header;
+	}
+
+	public void setHeader(final String header) {
+		this.header = header;
+	}
+
+	public Duration getDefaultTimeout() {
+		return defaultTimeout;
+	}
+
+	public void setDefaultTimeout(final Duration defaultTimeout) {
+		this.defaultTimeout = defaultTimeout;
+	}
+
+	public Map<String, Duration> getRoutes() {
+		return routes;
+	}
+
+	public void setRoutes(final Map<String, Duration> routes) {
+		this.routes = routes;
+	}
+}
@@ -0,0 +1,47 @@
+package com.sst.nt.lms.orch.config;
+
+import javax.servlet.DispatcherType;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+/**
+ * Configuration of entity tags on the read routes. Successful GET responses get
+ * a strong tag, the MD5 hash of the body, and a request whose
+ * {@code If-None-Match} matches it is answered with 304 and no body. The body
+ * still has to be produced to be hashed, so this saves the client's bandwidth
+ * rather than our work. Routes that stream their responses opt out, since the
+ * filter would hold the whole body before sending any of it: blocking
+ * passthrough routes relay the downstream service's validators instead (see
+ * {@link com.sst.nt.lms.orch.util.Passthrough}), and newline-delimited JSON is
+ * not tagged at all (see {@link com.sst.nt.lms.orch.util.CollectionStreamer}).
+ *
+ * @author Jonathan Lovelace
+ */
+@Configuration
+@EnableConfigurationProperties(EtagProperties.class)
+@ConditionalOnProperty(prefix = "orch.etag", name = "enabled", matchIfMissing = true)
+public class EtagConfiguration {
+	/**
+	 * The filter that tags responses and answers conditional requests.
+	 *
+	 * @param properties the entity-tag settings
+	 * @return its registration
+	 */
+	@Bean
+	public FilterRegistrationBean<ShallowEtagHeaderFilter> etagFilter(
+			final EtagProperties properties) {
+		final FilterRegistrationBean<ShallowEtagHeaderFilter> registration =
+				new FilterRegistrationBean<>(new ShallowEtagHeaderFilter());
+		registration.setUrlPatterns(properties.getUrlPatterns());
+		// The filter buffers the body and only writes it out once the handler is
+		// done, which for asynchronous (reactive-mode) handlers is on the async
+		// dispatch, so it must see that dispatch too.
+		registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC);
+		return registration;
+	}
+}
@@ -0,0 +1,42 @@
+package com.sst.nt.lms.orch.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for entity tags and conditional GET on the read routes.
+ *
+ * @author Jonathan Lovelace
+ */
+@ConfigurationProperties(prefix = "orch.etag")
+public class EtagProperties {
+	/**
+	 * Whether to tag responses and answer conditional GETs at all.
+	 */
+	private boolean enabled = true;
+	/**
+	 * Servlet URL patterns of the routes whose GET responses get an entity tag.
+	 */
+	private List<String> urlPatterns = new ArrayList<>(Arrays.asList("/authors/*",
+			"/author/*", "/books/*", "/book/*", "/publishers/*", "/publisher/*",
+			"/branches/*", "/branch/*", "/borrowers/*"));
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public List<String> getUrlPatterns() {
+		return urlPatterns;
+	}
+
+	public void setUrlPatterns(final List<String> urlPatterns) {
+		this.urlPatterns = urlPatterns;
+	}
+}
@@ -0,0 +1,37 @@
+package com.sst.nt.lms.orch.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.sst.nt.lms.orch.util.FanOutExecutor;
+import com.sst.nt.lms.orch.util.VirtualThreads;
+
+/**
+ * Configuration of the executor for endpoints that make several downstream
+ * requests concurrently.
+ *
+ * @author Jonathan Lovelace
+ */
+@Configuration
+@EnableConfigurationProperties({ FanOutProperties.class, VirtualThreadProperties.class })
+public class FanOutConfiguration {
+	/**
+	 * The fan-out executor, which starts a virtual thread per task if virtual
+	 * threads are enabled.
+	 *
+	 * @param properties the fan-out settings
+	 * @param virtualThreads the virtual-thread settings
+	 * @return the executor
+	 */
+	@Bean
+	public FanOutExecutor fanOutExecutor(final FanOutProperties properties,
+			final VirtualThreadProperties virtualThreads) {
+		if (virtualThreads.isEnabled()) {
+			return new FanOutExecutor(VirtualThreads.newExecutor("orch-fan-out-"),
+					properties.getParallelism(), properties.getMaxBatchSize());
+		}
+		return new FanOutExecutor(properties.getThreads(), properties.getParallelism(),
+				properties.getMaxBatchSize());
+	}
+}
@@ -0,0 +1,78 @@
+package com.sst.nt.lms.orch.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for endpoints that fan a single client request out into several
+ * concurrent downstream requests.
+ *
+ * @author Jonathan Lovelace
+ */
+@ConfigurationProperties(prefix = "orch.fan-out")
+public class FanOutProperties {
+	/**
+	 * Size of the thread pool shared by all fan-outs. Unused when virtual
+	 * threads are enabled, since each task then gets a thread of its own.
+	 */
+	private int threads = 64;
+	/**
+	 * The most downstream requests any one client request may have in flight at
+	 * once.
+	 */
+	private int parallelism = 8;
+	/**
+	 * The most IDs a client may ask for in one batch request.
+	 */
+	private int maxBatchSize = 200;
+	/**
+	 * The most items a client may send in one bulk update.
+	 */
+	private int maxBulkUpdateSize = 1000;
+	/**
+	 * How long a composite endpoint waits for each of its downstream requests
+	 * before answering without that part.
+	 */
+	private Duration callTimeout = Duration.ofSeconds(2);
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(final int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	public void setMaxBatchSize(final int maxBatchSize) {
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	public int getMaxBulkUpdateSize() {
+		return maxBulkUpdateSize;
+	}
+
+	public void setMaxBulkUpdateSize(final int maxBulkUpdateSize) {
+		this.maxBulkUpdateSize = maxBulkUpdateSize;
+	}
+
+	public Duration getCallTimeout() {
+		return callTimeout;
+	}
+
+	public void setCallTimeout(final Duration callTimeout) {
+		this.callTimeout = callTimeout;
+	}
+}
@@ -0,0 +1,110 @@
+package com.sst.nt.lms.orch.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for hedging idempotent GETs: if a request has not been answered
+ * within the usual time for its service, send the same request to another
+ * instance of that service and use whichever response comes first.
+ *
+ * @author Jonathan Lovelace
+ */
+@ConfigurationProperties(prefix = "orch.hedging")
+public class HedgingProperties {
+	/**
+	 * Whether to hedge requests at all.
+	 */
+	private boolean enabled = true;
+	/**
+	 * Ant-style patterns of the downstream routes to hedge, matched against "/"
+	 * followed by the service name and path of the request, such as
+	 * {@code /admin/book/5}. Only GETs are hedged.
+	 */
+	private List<String> routes = new ArrayList<>(Arrays.asList("/admin/book/*",
+			"/librarian-service/librarian/books/*",
+			"/librarian-service/librarian/branches/*/books/*"));
+	/**
+	 * The percentile of a service's recent response times after which a request
+	 * to it is hedged.
+	 */
+	private double percentile = 95;
+	/**
+	 * The shortest delay before hedging, however fast the service usually is.
+	 */
+	private Duration minDelay = Duration.ofMillis(5);
+	/**
+	 * The delay before hedging used until enough response times have been seen
+	 * to compute the percentile.
+	 */
+	private Duration initialDelay = Duration.ofMillis(100);
+	/**
+	 * The most extra requests hedging may send, as a percentage of the requests
+	 * to hedged routes.
+	 */
+	private double budgetPercent = 5;
+	/**
+	 * Size of the thread pool that sends hedge requests.
+	 */
+	private int threads = 8;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public List<String> getRoutes() {
+		return routes;
+	}
+
+	public void setRoutes(final List<String> routes) {
+		this.routes = routes;
+	}
+
+	public double getPercentile() {
+		return percentile;
+	}
+
+	public void setPercentile(final double percentile) {
+		this.percentile = percentile;
+	}
+
+	public Duration getMinDelay() {
+		return minDelay;
+	}
+
+	public void setMinDelay(final Duration minDelay) {
+		this.minDelay = minDelay;
+	}
+
+	public Duration getInitialDelay() {
+		return initialDelay;
+	}
+
+	public void setInitialDelay(final Duration initialDelay) {
+		this.initialDelay = initialDelay;
+	}
+
+	public double getBudgetPercent() {
+		return budgetPercent;
+	}
+
+	public void setBudgetPercent(final double budgetPercent) {
+		this.budgetPercent = budgetPercent;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+}
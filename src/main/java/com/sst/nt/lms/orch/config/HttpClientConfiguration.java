@@ -0,0 +1,150 @@
+package com.sst.nt.lms.orch.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.sst.nt.lms.orch.util.BulkheadInterceptor;
+import com.sst.nt.lms.orch.util.CircuitBreakerInterceptor;
+import com.sst.nt.lms.orch.util.ConcurrencyLimitInterceptor;
+import com.sst.nt.lms.orch.util.HedgeAdmission;
+import com.sst.nt.lms.orch.util.Hedging;
+import com.sst.nt.lms.orch.util.HedgingRequestFactory;
+import com.sst.nt.lms.orch.util.InstanceLoadTracker;
+import com.sst.nt.lms.orch.util.PooledClientHttpRequestFactory;
+import com.sst.nt.lms.orch.util.SingleFlightInterceptor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Configuration of the HTTP client engine and request interceptors behind the
+ * REST delegate.
+ *
+ * @author Jonathan Lovelace
+ */
+@Configuration
+@EnableConfigurationProperties({ HttpClientProperties.class, CoalescingProperties.class,
+		CircuitBreakerProperties.class, BulkheadProperties.class, HedgingProperties.class,
+		ConcurrencyLimitProperties.class, VirtualThreadProperties.class })
+public class HttpClientConfiguration {
+	/**
+	 * The request factory, with a keep-alive connection pool per downstream service.
+	 *
+	 * @param properties the pool settings
+	 * @param tracker the record of how each instance is doing, which every
+	 *        request made goes into
+	 * @param virtualThreads the virtual-thread settings; requests made on virtual
+	 *        threads wait for connections at a gate of our own, since HttpClient
+	 *        would pin them while they waited
+	 * @return the request factory
+	 */
+	@Bean
+	public PooledClientHttpRequestFactory pooledRequestFactory(
+			final HttpClientProperties properties, final InstanceLoadTracker tracker,
+			final VirtualThreadProperties virtualThreads) {
+		return new PooledClientHttpRequestFactory(properties, tracker,
+				virtualThreads.isEnabled());
+	}
+
+	/**
+	 * The policy for hedging slow GETs to another instance, shared by the blocking
+	 * and the non-blocking REST delegate.
+	 *
+	 * @param properties the hedging settings
+	 * @param loadBalancer the load balancer to choose hedges' instances
+	 * @return the policy
+	 */
+	@Bean
+	public Hedging hedging(final HedgingProperties properties,
+			final LoadBalancerClient loadBalancer) {
+		return new Hedging(properties, loadBalancer);
+	}
+
+	/**
+	 * What decides whether each hedge may be sent, by the service's circuit
+	 * breaker, bulkhead and adaptive concurrency limit, shared by the blocking and
+	 * the non-blocking REST delegate.
+	 *
+	 * @param concurrencyLimits the per-service adaptive concurrency limits
+	 * @param bulkheads the per-service bulkheads
+	 * @param circuitBreakers the per-service circuit breakers
+	 * @return the admission check
+	 */
+	@Bean
+	public HedgeAdmission hedgeAdmission(final ConcurrencyLimitInterceptor concurrencyLimits,
+			final BulkheadInterceptor bulkheads,
+			final CircuitBreakerInterceptor circuitBreakers) {
+		return new HedgeAdmission(concurrencyLimits, bulkheads, circuitBreakers);
+	}
+
+	/**
+	 * The request factory the blocking REST delegate uses, which hedges requests
+	 * as the policy says and makes every attempt through the pooled factory.
+	 *
+	 * @param pooled the pooled request factory
+	 * @param hedging the hedging policy
+	 * @param admission decides whether each hedge may be sent
+	 * @param properties the hedging settings
+	 * @return the request factory
+	 */
+	@Bean
+	public HedgingRequestFactory hedgingRequestFactory(
+			final PooledClientHttpRequestFactory pooled, final Hedging hedging,
+			final HedgeAdmission admission, final HedgingProperties properties) {
+		return new HedgingRequestFactory(pooled, hedging, admission,
+				properties.getThreads());
+	}
+
+	/**
+	 * The interceptor that collapses identical concurrent GETs into one request.
+	 *
+	 * @param properties the coalescing settings
+	 * @param registry the registry to report the coalescing ratio to
+	 * @return the interceptor
+	 */
+	@Bean
+	public SingleFlightInterceptor singleFlightInterceptor(
+			final CoalescingProperties properties, final MeterRegistry registry) {
+		return new SingleFlightInterceptor(properties.isEnabled(),
+				properties.getRoutes(), registry);
+	}
+
+	/**
+	 * The per-service circuit breakers, applied to both the blocking and the
+	 * non-blocking REST delegate.
+	 *
+	 * @param properties the breaker settings
+	 * @return the interceptor holding the breakers
+	 */
+	@Bean
+	public CircuitBreakerInterceptor circuitBreakerInterceptor(
+			final CircuitBreakerProperties properties) {
+		return new CircuitBreakerInterceptor(properties);
+	}
+
+	/**
+	 * The per-service bulkheads, applied to both the blocking and the
+	 * non-blocking REST delegate.
+	 *
+	 * @param properties the bulkhead settings
+	 * @return the interceptor holding the bulkheads
+	 */
+	@Bean
+	public BulkheadInterceptor bulkheadInterceptor(final BulkheadProperties properties) {
+		return new BulkheadInterceptor(properties);
+	}
+
+	/**
+	 * The per-service adaptive concurrency limits, applied to both the blocking
+	 * and the non-blocking REST delegate.
+	 *
+	 * @param properties the limit settings
+	 * @return the interceptor holding the limits
+	 */
+	@Bean
+	public ConcurrencyLimitInterceptor concurrencyLimitInterceptor(
+			final ConcurrencyLimitProperties properties) {
+		return new ConcurrencyLimitInterceptor(properties);
+	}
+}
@@ -0,0 +1,205 @@
+package com.sst.nt.lms.orch.config;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for the pooled HTTP client used to reach downstream services. Each
+ * logical service gets a connection pool of its own; the limits here are the
+ * defaults, which can be overridden per service under
+ * {@code orch.http-client.services[<service>]}.
+ *
+ * @author Jonathan Lovelace
+ */
+@ConfigurationProperties(prefix = "orch.http-client")
+public class HttpClientProperties {
+	/**
+	 * Maximum number of connections in one service's pool, across all of its
+	 * instances.
+	 */
+	private int maxTotal = 100;
+	/**
+	 * Maximum number of connections to any one instance of a service.
+	 */
+	private int maxPerRoute = 50;
+	/**
+	 * How long a connection may sit idle in the pool before it is evicted.
+	 */
+	private Duration idleTimeout = Duration.ofSeconds(30);
+	/**
+	 * The maximum lifetime of any pooled connection, so that connections are
+	 * eventually re-established against instances that have moved.
+	 */
+	private Duration timeToLive = Duration.ofMinutes(5);
+	/**
+	 * How long a connection may be idle before it is checked for staleness on
+	 * lease.
+	 */
+	private Duration validateAfterInactivity = Duration.ofSeconds(2);
+	/**
+	 * How long to wait for a connection from an exhausted pool.
+	 */
+	private Duration leaseTimeout = Duration.ofSeconds(2);
+	/**
+	 * How long to wait for a connection to a downstream instance to be
+	 * established.
+	 */
+	private Duration connectTimeout = Duration.ofSeconds(1);
+	/**
+	 * How long the blocking client waits for the next data on a connection
+	 * before giving up on the response. Calls are normally cut off sooner by
+	 * their deadline (see {@link DeadlineProperties}); this bounds reading a
+	 * response's body, which the deadline does not cover.
+	 */
+	private Duration readTimeout = Duration.ofSeconds(30);
+	/**
+	 * Whether to advertise {@code Accept-Encoding: gzip} to downstream services
+	 * and transparently decompress what they send back.
+	 */
+	private boolean compression = true;
+	/**
+	 * Per-service overrides of the pool limits, keyed by service name.
+	 */
+	private Map<String, Pool> services = new HashMap<>();
+
+	public int getMaxTotal() {
+		return maxTotal;
+	}
+
+	public void setMaxTotal(final int maxTotal) {
+		this.maxTotal = maxTotal;
+	}
+
+	public int getMaxPerRoute() {
+		return maxPerRoute;
+	}
+
+	public void setMaxPerRoute(final int maxPerRoute) {
+		this.maxPerRoute = maxPerRoute;
+	}
+
+	public Duration getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	public void setIdleTimeout(final Duration idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	public Duration getTimeToLive() {
+		return timeToLive;
+	}
+
+	public void setTimeToLive(final Duration timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+
+	public Duration getValidateAfterInactivity() {
+		return validateAfterInactivity;
+	}
+
+	public void setValidateAfterInactivity(final Duration validateAfterInactivity) {
+		this.validateAfterInactivity = validateAfterInactivity;
+	}
+
+	public Duration getLeaseTimeout() {
+		return leaseTimeout;
+	}
+
+	public void setLeaseTimeout(final Duration leaseTimeout) {
+		this.leaseTimeout = leaseTimeout;
+	}
+
+	public Duration getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public void setConnectTimeout(final Duration connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	public Duration getReadTimeout() {
+		return readTimeout;
+	}
+
+	public void setReadTimeout(final Duration readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	public boolean isCompression() {
+		return compression;
+	}
+
+	public void setCompression(final boolean compression) {
+		this.compression = compression;
+	}
+
+	public Map<String, Pool> getServices() {
+		return services;
+	}
+
+	public void setServices(final Map<String, Pool> services) {
+		this.services = services;
+	}
+
+	/**
+	 * Get the maximum size of the given service's pool.
+	 * @param service the name of the service
+	 * @return its configured pool size, or the default
+	 */
+	public int maxTotalFor(final String service) {
+		final Pool pool = services.get(service);
+		if (pool == null || pool.getMaxTotal() == null) {
+			return maxTotal;
+		} else {
+			return pool.getMaxTotal();
+		}
+	}
+
+	/**
+	 * Get the per-instance connection limit of the given service's pool.
+	 * @param service the name of the service
+	 * @return its configured per-instance limit, or the default
+	 */
+	public int maxPerRouteFor(final String service) {
+		final Pool pool = services.get(service);
+		if (pool == null || pool.getMaxPerRoute() == null) {
+			return maxPerRoute;
+		} else {
+			return pool.getMaxPerRoute();
+		}
+	}
+
+	/**
+	 * Pool limits for a single service; unset values fall back to the defaults.
+	 */
+	public static class Pool {
+		/**
+		 * Maximum number of connections in this service's pool.
+		 */
+		private Integer maxTotal;
+		/**
+		 * Maximum number of connections to any one instance of this service.
+		 */
+		private Integer maxPerRoute;
+
+		public Integer getMaxTotal() {
+			return maxTotal;
+		}
+
+		public void setMaxTotal(final Integer maxTotal) {
+			this.maxTotal = maxTotal;
+		}
+
+		public Integer getMaxPerRoute() {
+			return maxPerRoute;
+		}
+
+		public void setMaxPerRoute(final Integer maxPerRoute) {
+			this.maxPerRoute = maxPerRoute;
+		}
+	}
+}
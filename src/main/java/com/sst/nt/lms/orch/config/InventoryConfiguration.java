@@ -0,0 +1,48 @@
+package com.sst.nt.lms.orch.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+import com.sst.nt.lms.orch.util.InventoryIndex;
+import com.sst.nt.lms.orch.util.InventoryRefresher;
+
+/**
+ * Configuration of the in-memory copy counts. The index always exists, so the
+ * controllers can consult it unconditionally; when it is disabled nothing
+ * loads it, and every lookup goes downstream.
+ *
+ * @author Jonathan Lovelace
+ */
+@Configuration
+@EnableConfigurationProperties(InventoryProperties.class)
+public class InventoryConfiguration {
+	/**
+	 * The index of copy counts.
+	 *
+	 * @param properties the inventory settings
+	 * @return the index
+	 */
+	@Bean
+	public InventoryIndex inventoryIndex(final InventoryProperties properties) {
+		return new InventoryIndex(properties.getMaxStaleness(),
+				properties.getChangeLogSize());
+	}
+
+	/**
+	 * What keeps the index loaded.
+	 *
+	 * @param index the index
+	 * @param restTemplate the REST delegate
+	 * @param properties the inventory settings
+	 * @return the refresher
+	 */
+	@Bean
+	@ConditionalOnProperty(prefix = "orch.inventory", name = "enabled", matchIfMissing = true)
+	public InventoryRefresher inventoryRefresher(final InventoryIndex index,
+			final RestTemplate restTemplate, final InventoryProperties properties) {
+		return new InventoryRefresher(index, restTemplate, properties.getRefreshInterval());
+	}
+}
@@ -0,0 +1,68 @@
+package com.sst.nt.lms.orch.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for the in-memory copy of how many copies of each book each branch
+ * holds, from which copy-count lookups are answered without a downstream call.
+ *
+ * @author Jonathan Lovelace
+ */
+@ConfigurationProperties(prefix = "orch.inventory")
+public class InventoryProperties {
+	/**
+	 * Whether to load and serve copy counts from memory at all.
+	 */
+	private boolean enabled = true;
+	/**
+	 * How long to wait after each load of the librarian service's copies matrix,
+	 * successful or not, before the next.
+	 */
+	private Duration refreshInterval = Duration.ofSeconds(10);
+	/**
+	 * How long counts may be served after the load they came from started;
+	 * beyond this, for instance if the librarian service is down, lookups go
+	 * downstream again.
+	 */
+	private Duration maxStaleness = Duration.ofSeconds(30);
+	/**
+	 * How many of the most recent changes to counts to keep for clients asking
+	 * what has changed since a version; a client further behind than this is
+	 * sent every count instead.
+	 */
+	private int changeLogSize = 4096;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public Duration getRefreshInterval() {
+		return refreshInterval;
+	}
+
+	public void setRefreshInterval(final Duration refreshInterval) {
+		this.refreshInterval = refreshInterval;
+	}
+
+	public Duration getMaxStaleness() {
+		return maxStaleness;
+	}
+
+	public void setMaxStaleness(final Duration maxStaleness) {
+		this.maxStaleness = maxStaleness;
+	}
+
+	public int getChangeLogSize() {
+		return changeLogSize;
+	}
+
+	public void setChangeLogSize(final int changeLogSize) {
+		this.changeLogSize = changeLogSize;
+	}
+}
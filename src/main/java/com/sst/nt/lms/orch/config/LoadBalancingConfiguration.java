@@ -0,0 +1,35 @@
+package com.sst.nt.lms.orch.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.netflix.ribbon.RibbonClients;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.sst.nt.lms.orch.util.InstanceLoadTracker;
+
+/**
+ * Configuration of how requests are spread across the instances of each
+ * downstream service. By default each service's load balancer prefers instances
+ * that are answering quickly and are not backed up (see
+ * {@link com.sst.nt.lms.orch.util.PeakEwmaRule}); the rule itself is set up in
+ * each service's own Ribbon context, by {@link LoadBalancingRibbonConfiguration}.
+ *
+ * @author Jonathan Lovelace
+ */
+@Configuration
+@EnableConfigurationProperties(LoadBalancingProperties.class)
+@RibbonClients(defaultConfiguration = LoadBalancingRibbonConfiguration.class)
+public class LoadBalancingConfiguration {
+	/**
+	 * The record of how each downstream instance is doing, kept whichever rule is
+	 * in use so that it is always in the metrics.
+	 *
+	 * @param properties the load-balancing settings
+	 * @return the tracker
+	 */
+	@Bean
+	public InstanceLoadTracker instanceLoadTracker(
+			final LoadBalancingProperties properties) {
+		return new InstanceLoadTracker(properties);
+	}
+}
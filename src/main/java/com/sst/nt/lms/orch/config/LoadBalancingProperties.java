@@ -0,0 +1,70 @@
+package com.sst.nt.lms.orch.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for how the load balancer chooses which instance of a downstream
+ * service each request goes to.
+ *
+ * @author Jonathan Lovelace
+ */
+@ConfigurationProperties(prefix = "orch.load-balancing")
+public class LoadBalancingProperties {
+	/**
+	 * The ways of choosing an instance.
+	 */
+	public enum Rule {
+		/**
+		 * Pick two instances at random and use the one with the lower recent
+		 * latency, weighted by its requests in flight.
+		 */
+		PEAK_EWMA,
+		/**
+		 * Take each instance in turn, regardless of how it is doing.
+		 */
+		ROUND_ROBIN
+	}
+
+	/**
+	 * How to choose an instance, for services that do not name their own rule
+	 * in {@code <service>.ribbon.NFLoadBalancerRuleClassName}.
+	 */
+	private Rule rule = Rule.PEAK_EWMA;
+	/**
+	 * How quickly an instance's latency average forgets old response times: a
+	 * response this long ago weighs 1/e as much as one just now. An instance
+	 * that has not been called in a while is also forgiven at this rate.
+	 */
+	private Duration decayTime = Duration.ofSeconds(10);
+	/**
+	 * The latency charged to an instance for a failed call (an I/O error or a 5xx
+	 * status), so that an instance which fails fast does not attract traffic.
+	 */
+	private Duration failurePenalty = Duration.ofSeconds(1);
+
+	public Rule getRule() {
+		return rule;
+	}
+
+	public void setRule(final Rule rule) {
+		this.rule = rule;
+	}
+
+	public Duration getDecayTime() {
+		return decayTime;
+	}
+
+	public void setDecayTime(final Duration decayTime) {
+		this.decayTime = decayTime;
+	}
+
+	public Duration getFailurePenalty() {
+		return failurePenalty;
+	}
+
+	public void setFailurePenalty(final Duration failurePenalty) {
+		this.failurePenalty = failurePenalty;
+	}
+}
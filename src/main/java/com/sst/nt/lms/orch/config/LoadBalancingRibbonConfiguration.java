@@ -0,0 +1,46 @@
+package com.sst.nt.lms.orch.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.netflix.ribbon.PropertiesFactory;
+import org.springframework.context.annotation.Bean;
+
+import com.netflix.client.config.IClientConfig;
+import com.netflix.loadbalancer.IRule;
+import com.netflix.loadbalancer.RoundRobinRule;
+import com.sst.nt.lms.orch.util.InstanceLoadTracker;
+import com.sst.nt.lms.orch.util.PeakEwmaRule;
+
+/**
+ * The load-balancing rule for each downstream service, registered in that
+ * service's Ribbon context by {@link LoadBalancingConfiguration}. This is
+ * deliberately not annotated {@code @Configuration}: if component scanning
+ * picked it up, one rule would be shared by every service's load balancer.
+ *
+ * @author Jonathan Lovelace
+ */
+public class LoadBalancingRibbonConfiguration {
+	/**
+	 * The rule: the one named in {@code <service>.ribbon.NFLoadBalancerRuleClassName}
+	 * if there is one, as with Ribbon's own default, or else the one chosen in our
+	 * settings.
+	 *
+	 * @param name the name of the service
+	 * @param config the service's Ribbon settings
+	 * @param propertiesFactory the source of rules named in Ribbon settings
+	 * @param properties our load-balancing settings
+	 * @param tracker the record of how each instance is doing
+	 * @return the rule
+	 */
+	@Bean
+	public IRule ribbonRule(@Value("${ribbon.client.name}") final String name,
+			final IClientConfig config, final PropertiesFactory propertiesFactory,
+			final LoadBalancingProperties properties, final InstanceLoadTracker tracker) {
+		if (propertiesFactory.isSet(IRule.class, name)) {
+			return propertiesFactory.get(IRule.class, config, name);
+		} else if (properties.getRule() == LoadBalancingProperties.Rule.ROUND_ROBIN) {
+			return new RoundRobinRule();
+		} else {
+			return new PeakEwmaRule(tracker);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.sst.nt.lms.orch.config;
+
+import javax.servlet.DispatcherType;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import com.sst.nt.lms.orch.util.DownstreamMetricsInterceptor;
+import com.sst.nt.lms.orch.util.RequestMetricsFilter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Configuration of the latency metrics we keep for each of our routes and each
+ * downstream service, which are published for scraping at
+ * {@code /actuator/prometheus}.
+ *
+ * @author Jonathan Lovelace
+ */
+@Configuration
+public class MetricsConfiguration {
+	/**
+	 * The filter that times each request we handle. It runs inside the
+	 * disconnect filter, so it can tell when a client went away, and replaces
+	 * Spring Boot's own request timing.
+	 *
+	 * @param registry the registry to record in
+	 * @return its registration
+	 */
+	@Bean
+	public FilterRegistrationBean<RequestMetricsFilter> requestMetricsFilter(
+			final MeterRegistry registry) {
+		final FilterRegistrationBean<RequestMetricsFilter> registration =
+				new FilterRegistrationBean<>(new RequestMetricsFilter(registry));
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+		return registration;
+	}
+
+	/**
+	 * The timing of each downstream call, applied to both the blocking and the
+	 * non-blocking REST delegate.
+	 *
+	 * @param registry the registry to record in
+	 * @return the interceptor
+	 */
+	@Bean
+	public DownstreamMetricsInterceptor downstreamMetricsInterceptor(
+			final MeterRegistry registry) {
+		return new DownstreamMetricsInterceptor(registry);
+	}
+}
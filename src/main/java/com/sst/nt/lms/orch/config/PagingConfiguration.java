@@ -0,0 +1,30 @@
+package com.sst.nt.lms.orch.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sst.nt.lms.orch.util.CollectionStreamer;
+
+/**
+ * Configuration of paginated and streamed collection endpoints.
+ *
+ * @author Jonathan Lovelace
+ */
+@Configuration
+@EnableConfigurationProperties(PagingProperties.class)
+public class PagingConfiguration {
+	/**
+	 * The helper that pages and streams downstream collections.
+	 *
+	 * @param mapper the application's JSON mapper
+	 * @param properties the paging settings
+	 * @return the helper
+	 */
+	@Bean
+	public CollectionStreamer collectionStreamer(final ObjectMapper mapper,
+			final PagingProperties properties) {
+		return new CollectionStreamer(mapper, properties);
+	}
+}
@@ -0,0 +1,35 @@
+package com.sst.nt.lms.orch.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for paginated collection endpoints.
+ *
+ * @author Jonathan Lovelace
+ */
+@ConfigurationProperties(prefix = "orch.paging")
+public class PagingProperties {
+	/**
+	 * The largest page a client may ask for.
+	 */
+	private int maxLimit = 500;
+
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+	public void setMaxLimit(final int maxLimit) {
+		this.maxLimit = maxLimit;
+	}
+
+	/**
+	 * Whether a client's paging parameters are acceptable.
+	 * @param offset the position of the first item the client asked for
+	 * @param limit the number of items the client asked for
+	 * @return whether the offset is nonnegative and the limit is positive and not
+	 *         above the maximum
+	 */
+	public boolean isValid(final int offset, final int limit) {
+		return offset >= 0 && limit > 0 && limit <= maxLimit;
+	}
+}
@@ -0,0 +1,84 @@
+package com.sst.nt.lms.orch.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.loadbalancer.reactive.LoadBalancerExchangeFilterFunction;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.sst.nt.lms.orch.util.BulkheadInterceptor;
+import com.sst.nt.lms.orch.util.CircuitBreakerInterceptor;
+import com.sst.nt.lms.orch.util.ConcurrencyLimitInterceptor;
+import com.sst.nt.lms.orch.util.DeadlineInterceptor;
+import com.sst.nt.lms.orch.util.DownstreamMetricsInterceptor;
+import com.sst.nt.lms.orch.util.HedgeAdmission;
+import com.sst.nt.lms.orch.util.Hedging;
+import com.sst.nt.lms.orch.util.HedgingFilter;
+import com.sst.nt.lms.orch.util.HopByHopHeaderInterceptor;
+import com.sst.nt.lms.orch.util.InstanceLoadTracker;
+
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.client.HttpClient;
+
+/**
+ * Configuration of the non-blocking REST delegate used when
+ * {@code orch.execution-mode=reactive}. In that mode the controllers in
+ * {@code com.sst.nt.lms.orch.controller.reactive} replace the blocking ones,
+ * and hand each request back to the servlet container while it waits on the
+ * downstream service instead of holding a worker thread for the round trip.
+ *
+ * @author Jonathan Lovelace
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "orch", name = "execution-mode", havingValue = "reactive")
+public class ReactiveClientConfiguration {
+	/**
+	 * The non-blocking REST delegate, which resolves service names the same way
+	 * the blocking one does. (The load-balancer filter is applied here rather than
+	 * through a {@code @LoadBalanced} builder because that is only customized
+	 * after all singletons, including this one, have been created.)
+	 *
+	 * <p>Unlike Apache HttpClient, Reactor Netty does not ask for compressed
+	 * responses unless told to, so that is switched on here to match the blocking
+	 * delegate, as is the connect timeout. There is no read timeout: every call
+	 * is cut off by its deadline instead.
+	 *
+	 * @param loadBalancer the load-balancing filter
+	 * @param properties the HTTP client settings
+	 * @param downstreamMetrics the timing of each downstream call, which leaves
+	 *        the rest of the chain to be assembled at once and so can come first
+	 * @param deadlines the per-call deadlines, which must be taken while the call
+	 *        is assembled and so come before any filter that defers assembly
+	 * @param concurrencyLimits the per-service adaptive concurrency limits, which
+	 *        must see the service name before the load balancer replaces it
+	 * @param bulkheads the per-service bulkheads, which likewise must see the
+	 *        service name
+	 * @param circuitBreakers the per-service circuit breakers, which also must see it
+	 * @param hedging the policy for hedging slow GETs to another instance
+	 * @param admission decides whether each hedge may be sent
+	 * @param tracker the record of how each instance is doing, which must see
+	 *        each attempt on its way to its instance
+	 * @return the web client the reactive controllers use
+	 */
+	@Bean
+	public WebClient reactiveDelegate(final LoadBalancerExchangeFilterFunction loadBalancer,
+			final HttpClientProperties properties,
+			final DownstreamMetricsInterceptor downstreamMetrics,
+			final DeadlineInterceptor deadlines,
+			final ConcurrencyLimitInterceptor concurrencyLimits,
+			final BulkheadInterceptor bulkheads,
+			final CircuitBreakerInterceptor circuitBreakers, final Hedging hedging,
+			final HedgeAdmission admission, final InstanceLoadTracker tracker) {
+		return WebClient.builder()
+				.clientConnector(new ReactorClientHttpConnector(HttpClient.create()
+						.compress(properties.isCompression())
+						.tcpConfiguration(tcp -> tcp.option(ChannelOption.CONNECT_TIMEOUT_MILLIS,
+								(int) properties.getConnectTimeout().toMillis()))))
+				.filter(downstreamMetrics).filter(deadlines).filter(concurrencyLimits)
+				.filter(bulkheads).filter(circuitBreakers)
+				.filter(HedgingFilter.serviceTagger()).filter(loadBalancer)
+				.filter(new HedgingFilter(hedging, admission)).filter(tracker)
+				.filter(new HopByHopHeaderInterceptor()).build();
+	}
+}
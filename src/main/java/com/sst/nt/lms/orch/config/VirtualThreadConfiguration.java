@@ -0,0 +1,34 @@
+package com.sst.nt.lms.orch.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.sst.nt.lms.orch.util.VirtualThreadConnectorCustomizer;
+
+/**
+ * Configuration of the opt-in virtual-thread execution mode. Besides the
+ * servlet container's request threads configured here, the fan-out executor
+ * and the gate in front of the HTTP client's connection pools (see
+ * {@link FanOutConfiguration} and {@link HttpClientConfiguration}) follow the
+ * same setting. The few small pools that only wait out timers, for hedges,
+ * deadlines and inventory reloads, stay on platform threads.
+ *
+ * @author Jonathan Lovelace
+ */
+@Configuration
+@EnableConfigurationProperties(VirtualThreadProperties.class)
+public class VirtualThreadConfiguration {
+	/**
+	 * What puts client requests on virtual threads.
+	 *
+	 * @return the container customizer
+	 */
+	@Bean
+	@ConditionalOnProperty(prefix = "orch.virtual-threads", name = "enabled",
+			havingValue = "true")
+	public VirtualThreadConnectorCustomizer virtualThreadConnectorCustomizer() {
+		return new VirtualThreadConnectorCustomizer();
+	}
+}
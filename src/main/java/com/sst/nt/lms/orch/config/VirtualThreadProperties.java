@@ -0,0 +1,27 @@
+package com.sst.nt.lms.orch.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for running request handling and downstream calls on virtual
+ * threads, which need Java 21 or later.
+ *
+ * @author Jonathan Lovelace
+ */
+@ConfigurationProperties(prefix = "orch.virtual-threads")
+public class VirtualThreadProperties {
+	/**
+	 * Whether to handle each client request, and run each fan-out task, on a
+	 * virtual thread of its own rather than on a bounded pool of platform
+	 * threads. Startup fails if this is set on a runtime without them.
+	 */
+	private boolean enabled = false;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+}
@@ -1,31 +1,75 @@
 package com.sst.nt.lms.orch.controller;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.client.RestTemplate;
 
+import com.sst.nt.lms.orch.config.FanOutProperties;
 import com.sst.nt.lms.orch.model.Book;
 import com.sst.nt.lms.orch.model.Borrower;
+import com.sst.nt.lms.orch.model.BorrowerDashboard;
 import com.sst.nt.lms.orch.model.Branch;
 import com.sst.nt.lms.orch.model.BranchCopies;
 import com.sst.nt.lms.orch.model.Loan;
+import com.sst.nt.lms.orch.model.Page;
+import com.sst.nt.lms.orch.util.CollectionStreamer;
+import com.sst.nt.lms.orch.util.Deadline;
+import com.sst.nt.lms.orch.util.FanOutExecutor;
+import com.sst.nt.lms.orch.util.InventoryIndex;
+import com.sst.nt.lms.orch.util.Passthrough;
 
 @RestController
+@ConditionalOnProperty(prefix = "orch", name = "execution-mode", havingValue = "blocking",
+		matchIfMissing = true)
 public class BorrowerController {
 	
 	private static String borrowerUrl = "borrower-service";
 	
 	@Autowired
 	RestTemplate restTemplate;
+
+	/**
+	 * Executor for the concurrent requests of the dashboard.
+	 */
+	@Autowired
+	private FanOutExecutor fanOut;
+
+	/**
+	 * Settings for the dashboard's concurrent requests.
+	 */
+	@Autowired
+	private FanOutProperties fanOutProperties;
+
+	/**
+	 * Helper for paged and streamed lists.
+	 */
+	@Autowired
+	private CollectionStreamer streamer;
+
+	/**
+	 * In-memory copy counts, which branches' copies are answered from while
+	 * fresh, and which loans and returns are written through to.
+	 */
+	@Autowired
+	private InventoryIndex inventory;
 	
 	/**
 	 * Helper method to reduce the amount of repetitive code required for "get-all"
@@ -53,7 +97,11 @@ public class BorrowerController {
 	public ResponseEntity<Loan> borrowBook(@PathVariable("cardNo") final int cardNo,
 			@PathVariable("branchId") final int branchId,
 			@PathVariable("bookId") final int bookId) {
-		return this.<Loan>methodCall("http://" + borrowerUrl + "/borrowers/" + cardNo + "/branches/" + branchId + "/books/" + bookId, HttpMethod.POST);
+		final ResponseEntity<Loan> response = this.<Loan>methodCall("http://" + borrowerUrl + "/borrowers/" + cardNo + "/branches/" + branchId + "/books/" + bookId, HttpMethod.POST);
+		if (response.getStatusCode().is2xxSuccessful()) {
+			inventory.adjust(branchId, bookId, -1);
+		}
+		return response;
 	}
 
 	/**
@@ -64,8 +112,13 @@ public class BorrowerController {
 	 *
 	 * @param branchId used to get a list of book copies associated with the given
 	 *                 branchId (branch)
-	 * @return a list of book copies associated with the given branch Id if the
-	 *         branch associated to the branch id exists
+	 * @param request  the client's request
+	 * @param response the response to the client, to which the borrower service's
+	 *                 list of book copies associated with the given branch Id is
+	 *                 streamed straight through, unless the in-memory copy
+	 *                 counts are fresh enough to answer from
+	 * @return the branch's copies from memory, or null if the borrower service's
+	 *         response was streamed through instead
 	 * @throws TransactionException A retrieval exception will be thrown if the
 	 *                              branch associated to the branch id given does
 	 *                              not exist or if the search for the book copies
@@ -73,8 +126,15 @@ public class BorrowerController {
 	 */
 	@GetMapping(path = "/branches/{branchId}/copies")
 	public ResponseEntity<List<BranchCopies>> getAllBranchCopies(
-			@PathVariable("branchId") final int branchId) {
-		return this.<List<BranchCopies>>methodCall("http://" + borrowerUrl + "/branches/" + branchId + "/copies", HttpMethod.GET);
+			@PathVariable("branchId") final int branchId,
+			final HttpServletRequest request, final HttpServletResponse response) {
+		final List<BranchCopies> local = inventory.getAll(branchId);
+		if (local != null) {
+			return ResponseEntity.ok(local);
+		}
+		Passthrough.get(restTemplate, "http://" + borrowerUrl + "/branches/" + branchId + "/copies",
+				request, response);
+		return null;
 	}
 
 	/**
@@ -100,7 +160,11 @@ public class BorrowerController {
 			@PathVariable("bookId") final int bookId) {
 		String returningBookUrl = "http://" + borrowerUrl + "/borrowers/" + cardNo + "/branches/" + branchId + "/books/" + bookId;
 		
-		return this.<String>methodCall(returningBookUrl, HttpMethod.DELETE);
+		final ResponseEntity<String> response = this.<String>methodCall(returningBookUrl, HttpMethod.DELETE);
+		if (response.getStatusCode().is2xxSuccessful()) {
+			inventory.adjust(branchId, bookId, 1);
+		}
+		return response;
 	}
 
 	/**
@@ -137,6 +201,127 @@ public class BorrowerController {
 		return this.<List<Loan>>methodCall(getAllBorrowerLoansUrl, HttpMethod.GET);
 	}
 
+	/**
+	 * Get one page of the branches from which the borrower has an outstanding book
+	 * loan.
+	 * @param cardNo id for a particular borrower
+	 * @param offset the position of the first branch to return
+	 * @param limit the most branches to return
+	 * @return the page, or other response
+	 */
+	@GetMapping(path = "/borrowers/{cardNo}/branches", params = "limit")
+	public ResponseEntity<Page<Branch>> getAllBranchesWithLoanPage(
+			@PathVariable("cardNo") final int cardNo,
+			@RequestParam(name = "offset", defaultValue = "0") final int offset,
+			@RequestParam("limit") final int limit) {
+		return streamer.page(restTemplate, "http://" + borrowerUrl + "/borrowers/" + cardNo + "/branches", Branch.class,
+				offset, limit);
+	}
+
+	/**
+	 * Stream the branches from which the borrower has an outstanding book loan as
+	 * newline-delimited JSON.
+	 * @param cardNo id for a particular borrower
+	 * @param request the client's request
+	 * @param response the response to the client
+	 */
+	@GetMapping(path = "/borrowers/{cardNo}/branches", produces = { CollectionStreamer.NDJSON_VALUE,
+			MediaType.APPLICATION_STREAM_JSON_VALUE })
+	public void streamAllBranchesWithLoan(@PathVariable("cardNo") final int cardNo,
+			final HttpServletRequest request, final HttpServletResponse response) {
+		streamer.ndjson(restTemplate, "http://" + borrowerUrl + "/borrowers/" + cardNo + "/branches",
+				request, response);
+	}
+
+	/**
+	 * Get one page of the book loans the borrower has borrowed from any library
+	 * branch.
+	 * @param cardNo id for a particular borrower
+	 * @param offset the position of the first loan to return
+	 * @param limit the most loans to return
+	 * @return the page, or other response
+	 */
+	@GetMapping(path = "/borrowers/{cardNo}/loans", params = "limit")
+	public ResponseEntity<Page<Loan>> getAllBorrowedBooksPage(
+			@PathVariable("cardNo") final int cardNo,
+			@RequestParam(name = "offset", defaultValue = "0") final int offset,
+			@RequestParam("limit") final int limit) {
+		return streamer.page(restTemplate, "http://" + borrowerUrl + "/borrowers/" + cardNo + "/loans", Loan.class,
+				offset, limit);
+	}
+
+	/**
+	 * Stream the book loans the borrower has borrowed from any library branch as
+	 * newline-delimited JSON.
+	 * @param cardNo id for a particular borrower
+	 * @param request the client's request
+	 * @param response the response to the client
+	 */
+	@GetMapping(path = "/borrowers/{cardNo}/loans", produces = { CollectionStreamer.NDJSON_VALUE,
+			MediaType.APPLICATION_STREAM_JSON_VALUE })
+	public void streamAllBorrowedBooks(@PathVariable("cardNo") final int cardNo,
+			final HttpServletRequest request, final HttpServletResponse response) {
+		streamer.ndjson(restTemplate, "http://" + borrowerUrl + "/borrowers/" + cardNo + "/loans",
+				request, response);
+	}
+
+	/**
+	 * Give the borrower app everything for its main screen in one response: the
+	 * borrower's details, loans, and branches with loans. The three downstream
+	 * requests are sent concurrently, and any that fails or does not answer within
+	 * {@code orch.fan-out.call-timeout} is left out and listed as unavailable.
+	 *
+	 * @param cardNo id for a particular borrower
+	 * @return 200(OK) with the dashboard, possibly partial, or 404(not found) if
+	 *         the administrator service reports no such borrower
+	 */
+	@GetMapping(path = "/borrowers/{cardNo}/dashboard")
+	public ResponseEntity<BorrowerDashboard> getDashboard(
+			@PathVariable("cardNo") final int cardNo) {
+		// The downstream calls are cut off when we stop waiting for them.
+		final Deadline deadline = Deadline.after(fanOutProperties.getCallTimeout())
+				.min(Deadline.current());
+		final CompletableFuture<ResponseEntity<Borrower>> borrower = fanOut.submit(
+				deadline, () -> restTemplate.getForEntity("http://admin/borrower/" + cardNo,
+						Borrower.class));
+		final CompletableFuture<ResponseEntity<List<Loan>>> loans = fanOut
+				.submit(deadline, () -> getAllBorrowedBooks(cardNo));
+		final CompletableFuture<ResponseEntity<List<Branch>>> branches = fanOut
+				.submit(deadline, () -> getAllBranchesWithLoan(cardNo));
+		final ResponseEntity<Borrower> borrowerResponse = FanOutExecutor.await(borrower,
+				deadline.getNanoTime());
+		if (borrowerResponse != null
+				&& borrowerResponse.getStatusCode() == HttpStatus.NOT_FOUND) {
+			return ResponseEntity.notFound().build();
+		}
+		final List<String> unavailable = new ArrayList<>();
+		return ResponseEntity.ok(new BorrowerDashboard(
+				bodyOf(borrowerResponse, BorrowerDashboard.BORROWER, unavailable),
+				bodyOf(FanOutExecutor.await(loans, deadline.getNanoTime()),
+						BorrowerDashboard.LOANS, unavailable),
+				bodyOf(FanOutExecutor.await(branches, deadline.getNanoTime()),
+						BorrowerDashboard.BRANCHES, unavailable),
+				unavailable));
+	}
+
+	/**
+	 * Helper method to extract one part of a composite response.
+	 * @param response the downstream response, or null if it failed or timed out
+	 * @param part the name of the part
+	 * @param unavailable the list to add the part's name to if it is unavailable
+	 * @param <T> the type of the part
+	 * @return the response body, or null if the request did not succeed
+	 */
+	private static <T> T bodyOf(final ResponseEntity<T> response, final String part,
+			final List<String> unavailable) {
+		if (response != null && response.getStatusCode().is2xxSuccessful()) {
+			return response.getBody();
+		} else {
+			unavailable.add(part);
+			return null;
+		}
+	}
+
 	/**
 	 * Give the client a borrower with a given card number.
 	 *
@@ -4,7 +4,15 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -22,23 +30,86 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.client.RestTemplate;
 
 import com.sst.nt.lms.orch.model.Author;
+import com.sst.nt.lms.orch.model.BatchResponse;
 import com.sst.nt.lms.orch.model.Book;
+import com.sst.nt.lms.orch.model.Page;
 import com.sst.nt.lms.orch.model.Publisher;
+import com.sst.nt.lms.orch.util.CollectionStreamer;
+import com.sst.nt.lms.orch.util.FanOutExecutor;
 import com.sst.nt.lms.orch.util.MapBuilder;
 
 /**
  * Controller for cataloging administrators.
  *
+ * <p>Successful reads are cached (see {@code spring.cache.*} in the application
+ * properties), since the catalog changes far less often than it is read. Every
+ * write evicts the entries it could have made stale, including the books that
+ * embed an updated author or publisher. Paged and streamed lists are the
+ * exception: they are parsed from the administrator service's response as it
+ * arrives, so that a request never holds more than its page, or than one item,
+ * however long the list.
+ *
  * <p>FIXME: Limit access to most of these endpoints to authorized users
  * @author Jonathan Lovelace
  */
 @RestController
-public final class CatalogController {
+@ConditionalOnProperty(prefix = "orch", name = "execution-mode", havingValue = "blocking",
+		matchIfMissing = true)
+public class CatalogController {
+	/**
+	 * Cache of the list of all authors.
+	 */
+	private static final String AUTHORS = "authors";
+	/**
+	 * Cache of individual authors, by ID.
+	 */
+	private static final String AUTHOR = "author";
+	/**
+	 * Cache of the list of all books.
+	 */
+	private static final String BOOKS = "books";
+	/**
+	 * Cache of individual books, by ID.
+	 */
+	private static final String BOOK = "book";
+	/**
+	 * Cache of the list of all publishers.
+	 */
+	private static final String PUBLISHERS = "publishers";
+	/**
+	 * Cache of individual publishers, by ID.
+	 */
+	private static final String PUBLISHER = "publisher";
+	/**
+	 * Condition under which a response is not cached: we only keep successes.
+	 */
+	private static final String UNLESS_FAILED = "#result == null || !#result.statusCode.is2xxSuccessful()";
+	/**
+	 * The key under which each "get-all" response is cached.
+	 */
+	private static final String ALL = "'all'";
 	/**
 	 * REST delegate helper.
 	 */
 	@Autowired
 	private RestTemplate delegate;
+	/**
+	 * Executor for batch lookups.
+	 */
+	@Autowired
+	private FanOutExecutor fanOut;
+	/**
+	 * Helper for paged and streamed lists.
+	 */
+	@Autowired
+	private CollectionStreamer streamer;
+	/**
+	 * This controller as seen through its proxy, so that batch lookups go through
+	 * the per-object caches.
+	 */
+	@Autowired
+	@Lazy
+	private CatalogController self;
 
 	/**
 	 * Helper method to reduce the amount of repetitive code required for "get-all"
@@ -57,6 +128,7 @@ public final class CatalogController {
 	 * @return the list of all authors, or other response.
 	 */
 	@GetMapping({"/authors", "/authors/"})
+	@Cacheable(cacheNames = AUTHORS, key = ALL, unless = UNLESS_FAILED)
 	public ResponseEntity<List<Author>> getAuthors() {
 		return this.<List<Author>>getAll("http://admin/authors/");
 	}
@@ -66,6 +138,7 @@ public final class CatalogController {
 	 * @return the list of all books, or other response
 	 */
 	 @GetMapping({"/books", "/books/"}) // conflicts with other controller's route
+	@Cacheable(cacheNames = BOOKS, key = ALL, unless = UNLESS_FAILED)
 	public ResponseEntity<List<Book>> getBooks() {
 		return this.<List<Book>>getAll("http://admin/books/");
 	}
@@ -75,6 +148,7 @@ public final class CatalogController {
 	 * @return the list of all publishers, or other response
 	 */
 	@GetMapping({"/publishers","/publishers/"})
+	@Cacheable(cacheNames = PUBLISHERS, key = ALL, unless = UNLESS_FAILED)
 	public ResponseEntity<List<Publisher>> getPublishers() {
 		return this.<List<Publisher>>getAll("http://admin/publishers/");
 	}
@@ -86,6 +160,7 @@ public final class CatalogController {
 	 * @throws TransactionException if author not found, or on internal error
 	 */
 	@GetMapping({"/author/{authorId}", "/author/{authorId}/"})
+	@Cacheable(cacheNames = AUTHOR, key = "#authorId", unless = UNLESS_FAILED)
 	public ResponseEntity<Author> getAuthor(@PathVariable("authorId") final int authorId) {
 		return delegate.getForEntity("http://admin/author/" + authorId, Author.class);
 	}
@@ -96,6 +171,7 @@ public final class CatalogController {
 	 * @return the book, or other response
 	 */
 	 @GetMapping({"/book/{bookId}","/book/{bookId}/"}) // conflicts with other controller's route
+	@Cacheable(cacheNames = BOOK, key = "#bookId", unless = UNLESS_FAILED)
 	public ResponseEntity<Book> getBook(@PathVariable("bookId") final int bookId) {
 		return delegate.getForEntity("http://admin/book/" + bookId, Book.class);
 	}
@@ -106,12 +182,136 @@ public final class CatalogController {
 	 * @return the publisher, or other response
 	 */
 	@GetMapping({"/publisher/{publisherId}", "/publisher/{publisherId}/"})
+	@Cacheable(cacheNames = PUBLISHER, key = "#publisherId", unless = UNLESS_FAILED)
 	public ResponseEntity<Publisher> getPublisher(
 			@PathVariable("publisherId") final int publisherId) {
 		return delegate.getForEntity("http://admin/publisher/" + publisherId,
 				Publisher.class);
 	}
 
+	/**
+	 * Get several authors by ID number from the administrator service at once.
+	 * @param ids the ID numbers of the authors
+	 * @return the authors that were found and the IDs that were not, or other
+	 *         response
+	 */
+	@GetMapping(path = {"/authors", "/authors/"}, params = "ids")
+	public ResponseEntity<BatchResponse<Author>> getAuthors(
+			@RequestParam("ids") final List<Integer> ids) {
+		return fanOut.getBatch(ids, self::getAuthor);
+	}
+
+	/**
+	 * Get several books by ID number from the administrator service at once.
+	 * @param ids the ID numbers of the books
+	 * @return the books that were found and the IDs that were not, or other
+	 *         response
+	 */
+	@GetMapping(path = {"/books", "/books/"}, params = "ids")
+	public ResponseEntity<BatchResponse<Book>> getBooks(
+			@RequestParam("ids") final List<Integer> ids) {
+		return fanOut.getBatch(ids, self::getBook);
+	}
+
+	/**
+	 * Get several publishers by ID number from the administrator service at once.
+	 * @param ids the ID numbers of the publishers
+	 * @return the publishers that were found and the IDs that were not, or other
+	 *         response
+	 */
+	@GetMapping(path = {"/publishers", "/publishers/"}, params = "ids")
+	public ResponseEntity<BatchResponse<Publisher>> getPublishers(
+			@RequestParam("ids") final List<Integer> ids) {
+		return fanOut.getBatch(ids, self::getPublisher);
+	}
+
+	/**
+	 * Get one page of the list of all authors from the administrator service,
+	 * parsing the downstream list as it arrives rather than through the cached
+	 * list, which would have to be fetched whole on a miss.
+	 * @param offset the position of the first author to return
+	 * @param limit the most authors to return
+	 * @return the page, or other response
+	 */
+	@GetMapping(path = {"/authors", "/authors/"}, params = {"limit", "!ids"})
+	public ResponseEntity<Page<Author>> getAuthorsPage(
+			@RequestParam(name = "offset", defaultValue = "0") final int offset,
+			@RequestParam("limit") final int limit) {
+		return streamer.page(delegate, "http://admin/authors/", Author.class, offset,
+				limit);
+	}
+
+	/**
+	 * Stream the list of all authors from the administrator service as newline-
+	 * delimited JSON, item by item as it arrives.
+	 * @param request the client's request
+	 * @param response the response to the client
+	 */
+	@GetMapping(path = {"/authors", "/authors/"}, produces = {CollectionStreamer.NDJSON_VALUE,
+			MediaType.APPLICATION_STREAM_JSON_VALUE})
+	public void streamAuthors(final HttpServletRequest request,
+			final HttpServletResponse response) {
+		streamer.ndjson(delegate, "http://admin/authors/", request, response);
+	}
+
+	/**
+	 * Get one page of the list of all books from the administrator service,
+	 * parsing the downstream list as it arrives rather than through the cached
+	 * list, which would have to be fetched whole on a miss.
+	 * @param offset the position of the first book to return
+	 * @param limit the most books to return
+	 * @return the page, or other response
+	 */
+	@GetMapping(path = {"/books", "/books/"}, params = {"limit", "!ids"})
+	public ResponseEntity<Page<Book>> getBooksPage(
+			@RequestParam(name = "offset", defaultValue = "0") final int offset,
+			@RequestParam("limit") final int limit) {
+		return streamer.page(delegate, "http://admin/books/", Book.class, offset,
+				limit);
+	}
+
+	/**
+	 * Stream the list of all books from the administrator service as newline-
+	 * delimited JSON, item by item as it arrives.
+	 * @param request the client's request
+	 * @param response the response to the client
+	 */
+	@GetMapping(path = {"/books", "/books/"}, produces = {CollectionStreamer.NDJSON_VALUE,
+			MediaType.APPLICATION_STREAM_JSON_VALUE})
+	public void streamBooks(final HttpServletRequest request,
+			final HttpServletResponse response) {
+		streamer.ndjson(delegate, "http://admin/books/", request, response);
+	}
+
+	/**
+	 * Get one page of the list of all publishers from the administrator service,
+	 * parsing the downstream list as it arrives rather than through the cached
+	 * list, which would have to be fetched whole on a miss.
+	 * @param offset the position of the first publisher to return
+	 * @param limit the most publishers to return
+	 * @return the page, or other response
+	 */
+	@GetMapping(path = {"/publishers", "/publishers/"}, params = {"limit", "!ids"})
+	public ResponseEntity<Page<Publisher>> getPublishersPage(
+			@RequestParam(name = "offset", defaultValue = "0") final int offset,
+			@RequestParam("limit") final int limit) {
+		return streamer.page(delegate, "http://admin/publishers/", Publisher.class, offset,
+				limit);
+	}
+
+	/**
+	 * Stream the list of all publishers from the administrator service as newline-
+	 * delimited JSON, item by item as it arrives.
+	 * @param request the client's request
+	 * @param response the response to the client
+	 */
+	@GetMapping(path = {"/publishers", "/publishers/"}, produces = {CollectionStreamer.NDJSON_VALUE,
+			MediaType.APPLICATION_STREAM_JSON_VALUE})
+	public void streamPublishers(final HttpServletRequest request,
+			final HttpServletResponse response) {
+		streamer.ndjson(delegate, "http://admin/publishers/", request, response);
+	}
+
 	/**
 	 * Update an author by ID number in the administrator service.
 	 * @param authorId the ID number of the author to update
@@ -119,6 +319,8 @@ public final class CatalogController {
 	 * @return the updated author, or other response
 	 */
 	@PutMapping({ "/author/{authorId}", "/author/{authorId}/" })
+	@Caching(evict = { @CacheEvict(cacheNames = AUTHOR, key = "#authorId"),
+			@CacheEvict(cacheNames = { AUTHORS, BOOKS, BOOK }, allEntries = true) })
 	public ResponseEntity<Author> updateAuthor(
 			@PathVariable("authorId") final int authorId,
 			@RequestBody final Author input) {
@@ -133,6 +335,8 @@ public final class CatalogController {
 	 * @return the updated publisher, or other response
 	 */
 	@PutMapping({ "/publisher/{publisherId}", "/publisher/{publisherId}/" })
+	@Caching(evict = { @CacheEvict(cacheNames = PUBLISHER, key = "#publisherId"),
+			@CacheEvict(cacheNames = { PUBLISHERS, BOOKS, BOOK }, allEntries = true) })
 	public ResponseEntity<Publisher> updatePublisher(
 			@PathVariable("publisherId") final int publisherId,
 			@RequestBody final Publisher input) {
@@ -152,6 +356,8 @@ public final class CatalogController {
 	 * @return the updated book, or other response
 	 */
 	@PutMapping({"/book/{bookId}", "/book/{bookId}/"})
+	@Caching(evict = { @CacheEvict(cacheNames = BOOK, key = "#bookId"),
+			@CacheEvict(cacheNames = BOOKS, allEntries = true) })
 	public ResponseEntity<Book> updateBook(@PathVariable("bookId") final int bookId,
 			@RequestBody final Book input) {
 		return delegate.exchange("http://admin/book/" + bookId, HttpMethod.PUT,
@@ -164,6 +370,7 @@ public final class CatalogController {
 	 * @return the created author, or other response
 	 */
 	@PostMapping({ "/author", "/author/" })
+	@CacheEvict(cacheNames = AUTHORS, allEntries = true)
 	public ResponseEntity<Author> createAuthor(
 			@RequestBody final Map<String, String> body) {
 		final HttpHeaders headers = new HttpHeaders();
@@ -181,6 +388,7 @@ public final class CatalogController {
 	 * @return the created publisher, or other response.
 	 */
 	@PostMapping({"/publisher", "/publisher/"})
+	@CacheEvict(cacheNames = PUBLISHERS, allEntries = true)
 	public ResponseEntity<Publisher> createPublisher(
 			@RequestBody final Map<String, String> body) {
 		final HttpHeaders headers = new HttpHeaders();
@@ -200,6 +408,8 @@ public final class CatalogController {
 	 * @return the created book, or other response
 	 */
 	@PostMapping({"/book", "/book/"})
+	// Creating a book can also create its author and publisher.
+	@CacheEvict(cacheNames = { BOOKS, AUTHORS, PUBLISHERS }, allEntries = true)
 	public ResponseEntity<Book> createBook(@RequestBody final Book body) {
 		final HttpHeaders headers = new HttpHeaders();
 		headers.setContentType(MediaType.APPLICATION_JSON);
@@ -212,6 +422,8 @@ public final class CatalogController {
 	 * @param authorId the ID of the author to delete.
 	 */
 	@DeleteMapping({"/author/{authorId}", "/author/{authorId}/"})
+	@Caching(evict = { @CacheEvict(cacheNames = AUTHOR, key = "#authorId"),
+			@CacheEvict(cacheNames = { AUTHORS, BOOKS, BOOK }, allEntries = true) })
 	public void deleteAuthor(@PathVariable("authorId") final int authorId) {
 		delegate.delete("http://admin/author/" + authorId);
 	}
@@ -221,6 +433,8 @@ public final class CatalogController {
 	 * @param publisherId the ID of the publisher to delete
 	 */
 	@DeleteMapping({ "/publisher/{publisherId}", "/publisher/{publisherId}/" })
+	@Caching(evict = { @CacheEvict(cacheNames = PUBLISHER, key = "#publisherId"),
+			@CacheEvict(cacheNames = { PUBLISHERS, BOOKS, BOOK }, allEntries = true) })
 	public void deletePublisher(@PathVariable("publisherId") final int publisherId) {
 		delegate.delete("http://admin/publisher/" + publisherId);
 	}
@@ -230,6 +444,8 @@ public final class CatalogController {
 	 * @param bookId the ID of the book to delete
 	 */
 	@DeleteMapping({ "/book/{bookId}", "/book/{bookId}/" })
+	@Caching(evict = { @CacheEvict(cacheNames = BOOK, key = "#bookId"),
+			@CacheEvict(cacheNames = BOOKS, allEntries = true) })
 	public void deleteBook(@PathVariable("bookId") final int bookId) {
 		delegate.delete("http://admin/book/" + bookId);
 	}
@@ -0,0 +1,99 @@
+package com.sst.nt.lms.orch.controller;
+
+import java.net.ConnectException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.sst.nt.lms.orch.util.BulkheadFullException;
+import com.sst.nt.lms.orch.util.CircuitOpenException;
+import com.sst.nt.lms.orch.util.ClientConnection;
+import com.sst.nt.lms.orch.util.ConcurrencyLimitExceededException;
+import com.sst.nt.lms.orch.util.DeadlineExceededException;
+
+/**
+ * Turns failures to reach a downstream service into responses that say so,
+ * rather than a generic server error. Responses the service did send, whatever
+ * their status, are relayed by the controllers themselves.
+ *
+ * @author Jonathan Lovelace
+ */
+@RestControllerAdvice
+public class DownstreamFailureHandler {
+	/**
+	 * A call was not made because the service's circuit breaker is open.
+	 *
+	 * @param except the exception
+	 * @return 503 Service Unavailable, saying when to try again
+	 */
+	@ExceptionHandler(CircuitOpenException.class)
+	public ResponseEntity<String> circuitOpen(final CircuitOpenException except) {
+		final long seconds = Math.max(1,
+				TimeUnit.MILLISECONDS.toSeconds(except.getRetryAfterMillis() + 999));
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.header(HttpHeaders.RETRY_AFTER, Long.toString(seconds))
+				.body(except.getService() + " is unavailable");
+	}
+
+	/**
+	 * A call was not made because the service's bulkhead is full.
+	 *
+	 * @param except the exception
+	 * @return 503 Service Unavailable
+	 */
+	@ExceptionHandler(BulkheadFullException.class)
+	public ResponseEntity<String> bulkheadFull(final BulkheadFullException except) {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.body(except.getService() + " is too busy");
+	}
+
+	/**
+	 * A call was not made because the service's adaptive concurrency limit has
+	 * been reached.
+	 *
+	 * @param except the exception
+	 * @return 503 Service Unavailable
+	 */
+	@ExceptionHandler(ConcurrencyLimitExceededException.class)
+	public ResponseEntity<String> concurrencyLimitExceeded(
+			final ConcurrencyLimitExceededException except) {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.body(except.getService() + " is too busy");
+	}
+
+	/**
+	 * A call ran out of time, whether its route's timeout or what was left of
+	 * our client's deadline, and was abandoned.
+	 *
+	 * @param except the exception
+	 * @return 504 Gateway Timeout
+	 */
+	@ExceptionHandler(DeadlineExceededException.class)
+	public ResponseEntity<String> deadlineExceeded(final DeadlineExceededException except) {
+		return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+				.body(except.getService() + " did not answer in time");
+	}
+
+	/**
+	 * A call failed with an I/O error, such as a refused connection or a timeout.
+	 * (The blocking delegate wraps these; the non-blocking one does not.) The
+	 * error may instead have been in relaying the response to our client, if it
+	 * has gone away, in which case there is nobody left to tell.
+	 *
+	 * @param except the exception
+	 * @return 502 Bad Gateway, or null if our client has gone away
+	 */
+	@ExceptionHandler({ ResourceAccessException.class, ConnectException.class })
+	public ResponseEntity<String> unreachable(final Exception except) {
+		if (ClientConnection.isClientGone()) {
+			return null;
+		}
+		return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+				.body("A downstream service could not be reached");
+	}
+}
@@ -5,7 +5,11 @@ import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.format.annotation.DateTimeFormat.ISO;
@@ -24,10 +28,15 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.client.RestTemplate;
 
+import com.sst.nt.lms.orch.model.BatchResponse;
 import com.sst.nt.lms.orch.model.Borrower;
 import com.sst.nt.lms.orch.model.Branch;
 import com.sst.nt.lms.orch.model.Loan;
+import com.sst.nt.lms.orch.model.Page;
+import com.sst.nt.lms.orch.util.CollectionStreamer;
+import com.sst.nt.lms.orch.util.FanOutExecutor;
 import com.sst.nt.lms.orch.util.MapBuilder;
+import com.sst.nt.lms.orch.util.Passthrough;
 
 /**
  * Controller for administrators with the power to manage branch and borrower
@@ -37,12 +46,24 @@ import com.sst.nt.lms.orch.util.MapBuilder;
  * @author Jonathan Lovelace
  */
 @RestController
+@ConditionalOnProperty(prefix = "orch", name = "execution-mode", havingValue = "blocking",
+		matchIfMissing = true)
 public final class ExecutiveController {
 	/**
 	 * REST delegate helper.
 	 */
 	@Autowired
 	private RestTemplate delegate;
+	/**
+	 * Executor for batch lookups.
+	 */
+	@Autowired
+	private FanOutExecutor fanOut;
+	/**
+	 * Helper for paged and streamed lists.
+	 */
+	@Autowired
+	private CollectionStreamer streamer;
 
 	/**
 	 * Helper method to reduce the amount of repetitive code required for "get-all"
@@ -64,12 +85,15 @@ public final class ExecutiveController {
 		return this.<List<Branch>>getAll("http://admin/branches");
 	}
 	/**
-	 * Get all borrowers from the administrator service.
-	 * @return the list of all borrowers, or other response
+	 * Get all borrowers from the administrator service, streaming its response
+	 * straight through to the client.
+	 * @param request the client's request
+	 * @param response the response to the client
 	 */
 	@GetMapping({"/borrowers", "/borrowers/"})
-	public ResponseEntity<List<Borrower>> getBorrowers() {
-		return this.<List<Borrower>>getAll("http://admin/borrowers");
+	public void getBorrowers(final HttpServletRequest request,
+			final HttpServletResponse response) {
+		Passthrough.get(delegate, "http://admin/borrowers", request, response);
 	}
 	/**
 	 * Get a branch by its ID number from the administrator service.
@@ -94,6 +118,45 @@ public final class ExecutiveController {
 		return delegate.getForEntity("http://admin/borrower/" + cardNumber,
 				Borrower.class);
 	}
+	/**
+	 * Get several borrowers by card number from the administrator service at once.
+	 * @param ids the borrowers' card numbers
+	 * @return the borrowers that were found and the card numbers that were not, or
+	 *         other response
+	 */
+	@GetMapping(path = {"/borrowers", "/borrowers/"}, params = "ids")
+	public ResponseEntity<BatchResponse<Borrower>> getBorrowers(
+			@RequestParam("ids") final List<Integer> ids) {
+		return fanOut.getBatch(ids, this::getBorrower);
+	}
+
+	/**
+	 * Get one page of the list of all borrowers from the administrator service.
+	 * @param offset the position of the first borrower to return
+	 * @param limit the most borrowers to return
+	 * @return the page, or other response
+	 */
+	@GetMapping(path = {"/borrowers", "/borrowers/"}, params = {"limit", "!ids"})
+	public ResponseEntity<Page<Borrower>> getBorrowersPage(
+			@RequestParam(name = "offset", defaultValue = "0") final int offset,
+			@RequestParam("limit") final int limit) {
+		return streamer.page(delegate, "http://admin/borrowers", Borrower.class, offset,
+				limit);
+	}
+
+	/**
+	 * Stream the list of all borrowers from the administrator service as
+	 * newline-delimited JSON.
+	 * @param request the client's request
+	 * @param response the response to the client
+	 */
+	@GetMapping(path = {"/borrowers", "/borrowers/"}, produces = { CollectionStreamer.NDJSON_VALUE,
+			MediaType.APPLICATION_STREAM_JSON_VALUE })
+	public void streamBorrowers(final HttpServletRequest request,
+			final HttpServletResponse response) {
+		streamer.ndjson(delegate, "http://admin/borrowers", request, response);
+	}
+
 	/**
 	 * Update a branch by its ID number in the administrator service.
 	 * @param branchId the ID number of the branch to update
@@ -222,4 +285,36 @@ public final class ExecutiveController {
 			@PathVariable("cardNo") final int cardNo) {
 		return this.<List<Loan>>getAll("http://admin/borrowers/" + cardNo + "/loans");
 	}
+
+	/**
+	 * Get one page of the book loans the borrower has borrowed from any library
+	 * branch.
+	 * @param cardNo id for a particular borrower
+	 * @param offset the position of the first loan to return
+	 * @param limit the most loans to return
+	 * @return the page, or other response
+	 */
+	@GetMapping(path = "/admin/borrowers/{cardNo}/loans", params = "limit")
+	public ResponseEntity<Page<Loan>> getAllBorrowedBooksPage(
+			@PathVariable("cardNo") final int cardNo,
+			@RequestParam(name = "offset", defaultValue = "0") final int offset,
+			@RequestParam("limit") final int limit) {
+		return streamer.page(delegate, "http://admin/borrowers/" + cardNo + "/loans", Loan.class,
+				offset, limit);
+	}
+
+	/**
+	 * Stream the book loans the borrower has borrowed from any library branch as
+	 * newline-delimited JSON.
+	 * @param cardNo id for a particular borrower
+	 * @param request the client's request
+	 * @param response the response to the client
+	 */
+	@GetMapping(path = "/admin/borrowers/{cardNo}/loans", produces = { CollectionStreamer.NDJSON_VALUE,
+			MediaType.APPLICATION_STREAM_JSON_VALUE })
+	public void streamAllBorrowedBooks(@PathVariable("cardNo") final int cardNo,
+			final HttpServletRequest request, final HttpServletResponse response) {
+		streamer.ndjson(delegate, "http://admin/borrowers/" + cardNo + "/loans",
+				request, response);
+	}
 }
@@ -1,11 +1,19 @@
 package com.sst.nt.lms.orch.controller;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -13,11 +21,23 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import com.sst.nt.lms.orch.config.FanOutProperties;
 import com.sst.nt.lms.orch.model.Branch;
 import com.sst.nt.lms.orch.model.BranchCopies;
 import com.sst.nt.lms.orch.model.Book;
+import com.sst.nt.lms.orch.model.CopiesDelta;
+import com.sst.nt.lms.orch.model.CopiesMatrix;
+import com.sst.nt.lms.orch.model.CopiesUpdate;
+import com.sst.nt.lms.orch.model.CopiesUpdateResult;
+import com.sst.nt.lms.orch.util.CopiesMatrices;
+import com.sst.nt.lms.orch.util.CopiesUpdates;
+import com.sst.nt.lms.orch.util.Deadline;
+import com.sst.nt.lms.orch.util.FanOutExecutor;
+import com.sst.nt.lms.orch.util.InventoryIndex;
+import com.sst.nt.lms.orch.util.Passthrough;
 
 /**
  * Controller for Librarian Services.
@@ -26,12 +46,34 @@ import com.sst.nt.lms.orch.model.Book;
  * @author Salem (integrating Al-amine's code into this project)
  */
 @RestController
+@ConditionalOnProperty(prefix = "orch", name = "execution-mode", havingValue = "blocking",
+		matchIfMissing = true)
 public class LibrarianController {
 
 
 	@Autowired
 	RestTemplate restTemplate;
 
+	/**
+	 * Executor for the concurrent requests behind the columnar copies matrix and
+	 * bulk copy-count updates.
+	 */
+	@Autowired
+	private FanOutExecutor fanOut;
+
+	/**
+	 * Settings for those concurrent requests.
+	 */
+	@Autowired
+	private FanOutProperties fanOutProperties;
+
+	/**
+	 * In-memory copy counts, which copy-count lookups are answered from while
+	 * fresh, and which copy-count updates are written through to.
+	 */
+	@Autowired
+	private InventoryIndex inventory;
+
 	/**
 	 * Helper method to reduce the amount of repetitive code required for "get-all"
 	 * methods.
@@ -45,16 +87,32 @@ public class LibrarianController {
 		});
 	}
 
+	/**
+	 * Get all branches, streaming the librarian service's response straight through
+	 * to the client.
+	 * 
+	 * @param request the client's request
+	 * @param response the response to the client
+	 */
 	@RequestMapping({ "/branches", "/branches/" })
-	public ResponseEntity<List<Branch>> getbranchs() {
-		return this.<List<Branch>>doProcess("http://librarian-service/librarian/branches", HttpMethod.GET);
-
+	public void getbranchs(final HttpServletRequest request,
+			final HttpServletResponse response) {
+		Passthrough.get(restTemplate, "http://librarian-service/librarian/branches", request,
+				response);
 	}
 
+	/**
+	 * Get all books, streaming the librarian service's response straight through to
+	 * the client.
+	 * 
+	 * @param request the client's request
+	 * @param response the response to the client
+	 */
 	@RequestMapping({ "/books", "/books/" })
-	public ResponseEntity<List<Book>> getBooks() {
-		return this.<List<Book>>doProcess("http://librarian-service/librarian/books", HttpMethod.GET);
-
+	public void getBooks(final HttpServletRequest request,
+			final HttpServletResponse response) {
+		Passthrough.get(restTemplate, "http://librarian-service/librarian/books", request,
+				response);
 	}
 
 	@RequestMapping(path = { "/branches/{branchId}", "/branches/{branchId}/" }, method = RequestMethod.GET)
@@ -80,25 +138,161 @@ public class LibrarianController {
 	public ResponseEntity<BranchCopies> setBranchCopies(@PathVariable("branchId") int branchId,
 			@PathVariable("bookId") int bookId, @RequestParam("noOfCopies") int copies) {
 		// TODO: copies should be @RequestBody, and passed that way to librarian-service, not @RequestParam
-		return this.<BranchCopies> doProcess(
+		final ResponseEntity<BranchCopies> response = this.<BranchCopies> doProcess(
 				"http://librarian-service/librarian/branches/" + branchId + "/books/" + bookId + "?noOfCopies=" + copies,
 				HttpMethod.PUT);
+		if (response.getStatusCode().is2xxSuccessful()) {
+			inventory.set(branchId, bookId, copies);
+		}
+		return response;
+	}
+
+	/**
+	 * Set the number of copies of many books in many branches at once, as when
+	 * restocking. The librarian service takes one update at a time, so each is
+	 * forwarded separately, up to {@code orch.fan-out.parallelism} at once.
+	 *
+	 * @param updates the updates to make
+	 * @return the outcome of each update, in the order given; or 400 if there are
+	 *         more than {@code orch.fan-out.max-bulk-update-size}, any count is
+	 *         negative, or any branch's count of a book is set twice
+	 */
+	@RequestMapping(path = { "/branches/books/copies", "/branches/books/copies/" },
+			method = RequestMethod.PUT)
+	public ResponseEntity<List<CopiesUpdateResult>> setAllBranchCopies(
+			@RequestBody final List<CopiesUpdate> updates) {
+		if (!CopiesUpdates.isValid(updates, fanOutProperties.getMaxBulkUpdateSize())) {
+			return ResponseEntity.badRequest().build();
+		}
+		return ResponseEntity.ok(new ArrayList<>(fanOut.invokeAll(updates, update -> {
+			int status;
+			try {
+				status = restTemplate.exchange(CopiesUpdates.url(update), HttpMethod.PUT,
+						null, Void.class).getStatusCodeValue();
+			} catch (final RestClientException except) {
+				status = CopiesUpdates.statusOf(except);
+			}
+			final CopiesUpdateResult result = new CopiesUpdateResult(update, status);
+			if (result.isSucceeded()) {
+				inventory.set(update.getBranchId(), update.getBookId(), update.getCopies());
+			}
+			return result;
+		}).values()));
 	}
 
 	@RequestMapping(path = { "/branches/{branchId}/books/{bookId}",
 			"/branch/{branchId}/book/{bookId}" }, method = RequestMethod.GET)
 	public ResponseEntity<BranchCopies> getBranchCopies(@PathVariable("branchId") int branchId,
 			@PathVariable("bookId") int bookId) {
-
+		final BranchCopies local = inventory.get(branchId, bookId);
+		if (local != null) {
+			return ResponseEntity.ok(local);
+		}
 		return this.<BranchCopies> doProcess("http://librarian-service/librarian/branches/" + branchId + "/books/" + bookId,
 				HttpMethod.GET);
 	}
 
+	/**
+	 * Get the number of copies of every book in every branch, streaming the
+	 * librarian service's response straight through to the client.
+	 * 
+	 * @param request the client's request
+	 * @param response the response to the client
+	 */
 	@RequestMapping({ "/branches/books/copies", "/branches/books/copies/" })
-	public ResponseEntity<Map<Branch, Map<Book, Integer>>> getAllCopies() {
+	public void getAllCopies(final HttpServletRequest request,
+			final HttpServletResponse response) {
+		Passthrough.get(restTemplate, "http://librarian-service/librarian/branches/books/copies",
+				request, response);
+	}
 
-		return this.<Map<Branch, Map<Book, Integer>>> doProcess(
-				"http://librarian-service/librarian/branches/books/copies", HttpMethod.GET);
+	/**
+	 * Get the number of copies of every book in every branch in the compact
+	 * {@link CopiesMatrix columnar form}, for clients that accept it.
+	 *
+	 * @return the columnar copies matrix, or other response
+	 */
+	@RequestMapping(path = { "/branches/books/copies", "/branches/books/copies/" },
+			produces = CopiesMatrices.COLUMNAR_VALUE, method = RequestMethod.GET)
+	public ResponseEntity<CopiesMatrix> getAllCopiesColumnar() {
+		return getAllCopiesColumnarByParam();
+	}
 
+	/**
+	 * Get the number of copies of every book in every branch in the compact
+	 * {@link CopiesMatrix columnar form}, for clients that ask for it with
+	 * {@code ?format=columnar}. The branches and books the librarian service's
+	 * matrix is keyed by are identified from its lists of all branches and
+	 * books, requested concurrently with the matrix; if either list fails or
+	 * does not answer within {@code orch.fan-out.call-timeout}, the counts it
+	 * would identify are reported as unresolved.
+	 *
+	 * @return the columnar copies matrix, or other response
+	 */
+	@RequestMapping(path = { "/branches/books/copies", "/branches/books/copies/" },
+			params = { CopiesMatrices.COLUMNAR_PARAM, "!since" },
+			method = RequestMethod.GET)
+	public ResponseEntity<CopiesMatrix> getAllCopiesColumnarByParam() {
+		final Deadline deadline = Deadline.after(fanOutProperties.getCallTimeout())
+				.min(Deadline.current());
+		final CompletableFuture<ResponseEntity<List<Branch>>> branches = fanOut.submit(
+				deadline, () -> restTemplate.exchange(
+						"http://librarian-service/librarian/branches", HttpMethod.GET, null,
+						new ParameterizedTypeReference<List<Branch>>() {}));
+		final CompletableFuture<ResponseEntity<List<Book>>> books = fanOut.submit(
+				deadline, () -> restTemplate.exchange(
+						"http://librarian-service/librarian/books", HttpMethod.GET, null,
+						new ParameterizedTypeReference<List<Book>>() {}));
+		final ResponseEntity<Map<String, Map<String, Integer>>> matrix = restTemplate
+				.exchange("http://librarian-service/librarian/branches/books/copies",
+						HttpMethod.GET, null,
+						new ParameterizedTypeReference<Map<String, Map<String, Integer>>>() {});
+		if (!matrix.getStatusCode().is2xxSuccessful() || matrix.getBody() == null) {
+			return ResponseEntity.status(matrix.getStatusCode()).build();
+		}
+		return ResponseEntity.ok(CopiesMatrices.columnar(matrix.getBody(),
+				bodyOrEmpty(FanOutExecutor.await(branches, deadline.getNanoTime())),
+				bodyOrEmpty(FanOutExecutor.await(books, deadline.getNanoTime()))));
+	}
+
+	/**
+	 * Get the copy counts that have changed since a version the client already
+	 * has, so that a client polling the matrix need not download all of it each
+	 * time. These come from the in-memory copy counts; a client too far behind
+	 * for the changes since its version to still be held, or whose version is
+	 * from another epoch, such as another instance's, is sent every count.
+	 *
+	 * @param epoch the epoch from the client's last such response, or empty for
+	 *              every count
+	 * @param since the version from the client's last such response, or 0 for
+	 *              every count
+	 * @return the changes, with the version they bring the client up to; or 503
+	 *         if the in-memory copy counts are not fresh enough to serve
+	 */
+	@RequestMapping(path = { "/branches/books/copies", "/branches/books/copies/" },
+			params = "since", method = RequestMethod.GET)
+	public ResponseEntity<CopiesDelta> getCopiesSince(
+			@RequestParam(name = "epoch", defaultValue = "") final String epoch,
+			@RequestParam("since") final long since) {
+		final CopiesDelta delta = inventory.changesSince(epoch, since);
+		if (delta == null) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+		}
+		return ResponseEntity.ok(delta);
+	}
+
+	/**
+	 * Helper method to extract a list from a response.
+	 * @param response the downstream response, or null if it failed or timed out
+	 * @param <T> the type of the list's items
+	 * @return the list, or an empty list if the request did not succeed
+	 */
+	private static <T> List<T> bodyOrEmpty(final ResponseEntity<List<T>> response) {
+		if (response != null && response.getStatusCode().is2xxSuccessful()
+				&& response.getBody() != null) {
+			return response.getBody();
+		} else {
+			return Collections.emptyList();
+		}
 	}
 }
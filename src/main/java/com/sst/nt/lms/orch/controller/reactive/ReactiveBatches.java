@@ -0,0 +1,67 @@
+package com.sst.nt.lms.orch.controller.reactive;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.function.IntFunction;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.sst.nt.lms.orch.config.FanOutProperties;
+import com.sst.nt.lms.orch.model.BatchResponse;
+import com.sst.nt.lms.orch.util.Deadline;
+import com.sst.nt.lms.orch.util.FanOutExecutor;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
+
+/**
+ * Non-blocking counterpart of {@link FanOutExecutor#getBatch}, shared by the
+ * reactive controllers.
+ *
+ * @author Jonathan Lovelace
+ */
+final class ReactiveBatches {
+	/**
+	 * Do not instantiate.
+	 */
+	private ReactiveBatches() {
+		// static helper only
+	}
+
+	/**
+	 * Look up several objects by ID, one downstream request per distinct ID, with
+	 * at most the configured number in flight at once. Downstream failures are
+	 * reported per ID in the result rather than failing the whole batch.
+	 *
+	 * @param ids the IDs the client asked for
+	 * @param getter the method that looks up a single object by ID
+	 * @param properties the fan-out settings
+	 * @param <T> the type of object looked up
+	 * @return the combined result, or a "bad request" response if the client asked
+	 *         for too many IDs at once
+	 */
+	static <T> Mono<ResponseEntity<BatchResponse<T>>> getBatch(
+			final Collection<Integer> ids,
+			final IntFunction<Mono<ResponseEntity<T>>> getter,
+			final FanOutProperties properties) {
+		final Collection<Integer> distinct = new LinkedHashSet<>(ids);
+		if (distinct.size() > properties.getMaxBatchSize()) {
+			return Mono.just(ResponseEntity.badRequest().build());
+		}
+		// Later lookups are assembled on whichever thread finished an earlier one,
+		// so they must be given the client's deadline explicitly.
+		final Deadline deadline = Deadline.current();
+		return Flux.fromIterable(distinct)
+				.flatMapSequential(id -> Deadline.wrap(deadline, () -> getter.apply(id)).get()
+						.onErrorResume(except -> Mono.just(
+								ResponseEntity.status(HttpStatus.BAD_GATEWAY).<T>build()))
+						.map(response -> Tuples.of(id, response)),
+						properties.getParallelism())
+				.collect(LinkedHashMap<Integer, ResponseEntity<T>>::new,
+						(map, pair) -> map.put(pair.getT1(), pair.getT2()))
+				.map(map -> ResponseEntity.ok(BatchResponse.of(map)));
+	}
+}
@@ -0,0 +1,330 @@
+package com.sst.nt.lms.orch.controller.reactive;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.sst.nt.lms.orch.config.FanOutProperties;
+import com.sst.nt.lms.orch.config.PagingProperties;
+import com.sst.nt.lms.orch.controller.BorrowerController;
+import com.sst.nt.lms.orch.model.Borrower;
+import com.sst.nt.lms.orch.model.BorrowerDashboard;
+import com.sst.nt.lms.orch.model.Branch;
+import com.sst.nt.lms.orch.model.BranchCopies;
+import com.sst.nt.lms.orch.model.Loan;
+import com.sst.nt.lms.orch.model.Page;
+import com.sst.nt.lms.orch.util.InventoryIndex;
+import com.sst.nt.lms.orch.util.Passthrough;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link BorrowerController}, serving the same
+ * routes when {@code orch.execution-mode=reactive}.
+ *
+ * @author Jonathan Lovelace
+ */
+@RestController
+@ConditionalOnProperty(prefix = "orch", name = "execution-mode", havingValue = "reactive")
+public class ReactiveBorrowerController {
+
+	private static String borrowerUrl = "borrower-service";
+
+	/**
+	 * Non-blocking REST delegate.
+	 */
+	@Autowired
+	private WebClient delegate;
+
+	/**
+	 * Settings for the dashboard's concurrent requests.
+	 */
+	@Autowired
+	private FanOutProperties fanOutProperties;
+
+	/**
+	 * Settings for paged lists.
+	 */
+	@Autowired
+	private PagingProperties pagingProperties;
+
+	/**
+	 * In-memory copy counts, which branches' copies are answered from while
+	 * fresh, and which loans and returns are written through to.
+	 */
+	@Autowired
+	private InventoryIndex inventory;
+
+	/**
+	 * Helper method to send a body-less request to the borrower service and
+	 * convert its response.
+	 * @param url the URL to send the request to
+	 * @param method the HTTP method to use
+	 * @param type the type we expect
+	 * @param <T> the type we expect
+	 * @return the response the server sent, once it arrives
+	 */
+	private <T> Mono<ResponseEntity<T>> methodCall(final String url,
+			final HttpMethod method, final ParameterizedTypeReference<T> type) {
+		return delegate.method(method).uri(url).exchange()
+				.flatMap(response -> response.toEntity(type));
+	}
+
+	/**
+	 * Allows a borrower to borrow a book from a branch.
+	 *
+	 * @param cardNo   id for borrower
+	 * @param branchId id for branch
+	 * @param bookId   id for book
+	 * @return the loan if created, else an appropriate http error code
+	 */
+	@PostMapping(path = "/borrowers/{cardNo}/branches/{branchId}/books/{bookId}")
+	public Mono<ResponseEntity<Loan>> borrowBook(@PathVariable("cardNo") final int cardNo,
+			@PathVariable("branchId") final int branchId,
+			@PathVariable("bookId") final int bookId) {
+		return methodCall("http://" + borrowerUrl + "/borrowers/" + cardNo + "/branches/"
+				+ branchId + "/books/" + bookId, HttpMethod.POST,
+				new ParameterizedTypeReference<Loan>() {}).doOnNext(response -> {
+					if (response.getStatusCode().is2xxSuccessful()) {
+						inventory.adjust(branchId, bookId, -1);
+					}
+				});
+	}
+
+	/**
+	 * Get the book copies held by a branch.
+	 *
+	 * @param branchId the branch in question
+	 * @param request  the client's request
+	 * @return a list of book copies associated with the given branch, from the
+	 *         in-memory copy counts if they are fresh enough, or else relayed
+	 *         unparsed; or other response
+	 */
+	@GetMapping(path = "/branches/{branchId}/copies")
+	public Mono<ResponseEntity<?>> getAllBranchCopies(
+			@PathVariable("branchId") final int branchId,
+			final HttpServletRequest request) {
+		final List<BranchCopies> local = inventory.getAll(branchId);
+		if (local != null) {
+			return Mono.just(ResponseEntity.ok(local));
+		}
+		return Passthrough.get(delegate,
+				"http://" + borrowerUrl + "/branches/" + branchId + "/copies", request)
+				.map(response -> response);
+	}
+
+	/**
+	 * Return a book that a borrower has checked out.
+	 *
+	 * @param cardNo   id for a particular borrower
+	 * @param branchId id for a particular branch
+	 * @param bookId   id for a particular book
+	 * @return the borrower service's response
+	 */
+	// FIXME: This should have 'loan' somewhere in the path!
+	@DeleteMapping(path = "/borrowers/{cardNo}/branches/{branchId}/books/{bookId}")
+	public Mono<ResponseEntity<String>> returnBook(
+			@PathVariable("cardNo") final int cardNo,
+			@PathVariable("branchId") final int branchId,
+			@PathVariable("bookId") final int bookId) {
+		return methodCall("http://" + borrowerUrl + "/borrowers/" + cardNo + "/branches/"
+				+ branchId + "/books/" + bookId, HttpMethod.DELETE,
+				new ParameterizedTypeReference<String>() {}).doOnNext(response -> {
+					if (response.getStatusCode().is2xxSuccessful()) {
+						inventory.adjust(branchId, bookId, 1);
+					}
+				});
+	}
+
+	/**
+	 * Get all branches from which the borrower has an outstanding book loan.
+	 *
+	 * @param cardNo id for a particular borrower
+	 * @return the branches, or other response
+	 */
+	@GetMapping(path = "/borrowers/{cardNo}/branches") // FIXME: Should somehow indicate this is branches *with an outstanding loan* ...
+	public Mono<ResponseEntity<List<Branch>>> getAllBranchesWithLoan(
+			@PathVariable("cardNo") final int cardNo) {
+		return methodCall("http://" + borrowerUrl + "/borrowers/" + cardNo + "/branches",
+				HttpMethod.GET, new ParameterizedTypeReference<List<Branch>>() {});
+	}
+
+	/**
+	 * Get all book loans the borrower has borrowed from any library branch.
+	 *
+	 * @param cardNo id for a particular borrower
+	 * @return the loans, or other response
+	 */
+	@GetMapping(path = "/borrowers/{cardNo}/loans")
+	public Mono<ResponseEntity<List<Loan>>> getAllBorrowedBooks(
+			@PathVariable("cardNo") final int cardNo) {
+		return methodCall("http://" + borrowerUrl + "/borrowers/" + cardNo + "/loans",
+				HttpMethod.GET, new ParameterizedTypeReference<List<Loan>>() {});
+	}
+
+	/**
+	 * Get one page of the branches from which the borrower has an outstanding book
+	 * loan.
+	 * @param cardNo id for a particular borrower
+	 * @param offset the position of the first branch to return
+	 * @param limit the most branches to return
+	 * @return the page, or other response
+	 */
+	@GetMapping(path = "/borrowers/{cardNo}/branches", params = "limit")
+	public Mono<ResponseEntity<Page<Branch>>> getAllBranchesWithLoanPage(
+			@PathVariable("cardNo") final int cardNo,
+			@RequestParam(name = "offset", defaultValue = "0") final int offset,
+			@RequestParam("limit") final int limit) {
+		return ReactivePages.page(delegate,
+				"http://" + borrowerUrl + "/borrowers/" + cardNo + "/branches", Branch.class,
+				offset, limit, pagingProperties);
+	}
+
+	/**
+	 * Stream the branches from which the borrower has an outstanding book loan as
+	 * newline-delimited JSON.
+	 * @param cardNo id for a particular borrower
+	 * @return the branches, as they arrive
+	 */
+	@GetMapping(path = "/borrowers/{cardNo}/branches", produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+	public Flux<Branch> streamAllBranchesWithLoan(
+			@PathVariable("cardNo") final int cardNo) {
+		return ReactivePages.stream(delegate,
+				"http://" + borrowerUrl + "/borrowers/" + cardNo + "/branches", Branch.class);
+	}
+
+	/**
+	 * Get one page of the book loans the borrower has borrowed from any library
+	 * branch.
+	 * @param cardNo id for a particular borrower
+	 * @param offset the position of the first loan to return
+	 * @param limit the most loans to return
+	 * @return the page, or other response
+	 */
+	@GetMapping(path = "/borrowers/{cardNo}/loans", params = "limit")
+	public Mono<ResponseEntity<Page<Loan>>> getAllBorrowedBooksPage(
+			@PathVariable("cardNo") final int cardNo,
+			@RequestParam(name = "offset", defaultValue = "0") final int offset,
+			@RequestParam("limit") final int limit) {
+		return ReactivePages.page(delegate,
+				"http://" + borrowerUrl + "/borrowers/" + cardNo + "/loans", Loan.class,
+				offset, limit, pagingProperties);
+	}
+
+	/**
+	 * Stream the book loans the borrower has borrowed from any library branch as
+	 * newline-delimited JSON.
+	 * @param cardNo id for a particular borrower
+	 * @return the loans, as they arrive
+	 */
+	@GetMapping(path = "/borrowers/{cardNo}/loans", produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+	public Flux<Loan> streamAllBorrowedBooks(
+			@PathVariable("cardNo") final int cardNo) {
+		return ReactivePages.stream(delegate,
+				"http://" + borrowerUrl + "/borrowers/" + cardNo + "/loans", Loan.class);
+	}
+
+	/**
+	 * Give the borrower app everything for its main screen in one response: the
+	 * borrower's details, loans, and branches with loans. The three downstream
+	 * requests are sent concurrently, and any that fails or does not answer within
+	 * {@code orch.fan-out.call-timeout} is left out and listed as unavailable.
+	 *
+	 * @param cardNo id for a particular borrower
+	 * @return the dashboard, possibly partial, or 404(not found) if the
+	 *         administrator service reports no such borrower
+	 */
+	@GetMapping(path = "/borrowers/{cardNo}/dashboard")
+	public Mono<ResponseEntity<BorrowerDashboard>> getDashboard(
+			@PathVariable("cardNo") final int cardNo) {
+		final Duration timeout = fanOutProperties.getCallTimeout();
+		return Mono.zip(
+				part(methodCall("http://admin/borrower/" + cardNo, HttpMethod.GET,
+						new ParameterizedTypeReference<Borrower>() {}), timeout),
+				part(getAllBorrowedBooks(cardNo), timeout),
+				part(getAllBranchesWithLoan(cardNo), timeout)).map(parts -> {
+					final ResponseEntity<Borrower> borrower = parts.getT1().orElse(null);
+					if (borrower != null
+							&& borrower.getStatusCode() == HttpStatus.NOT_FOUND) {
+						return ResponseEntity.notFound().build();
+					}
+					final List<String> unavailable = new ArrayList<>();
+					return ResponseEntity.ok(new BorrowerDashboard(
+							bodyOf(borrower, BorrowerDashboard.BORROWER, unavailable),
+							bodyOf(parts.getT2().orElse(null), BorrowerDashboard.LOANS,
+									unavailable),
+							bodyOf(parts.getT3().orElse(null),
+									BorrowerDashboard.BRANCHES, unavailable),
+							unavailable));
+				});
+	}
+
+	/**
+	 * Helper method to bound one part of a composite response by a timeout,
+	 * turning failure into an empty result rather than an error.
+	 * @param call the downstream request
+	 * @param timeout how long to wait for it
+	 * @param <T> the type of the part
+	 * @return the response, or empty if it failed or timed out
+	 */
+	private static <T> Mono<Optional<ResponseEntity<T>>> part(
+			final Mono<ResponseEntity<T>> call, final Duration timeout) {
+		return call.map(Optional::of).timeout(timeout)
+				.onErrorReturn(Optional.empty());
+	}
+
+	/**
+	 * Helper method to extract one part of a composite response.
+	 * @param response the downstream response, or null if it failed or timed out
+	 * @param part the name of the part
+	 * @param unavailable the list to add the part's name to if it is unavailable
+	 * @param <T> the type of the part
+	 * @return the response body, or null if the request did not succeed
+	 */
+	private static <T> T bodyOf(final ResponseEntity<T> response, final String part,
+			final List<String> unavailable) {
+		if (response != null && response.getStatusCode().is2xxSuccessful()) {
+			return response.getBody();
+		} else {
+			unavailable.add(part);
+			return null;
+		}
+	}
+
+	/**
+	 * Get a loan by the borrower, branch, and book it involves.
+	 *
+	 * @param cardNo   id for a borrower
+	 * @param branchId id for a branch
+	 * @param bookId   id for a book
+	 * @return the loan, or an appropriate http error code
+	 */
+	@GetMapping(path = "/borrowers/{cardNo}/branches/{branchId}/books/{bookId}")
+	public Mono<ResponseEntity<Loan>> getLoanByIds(
+			@PathVariable("cardNo") final int cardNo,
+			@PathVariable("branchId") final int branchId,
+			@PathVariable("bookId") final int bookId) {
+		return methodCall("http://" + borrowerUrl + "/borrowers/" + cardNo + "/branches/"
+				+ branchId + "/books/" + bookId, HttpMethod.GET,
+				new ParameterizedTypeReference<Loan>() {});
+	}
+}
@@ -0,0 +1,380 @@
+package com.sst.nt.lms.orch.controller.reactive;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.sst.nt.lms.orch.config.FanOutProperties;
+import com.sst.nt.lms.orch.config.PagingProperties;
+import com.sst.nt.lms.orch.controller.CatalogController;
+import com.sst.nt.lms.orch.model.Author;
+import com.sst.nt.lms.orch.model.BatchResponse;
+import com.sst.nt.lms.orch.model.Book;
+import com.sst.nt.lms.orch.model.Page;
+import com.sst.nt.lms.orch.model.Publisher;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link CatalogController}, serving the same routes
+ * when {@code orch.execution-mode=reactive}. Unlike the blocking controller it
+ * does not cache reads.
+ *
+ * @author Jonathan Lovelace
+ */
+@RestController
+@ConditionalOnProperty(prefix = "orch", name = "execution-mode", havingValue = "reactive")
+public class ReactiveCatalogController {
+	/**
+	 * Non-blocking REST delegate.
+	 */
+	@Autowired
+	private WebClient delegate;
+	/**
+	 * Settings for batch lookups.
+	 */
+	@Autowired
+	private FanOutProperties fanOutProperties;
+
+	/**
+	 * Settings for paged lists.
+	 */
+	@Autowired
+	private PagingProperties pagingProperties;
+
+	/**
+	 * Helper method to send a request to the administrator service and convert
+	 * its response.
+	 * @param method the HTTP method to use
+	 * @param url the URL to send the request to
+	 * @param body the request body, or null if none
+	 * @param type the type we expect
+	 * @param <T> the type we expect
+	 * @return the response the server sent, once it arrives
+	 */
+	private <T> Mono<ResponseEntity<T>> exchange(final HttpMethod method,
+			final String url, final Object body,
+			final ParameterizedTypeReference<T> type) {
+		final WebClient.RequestBodySpec request = delegate.method(method).uri(url);
+		return (body == null ? request : request.syncBody(body)).exchange()
+				.flatMap(response -> response.toEntity(type));
+	}
+
+	/**
+	 * Helper method to send a DELETE request and discard the response.
+	 * @param url the URL to send the request to
+	 * @return a signal that the request has completed
+	 */
+	private Mono<Void> delete(final String url) {
+		return delegate.delete().uri(url).exchange()
+				.flatMap(response -> response.bodyToMono(Void.class));
+	}
+
+	/**
+	 * Get all authors from the administrator service.
+	 * @return the list of all authors, or other response.
+	 */
+	@GetMapping({"/authors", "/authors/"})
+	public Mono<ResponseEntity<List<Author>>> getAuthors() {
+		return exchange(HttpMethod.GET, "http://admin/authors/", null,
+				new ParameterizedTypeReference<List<Author>>() {});
+	}
+
+	/**
+	 * Get all books from the administrator service.
+	 * @return the list of all books, or other response
+	 */
+	@GetMapping({"/books", "/books/"})
+	public Mono<ResponseEntity<List<Book>>> getBooks() {
+		return exchange(HttpMethod.GET, "http://admin/books/", null,
+				new ParameterizedTypeReference<List<Book>>() {});
+	}
+
+	/**
+	 * Get all publishers from the administrator service.
+	 * @return the list of all publishers, or other response
+	 */
+	@GetMapping({"/publishers","/publishers/"})
+	public Mono<ResponseEntity<List<Publisher>>> getPublishers() {
+		return exchange(HttpMethod.GET, "http://admin/publishers/", null,
+				new ParameterizedTypeReference<List<Publisher>>() {});
+	}
+
+	/**
+	 * Get an author by its ID number from the administrator service.
+	 * @param authorId the ID number of the author
+	 * @return the author, or other response
+	 */
+	@GetMapping({"/author/{authorId}", "/author/{authorId}/"})
+	public Mono<ResponseEntity<Author>> getAuthor(
+			@PathVariable("authorId") final int authorId) {
+		return exchange(HttpMethod.GET, "http://admin/author/" + authorId, null,
+				new ParameterizedTypeReference<Author>() {});
+	}
+
+	/**
+	 * Get a book by its ID number from the administrator service.
+	 * @param bookId the ID number of the book
+	 * @return the book, or other response
+	 */
+	@GetMapping({"/book/{bookId}","/book/{bookId}/"})
+	public Mono<ResponseEntity<Book>> getBook(@PathVariable("bookId") final int bookId) {
+		return exchange(HttpMethod.GET, "http://admin/book/" + bookId, null,
+				new ParameterizedTypeReference<Book>() {});
+	}
+
+	/**
+	 * Get a publisher by ID number from the administrator service.
+	 * @param publisherId the ID number of the publisher
+	 * @return the publisher, or other response
+	 */
+	@GetMapping({"/publisher/{publisherId}", "/publisher/{publisherId}/"})
+	public Mono<ResponseEntity<Publisher>> getPublisher(
+			@PathVariable("publisherId") final int publisherId) {
+		return exchange(HttpMethod.GET, "http://admin/publisher/" + publisherId, null,
+				new ParameterizedTypeReference<Publisher>() {});
+	}
+
+	/**
+	 * Get several authors by ID number from the administrator service at once.
+	 * @param ids the ID numbers of the authors
+	 * @return the authors that were found and the IDs that were not, or other
+	 *         response
+	 */
+	@GetMapping(path = {"/authors", "/authors/"}, params = "ids")
+	public Mono<ResponseEntity<BatchResponse<Author>>> getAuthors(
+			@RequestParam("ids") final List<Integer> ids) {
+		return ReactiveBatches.getBatch(ids, this::getAuthor, fanOutProperties);
+	}
+
+	/**
+	 * Get several books by ID number from the administrator service at once.
+	 * @param ids the ID numbers of the books
+	 * @return the books that were found and the IDs that were not, or other
+	 *         response
+	 */
+	@GetMapping(path = {"/books", "/books/"}, params = "ids")
+	public Mono<ResponseEntity<BatchResponse<Book>>> getBooks(
+			@RequestParam("ids") final List<Integer> ids) {
+		return ReactiveBatches.getBatch(ids, this::getBook, fanOutProperties);
+	}
+
+	/**
+	 * Get several publishers by ID number from the administrator service at once.
+	 * @param ids the ID numbers of the publishers
+	 * @return the publishers that were found and the IDs that were not, or other
+	 *         response
+	 */
+	@GetMapping(path = {"/publishers", "/publishers/"}, params = "ids")
+	public Mono<ResponseEntity<BatchResponse<Publisher>>> getPublishers(
+			@RequestParam("ids") final List<Integer> ids) {
+		return ReactiveBatches.getBatch(ids, this::getPublisher, fanOutProperties);
+	}
+
+	/**
+	 * Get one page of the list of all authors from the administrator service.
+	 * @param offset the position of the first author to return
+	 * @param limit the most authors to return
+	 * @return the page, or other response
+	 */
+	@GetMapping(path = {"/authors", "/authors/"}, params = {"limit", "!ids"})
+	public Mono<ResponseEntity<Page<Author>>> getAuthorsPage(
+			@RequestParam(name = "offset", defaultValue = "0") final int offset,
+			@RequestParam("limit") final int limit) {
+		return ReactivePages.page(delegate,
+				"http://admin/authors/", Author.class,
+				offset, limit, pagingProperties);
+	}
+
+	/**
+	 * Stream the list of all authors from the administrator service as newline-
+	 * delimited JSON.
+	 * @return the authors, as they arrive
+	 */
+	@GetMapping(path = {"/authors", "/authors/"}, produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+	public Flux<Author> streamAuthors() {
+		return ReactivePages.stream(delegate, "http://admin/authors/", Author.class);
+	}
+
+	/**
+	 * Get one page of the list of all books from the administrator service.
+	 * @param offset the position of the first book to return
+	 * @param limit the most books to return
+	 * @return the page, or other response
+	 */
+	@GetMapping(path = {"/books", "/books/"}, params = {"limit", "!ids"})
+	public Mono<ResponseEntity<Page<Book>>> getBooksPage(
+			@RequestParam(name = "offset", defaultValue = "0") final int offset,
+			@RequestParam("limit") final int limit) {
+		return ReactivePages.page(delegate,
+				"http://admin/books/", Book.class,
+				offset, limit, pagingProperties);
+	}
+
+	/**
+	 * Stream the list of all books from the administrator service as newline-
+	 * delimited JSON.
+	 * @return the books, as they arrive
+	 */
+	@GetMapping(path = {"/books", "/books/"}, produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+	public Flux<Book> streamBooks() {
+		return ReactivePages.stream(delegate, "http://admin/books/", Book.class);
+	}
+
+	/**
+	 * Get one page of the list of all publishers from the administrator service.
+	 * @param offset the position of the first publisher to return
+	 * @param limit the most publishers to return
+	 * @return the page, or other response
+	 */
+	@GetMapping(path = {"/publishers", "/publishers/"}, params = {"limit", "!ids"})
+	public Mono<ResponseEntity<Page<Publisher>>> getPublishersPage(
+			@RequestParam(name = "offset", defaultValue = "0") final int offset,
+			@RequestParam("limit") final int limit) {
+		return ReactivePages.page(delegate,
+				"http://admin/publishers/", Publisher.class,
+				offset, limit, pagingProperties);
+	}
+
+	/**
+	 * Stream the list of all publishers from the administrator service as newline-
+	 * delimited JSON.
+	 * @return the publishers, as they arrive
+	 */
+	@GetMapping(path = {"/publishers", "/publishers/"}, produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+	public Flux<Publisher> streamPublishers() {
+		return ReactivePages.stream(delegate,
+				"http://admin/publishers/", Publisher.class);
+	}
+
+	/**
+	 * Update an author by ID number in the administrator service.
+	 * @param authorId the ID number of the author to update
+	 * @param input the author data to update.
+	 * @return the updated author, or other response
+	 */
+	@PutMapping({ "/author/{authorId}", "/author/{authorId}/" })
+	public Mono<ResponseEntity<Author>> updateAuthor(
+			@PathVariable("authorId") final int authorId,
+			@RequestBody final Author input) {
+		return exchange(HttpMethod.PUT, "http://admin/author/" + authorId, input,
+				new ParameterizedTypeReference<Author>() {});
+	}
+
+	/**
+	 * Update a publisher by ID number in the administrator service.
+	 * @param publisherId the ID number of the publisher to update
+	 * @param input the publisher data to update.
+	 * @return the updated publisher, or other response
+	 */
+	@PutMapping({ "/publisher/{publisherId}", "/publisher/{publisherId}/" })
+	public Mono<ResponseEntity<Publisher>> updatePublisher(
+			@PathVariable("publisherId") final int publisherId,
+			@RequestBody final Publisher input) {
+		return exchange(HttpMethod.PUT, "http://admin/publisher/" + publisherId,
+				input, new ParameterizedTypeReference<Publisher>() {});
+	}
+
+	/**
+	 * Update a book by ID number in the administrator service. See
+	 * {@link CatalogController#updateBook(int, Book)} for how the author and
+	 * publisher are treated.
+	 *
+	 * @param bookId the ID number of the book to update
+	 * @param input  the book data to update.
+	 * @return the updated book, or other response
+	 */
+	@PutMapping({"/book/{bookId}", "/book/{bookId}/"})
+	public Mono<ResponseEntity<Book>> updateBook(@PathVariable("bookId") final int bookId,
+			@RequestBody final Book input) {
+		return exchange(HttpMethod.PUT, "http://admin/book/" + bookId, input,
+				new ParameterizedTypeReference<Book>() {});
+	}
+
+	/**
+	 * Create an author with the given name in the administrator service.
+	 * @param body the request body, which must contain a 'name' field.
+	 * @return the created author, or other response
+	 */
+	@PostMapping({ "/author", "/author/" })
+	public Mono<ResponseEntity<Author>> createAuthor(
+			@RequestBody final Map<String, String> body) {
+		return exchange(HttpMethod.POST, "http://admin/author", body,
+				new ParameterizedTypeReference<Author>() {});
+	}
+
+	/**
+	 * Create a publisher with the specified parameters in the administrator
+	 * service.
+	 *
+	 * @param body the request body, which must contain a 'name' field;
+	 *             'address' and 'phone' fields are also recognized.
+	 * @return the created publisher, or other response.
+	 */
+	@PostMapping({"/publisher", "/publisher/"})
+	public Mono<ResponseEntity<Publisher>> createPublisher(
+			@RequestBody final Map<String, String> body) {
+		return exchange(HttpMethod.POST, "http://admin/publisher", body,
+				new ParameterizedTypeReference<Publisher>() {});
+	}
+
+	/**
+	 * Create a book with the specified parameters in the administrator service.
+	 * See {@link CatalogController#createBook(Book)} for the fields used.
+	 *
+	 * @param body the request body.
+	 * @return the created book, or other response
+	 */
+	@PostMapping({"/book", "/book/"})
+	public Mono<ResponseEntity<Book>> createBook(@RequestBody final Book body) {
+		return exchange(HttpMethod.POST, "http://admin/book", body,
+				new ParameterizedTypeReference<Book>() {});
+	}
+
+	/**
+	 * Delete the author with the given ID in the administrator service.
+	 * @param authorId the ID of the author to delete.
+	 * @return a signal that the deletion has completed
+	 */
+	@DeleteMapping({"/author/{authorId}", "/author/{authorId}/"})
+	public Mono<Void> deleteAuthor(@PathVariable("authorId") final int authorId) {
+		return delete("http://admin/author/" + authorId);
+	}
+
+	/**
+	 * Delete the publisher with the given ID in the administrator service.
+	 * @param publisherId the ID of the publisher to delete
+	 * @return a signal that the deletion has completed
+	 */
+	@DeleteMapping({ "/publisher/{publisherId}", "/publisher/{publisherId}/" })
+	public Mono<Void> deletePublisher(
+			@PathVariable("publisherId") final int publisherId) {
+		return delete("http://admin/publisher/" + publisherId);
+	}
+
+	/**
+	 * Delete the book with the given ID in the administrator service.
+	 * @param bookId the ID of the book to delete
+	 * @return a signal that the deletion has completed
+	 */
+	@DeleteMapping({ "/book/{bookId}", "/book/{bookId}/" })
+	public Mono<Void> deleteBook(@PathVariable("bookId") final int bookId) {
+		return delete("http://admin/book/" + bookId);
+	}
+}
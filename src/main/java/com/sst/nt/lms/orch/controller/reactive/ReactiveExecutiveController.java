@@ -0,0 +1,298 @@
+package com.sst.nt.lms.orch.controller.reactive;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.sst.nt.lms.orch.config.FanOutProperties;
+import com.sst.nt.lms.orch.config.PagingProperties;
+import com.sst.nt.lms.orch.controller.ExecutiveController;
+import com.sst.nt.lms.orch.model.BatchResponse;
+import com.sst.nt.lms.orch.model.Borrower;
+import com.sst.nt.lms.orch.model.Branch;
+import com.sst.nt.lms.orch.model.Loan;
+import com.sst.nt.lms.orch.model.Page;
+import com.sst.nt.lms.orch.util.Passthrough;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link ExecutiveController}, serving the same
+ * routes when {@code orch.execution-mode=reactive}.
+ *
+ * @author Jonathan Lovelace
+ */
+@RestController
+@ConditionalOnProperty(prefix = "orch", name = "execution-mode", havingValue = "reactive")
+public class ReactiveExecutiveController {
+	/**
+	 * Non-blocking REST delegate.
+	 */
+	@Autowired
+	private WebClient delegate;
+	/**
+	 * Settings for batch lookups.
+	 */
+	@Autowired
+	private FanOutProperties fanOutProperties;
+
+	/**
+	 * Settings for paged lists.
+	 */
+	@Autowired
+	private PagingProperties pagingProperties;
+
+	/**
+	 * Helper method to send a request to the administrator service and convert
+	 * its response.
+	 * @param method the HTTP method to use
+	 * @param url the URL to send the request to
+	 * @param body the request body, or null if none
+	 * @param type the type we expect
+	 * @param <T> the type we expect
+	 * @return the response the server sent, once it arrives
+	 */
+	private <T> Mono<ResponseEntity<T>> exchange(final HttpMethod method,
+			final String url, final Object body,
+			final ParameterizedTypeReference<T> type) {
+		final WebClient.RequestBodySpec request = delegate.method(method).uri(url);
+		return (body == null ? request : request.syncBody(body)).exchange()
+				.flatMap(response -> response.toEntity(type));
+	}
+
+	/**
+	 * Helper method to send a DELETE request and discard the response.
+	 * @param url the URL to send the request to
+	 * @return a signal that the request has completed
+	 */
+	private Mono<Void> delete(final String url) {
+		return delegate.delete().uri(url).exchange()
+				.flatMap(response -> response.bodyToMono(Void.class));
+	}
+
+	/**
+	 * Get all borrowers from the administrator service, relaying its response
+	 * unparsed.
+	 * @param request the client's request
+	 * @return the list of all borrowers, or other response
+	 */
+	@GetMapping({"/borrowers", "/borrowers/"})
+	public Mono<ResponseEntity<byte[]>> getBorrowers(final HttpServletRequest request) {
+		return Passthrough.get(delegate, "http://admin/borrowers", request);
+	}
+
+	/**
+	 * Get a borrower by his or her card number from the administrator service.
+	 * @param cardNumber the borrower's card number
+	 * @return the borrower with that card number, or other response
+	 */
+	@GetMapping({"/borrower/{cardNumber}", "/borrower/{cardNumber}/"})
+	public Mono<ResponseEntity<Borrower>> getBorrower(
+			@PathVariable("cardNumber") final int cardNumber) {
+		return exchange(HttpMethod.GET, "http://admin/borrower/" + cardNumber, null,
+				new ParameterizedTypeReference<Borrower>() {});
+	}
+
+	/**
+	 * Get several borrowers by card number from the administrator service at once.
+	 * @param ids the borrowers' card numbers
+	 * @return the borrowers that were found and the card numbers that were not, or
+	 *         other response
+	 */
+	@GetMapping(path = {"/borrowers", "/borrowers/"}, params = "ids")
+	public Mono<ResponseEntity<BatchResponse<Borrower>>> getBorrowers(
+			@RequestParam("ids") final List<Integer> ids) {
+		return ReactiveBatches.getBatch(ids, this::getBorrower, fanOutProperties);
+	}
+
+	/**
+	 * Get one page of the list of all borrowers from the administrator service.
+	 * @param offset the position of the first borrower to return
+	 * @param limit the most borrowers to return
+	 * @return the page, or other response
+	 */
+	@GetMapping(path = {"/borrowers", "/borrowers/"}, params = {"limit", "!ids"})
+	public Mono<ResponseEntity<Page<Borrower>>> getBorrowersPage(
+			@RequestParam(name = "offset", defaultValue = "0") final int offset,
+			@RequestParam("limit") final int limit) {
+		return ReactivePages.page(delegate,
+				"http://admin/borrowers", Borrower.class,
+				offset, limit, pagingProperties);
+	}
+
+	/**
+	 * Stream the list of all borrowers from the administrator service as newline-
+	 * delimited JSON.
+	 * @return the borrowers, as they arrive
+	 */
+	@GetMapping(path = {"/borrowers", "/borrowers/"}, produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+	public Flux<Borrower> streamBorrowers() {
+		return ReactivePages.stream(delegate, "http://admin/borrowers", Borrower.class);
+	}
+
+	/**
+	 * Update a borrower by his or her card number in the administrator service.
+	 * @param cardNumber the card number of the borrower to update
+	 * @param input the borrower details to update
+	 * @return the updated borrower, or other response
+	 */
+	@PutMapping({ "/borrower/{cardNumber}", "/borrower/{cardNumber}/" })
+	public Mono<ResponseEntity<Borrower>> updateBorrower(
+			@PathVariable("cardNumber") final int cardNumber,
+			@RequestBody final Borrower input) {
+		return exchange(HttpMethod.PUT, "http://admin/borrower/" + cardNumber, input,
+				new ParameterizedTypeReference<Borrower>() {});
+	}
+
+	/**
+	 * Create a branch with the given name and address in the administrator service.
+	 * @param body the request body, which must contain a 'name' field; an
+	 *             'address' field is also recognized.
+	 * @return the created branch, or other response
+	 */
+	@PostMapping({"/branch", "/branch/"})
+	public Mono<ResponseEntity<Branch>> createBranch(
+			@RequestBody final Map<String, String> body) {
+		return exchange(HttpMethod.POST, "http://admin/branch", body,
+				new ParameterizedTypeReference<Branch>() {});
+	}
+
+	/**
+	 * Create a borrower record with the given name, address, and phone data in the
+	 * administrator service.
+	 *
+	 * @param body the request body, which must contain a 'name' field;
+	 *             'address' and 'phone' fields are also recognized.
+	 * @return the created borrower record, or other response
+	 */
+	@PostMapping({"/borrower", "/borrower/"})
+	public Mono<ResponseEntity<Borrower>> createBorrower(
+			@RequestBody final Map<String, String> body) {
+		return exchange(HttpMethod.POST, "http://admin/borrower", body,
+				new ParameterizedTypeReference<Borrower>() {});
+	}
+
+	/**
+	 * Delete the branch with the given ID in the administrator service.
+	 * @param branchId the ID of the branch to delete.
+	 * @return a signal that the deletion has completed
+	 */
+	@DeleteMapping({"/branch/{branchId}", "/branch/{branchId}/"})
+	public Mono<Void> deleteBranch(@PathVariable("branchId") final int branchId) {
+		return delete("http://admin/branch/" + branchId);
+	}
+
+	/**
+	 * Delete the borrower with the given card number in the administrator service.
+	 * @param cardNumber the card number of the borrower to delete
+	 * @return a signal that the deletion has completed
+	 */
+	@DeleteMapping({ "/borrower/{cardNumber}", "/borrower/{cardNumber}/" })
+	public Mono<Void> deleteBorrower(@PathVariable("cardNumber") final int cardNumber) {
+		return delete("http://admin/borrower/" + cardNumber);
+	}
+
+	/**
+	 * Override the due date of a loan in the administrator service.
+	 *
+	 * @param borrowerId the card number of the borrower who checked out the book in
+	 *                   question
+	 * @param branchId   the ID number of the branch from which the book was checked
+	 *                   out
+	 * @param bookId     the ID number of the book in question
+	 * @param body       the request body, which must contain a 'dueDate' field
+	 * @return the updated loan record, or other response
+	 */
+	@PutMapping("/loan/book/{bookId}/branch/{branchId}/borrower/{borrowerId}/due")
+	public Mono<ResponseEntity<Loan>> overrideDueDate(
+			@PathVariable("bookId") final int bookId,
+			@PathVariable("branchId") final int branchId,
+			@PathVariable("borrowerId") final int borrowerId,
+			@RequestBody final Map<String, String> body) {
+		final LocalDate dueDate = LocalDate.parse(body.get("dueDate"));
+		return exchange(HttpMethod.PUT,
+				"http://admin/loan/book/" + bookId + "/branch/" + branchId
+						+ "/borrower/" + borrowerId + "/due",
+				dueDate, new ParameterizedTypeReference<Loan>() {});
+	}
+
+	/**
+	 * Get the date a book is due back to the branch from which it was borrowed.
+	 * @param borrowerId the card number of the borrower who checked out the book in question
+	 * @param branchId the ID number of the branch from which the book was checked out
+	 * @param bookId the ID number of the book in question
+	 * @return the due date, or other response
+	 */
+	@GetMapping("/loan/book/{bookId}/branch/{branchId}/borrower/{borrowerId}/due")
+	public Mono<ResponseEntity<LocalDate>> getDueDate(
+			@PathVariable("bookId") final int bookId,
+			@PathVariable("branchId") final int branchId,
+			@PathVariable("borrowerId") final int borrowerId) {
+		return exchange(HttpMethod.GET, "http://admin/loan/book/" + bookId + "/branch/"
+				+ branchId + "/borrower/" + borrowerId + "/due", null,
+				new ParameterizedTypeReference<LocalDate>() {});
+	}
+
+	/**
+	 * Get all book loans the borrower has borrowed from any library branch.
+	 *
+	 * @param cardNo id for a particular borrower
+	 * @return the borrower's loans, or other response
+	 */
+	@GetMapping(path = "/admin/borrowers/{cardNo}/loans")
+	public Mono<ResponseEntity<List<Loan>>> getAllBorrowedBooks(
+			@PathVariable("cardNo") final int cardNo) {
+		return exchange(HttpMethod.GET, "http://admin/borrowers/" + cardNo + "/loans",
+				null, new ParameterizedTypeReference<List<Loan>>() {});
+	}
+
+	/**
+	 * Get one page of the book loans the borrower has borrowed from any library
+	 * branch.
+	 * @param cardNo id for a particular borrower
+	 * @param offset the position of the first loan to return
+	 * @param limit the most loans to return
+	 * @return the page, or other response
+	 */
+	@GetMapping(path = "/admin/borrowers/{cardNo}/loans", params = "limit")
+	public Mono<ResponseEntity<Page<Loan>>> getAllBorrowedBooksPage(
+			@PathVariable("cardNo") final int cardNo,
+			@RequestParam(name = "offset", defaultValue = "0") final int offset,
+			@RequestParam("limit") final int limit) {
+		return ReactivePages.page(delegate,
+				"http://admin/borrowers/" + cardNo + "/loans", Loan.class,
+				offset, limit, pagingProperties);
+	}
+
+	/**
+	 * Stream the book loans the borrower has borrowed from any library branch as
+	 * newline-delimited JSON.
+	 * @param cardNo id for a particular borrower
+	 * @return the loans, as they arrive
+	 */
+	@GetMapping(path = "/admin/borrowers/{cardNo}/loans", produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+	public Flux<Loan> streamAllBorrowedBooks(
+			@PathVariable("cardNo") final int cardNo) {
+		return ReactivePages.stream(delegate,
+				"http://admin/borrowers/" + cardNo + "/loans", Loan.class);
+	}
+}
@@ -0,0 +1,303 @@
+package com.sst.nt.lms.orch.controller.reactive;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.sst.nt.lms.orch.config.FanOutProperties;
+import com.sst.nt.lms.orch.controller.LibrarianController;
+import com.sst.nt.lms.orch.model.Book;
+import com.sst.nt.lms.orch.model.Branch;
+import com.sst.nt.lms.orch.model.BranchCopies;
+import com.sst.nt.lms.orch.model.CopiesDelta;
+import com.sst.nt.lms.orch.model.CopiesMatrix;
+import com.sst.nt.lms.orch.model.CopiesUpdate;
+import com.sst.nt.lms.orch.model.CopiesUpdateResult;
+import com.sst.nt.lms.orch.util.CopiesMatrices;
+import com.sst.nt.lms.orch.util.CopiesUpdates;
+import com.sst.nt.lms.orch.util.Deadline;
+import com.sst.nt.lms.orch.util.InventoryIndex;
+import com.sst.nt.lms.orch.util.Passthrough;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link LibrarianController}, serving the same
+ * routes when {@code orch.execution-mode=reactive}.
+ *
+ * @author Jonathan Lovelace
+ */
+@RestController
+@ConditionalOnProperty(prefix = "orch", name = "execution-mode", havingValue = "reactive")
+public class ReactiveLibrarianController {
+
+	/**
+	 * Non-blocking REST delegate.
+	 */
+	@Autowired
+	private WebClient delegate;
+
+	/**
+	 * Settings for the concurrent requests behind the columnar copies matrix and
+	 * bulk copy-count updates.
+	 */
+	@Autowired
+	private FanOutProperties fanOutProperties;
+
+	/**
+	 * In-memory copy counts, which copy-count lookups are answered from while
+	 * fresh, and which copy-count updates are written through to.
+	 */
+	@Autowired
+	private InventoryIndex inventory;
+
+	/**
+	 * Helper method to send a request to the librarian service and convert its
+	 * response.
+	 *
+	 * @param url the URL to send the request to
+	 * @param method the HTTP method to use
+	 * @param body the request body, or null if none
+	 * @param type the type we expect
+	 * @param <T> the type we expect
+	 * @return the response the server sent, once it arrives
+	 */
+	private <T> Mono<ResponseEntity<T>> doProcess(final String url,
+			final HttpMethod method, final Object body,
+			final ParameterizedTypeReference<T> type) {
+		final WebClient.RequestBodySpec request = delegate.method(method).uri(url);
+		return (body == null ? request : request.syncBody(body)).exchange()
+				.flatMap(response -> response.toEntity(type));
+	}
+
+	/**
+	 * Get all branches, relaying the librarian service's response unparsed.
+	 *
+	 * @param request the client's request
+	 * @return the list of all branches, or other response
+	 */
+	@RequestMapping({ "/branches", "/branches/" })
+	public Mono<ResponseEntity<byte[]>> getbranchs(final HttpServletRequest request) {
+		return Passthrough.get(delegate, "http://librarian-service/librarian/branches", request);
+	}
+
+	/**
+	 * Get all books, relaying the librarian service's response unparsed.
+	 *
+	 * @param request the client's request
+	 * @return the list of all books, or other response
+	 */
+	@RequestMapping({ "/books", "/books/" })
+	public Mono<ResponseEntity<byte[]>> getBooks(final HttpServletRequest request) {
+		return Passthrough.get(delegate, "http://librarian-service/librarian/books", request);
+	}
+
+	@RequestMapping(path = { "/branches/{branchId}", "/branches/{branchId}/" }, method = RequestMethod.GET)
+	public Mono<ResponseEntity<Branch>> getBranch(@PathVariable("branchId") final int branchId) {
+		return doProcess("http://librarian-service/librarian/branches/" + branchId,
+				HttpMethod.GET, null, new ParameterizedTypeReference<Branch>() {});
+	}
+
+	@RequestMapping({ "/books/{bookId}", "/books/{bookId}/" })
+	public Mono<ResponseEntity<Book>> getBook(@PathVariable("bookId") final int bookId) {
+		return doProcess("http://librarian-service/librarian/books/" + bookId,
+				HttpMethod.GET, null, new ParameterizedTypeReference<Book>() {});
+	}
+
+	@RequestMapping(path = { "/branches/{branchId}", "/branches/{branchId}/" }, method = RequestMethod.PUT)
+	public Mono<ResponseEntity<Branch>> updateBranch(@PathVariable("branchId") final int branchId,
+			@RequestBody final Branch input) {
+		return doProcess("http://librarian-service/librarian/branches/" + branchId,
+				HttpMethod.PUT, input, new ParameterizedTypeReference<Branch>() {});
+	}
+
+	@RequestMapping(path = { "/branches/{branchId}/books/{bookId}",
+			"/branch/{branchId}/book/{bookId}/" }, method = RequestMethod.PUT)
+	public Mono<ResponseEntity<BranchCopies>> setBranchCopies(
+			@PathVariable("branchId") final int branchId,
+			@PathVariable("bookId") final int bookId,
+			@RequestParam("noOfCopies") final int copies) {
+		return doProcess("http://librarian-service/librarian/branches/" + branchId
+				+ "/books/" + bookId + "?noOfCopies=" + copies, HttpMethod.PUT, null,
+				new ParameterizedTypeReference<BranchCopies>() {}).doOnNext(response -> {
+					if (response.getStatusCode().is2xxSuccessful()) {
+						inventory.set(branchId, bookId, copies);
+					}
+				});
+	}
+
+	/**
+	 * Set the number of copies of many books in many branches at once, each
+	 * forwarded separately, up to {@code orch.fan-out.parallelism} at once.
+	 *
+	 * @param updates the updates to make
+	 * @return the outcome of each update, in the order given; or 400 if the
+	 *         update is too big or not well-formed
+	 * @see LibrarianController#setAllBranchCopies(List)
+	 */
+	@RequestMapping(path = { "/branches/books/copies", "/branches/books/copies/" },
+			method = RequestMethod.PUT)
+	public Mono<ResponseEntity<List<CopiesUpdateResult>>> setAllBranchCopies(
+			@RequestBody final List<CopiesUpdate> updates) {
+		if (!CopiesUpdates.isValid(updates, fanOutProperties.getMaxBulkUpdateSize())) {
+			return Mono.just(ResponseEntity.badRequest().build());
+		}
+		// Later updates are assembled on whichever thread finished an earlier one,
+		// so they must be given the client's deadline explicitly.
+		final Deadline deadline = Deadline.current();
+		return Flux.fromIterable(updates)
+				.flatMapSequential(update -> Deadline.wrap(deadline,
+						// Read the body, even though we ignore it: discarding it unread
+						// would close the connection rather than return it to the pool.
+						() -> doProcess(CopiesUpdates.url(update), HttpMethod.PUT, null,
+								new ParameterizedTypeReference<byte[]>() {})).get()
+						.map(ResponseEntity::getStatusCodeValue)
+						.onErrorResume(except -> Mono.just(CopiesUpdates.statusOf(except)))
+						.map(status -> {
+							final CopiesUpdateResult result =
+									new CopiesUpdateResult(update, status);
+							if (result.isSucceeded()) {
+								inventory.set(update.getBranchId(), update.getBookId(),
+										update.getCopies());
+							}
+							return result;
+						}), fanOutProperties.getParallelism())
+				.collectList().map(ResponseEntity::ok);
+	}
+
+	@RequestMapping(path = { "/branches/{branchId}/books/{bookId}",
+			"/branch/{branchId}/book/{bookId}" }, method = RequestMethod.GET)
+	public Mono<ResponseEntity<BranchCopies>> getBranchCopies(
+			@PathVariable("branchId") final int branchId,
+			@PathVariable("bookId") final int bookId) {
+		final BranchCopies local = inventory.get(branchId, bookId);
+		if (local != null) {
+			return Mono.just(ResponseEntity.ok(local));
+		}
+		return doProcess("http://librarian-service/librarian/branches/" + branchId
+				+ "/books/" + bookId, HttpMethod.GET, null,
+				new ParameterizedTypeReference<BranchCopies>() {});
+	}
+
+	/**
+	 * Get the number of copies of every book in every branch, relaying the
+	 * librarian service's response unparsed.
+	 *
+	 * @param request the client's request
+	 * @return the copies matrix, or other response
+	 */
+	@RequestMapping({ "/branches/books/copies", "/branches/books/copies/" })
+	public Mono<ResponseEntity<byte[]>> getAllCopies(final HttpServletRequest request) {
+		return Passthrough.get(delegate,
+				"http://librarian-service/librarian/branches/books/copies", request);
+	}
+
+	/**
+	 * Get the number of copies of every book in every branch in the compact
+	 * {@link CopiesMatrix columnar form}, for clients that accept it.
+	 *
+	 * @return the columnar copies matrix, or other response
+	 */
+	@RequestMapping(path = { "/branches/books/copies", "/branches/books/copies/" },
+			produces = CopiesMatrices.COLUMNAR_VALUE, method = RequestMethod.GET)
+	public Mono<ResponseEntity<CopiesMatrix>> getAllCopiesColumnar() {
+		return getAllCopiesColumnarByParam();
+	}
+
+	/**
+	 * Get the number of copies of every book in every branch in the compact
+	 * {@link CopiesMatrix columnar form}, for clients that ask for it with
+	 * {@code ?format=columnar}. The branches and books the librarian service's
+	 * matrix is keyed by are identified from its lists of all branches and
+	 * books, requested concurrently with the matrix; if either list fails or
+	 * does not answer within {@code orch.fan-out.call-timeout}, the counts it
+	 * would identify are reported as unresolved.
+	 *
+	 * @return the columnar copies matrix, or other response
+	 */
+	@RequestMapping(path = { "/branches/books/copies", "/branches/books/copies/" },
+			params = { CopiesMatrices.COLUMNAR_PARAM, "!since" },
+			method = RequestMethod.GET)
+	public Mono<ResponseEntity<CopiesMatrix>> getAllCopiesColumnarByParam() {
+		final Duration timeout = fanOutProperties.getCallTimeout();
+		return Mono.zip(
+				doProcess("http://librarian-service/librarian/branches/books/copies",
+						HttpMethod.GET, null,
+						new ParameterizedTypeReference<Map<String, Map<String, Integer>>>() {}),
+				listOrEmpty(doProcess("http://librarian-service/librarian/branches",
+						HttpMethod.GET, null, new ParameterizedTypeReference<List<Branch>>() {}),
+						timeout),
+				listOrEmpty(doProcess("http://librarian-service/librarian/books",
+						HttpMethod.GET, null, new ParameterizedTypeReference<List<Book>>() {}),
+						timeout)).map(parts -> {
+							final ResponseEntity<Map<String, Map<String, Integer>>> matrix =
+									parts.getT1();
+							if (!matrix.getStatusCode().is2xxSuccessful()
+									|| matrix.getBody() == null) {
+								return ResponseEntity.status(matrix.getStatusCode())
+										.<CopiesMatrix> build();
+							}
+							return ResponseEntity.ok(CopiesMatrices.columnar(matrix.getBody(),
+									parts.getT2(), parts.getT3()));
+						});
+	}
+
+	/**
+	 * Get the copy counts that have changed since a version the client already
+	 * has, from the in-memory copy counts.
+	 *
+	 * @param epoch the epoch from the client's last such response, or empty for
+	 *              every count
+	 * @param since the version from the client's last such response, or 0 for
+	 *              every count
+	 * @return the changes, with the version they bring the client up to; or 503
+	 *         if the in-memory copy counts are not fresh enough to serve
+	 * @see LibrarianController#getCopiesSince(String, long)
+	 */
+	@RequestMapping(path = { "/branches/books/copies", "/branches/books/copies/" },
+			params = "since", method = RequestMethod.GET)
+	public Mono<ResponseEntity<CopiesDelta>> getCopiesSince(
+			@RequestParam(name = "epoch", defaultValue = "") final String epoch,
+			@RequestParam("since") final long since) {
+		final CopiesDelta delta = inventory.changesSince(epoch, since);
+		if (delta == null) {
+			return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+		}
+		return Mono.just(ResponseEntity.ok(delta));
+	}
+
+	/**
+	 * Helper method to bound a request for a list by a timeout, turning failure
+	 * into an empty list rather than an error.
+	 * @param call the downstream request
+	 * @param timeout how long to wait for it
+	 * @param <T> the type of the list's items
+	 * @return the list, or an empty list if the request failed or timed out
+	 */
+	private static <T> Mono<List<T>> listOrEmpty(final Mono<ResponseEntity<List<T>>> call,
+			final Duration timeout) {
+		return call.timeout(timeout)
+				.map(response -> response.getStatusCode().is2xxSuccessful()
+						&& response.getBody() != null ? response.getBody()
+								: Collections.<T> emptyList())
+				.onErrorReturn(Collections.emptyList());
+	}
+}
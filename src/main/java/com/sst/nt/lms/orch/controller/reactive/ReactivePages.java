@@ -0,0 +1,75 @@
+package com.sst.nt.lms.orch.controller.reactive;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.sst.nt.lms.orch.config.PagingProperties;
+import com.sst.nt.lms.orch.model.Page;
+import com.sst.nt.lms.orch.util.CollectionStreamer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link CollectionStreamer}, shared by the reactive
+ * controllers. The JSON decoder hands us a downstream array one item at a time,
+ * so a page holds no more than the items it returns and a stream no more than
+ * the item in flight.
+ *
+ * @author Jonathan Lovelace
+ */
+final class ReactivePages {
+	/**
+	 * Do not instantiate.
+	 */
+	private ReactivePages() {
+		// static helpers only
+	}
+
+	/**
+	 * Get one page of a downstream collection.
+	 *
+	 * @param delegate the non-blocking REST delegate
+	 * @param url the URL of the collection
+	 * @param type the type of the items in the collection
+	 * @param offset the position of the first item to return
+	 * @param limit the most items to return
+	 * @param properties the paging settings
+	 * @param <T> the type of the items in the collection
+	 * @return the page, a "bad request" response if the paging parameters are out
+	 *         of range, or the downstream status if it did not succeed
+	 */
+	static <T> Mono<ResponseEntity<Page<T>>> page(final WebClient delegate,
+			final String url, final Class<T> type, final int offset, final int limit,
+			final PagingProperties properties) {
+		if (!properties.isValid(offset, limit)) {
+			return Mono.just(ResponseEntity.badRequest().build());
+		}
+		return delegate.get().uri(url).accept(MediaType.APPLICATION_JSON).exchange()
+				.flatMap(response -> {
+					if (!response.statusCode().is2xxSuccessful()) {
+						return response.bodyToMono(Void.class).then(Mono.just(
+								ResponseEntity.status(response.rawStatusCode()).<Page<T>>build()));
+					}
+					return response.bodyToFlux(type).skip(offset).take(limit + 1)
+							.collectList()
+							.map(window -> ResponseEntity.ok(Page.of(window, offset, limit)));
+				});
+	}
+
+	/**
+	 * Stream a downstream collection one item at a time.
+	 *
+	 * @param delegate the non-blocking REST delegate
+	 * @param url the URL of the collection
+	 * @param type the type of the items in the collection
+	 * @param <T> the type of the items in the collection
+	 * @return the items, as they arrive
+	 */
+	static <T> Flux<T> stream(final WebClient delegate, final String url,
+			final Class<T> type) {
+		return delegate.get().uri(url).accept(MediaType.APPLICATION_JSON).retrieve()
+				.bodyToFlux(type);
+	}
+}
@@ -0,0 +1,92 @@
+package com.sst.nt.lms.orch.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * The combined result of looking up several objects by ID at once. IDs that do
+ * not exist, and those whose lookup failed for some other reason, are reported
+ * separately rather than failing the whole batch.
+ *
+ * @param <T> the type of object looked up
+ * @author Jonathan Lovelace
+ */
+public class BatchResponse<T> {
+	/**
+	 * The objects that were found, in the order their IDs were requested.
+	 */
+	private final List<T> found;
+	/**
+	 * The IDs for which the downstream service reported that no object exists.
+	 */
+	private final List<Integer> missing;
+	/**
+	 * The IDs whose lookup failed for any other reason.
+	 */
+	private final List<Integer> failed;
+
+	/**
+	 * Constructor.
+	 * @param found the objects that were found
+	 * @param missing the IDs that do not exist
+	 * @param failed the IDs whose lookup failed
+	 */
+	public BatchResponse(final List<T> found, final List<Integer> missing,
+			final List<Integer> failed) {
+		this.found = Collections.unmodifiableList(found);
+		this.missing = Collections.unmodifiableList(missing);
+		this.failed = Collections.unmodifiableList(failed);
+	}
+
+	/**
+	 * Sort the individual responses of a batch into found, missing, and failed.
+	 * @param responses the downstream responses, by ID
+	 * @param <T> the type of object looked up
+	 * @return the combined result
+	 */
+	public static <T> BatchResponse<T> of(
+			final Map<Integer, ResponseEntity<T>> responses) {
+		final List<T> found = new ArrayList<>();
+		final List<Integer> missing = new ArrayList<>();
+		final List<Integer> failed = new ArrayList<>();
+		responses.forEach((id, response) -> {
+			if (response.getStatusCode().is2xxSuccessful() && response.hasBody()) {
+				found.add(response.getBody());
+			} else if (response.getStatusCode() == HttpStatus.NOT_FOUND) {
+				missing.add(id);
+			} else {
+				failed.add(id);
+			}
+		});
+		return new BatchResponse<>(found, missing, failed);
+	}
+
+	/**
+	 * Get the objects that were found.
+	 * @return the objects that were found, in the order requested
+	 */
+	public List<T> getFound() {
+		return found;
+	}
+
+	/**
+	 * Get the IDs of objects that do not exist.
+	 * @return the IDs the downstream service reported as not found
+	 */
+	public List<Integer> getMissing() {
+		return missing;
+	}
+
+	/**
+	 * Get the IDs whose lookup failed for a reason other than not existing.
+	 * @return the IDs whose lookup failed
+	 */
+	public List<Integer> getFailed() {
+		return failed;
+	}
+}
@@ -0,0 +1,91 @@
+package com.sst.nt.lms.orch.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything the borrower app shows on its main screen, gathered in one
+ * response: the borrower's details, their outstanding loans, and the branches
+ * they have loans from. Any part the orchestrator could not get in time is left
+ * null and named in {@link #getUnavailable()}, so the app can render the rest.
+ *
+ * @author Jonathan Lovelace
+ */
+public class BorrowerDashboard {
+	/**
+	 * The name of the borrower-details part, for {@link #getUnavailable()}.
+	 */
+	public static final String BORROWER = "borrower";
+	/**
+	 * The name of the loans part, for {@link #getUnavailable()}.
+	 */
+	public static final String LOANS = "loans";
+	/**
+	 * The name of the branches part, for {@link #getUnavailable()}.
+	 */
+	public static final String BRANCHES = "branches";
+	/**
+	 * The borrower's details.
+	 */
+	private final Borrower borrower;
+	/**
+	 * The borrower's outstanding loans.
+	 */
+	private final List<Loan> loans;
+	/**
+	 * The branches from which the borrower has outstanding loans.
+	 */
+	private final List<Branch> branches;
+	/**
+	 * The names of the parts that failed or timed out.
+	 */
+	private final List<String> unavailable;
+
+	/**
+	 * Constructor.
+	 * @param borrower the borrower's details, or null if unavailable
+	 * @param loans the borrower's outstanding loans, or null if unavailable
+	 * @param branches the branches the borrower has loans from, or null if
+	 *                 unavailable
+	 * @param unavailable the names of the parts that are unavailable
+	 */
+	public BorrowerDashboard(final Borrower borrower, final List<Loan> loans,
+			final List<Branch> branches, final List<String> unavailable) {
+		this.borrower = borrower;
+		this.loans = loans;
+		this.branches = branches;
+		this.unavailable = Collections.unmodifiableList(unavailable);
+	}
+
+	/**
+	 * Get the borrower's details.
+	 * @return the borrower, or null if unavailable
+	 */
+	public Borrower getBorrower() {
+		return borrower;
+	}
+
+	/**
+	 * Get the borrower's outstanding loans.
+	 * @return the loans, or null if unavailable
+	 */
+	public List<Loan> getLoans() {
+		return loans;
+	}
+
+	/**
+	 * Get the branches from which the borrower has outstanding loans.
+	 * @return the branches, or null if unavailable
+	 */
+	public List<Branch> getBranches() {
+		return branches;
+	}
+
+	/**
+	 * Get the names of the parts of the dashboard that failed or timed out.
+	 * @return the parts that are unavailable; empty if the dashboard is complete
+	 */
+	public List<String> getUnavailable() {
+		return unavailable;
+	}
+}
@@ -0,0 +1,88 @@
+package com.sst.nt.lms.orch.model;
+
+/**
+ * The copy counts that have changed since a version a client already has, or
+ * all of them if it is too far behind for that, together with the version they
+ * bring it up to. A client keeps the version, and the epoch it belongs to, and
+ * passes both back next time to get only what changed after it. Versions are
+ * only comparable within one epoch, which is a single orchestrator instance's
+ * lifetime, so a client whose epoch does not match is sent every count.
+ *
+ * <p>A count of -1 means the count has changed but is not known to us, and must
+ * be fetched on its own if it is needed.
+ *
+ * @author Jonathan Lovelace
+ */
+public class CopiesDelta {
+	/**
+	 * The epoch the version belongs to.
+	 */
+	private String epoch;
+	/**
+	 * The version the counts bring the client up to.
+	 */
+	private long version;
+	/**
+	 * Whether this is every count rather than only those that changed, so that
+	 * the client should discard what it had.
+	 */
+	private boolean full;
+	/**
+	 * The counts, with the branches and books they mention.
+	 */
+	private CopiesMatrix counts;
+
+	/**
+	 * No-arg constructor, for deserialization.
+	 */
+	protected CopiesDelta() {
+		this("", 0, true, new CopiesMatrix());
+	}
+
+	/**
+	 * Constructor.
+	 * @param epoch the epoch the version belongs to
+	 * @param version the version the counts bring the client up to
+	 * @param full whether this is every count rather than only those that changed
+	 * @param counts the counts, with the branches and books they mention
+	 */
+	public CopiesDelta(final String epoch, final long version, final boolean full,
+			final CopiesMatrix counts) {
+		this.epoch = epoch;
+		this.version = version;
+		this.full = full;
+		this.counts = counts;
+	}
+
+	/**
+	 * Get the epoch the version belongs to.
+	 * @return the epoch
+	 */
+	public String getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * Get the version the counts bring the client up to.
+	 * @return the version
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Whether this is every count rather than only those that changed.
+	 * @return true if the client should replace what it had with this
+	 */
+	public boolean isFull() {
+		return full;
+	}
+
+	/**
+	 * Get the counts.
+	 * @return the counts, with the branches and books they mention
+	 */
+	public CopiesMatrix getCounts() {
+		return counts;
+	}
+}
@@ -0,0 +1,124 @@
+package com.sst.nt.lms.orch.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The number of copies of every book in every branch, in a compact columnar
+ * form: entry {@code i} says that the branch with ID {@code branchIds[i]} has
+ * {@code copies[i]} copies of the book with ID {@code bookIds[i]}, and each
+ * branch and book is described once, in {@link #getBranches()} and
+ * {@link #getBooks()}, rather than once for every count it appears in. Any
+ * count whose branch or book could not be identified is left out and counted in
+ * {@link #getUnresolved()}.
+ *
+ * @author Jonathan Lovelace
+ */
+public class CopiesMatrix {
+	/**
+	 * The branches the counts are for.
+	 */
+	private List<Branch> branches;
+	/**
+	 * The books the counts are of.
+	 */
+	private List<Book> books;
+	/**
+	 * The branch ID of each count.
+	 */
+	private int[] branchIds;
+	/**
+	 * The book ID of each count.
+	 */
+	private int[] bookIds;
+	/**
+	 * The counts.
+	 */
+	private int[] copies;
+	/**
+	 * How many counts were left out because their branch or book could not be
+	 * identified.
+	 */
+	private int unresolved;
+
+	/**
+	 * No-arg constructor, for deserialization.
+	 */
+	protected CopiesMatrix() {
+		this(Collections.emptyList(), Collections.emptyList(), new int[0], new int[0],
+				new int[0], 0);
+	}
+
+	/**
+	 * Constructor.
+	 * @param branches the branches the counts are for
+	 * @param books the books the counts are of
+	 * @param branchIds the branch ID of each count
+	 * @param bookIds the book ID of each count
+	 * @param copies the counts
+	 * @param unresolved how many counts were left out because their branch or
+	 *                   book could not be identified
+	 */
+	public CopiesMatrix(final List<Branch> branches, final List<Book> books,
+			final int[] branchIds, final int[] bookIds, final int[] copies,
+			final int unresolved) {
+		if (branchIds.length != copies.length || bookIds.length != copies.length) {
+			throw new IllegalArgumentException("Columns must be the same length");
+		}
+		this.branches = branches;
+		this.books = books;
+		this.branchIds = branchIds;
+		this.bookIds = bookIds;
+		this.copies = copies;
+		this.unresolved = unresolved;
+	}
+
+	/**
+	 * Get the branches the counts are for.
+	 * @return the branches, each once
+	 */
+	public List<Branch> getBranches() {
+		return branches;
+	}
+
+	/**
+	 * Get the books the counts are of.
+	 * @return the books, each once
+	 */
+	public List<Book> getBooks() {
+		return books;
+	}
+
+	/**
+	 * Get the branch ID of each count.
+	 * @return the branch IDs
+	 */
+	public int[] getBranchIds() {
+		return branchIds;
+	}
+
+	/**
+	 * Get the book ID of each count.
+	 * @return the book IDs
+	 */
+	public int[] getBookIds() {
+		return bookIds;
+	}
+
+	/**
+	 * Get the counts.
+	 * @return the counts
+	 */
+	public int[] getCopies() {
+		return copies;
+	}
+
+	/**
+	 * Get how many counts were left out because their branch or book could not
+	 * be identified.
+	 * @return the number left out
+	 */
+	public int getUnresolved() {
+		return unresolved;
+	}
+}
@@ -0,0 +1,90 @@
+package com.sst.nt.lms.orch.model;
+
+import java.util.Objects;
+
+/**
+ * A request to set how many copies of a book a branch holds, as one item of a
+ * bulk update.
+ *
+ * @author Jonathan Lovelace
+ */
+public class CopiesUpdate {
+	/**
+	 * The branch's ID.
+	 */
+	private int branchId;
+	/**
+	 * The book's ID.
+	 */
+	private int bookId;
+	/**
+	 * The number of copies the branch is to hold.
+	 */
+	private int copies;
+
+	/**
+	 * No-arg constructor, for deserialization.
+	 */
+	protected CopiesUpdate() {
+		this(0, 0, 0);
+	}
+
+	/**
+	 * Constructor.
+	 * @param branchId the branch's ID
+	 * @param bookId the book's ID
+	 * @param copies the number of copies the branch is to hold
+	 */
+	public CopiesUpdate(final int branchId, final int bookId, final int copies) {
+		this.branchId = branchId;
+		this.bookId = bookId;
+		this.copies = copies;
+	}
+
+	/**
+	 * Get the branch's ID.
+	 * @return the branch's ID
+	 */
+	public int getBranchId() {
+		return branchId;
+	}
+
+	/**
+	 * Get the book's ID.
+	 * @return the book's ID
+	 */
+	public int getBookId() {
+		return bookId;
+	}
+
+	/**
+	 * Get the number of copies the branch is to hold.
+	 * @return the number of copies
+	 */
+	public int getCopies() {
+		return copies;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(branchId, bookId, copies);
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (obj instanceof CopiesUpdate) {
+			final CopiesUpdate other = (CopiesUpdate) obj;
+			return branchId == other.branchId && bookId == other.bookId
+					&& copies == other.copies;
+		} else {
+			return false;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Set branch " + branchId + "'s copies of book " + bookId + " to " + copies;
+	}
+}
@@ -0,0 +1,87 @@
+package com.sst.nt.lms.orch.model;
+
+/**
+ * The outcome of one item of a bulk update of copy counts: the update, and the
+ * HTTP status the librarian service answered it with, or that describes why it
+ * could not be made (503 if the service was too busy or unavailable, 504 if it
+ * did not answer in time, 502 if it could not be reached).
+ *
+ * @author Jonathan Lovelace
+ */
+public class CopiesUpdateResult {
+	/**
+	 * The branch's ID.
+	 */
+	private int branchId;
+	/**
+	 * The book's ID.
+	 */
+	private int bookId;
+	/**
+	 * The number of copies the branch was to hold.
+	 */
+	private int copies;
+	/**
+	 * The HTTP status of the update.
+	 */
+	private int status;
+
+	/**
+	 * No-arg constructor, for deserialization.
+	 */
+	protected CopiesUpdateResult() {
+		this(new CopiesUpdate(), 0);
+	}
+
+	/**
+	 * Constructor.
+	 * @param update the update
+	 * @param status the HTTP status of the update
+	 */
+	public CopiesUpdateResult(final CopiesUpdate update, final int status) {
+		branchId = update.getBranchId();
+		bookId = update.getBookId();
+		copies = update.getCopies();
+		this.status = status;
+	}
+
+	/**
+	 * Get the branch's ID.
+	 * @return the branch's ID
+	 */
+	public int getBranchId() {
+		return branchId;
+	}
+
+	/**
+	 * Get the book's ID.
+	 * @return the book's ID
+	 */
+	public int getBookId() {
+		return bookId;
+	}
+
+	/**
+	 * Get the number of copies the branch was to hold.
+	 * @return the number of copies
+	 */
+	public int getCopies() {
+		return copies;
+	}
+
+	/**
+	 * Get the HTTP status of the update.
+	 * @return the status
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * Whether the update was made.
+	 * @return whether its status was a success
+	 */
+	public boolean isSucceeded() {
+		return status >= 200 && status < 300;
+	}
+}
@@ -0,0 +1,100 @@
+package com.sst.nt.lms.orch.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a collection, for clients that do not want the whole collection in
+ * one response.
+ *
+ * @param <T> the type of the items in the collection
+ * @author Jonathan Lovelace
+ */
+public class Page<T> {
+	/**
+	 * The items on this page.
+	 */
+	private final List<T> items;
+	/**
+	 * The position in the collection of the first item on this page.
+	 */
+	private final int offset;
+	/**
+	 * The most items the client asked for on this page.
+	 */
+	private final int limit;
+	/**
+	 * The offset at which the next page starts, or null if this is the last page.
+	 */
+	private final Integer nextOffset;
+
+	/**
+	 * Constructor.
+	 * @param items the items on this page
+	 * @param offset the position in the collection of the first item on this page
+	 * @param limit the most items the client asked for on this page
+	 * @param more whether the collection has items beyond this page
+	 */
+	public Page(final List<T> items, final int offset, final int limit,
+			final boolean more) {
+		this.items = Collections.unmodifiableList(items);
+		this.offset = offset;
+		this.limit = limit;
+		nextOffset = more ? offset + items.size() : null;
+	}
+
+	/**
+	 * Build a page from a "window" into the collection that starts at the page's
+	 * offset and holds up to one more item than the page, that extra item (if
+	 * any) showing that there is another page.
+	 *
+	 * @param window the items from the offset onward, at most limit + 1 of them
+	 * @param offset the position in the collection of the first item in the window
+	 * @param limit the most items the client asked for on this page
+	 * @param <T> the type of the items
+	 * @return the page
+	 */
+	public static <T> Page<T> of(final List<T> window, final int offset,
+			final int limit) {
+		if (window.size() > limit) {
+			return new Page<>(new ArrayList<>(window.subList(0, limit)), offset, limit,
+					true);
+		} else {
+			return new Page<>(new ArrayList<>(window), offset, limit, false);
+		}
+	}
+
+	/**
+	 * Get the items on this page.
+	 * @return the items on this page
+	 */
+	public List<T> getItems() {
+		return items;
+	}
+
+	/**
+	 * Get the position in the collection of the first item on this page.
+	 * @return the offset of this page
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Get the most items the client asked for on this page.
+	 * @return the page size limit
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Get the offset to ask for to get the next page.
+	 * @return the offset at which the next page starts, or null if this is the last
+	 *         page
+	 */
+	public Integer getNextOffset() {
+		return nextOffset;
+	}
+}
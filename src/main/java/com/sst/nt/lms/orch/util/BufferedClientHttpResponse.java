@@ -0,0 +1,117 @@
+package com.sst.nt.lms.orch.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+/**
+ * A downstream response read fully into memory, so that it can be handed to
+ * more than one caller. Each call to {@link #copy()} yields an independent
+ * response over the same bytes.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class BufferedClientHttpResponse implements ClientHttpResponse {
+	/**
+	 * The raw status code.
+	 */
+	private final int statusCode;
+	/**
+	 * The status text.
+	 */
+	private final String statusText;
+	/**
+	 * The response headers, which are shared by all copies and must not be
+	 * modified.
+	 */
+	private final HttpHeaders headers;
+	/**
+	 * The response body.
+	 */
+	private final byte[] body;
+
+	/**
+	 * Constructor.
+	 * @param statusCode the raw status code
+	 * @param statusText the status text
+	 * @param headers the response headers
+	 * @param body the response body
+	 */
+	public BufferedClientHttpResponse(final int statusCode, final String statusText,
+			final HttpHeaders headers, final byte[] body) {
+		this.statusCode = statusCode;
+		this.statusText = statusText;
+		this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+		this.body = body;
+	}
+
+	/**
+	 * Read a response fully into memory and close it.
+	 * @param response the response to read
+	 * @return a buffered copy of it
+	 * @throws IOException on I/O error reading the response
+	 */
+	public static BufferedClientHttpResponse of(final ClientHttpResponse response)
+			throws IOException {
+		try {
+			final HttpHeaders headers = new HttpHeaders();
+			headers.putAll(response.getHeaders());
+			return new BufferedClientHttpResponse(response.getRawStatusCode(),
+					response.getStatusText(), headers,
+					StreamUtils.copyToByteArray(response.getBody()));
+		} finally {
+			response.close();
+		}
+	}
+
+	/**
+	 * Get an independent copy of this response, with its own body stream.
+	 * @return a copy of this response
+	 */
+	public BufferedClientHttpResponse copy() {
+		return new BufferedClientHttpResponse(statusCode, statusText, headers, body);
+	}
+
+	/**
+	 * Get the response body.
+	 * @return the bytes of the response body, which must not be modified
+	 */
+	public byte[] getBodyBytes() {
+		return body;
+	}
+
+	@Override
+	public HttpStatus getStatusCode() {
+		return HttpStatus.valueOf(statusCode);
+	}
+
+	@Override
+	public int getRawStatusCode() {
+		return statusCode;
+	}
+
+	@Override
+	public String getStatusText() {
+		return statusText;
+	}
+
+	@Override
+	public HttpHeaders getHeaders() {
+		return headers;
+	}
+
+	@Override
+	public InputStream getBody() {
+		return new ByteArrayInputStream(body);
+	}
+
+	@Override
+	public void close() {
+		// Nothing to release.
+	}
+}
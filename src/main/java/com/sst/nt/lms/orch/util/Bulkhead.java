@@ -0,0 +1,108 @@
+package com.sst.nt.lms.orch.util;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A cap on the calls in flight to one downstream service. A caller that finds
+ * every slot taken may wait a short while for one, but only if few enough
+ * others are already waiting; otherwise it is turned away at once, so that a
+ * backlog of callers cannot build up behind a slow service.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class Bulkhead {
+	/**
+	 * The most calls that may be in flight at once.
+	 */
+	private final int maxConcurrentCalls;
+	/**
+	 * The most callers that may wait for a slot at once.
+	 */
+	private final int maxQueued;
+	/**
+	 * The slots for calls in flight.
+	 */
+	private final Semaphore slots;
+	/**
+	 * How many callers are waiting for a slot.
+	 */
+	private final AtomicInteger queued = new AtomicInteger();
+
+	/**
+	 * Constructor.
+	 * @param maxConcurrentCalls the most calls that may be in flight at once
+	 * @param maxQueued the most callers that may wait for a slot at once
+	 */
+	public Bulkhead(final int maxConcurrentCalls, final int maxQueued) {
+		this.maxConcurrentCalls = maxConcurrentCalls;
+		this.maxQueued = maxQueued;
+		slots = new Semaphore(maxConcurrentCalls, true);
+	}
+
+	/**
+	 * Take a slot without waiting.
+	 * @return true if a slot was taken, false if there was none free
+	 */
+	public boolean tryAcquire() {
+		return slots.tryAcquire();
+	}
+
+	/**
+	 * Take a slot, waiting for one if there is room in the queue.
+	 * @param nanos how long to wait, in nanoseconds
+	 * @return true if a slot was taken, false if the queue was full or the wait
+	 *         ran out
+	 */
+	public boolean tryAcquire(final long nanos) {
+		if (slots.tryAcquire()) {
+			return true;
+		} else if (nanos <= 0) {
+			return false;
+		}
+		if (queued.incrementAndGet() > maxQueued) {
+			queued.decrementAndGet();
+			return false;
+		}
+		try {
+			return slots.tryAcquire(nanos, TimeUnit.NANOSECONDS);
+		} catch (final InterruptedException except) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			queued.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Give back a slot taken by one of the {@code tryAcquire} methods.
+	 */
+	public void release() {
+		slots.release();
+	}
+
+	/**
+	 * Get the most calls that may be in flight at once.
+	 * @return the limit
+	 */
+	public int getMaxConcurrentCalls() {
+		return maxConcurrentCalls;
+	}
+
+	/**
+	 * Get how many calls are in flight.
+	 * @return the number of slots taken
+	 */
+	public int getActive() {
+		return maxConcurrentCalls - slots.availablePermits();
+	}
+
+	/**
+	 * Get how many callers are waiting for a slot.
+	 * @return the number waiting
+	 */
+	public int getQueued() {
+		return queued.get();
+	}
+}
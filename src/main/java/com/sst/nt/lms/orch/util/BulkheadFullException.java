@@ -0,0 +1,33 @@
+package com.sst.nt.lms.orch.util;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Thrown in place of making a call to a downstream service that already has as
+ * many calls in flight, and callers waiting, as its bulkhead allows.
+ *
+ * @author Jonathan Lovelace
+ */
+public class BulkheadFullException extends RestClientException {
+	/**
+	 * Serialization version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * The service that was not called.
+	 */
+	private final String service;
+
+	/**
+	 * Constructor.
+	 * @param service the service that was not called
+	 */
+	public BulkheadFullException(final String service) {
+		super("Bulkhead for " + service + " is full");
+		this.service = service;
+	}
+
+	public String getService() {
+		return service;
+	}
+}
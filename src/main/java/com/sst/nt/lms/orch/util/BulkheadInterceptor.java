@@ -0,0 +1,275 @@
+package com.sst.nt.lms.orch.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+import com.sst.nt.lms.orch.config.BulkheadProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import reactor.core.publisher.Mono;
+
+/**
+ * Puts every downstream call, from either the blocking or the non-blocking REST
+ * delegate, through the {@link Bulkhead} of the logical service it is addressed
+ * to; like {@link DownstreamServiceInterceptor}, it must run before the load
+ * balancer replaces the service name. A call the bulkhead turns away fails at
+ * once with a {@link BulkheadFullException}.
+ *
+ * <p>A blocking call holds its slot until its response is closed, so a body
+ * being streamed to the client still counts, and may queue for a slot. The
+ * non-blocking delegate holds no thread while it waits, so its calls never
+ * queue, and hold their slots only until the response headers arrive.
+ *
+ * <p>Each bulkhead's occupancy is reported as the gauges
+ * {@code orch.bulkhead.active}, {@code orch.bulkhead.queued}, and
+ * {@code orch.bulkhead.max}, and its rejections as the counter
+ * {@code orch.bulkhead.rejected}, all tagged with the service name.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class BulkheadInterceptor
+		implements ClientHttpRequestInterceptor, ExchangeFilterFunction, MeterBinder {
+	/**
+	 * Bulkhead settings.
+	 */
+	private final BulkheadProperties properties;
+	/**
+	 * The bulkheads created so far, with their metrics, keyed by service name.
+	 */
+	private final Map<String, ServiceBulkhead> bulkheads = new ConcurrentHashMap<>();
+	/**
+	 * The registry bulkhead metrics are reported to, once we have been bound to
+	 * one.
+	 */
+	private volatile MeterRegistry registry;
+
+	/**
+	 * Constructor. Bulkheads for the services named in the settings are created
+	 * eagerly; others are created on first use.
+	 * @param properties bulkhead settings
+	 */
+	public BulkheadInterceptor(final BulkheadProperties properties) {
+		this.properties = properties;
+		for (final String service : properties.getServices().keySet()) {
+			bulkheadFor(service);
+		}
+	}
+
+	@Override
+	public ClientHttpResponse intercept(final HttpRequest request, final byte[] body,
+			final ClientHttpRequestExecution execution) throws IOException {
+		if (!properties.isEnabled()) {
+			return execution.execute(request, body);
+		}
+		final ServiceBulkhead entry = bulkheadFor(request.getURI().getHost());
+		final Bulkhead bulkhead = entry.bulkhead;
+		if (!bulkhead.tryAcquire(properties.getMaxWait().toNanos())) {
+			throw entry.rejected();
+		}
+		try {
+			return new ReleasingResponse(execution.execute(request, body), bulkhead::release);
+		} catch (final IOException | RuntimeException except) {
+			bulkhead.release();
+			throw except;
+		}
+	}
+
+	@Override
+	public Mono<ClientResponse> filter(final ClientRequest request,
+			final ExchangeFunction next) {
+		if (!properties.isEnabled()) {
+			return next.exchange(request);
+		}
+		final String service = request.url().getHost();
+		return Mono.defer(() -> {
+			final ServiceBulkhead entry = bulkheadFor(service);
+			if (!entry.bulkhead.tryAcquire()) {
+				return Mono.error(entry.rejected());
+			}
+			return next.exchange(request).doFinally(signal -> entry.bulkhead.release());
+		});
+	}
+
+	/**
+	 * Get a service's bulkhead, for an extra attempt at a call that has already
+	 * been through it, such as a hedge.
+	 * @param service the name of the service
+	 * @return its bulkhead, or null if bulkheads are disabled
+	 */
+	Bulkhead bulkheadOf(final String service) {
+		return properties.isEnabled() ? bulkheadFor(service).bulkhead : null;
+	}
+
+	/**
+	 * Get the bulkhead for a service, creating it if necessary.
+	 * @param service the name of the service
+	 * @return its bulkhead, with its metrics
+	 */
+	private ServiceBulkhead bulkheadFor(final String service) {
+		return bulkheads.computeIfAbsent(service, this::create);
+	}
+
+	/**
+	 * Create the bulkhead for a service.
+	 * @param service the name of the service
+	 * @return a new bulkhead for it, with its metrics
+	 */
+	private ServiceBulkhead create(final String service) {
+		final ServiceBulkhead entry = new ServiceBulkhead(service,
+				new Bulkhead(properties.maxConcurrentCallsFor(service),
+						properties.maxQueuedFor(service)));
+		final MeterRegistry current = registry;
+		if (current != null) {
+			entry.bindTo(current);
+		}
+		return entry;
+	}
+
+	@Override
+	public void bindTo(final MeterRegistry meterRegistry) {
+		registry = meterRegistry;
+		bulkheads.values().forEach(entry -> entry.bindTo(meterRegistry));
+	}
+
+	/**
+	 * The bulkhead for one service, with its metrics, which are registered when
+	 * it is bound to a registry rather than on each call.
+	 */
+	private static final class ServiceBulkhead {
+		/**
+		 * The name of the service.
+		 */
+		protected final String service;
+		/**
+		 * The bulkhead.
+		 */
+		protected final Bulkhead bulkhead;
+		/**
+		 * The counter of rejections, or null if not yet bound.
+		 */
+		private volatile Counter rejections;
+
+		/**
+		 * Constructor.
+		 * @param service the name of the service
+		 * @param bulkhead its bulkhead
+		 */
+		protected ServiceBulkhead(final String service, final Bulkhead bulkhead) {
+			this.service = service;
+			this.bulkhead = bulkhead;
+		}
+
+		/**
+		 * Count a rejection in the metrics.
+		 * @return the exception to fail the call with
+		 */
+		protected BulkheadFullException rejected() {
+			final Counter current = rejections;
+			if (current != null) {
+				current.increment();
+			}
+			return new BulkheadFullException(service);
+		}
+
+		/**
+		 * Report the bulkhead's occupancy and rejections to a registry.
+		 * @param meterRegistry the registry
+		 */
+		protected void bindTo(final MeterRegistry meterRegistry) {
+			Gauge.builder("orch.bulkhead.active", bulkhead, Bulkhead::getActive)
+					.description("Calls currently in flight").tag("service", service)
+					.register(meterRegistry);
+			Gauge.builder("orch.bulkhead.queued", bulkhead, Bulkhead::getQueued)
+					.description("Callers waiting for a slot").tag("service", service)
+					.register(meterRegistry);
+			Gauge.builder("orch.bulkhead.max", bulkhead, Bulkhead::getMaxConcurrentCalls)
+					.description("Maximum calls in flight").tag("service", service)
+					.register(meterRegistry);
+			rejections = Counter.builder("orch.bulkhead.rejected")
+					.description("Calls turned away because the bulkhead was full")
+					.tag("service", service).register(meterRegistry);
+		}
+	}
+
+	/**
+	 * A response that gives its bulkhead slot back when it is closed.
+	 */
+	static final class ReleasingResponse implements ClientHttpResponse {
+		/**
+		 * The response.
+		 */
+		private final ClientHttpResponse delegate;
+		/**
+		 * Gives the slot back.
+		 */
+		private final Runnable release;
+		/**
+		 * Whether the slot has been given back.
+		 */
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		/**
+		 * Constructor.
+		 * @param delegate the response
+		 * @param release gives the slot back
+		 */
+		protected ReleasingResponse(final ClientHttpResponse delegate,
+				final Runnable release) {
+			this.delegate = delegate;
+			this.release = release;
+		}
+
+		@Override
+		public HttpStatus getStatusCode() throws IOException {
+			return delegate.getStatusCode();
+		}
+
+		@Override
+		public int getRawStatusCode() throws IOException {
+			return delegate.getRawStatusCode();
+		}
+
+		@Override
+		public String getStatusText() throws IOException {
+			return delegate.getStatusText();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return delegate.getHeaders();
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			return delegate.getBody();
+		}
+
+		@Override
+		public void close() {
+			try {
+				delegate.close();
+			} finally {
+				if (released.compareAndSet(false, true)) {
+					release.run();
+				}
+			}
+		}
+	}
+}
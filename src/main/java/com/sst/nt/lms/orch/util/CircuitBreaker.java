@@ -0,0 +1,228 @@
+package com.sst.nt.lms.orch.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import com.sst.nt.lms.orch.config.CircuitBreakerProperties;
+
+/**
+ * A circuit breaker for one downstream service. While closed it lets every call
+ * through and keeps the outcomes of the most recent ones; once enough of those
+ * failed, or were slow, it opens and rejects calls outright. After a while it
+ * half-opens and lets a few probe calls through: if they do well it closes
+ * again, and otherwise it goes back to open.
+ *
+ * <p>Callers must {@link #tryAcquire() ask permission} before each call and
+ * {@link #record(long, boolean, long) record} the outcome of every call they
+ * were permitted to make. Each state the breaker enters is a new generation,
+ * and a call counts only toward the generation that permitted it: a slow call
+ * let through before the breaker opened, say, must not decide whether it closes
+ * again when it finally completes during the half-open probes.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class CircuitBreaker {
+	/**
+	 * The states a breaker can be in.
+	 */
+	public enum State {
+		/**
+		 * Calls go through, and their outcomes are tracked.
+		 */
+		CLOSED,
+		/**
+		 * Calls are rejected without being made.
+		 */
+		OPEN,
+		/**
+		 * A limited number of probe calls go through.
+		 */
+		HALF_OPEN
+	}
+
+	/**
+	 * Flag in a window slot for a call that failed.
+	 */
+	private static final byte FAILED = 1;
+	/**
+	 * Flag in a window slot for a call that was slow.
+	 */
+	private static final byte SLOW = 2;
+	/**
+	 * The breaker's settings.
+	 */
+	private final CircuitBreakerProperties properties;
+	/**
+	 * Called with the old and new state on each transition.
+	 */
+	private final BiConsumer<State, State> listener;
+	/**
+	 * The outcomes of the most recent calls, as a ring buffer of flags.
+	 */
+	private final byte[] window;
+	/**
+	 * How many slots of the window are filled.
+	 */
+	private int calls;
+	/**
+	 * The slot the next outcome goes in.
+	 */
+	private int next;
+	/**
+	 * How many calls in the window failed.
+	 */
+	private int failures;
+	/**
+	 * How many calls in the window were slow.
+	 */
+	private int slowCalls;
+	/**
+	 * The current state.
+	 */
+	private volatile State state = State.CLOSED;
+	/**
+	 * When the breaker last opened, per {@link System#nanoTime()}.
+	 */
+	private long openedAt;
+	/**
+	 * How many more probe calls a half-open breaker may let through.
+	 */
+	private int probes;
+	/**
+	 * The generation of the current state, which each transition advances.
+	 */
+	private long generation;
+
+	/**
+	 * Constructor.
+	 * @param properties the breaker's settings
+	 * @param listener called with the old and new state on each transition
+	 */
+	public CircuitBreaker(final CircuitBreakerProperties properties,
+			final BiConsumer<State, State> listener) {
+		this.properties = properties;
+		this.listener = listener;
+		window = new byte[Math.max(properties.getWindowSize(),
+				properties.getHalfOpenCalls())];
+	}
+
+	/**
+	 * Get the current state.
+	 * @return the current state
+	 */
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * Ask whether a call may be made now. An open breaker whose wait is over
+	 * half-opens here.
+	 * @return the generation permitting the call, to be passed to
+	 *         {@link #record(long, boolean, long)}; or -1 if it should be rejected
+	 */
+	public synchronized long tryAcquire() {
+		if (state == State.OPEN) {
+			if (System.nanoTime() - openedAt < properties.getOpenDuration().toNanos()) {
+				return -1;
+			}
+			transition(State.HALF_OPEN);
+		}
+		if (state == State.HALF_OPEN) {
+			if (probes <= 0) {
+				return -1;
+			}
+			probes--;
+		}
+		return generation;
+	}
+
+	/**
+	 * Record the outcome of a call that was permitted. Calls that complete after
+	 * the breaker has changed state since permitting them no longer count.
+	 * @param permit the generation that permitted the call
+	 * @param failed whether the call failed
+	 * @param nanos how long the call took, in nanoseconds
+	 */
+	public synchronized void record(final long permit, final boolean failed,
+			final long nanos) {
+		if (permit != generation || state == State.OPEN) {
+			return;
+		}
+		byte outcome = 0;
+		if (failed) {
+			outcome |= FAILED;
+		}
+		if (nanos >= properties.getSlowCallDuration().toNanos()) {
+			outcome |= SLOW;
+		}
+		add(outcome);
+		if (state == State.HALF_OPEN) {
+			if (calls >= properties.getHalfOpenCalls()) {
+				transition(isTripped() ? State.OPEN : State.CLOSED);
+			}
+		} else if (calls >= properties.getMinimumCalls() && isTripped()) {
+			transition(State.OPEN);
+		}
+	}
+
+	/**
+	 * How long until an open breaker will let a probe through.
+	 * @return the wait, in milliseconds, or 0 if the breaker is not open
+	 */
+	public synchronized long retryAfterMillis() {
+		if (state != State.OPEN) {
+			return 0;
+		}
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(openedAt
+				+ properties.getOpenDuration().toNanos() - System.nanoTime()));
+	}
+
+	/**
+	 * Add an outcome to the window, evicting the oldest if the window is full.
+	 * @param outcome the outcome's flags
+	 */
+	private void add(final byte outcome) {
+		final int size = state == State.HALF_OPEN ? properties.getHalfOpenCalls()
+				: properties.getWindowSize();
+		if (calls == size) {
+			final byte evicted = window[(next - size + window.length) % window.length];
+			failures -= evicted & FAILED;
+			slowCalls -= (evicted & SLOW) >> 1;
+		} else {
+			calls++;
+		}
+		window[next] = outcome;
+		next = (next + 1) % window.length;
+		failures += outcome & FAILED;
+		slowCalls += (outcome & SLOW) >> 1;
+	}
+
+	/**
+	 * Whether the calls in the window call for the breaker to open.
+	 * @return true if the failure or slow-call rate is at or above its threshold
+	 */
+	private boolean isTripped() {
+		return failures * 100 >= properties.getFailureRateThreshold() * calls
+				|| slowCalls * 100 >= properties.getSlowCallRateThreshold() * calls;
+	}
+
+	/**
+	 * Move to a new state, starting a fresh window.
+	 * @param target the new state
+	 */
+	private void transition(final State target) {
+		final State previous = state;
+		state = target;
+		generation++;
+		calls = 0;
+		next = 0;
+		failures = 0;
+		slowCalls = 0;
+		if (target == State.OPEN) {
+			openedAt = System.nanoTime();
+		} else if (target == State.HALF_OPEN) {
+			probes = properties.getHalfOpenCalls();
+		}
+		listener.accept(previous, target);
+	}
+}
@@ -0,0 +1,315 @@
+package com.sst.nt.lms.orch.util;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+import com.sst.nt.lms.orch.config.CircuitBreakerProperties;
+import com.sst.nt.lms.orch.util.CircuitBreaker.State;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import reactor.core.publisher.Mono;
+
+/**
+ * Puts every downstream call, from either the blocking or the non-blocking REST
+ * delegate, behind the circuit breaker of the logical service it is addressed to
+ * (the host part of a URL such as {@code http://admin/books}); like
+ * {@link DownstreamServiceInterceptor}, it must run before the load balancer
+ * replaces that name. I/O errors, 5xx responses and calls that run out their
+ * route's timeout count as failures; other responses, including 4xx, are the
+ * service working as intended. A call given up on for our
+ * client's sake, because the client's own deadline passed first or the client
+ * went away (see {@link Deadline#isAbandoned()}), is not a failure; otherwise
+ * a client could open the breaker for everyone by sending a short
+ * {@code X-Request-Timeout}. A call the breaker rejects fails at once with a
+ * {@link CircuitOpenException}.
+ *
+ * <p>Each breaker's state is reported as the gauge {@code orch.circuit.state}
+ * (1 for the current state, 0 for the others), its transitions as the counter
+ * {@code orch.circuit.transitions}, and the calls it sees as the counter
+ * {@code orch.circuit.calls}, all tagged with the service name.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class CircuitBreakerInterceptor
+		implements ClientHttpRequestInterceptor, ExchangeFilterFunction, MeterBinder {
+	/**
+	 * Breaker settings.
+	 */
+	private final CircuitBreakerProperties properties;
+	/**
+	 * The outcomes calls are counted by in {@code orch.circuit.calls}, in the
+	 * order of the indexes below.
+	 */
+	private static final String[] OUTCOMES = { "rejected", "failure", "slow", "success" };
+	/**
+	 * The index of calls the breaker rejected.
+	 */
+	private static final int REJECTED = 0;
+	/**
+	 * The index of calls that failed.
+	 */
+	private static final int FAILURE = 1;
+	/**
+	 * The index of calls that succeeded, but slowly.
+	 */
+	private static final int SLOW = 2;
+	/**
+	 * The index of calls that succeeded.
+	 */
+	private static final int SUCCESS = 3;
+	/**
+	 * The breakers created so far, with their metrics, keyed by service name.
+	 */
+	private final Map<String, ServiceBreaker> breakers = new ConcurrentHashMap<>();
+	/**
+	 * The registry breaker metrics are reported to, once we have been bound to
+	 * one.
+	 */
+	private volatile MeterRegistry registry;
+
+	/**
+	 * Constructor.
+	 * @param properties breaker settings
+	 */
+	public CircuitBreakerInterceptor(final CircuitBreakerProperties properties) {
+		this.properties = properties;
+	}
+
+	/**
+	 * Get the breakers created so far.
+	 * @return the breakers, keyed by service name
+	 */
+	public Map<String, CircuitBreaker> getBreakers() {
+		final Map<String, CircuitBreaker> retval = new HashMap<>();
+		breakers.forEach((service, entry) -> retval.put(service, entry.breaker));
+		return Collections.unmodifiableMap(retval);
+	}
+
+	/**
+	 * Whether a service's breaker is letting calls through freely, rather than
+	 * turning them away or letting only trial calls through.
+	 * @param service the name of the service
+	 * @return true if breakers are disabled, the service has none yet, or its
+	 *         breaker is closed
+	 */
+	boolean isClosed(final String service) {
+		if (!properties.isEnabled()) {
+			return true;
+		}
+		final ServiceBreaker entry = breakers.get(service);
+		return entry == null || entry.breaker.getState() == CircuitBreaker.State.CLOSED;
+	}
+
+	@Override
+	public ClientHttpResponse intercept(final HttpRequest request, final byte[] body,
+			final ClientHttpRequestExecution execution) throws IOException {
+		if (!properties.isEnabled()) {
+			return execution.execute(request, body);
+		}
+		final ServiceBreaker breaker = breakers.computeIfAbsent(request.getURI().getHost(),
+				this::create);
+		final long permit = breaker.acquire();
+		final long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			final ClientHttpResponse response = execution.execute(request, body);
+			failed = response.getRawStatusCode() >= 500;
+			return response;
+		} finally {
+			breaker.record(permit, failed && !Deadline.isAbandoned(),
+					System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public Mono<ClientResponse> filter(final ClientRequest request,
+			final ExchangeFunction next) {
+		if (!properties.isEnabled()) {
+			return next.exchange(request);
+		}
+		final String service = request.url().getHost();
+		final Deadline deadline = DeadlineInterceptor.deadlineOf(request);
+		return Mono.defer(() -> {
+			final ServiceBreaker breaker = breakers.computeIfAbsent(service, this::create);
+			final long permit = breaker.acquire();
+			final long start = System.nanoTime();
+			// A call cancelled because one of our own timeouts ran out has
+			// failed; one abandoned for any other reason, such as our client's
+			// deadline or its going away, has not, nor has one that completed
+			// without a response, which only happens if it was cancelled.
+			return next.exchange(request)
+					.doOnSuccess(response -> breaker.record(permit,
+							response != null && response.rawStatusCode() >= 500,
+							System.nanoTime() - start))
+					.doOnError(except -> breaker.record(permit, true,
+							System.nanoTime() - start))
+					.doOnCancel(() -> breaker.record(permit,
+							deadline != null && deadline.isTimedOut(),
+							System.nanoTime() - start));
+		});
+	}
+
+	/**
+	 * Create the breaker for a service.
+	 * @param service the name of the service
+	 * @return a new breaker for it, with its metrics
+	 */
+	private ServiceBreaker create(final String service) {
+		final ServiceBreaker breaker = new ServiceBreaker(service);
+		final MeterRegistry current = registry;
+		if (current != null) {
+			breaker.bindTo(current);
+		}
+		return breaker;
+	}
+
+	@Override
+	public void bindTo(final MeterRegistry meterRegistry) {
+		registry = meterRegistry;
+		breakers.values().forEach(breaker -> breaker.bindTo(meterRegistry));
+	}
+
+	/**
+	 * The breaker for one service, with its metrics, which are registered when
+	 * it is bound to a registry rather than on each call.
+	 */
+	private final class ServiceBreaker {
+		/**
+		 * The name of the service.
+		 */
+		protected final String service;
+		/**
+		 * The breaker.
+		 */
+		protected final CircuitBreaker breaker;
+		/**
+		 * The registry the metrics are in, or null if not yet bound.
+		 */
+		private volatile MeterRegistry meterRegistry;
+		/**
+		 * The call counters, indexed as {@link #OUTCOMES}, or null if not yet
+		 * bound.
+		 */
+		private volatile Counter[] calls;
+		/**
+		 * The transition counters, indexed by the old and then the new state, each
+		 * registered when first needed; or null if not yet bound.
+		 */
+		private volatile AtomicReferenceArray<Counter> transitions;
+
+		/**
+		 * Constructor.
+		 * @param service the name of the service
+		 */
+		protected ServiceBreaker(final String service) {
+			this.service = service;
+			breaker = new CircuitBreaker(properties, this::transitioned);
+		}
+
+		/**
+		 * Get permission from the breaker to call the service.
+		 * @return the generation of the breaker that permitted the call
+		 * @throws CircuitOpenException if the breaker rejects the call
+		 */
+		protected long acquire() {
+			final long permit = breaker.tryAcquire();
+			if (permit < 0) {
+				count(REJECTED);
+				throw new CircuitOpenException(service, breaker.retryAfterMillis());
+			}
+			return permit;
+		}
+
+		/**
+		 * Record the outcome of a call.
+		 * @param permit the generation of the breaker that permitted the call
+		 * @param failed whether the call failed
+		 * @param nanos how long the call took, in nanoseconds
+		 */
+		protected void record(final long permit, final boolean failed, final long nanos) {
+			breaker.record(permit, failed, nanos);
+			if (failed) {
+				count(FAILURE);
+			} else if (nanos >= properties.getSlowCallDuration().toNanos()) {
+				count(SLOW);
+			} else {
+				count(SUCCESS);
+			}
+		}
+
+		/**
+		 * Count a call in the metrics, if we have been bound to a registry.
+		 * @param outcome the index of what became of the call
+		 */
+		private void count(final int outcome) {
+			final Counter[] current = calls;
+			if (current != null) {
+				current[outcome].increment();
+			}
+		}
+
+		/**
+		 * Count a transition in the metrics, if we have been bound to a registry.
+		 * @param from the old state
+		 * @param to the new state
+		 */
+		private void transitioned(final State from, final State to) {
+			final MeterRegistry current = meterRegistry;
+			final AtomicReferenceArray<Counter> counters = transitions;
+			if (current == null || counters == null) {
+				return;
+			}
+			final int index = from.ordinal() * State.values().length + to.ordinal();
+			Counter counter = counters.get(index);
+			if (counter == null) {
+				counter = Counter.builder("orch.circuit.transitions")
+						.description("Circuit breaker state changes")
+						.tag("service", service).tag("from", from.name())
+						.tag("to", to.name()).register(current);
+				counters.set(index, counter);
+			}
+			counter.increment();
+		}
+
+		/**
+		 * Report the breaker's state and calls to a registry.
+		 * @param target the registry
+		 */
+		protected void bindTo(final MeterRegistry target) {
+			for (final State state : State.values()) {
+				Gauge.builder("orch.circuit.state", breaker,
+						b -> b.getState() == state ? 1 : 0)
+						.description("Whether the circuit breaker is in the given state")
+						.tag("service", service).tag("state", state.name())
+						.register(target);
+			}
+			final Counter[] counters = new Counter[OUTCOMES.length];
+			for (int i = 0; i < OUTCOMES.length; i++) {
+				counters[i] = Counter.builder("orch.circuit.calls")
+						.description("Calls seen by circuit breakers, by outcome")
+						.tag("service", service).tag("outcome", OUTCOMES[i])
+						.register(target);
+			}
+			transitions = new AtomicReferenceArray<>(
+					State.values().length * State.values().length);
+			meterRegistry = target;
+			calls = counters;
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package com.sst.nt.lms.orch.util;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Thrown in place of making a call to a downstream service whose circuit breaker
+ * is open.
+ *
+ * @author Jonathan Lovelace
+ */
+public class CircuitOpenException extends RestClientException {
+	/**
+	 * Serialization version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * The service that was not called.
+	 */
+	private final String service;
+	/**
+	 * How long until the breaker lets a probe call through, in milliseconds.
+	 */
+	private final long retryAfterMillis;
+
+	/**
+	 * Constructor.
+	 * @param service the service that was not called
+	 * @param retryAfterMillis how long until the breaker lets a probe call
+	 *        through, in milliseconds
+	 */
+	public CircuitOpenException(final String service, final long retryAfterMillis) {
+		super("Circuit breaker for " + service + " is open");
+		this.service = service;
+		this.retryAfterMillis = retryAfterMillis;
+	}
+
+	public String getService() {
+		return service;
+	}
+
+	public long getRetryAfterMillis() {
+		return retryAfterMillis;
+	}
+}
@@ -0,0 +1,89 @@
+package com.sst.nt.lms.orch.util;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The connection to the client whose request the current thread is handling,
+ * as far as we can tell whether it is still open. The servlet container only
+ * finds out that a client has gone away when writing to it fails, which
+ * {@link ClientDisconnectFilter} watches for; from then on, a downstream
+ * response that is closed on the request's behalf is aborted by
+ * {@link PooledClientHttpRequestFactory} rather than read to the end, so that
+ * its connection is not kept busy delivering what nobody will read. That
+ * covers responses streamed through to the client mid-body, but not a call
+ * still waiting for its response, which nothing has yet been written for.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class ClientConnection {
+	/**
+	 * The connection of the request the current thread is handling, if any.
+	 */
+	private static final ThreadLocal<ClientConnection> CURRENT = new ThreadLocal<>();
+	/**
+	 * What to do when the connection is first found to be closed.
+	 */
+	private final Runnable onClose;
+	/**
+	 * Whether writing to the client has failed.
+	 */
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	/**
+	 * Constructor.
+	 * @param onClose what to do when the connection is first found to be closed
+	 */
+	public ClientConnection(final Runnable onClose) {
+		this.onClose = onClose;
+	}
+
+	/**
+	 * Get the connection of the request the current thread is handling.
+	 * @return the connection, or null if there is none
+	 */
+	public static ClientConnection current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Whether the client of the request the current thread is handling is known
+	 * to have gone away.
+	 * @return true if writing to it has failed
+	 */
+	public static boolean isClientGone() {
+		final ClientConnection current = CURRENT.get();
+		return current != null && current.closed.get();
+	}
+
+	/**
+	 * Set the connection of the request the current thread is handling.
+	 * @param connection the connection, or null for none
+	 * @return the connection it replaced, for the caller to put back when done
+	 */
+	public static ClientConnection set(final ClientConnection connection) {
+		final ClientConnection previous = CURRENT.get();
+		if (connection == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(connection);
+		}
+		return previous;
+	}
+
+	/**
+	 * Note that writing to the client has failed.
+	 */
+	public void close() {
+		if (closed.compareAndSet(false, true)) {
+			onClose.run();
+		}
+	}
+
+	/**
+	 * Whether writing to the client has failed.
+	 * @return true if it has
+	 */
+	public boolean isClosed() {
+		return closed.get();
+	}
+}
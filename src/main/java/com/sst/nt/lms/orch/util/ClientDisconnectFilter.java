@@ -0,0 +1,213 @@
+package com.sst.nt.lms.orch.util;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Notices when a client goes away before we have finished answering it, by
+ * watching for writes to it that fail, and records that on the request's
+ * {@link ClientConnection}. In blocking mode that stops a response being
+ * streamed through from a downstream service, and the downstream exchange is
+ * aborted rather than drained; in reactive mode, a streamed response's
+ * subscription to the downstream service is cancelled.
+ *
+ * <p>The servlet container tells us nothing while a request waits, not even
+ * to an asynchronous request's listeners, so only an exchange whose response
+ * is being written to the client can be cut short this way. A call still
+ * waiting for the downstream service's response headers runs on until it is
+ * answered or its deadline passes; it is the deadline, not this filter, that
+ * bounds how long an abandoned request can tie up a downstream connection.
+ *
+ * <p>Each disconnect is counted in {@code orch.client.disconnects}, tagged with
+ * the route the request was mapped to.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class ClientDisconnectFilter extends OncePerRequestFilter {
+	/**
+	 * The request attribute holding its {@link ClientConnection}, so the async
+	 * dispatch of a request sees the same one as its first dispatch.
+	 */
+	private static final String CONNECTION = ClientConnection.class.getName();
+	/**
+	 * The registry to count disconnects in.
+	 */
+	private final MeterRegistry registry;
+
+	/**
+	 * Constructor.
+	 * @param registry the registry to count disconnects in
+	 */
+	public ClientDisconnectFilter(final MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	protected boolean shouldNotFilterAsyncDispatch() {
+		return false;
+	}
+
+	@Override
+	protected void doFilterInternal(final HttpServletRequest request,
+			final HttpServletResponse response, final FilterChain filterChain)
+			throws ServletException, IOException {
+		ClientConnection connection = (ClientConnection) request.getAttribute(CONNECTION);
+		final HttpServletResponse watched;
+		if (connection == null) {
+			connection = new ClientConnection(() -> counter(request).increment());
+			request.setAttribute(CONNECTION, connection);
+			watched = new WatchedResponse(response, connection);
+		} else {
+			// The response was wrapped when the request was first dispatched.
+			watched = response;
+		}
+		final ClientConnection previous = ClientConnection.set(connection);
+		try {
+			filterChain.doFilter(request, watched);
+		} finally {
+			ClientConnection.set(previous);
+		}
+	}
+
+	/**
+	 * Get the disconnect counter for a request's route.
+	 * @param request the request
+	 * @return the counter
+	 */
+	private Counter counter(final HttpServletRequest request) {
+		final Object route =
+				request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		return Counter.builder("orch.client.disconnects")
+				.description("Requests whose client went away before being answered")
+				.tag("route", route == null ? "UNKNOWN" : route.toString())
+				.register(registry);
+	}
+
+	/**
+	 * A response whose body stream notes on the connection when writing fails.
+	 */
+	private static final class WatchedResponse extends HttpServletResponseWrapper {
+		/**
+		 * The connection to note failures on.
+		 */
+		private final ClientConnection connection;
+		/**
+		 * The watched body stream, once it has been asked for.
+		 */
+		private ServletOutputStream stream;
+
+		/**
+		 * Constructor.
+		 * @param response the response
+		 * @param connection the connection to note failures on
+		 */
+		protected WatchedResponse(final HttpServletResponse response,
+				final ClientConnection connection) {
+			super(response);
+			this.connection = connection;
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			if (stream == null) {
+				stream = new WatchedStream(super.getOutputStream(), connection);
+			}
+			return stream;
+		}
+	}
+
+	/**
+	 * A body stream that notes on the connection when writing fails.
+	 */
+	private static final class WatchedStream extends ServletOutputStream {
+		/**
+		 * The stream.
+		 */
+		private final ServletOutputStream delegate;
+		/**
+		 * The connection to note failures on.
+		 */
+		private final ClientConnection connection;
+
+		/**
+		 * Constructor.
+		 * @param delegate the stream
+		 * @param connection the connection to note failures on
+		 */
+		protected WatchedStream(final ServletOutputStream delegate,
+				final ClientConnection connection) {
+			this.delegate = delegate;
+			this.connection = connection;
+		}
+
+		/**
+		 * Note a failure to write.
+		 * @param except the failure
+		 * @return it, to be rethrown
+		 */
+		private IOException failed(final IOException except) {
+			connection.close();
+			return except;
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			try {
+				delegate.write(b);
+			} catch (final IOException except) {
+				throw failed(except);
+			}
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len)
+				throws IOException {
+			try {
+				delegate.write(b, off, len);
+			} catch (final IOException except) {
+				throw failed(except);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			try {
+				delegate.flush();
+			} catch (final IOException except) {
+				throw failed(except);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				delegate.close();
+			} catch (final IOException except) {
+				throw failed(except);
+			}
+		}
+
+		@Override
+		public boolean isReady() {
+			return delegate.isReady();
+		}
+
+		@Override
+		public void setWriteListener(final WriteListener writeListener) {
+			delegate.setWriteListener(writeListener);
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package com.sst.nt.lms.orch.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sst.nt.lms.orch.config.PagingProperties;
+import com.sst.nt.lms.orch.model.Page;
+
+/**
+ * Pages and streams collections that the downstream services only ever return
+ * whole, as one JSON array. Rather than reading the array into a list, we parse
+ * it incrementally, so the memory a request takes is bounded by the page it
+ * asks for (or, for NDJSON, by the largest single item) and not by the size of
+ * the collection. For the same reason, streamed responses are exempt from the
+ * entity-tag filter, which would buffer them.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class CollectionStreamer {
+	/**
+	 * Newline-delimited JSON.
+	 */
+	public static final String NDJSON_VALUE = "application/x-ndjson";
+	/**
+	 * Newline-delimited JSON.
+	 */
+	public static final MediaType NDJSON = MediaType.valueOf(NDJSON_VALUE);
+	/**
+	 * The JSON mapper.
+	 */
+	private final ObjectMapper mapper;
+	/**
+	 * Paging settings.
+	 */
+	private final PagingProperties properties;
+
+	/**
+	 * Constructor.
+	 * @param mapper the JSON mapper
+	 * @param properties the paging settings
+	 */
+	public CollectionStreamer(final ObjectMapper mapper,
+			final PagingProperties properties) {
+		this.mapper = mapper;
+		this.properties = properties;
+	}
+
+	/**
+	 * Get one page of a downstream collection.
+	 *
+	 * @param delegate the REST delegate
+	 * @param url the URL of the collection
+	 * @param type the type of the items in the collection
+	 * @param offset the position of the first item to return
+	 * @param limit the most items to return
+	 * @param <T> the type of the items in the collection
+	 * @return the page, a "bad request" response if the paging parameters are out
+	 *         of range, or the downstream status if it did not succeed
+	 */
+	public <T> ResponseEntity<Page<T>> page(final RestTemplate delegate,
+			final String url, final Class<T> type, final int offset,
+			final int limit) {
+		if (!properties.isValid(offset, limit)) {
+			return ResponseEntity.badRequest().build();
+		}
+		return delegate.execute(url, HttpMethod.GET, request -> request.getHeaders()
+				.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON)),
+				downstream -> {
+					if (!downstream.getStatusCode().is2xxSuccessful()) {
+						return ResponseEntity.status(downstream.getRawStatusCode())
+								.<Page<T>>build();
+					}
+					try (JsonParser parser = mapper.getFactory()
+							.createParser(downstream.getBody())) {
+						startArray(parser, url);
+						final List<T> window = new ArrayList<>();
+						for (int index = 0; window.size() <= limit
+								&& nextItem(parser, url); index++) {
+							if (index < offset) {
+								parser.skipChildren();
+							} else {
+								window.add(mapper.readValue(parser, type));
+							}
+						}
+						return ResponseEntity.ok(Page.of(window, offset, limit));
+					}
+				});
+	}
+
+	/**
+	 * Stream a downstream collection to the client as newline-delimited JSON, one
+	 * item per line, copying each item token by token as it is parsed. If the
+	 * downstream request does not succeed, its response is relayed instead.
+	 *
+	 * @param delegate the REST delegate
+	 * @param url the URL of the collection
+	 * @param request the client's request
+	 * @param response the response to the client
+	 */
+	public void ndjson(final RestTemplate delegate, final String url,
+			final HttpServletRequest request, final HttpServletResponse response) {
+		delegate.execute(url, HttpMethod.GET, downstreamRequest -> downstreamRequest
+				.getHeaders().setAccept(Collections.singletonList(MediaType.APPLICATION_JSON)),
+				downstream -> {
+					ShallowEtagHeaderFilter.disableContentCaching(request);
+					response.setStatus(downstream.getRawStatusCode());
+					if (!downstream.getStatusCode().is2xxSuccessful()) {
+						relayError(downstream, response);
+						return null;
+					}
+					response.setContentType(contentType(request));
+					try (JsonParser parser = mapper.getFactory()
+							.createParser(downstream.getBody());
+							JsonGenerator generator = generator(response)) {
+						startArray(parser, url);
+						while (nextItem(parser, url)) {
+							generator.copyCurrentStructure(parser);
+							generator.writeRaw('\n');
+						}
+					}
+					return null;
+				});
+	}
+
+	/**
+	 * Helper method to create a generator that writes to the client.
+	 * @param response the response to the client
+	 * @return a generator that writes one root-level value after another with no
+	 *         separator, leaving line breaks to the caller, and does not close the
+	 *         response stream when it is closed
+	 * @throws IOException on I/O error
+	 */
+	private JsonGenerator generator(final HttpServletResponse response)
+			throws IOException {
+		final JsonGenerator generator = mapper.getFactory()
+				.createGenerator(response.getOutputStream());
+		generator.setRootValueSeparator(null);
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		return generator;
+	}
+
+	/**
+	 * Helper method to pick which of the two names for newline-delimited JSON to
+	 * label a response with: the one the client asked for.
+	 * @param request the client's request
+	 * @return the content type to use
+	 */
+	private static String contentType(final HttpServletRequest request) {
+		for (final MediaType accepted : MediaType
+				.parseMediaTypes(request.getHeader(HttpHeaders.ACCEPT))) {
+			if (MediaType.APPLICATION_STREAM_JSON.isCompatibleWith(accepted)
+					&& !accepted.isWildcardSubtype()) {
+				return MediaType.APPLICATION_STREAM_JSON_VALUE;
+			}
+		}
+		return NDJSON_VALUE;
+	}
+
+	/**
+	 * Helper method to relay an unsuccessful downstream response's headers and
+	 * body, which the client may want to see, verbatim.
+	 * @param downstream the downstream response
+	 * @param response the response to the client
+	 * @throws IOException on I/O error
+	 */
+	private static void relayError(final ClientHttpResponse downstream,
+			final HttpServletResponse response) throws IOException {
+		downstream.getHeaders().forEach((name, values) -> {
+			if (Passthrough.isRelayed(name)) {
+				values.forEach(value -> response.addHeader(name, value));
+			}
+		});
+		StreamUtils.copy(downstream.getBody(), response.getOutputStream());
+	}
+
+	/**
+	 * Helper method to check that a downstream response is a JSON array.
+	 * @param parser the parser, positioned before the start of the response
+	 * @param url the URL the response came from, for error messages
+	 * @throws IOException on I/O error or malformed JSON
+	 */
+	private static void startArray(final JsonParser parser, final String url)
+			throws IOException {
+		if (parser.nextToken() != JsonToken.START_ARRAY) {
+			throw new RestClientException("Expected a JSON array from " + url);
+		}
+	}
+
+	/**
+	 * Helper method to advance to the next item in a JSON array.
+	 * @param parser the parser, positioned at the start of the array or the end of
+	 *               the previous item
+	 * @param url the URL the response came from, for error messages
+	 * @return true if it is now positioned at the start of an item, false if at the
+	 *         end of the array
+	 * @throws IOException on I/O error or malformed JSON
+	 */
+	private static boolean nextItem(final JsonParser parser, final String url)
+			throws IOException {
+		final JsonToken token = parser.nextToken();
+		if (token == null) {
+			throw new RestClientException("Truncated JSON array from " + url);
+		}
+		return token != JsonToken.END_ARRAY;
+	}
+}
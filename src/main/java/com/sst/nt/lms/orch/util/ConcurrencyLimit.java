@@ -0,0 +1,156 @@
+package com.sst.nt.lms.orch.util;
+
+import com.sst.nt.lms.orch.config.ConcurrencyLimitProperties;
+
+/**
+ * An adaptive cap on the calls in flight to one downstream service, after the
+ * "gradient" limiters of TCP Vegas and Netflix's concurrency-limits. Every few
+ * calls, the average response time of those calls is compared with a long-run
+ * average: while it stays within the tolerance, the limit grows by about its
+ * square root, to probe for more capacity; once it rises beyond, the limit
+ * shrinks in proportion, since the extra time is spent queueing in the service.
+ * A call that fails with an I/O error or an overload status shrinks the limit at
+ * once. A caller that finds the limit reached is turned away, never queued.
+ *
+ * <p>The limit is left alone while fewer than half of it are in use, since
+ * response times then say nothing about whether more calls would fit.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class ConcurrencyLimit {
+	/**
+	 * How many adjustment windows the long-run average response time spans.
+	 */
+	private static final int LONG_WINDOWS = 60;
+	/**
+	 * The most the limit may shrink by in one adjustment, as a fraction of it.
+	 */
+	private static final double MIN_GRADIENT = 0.5;
+	/**
+	 * Limit settings.
+	 */
+	private final ConcurrencyLimitProperties properties;
+	/**
+	 * The current limit; fractional, so that small adjustments accumulate.
+	 */
+	private double limit;
+	/**
+	 * How many calls are in flight.
+	 */
+	private int inFlight;
+	/**
+	 * The most calls in flight at once during the current window.
+	 */
+	private int windowPeak;
+	/**
+	 * The total response time of the calls in the current window, in nanoseconds.
+	 */
+	private long windowTotal;
+	/**
+	 * How many calls have completed in the current window.
+	 */
+	private int windowCount;
+	/**
+	 * The long-run average response time, in nanoseconds, or 0 if there is none
+	 * yet.
+	 */
+	private double longRtt;
+
+	/**
+	 * Constructor.
+	 * @param properties limit settings
+	 */
+	public ConcurrencyLimit(final ConcurrencyLimitProperties properties) {
+		this.properties = properties;
+		limit = properties.getInitialLimit();
+	}
+
+	/**
+	 * Take a slot, if the limit allows another call.
+	 * @return true if a slot was taken, false if the limit has been reached
+	 */
+	public synchronized boolean tryAcquire() {
+		if (inFlight >= (int) limit) {
+			return false;
+		}
+		inFlight++;
+		windowPeak = Math.max(windowPeak, inFlight);
+		return true;
+	}
+
+	/**
+	 * Give back a slot after a call the service answered normally, and learn
+	 * from how long it took.
+	 * @param nanos the call's response time, in nanoseconds
+	 */
+	public synchronized void onSuccess(final long nanos) {
+		inFlight--;
+		windowTotal += nanos;
+		windowCount++;
+		if (windowCount >= properties.getWindowSize()) {
+			adjust((double) windowTotal / windowCount);
+			windowTotal = 0;
+			windowCount = 0;
+			windowPeak = inFlight;
+		}
+	}
+
+	/**
+	 * Give back a slot after a call that failed in a way suggesting the service
+	 * is overloaded, and shrink the limit.
+	 */
+	public synchronized void onDropped() {
+		inFlight--;
+		limit = Math.max(properties.getMinLimit(), limit * properties.getBackoffRatio());
+	}
+
+	/**
+	 * Give back a slot after a call that says nothing about the service, such
+	 * as one abandoned or never actually made.
+	 */
+	public synchronized void onIgnored() {
+		inFlight--;
+	}
+
+	/**
+	 * Adjust the limit at the end of a window.
+	 * @param shortRtt the average response time in the window, in nanoseconds
+	 */
+	private void adjust(final double shortRtt) {
+		if (longRtt == 0) {
+			longRtt = shortRtt;
+		} else {
+			longRtt += (shortRtt - longRtt) * 2 / (LONG_WINDOWS + 1);
+		}
+		// Once the service has recovered from a slow spell, let the long-run
+		// average come down to meet it sooner.
+		if (longRtt / shortRtt > 2) {
+			longRtt *= 0.95;
+		}
+		if (windowPeak < limit / 2) {
+			return;
+		}
+		final double gradient = Math.max(MIN_GRADIENT,
+				Math.min(1.0, properties.getTolerance() * longRtt / shortRtt));
+		final double target = limit * gradient + Math.sqrt(limit);
+		final double smoothing = properties.getSmoothing();
+		limit = Math.max(properties.getMinLimit(), Math.min(properties.getMaxLimit(),
+				limit * (1 - smoothing) + target * smoothing));
+	}
+
+	/**
+	 * Get the current limit.
+	 * @return the most calls that may currently be in flight
+	 */
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	/**
+	 * Get how many calls are in flight.
+	 * @return the number of slots taken
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+}
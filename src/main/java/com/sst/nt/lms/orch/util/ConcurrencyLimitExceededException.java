@@ -0,0 +1,34 @@
+package com.sst.nt.lms.orch.util;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Thrown in place of making a call to a downstream service that already has as
+ * many calls in flight as its adaptive {@link ConcurrencyLimit} currently allows.
+ *
+ * @author Jonathan Lovelace
+ */
+public class ConcurrencyLimitExceededException extends RestClientException {
+	/**
+	 * Serialization version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * The service that was not called.
+	 */
+	private final String service;
+
+	/**
+	 * Constructor.
+	 * @param service the service that was not called
+	 * @param limit the limit that had been reached
+	 */
+	public ConcurrencyLimitExceededException(final String service, final int limit) {
+		super("Concurrency limit of " + limit + " for " + service + " reached");
+		this.service = service;
+	}
+
+	public String getService() {
+		return service;
+	}
+}
@@ -0,0 +1,247 @@
+package com.sst.nt.lms.orch.util;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+import com.sst.nt.lms.orch.config.ConcurrencyLimitProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import reactor.core.publisher.Mono;
+
+/**
+ * Puts every downstream call, from either the blocking or the non-blocking REST
+ * delegate, through the adaptive {@link ConcurrencyLimit} of the logical service
+ * it is addressed to; like {@link DownstreamServiceInterceptor}, it must run
+ * before the load balancer replaces the service name. It runs before the
+ * bulkheads, so that calls over the limit are shed at once instead of queueing
+ * there. A call that is shed fails with a
+ * {@link ConcurrencyLimitExceededException}.
+ *
+ * <p>A call counts against the limit until its response headers arrive. Calls
+ * that fail with an I/O error, run out their route's timeout, or are answered
+ * 429 or 503 shrink the limit; calls turned away by a bulkhead or circuit
+ * breaker further in, or given up on for our client's sake, because the
+ * client's own deadline passed first or the client went away (see
+ * {@link Deadline#isAbandoned()}), are not counted either way.
+ *
+ * <p>Each service's limit and calls in flight are reported as the gauges
+ * {@code orch.concurrency.limit} and {@code orch.concurrency.in-flight}, and
+ * the calls shed as the counter {@code orch.concurrency.dropped}, all tagged
+ * with the service name.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class ConcurrencyLimitInterceptor
+		implements ClientHttpRequestInterceptor, ExchangeFilterFunction, MeterBinder {
+	/**
+	 * Limit settings.
+	 */
+	private final ConcurrencyLimitProperties properties;
+	/**
+	 * The limits created so far, with their metrics, keyed by service name.
+	 */
+	private final Map<String, ServiceLimit> limits = new ConcurrentHashMap<>();
+	/**
+	 * The registry limit metrics are reported to, once we have been bound to one.
+	 */
+	private volatile MeterRegistry registry;
+
+	/**
+	 * Constructor.
+	 * @param properties limit settings
+	 */
+	public ConcurrencyLimitInterceptor(final ConcurrencyLimitProperties properties) {
+		this.properties = properties;
+	}
+
+	@Override
+	public ClientHttpResponse intercept(final HttpRequest request, final byte[] body,
+			final ClientHttpRequestExecution execution) throws IOException {
+		if (!properties.isEnabled()) {
+			return execution.execute(request, body);
+		}
+		final String service = request.getURI().getHost();
+		final ConcurrencyLimit limit = acquire(service);
+		final long start = System.nanoTime();
+		try {
+			final ClientHttpResponse response = execution.execute(request, body);
+			record(limit, response.getRawStatusCode(), System.nanoTime() - start);
+			return response;
+		} catch (final IOException except) {
+			if (Deadline.isAbandoned()) {
+				limit.onIgnored();
+			} else {
+				limit.onDropped();
+			}
+			throw except;
+		} catch (final RuntimeException except) {
+			limit.onIgnored();
+			throw except;
+		}
+	}
+
+	@Override
+	public Mono<ClientResponse> filter(final ClientRequest request,
+			final ExchangeFunction next) {
+		if (!properties.isEnabled()) {
+			return next.exchange(request);
+		}
+		final String service = request.url().getHost();
+		final Deadline deadline = DeadlineInterceptor.deadlineOf(request);
+		return Mono.defer(() -> {
+			final ConcurrencyLimit limit = acquire(service);
+			final long start = System.nanoTime();
+			return next.exchange(request)
+					.doOnSuccess(response -> {
+						if (response == null) {
+							limit.onIgnored();
+						} else {
+							record(limit, response.rawStatusCode(), System.nanoTime() - start);
+						}
+					})
+					.doOnError(except -> {
+						// Our own rejections further in are RestClientExceptions;
+						// the non-blocking delegate's I/O errors are not.
+						if (except instanceof RestClientException) {
+							limit.onIgnored();
+						} else {
+							limit.onDropped();
+						}
+					}).doOnCancel(() -> {
+						// Cut short by one of our own timeouts, the service was
+						// too slow; otherwise our client gave up on it.
+						if (deadline != null && deadline.isTimedOut()) {
+							limit.onDropped();
+						} else {
+							limit.onIgnored();
+						}
+					});
+		});
+	}
+
+	/**
+	 * Take a slot under a service's limit.
+	 * @param service the name of the service
+	 * @return its limit, under which a slot has been taken
+	 * @throws ConcurrencyLimitExceededException if the limit has been reached
+	 */
+	private ConcurrencyLimit acquire(final String service) {
+		final ServiceLimit entry = limits.computeIfAbsent(service, this::create);
+		final ConcurrencyLimit limit = entry.limit;
+		if (!limit.tryAcquire()) {
+			final Counter dropped = entry.dropped;
+			if (dropped != null) {
+				dropped.increment();
+			}
+			throw new ConcurrencyLimitExceededException(service, limit.getLimit());
+		}
+		return limit;
+	}
+
+	/**
+	 * Get a service's limit, for an extra attempt at a call that has already
+	 * been counted against it, such as a hedge.
+	 * @param service the name of the service
+	 * @return its limit, or null if limits are disabled
+	 */
+	ConcurrencyLimit limitOf(final String service) {
+		return properties.isEnabled() ? limits.computeIfAbsent(service, this::create).limit
+				: null;
+	}
+
+	/**
+	 * Give back a slot once the service has answered.
+	 * @param limit the limit the slot was taken under
+	 * @param status the response status
+	 * @param nanos the response time, in nanoseconds
+	 */
+	static void record(final ConcurrencyLimit limit, final int status,
+			final long nanos) {
+		if (status == HttpStatus.TOO_MANY_REQUESTS.value()
+				|| status == HttpStatus.SERVICE_UNAVAILABLE.value()) {
+			limit.onDropped();
+		} else {
+			limit.onSuccess(nanos);
+		}
+	}
+
+	/**
+	 * Create the limit for a service.
+	 * @param service the name of the service
+	 * @return a new limit for it, with its metrics
+	 */
+	private ServiceLimit create(final String service) {
+		final ServiceLimit entry = new ServiceLimit(service, new ConcurrencyLimit(properties));
+		final MeterRegistry current = registry;
+		if (current != null) {
+			entry.bindTo(current);
+		}
+		return entry;
+	}
+
+	@Override
+	public void bindTo(final MeterRegistry meterRegistry) {
+		registry = meterRegistry;
+		limits.values().forEach(entry -> entry.bindTo(meterRegistry));
+	}
+
+	/**
+	 * The limit for one service, with its metrics, which are registered when it
+	 * is bound to a registry rather than on each call.
+	 */
+	private static final class ServiceLimit {
+		/**
+		 * The name of the service.
+		 */
+		protected final String service;
+		/**
+		 * The limit.
+		 */
+		protected final ConcurrencyLimit limit;
+		/**
+		 * The counter of calls shed, or null if not yet bound.
+		 */
+		protected volatile Counter dropped;
+
+		/**
+		 * Constructor.
+		 * @param service the name of the service
+		 * @param limit its limit
+		 */
+		protected ServiceLimit(final String service, final ConcurrencyLimit limit) {
+			this.service = service;
+			this.limit = limit;
+		}
+
+		/**
+		 * Report the limit's state and the calls it sheds to a registry.
+		 * @param meterRegistry the registry
+		 */
+		protected void bindTo(final MeterRegistry meterRegistry) {
+			Gauge.builder("orch.concurrency.limit", limit, ConcurrencyLimit::getLimit)
+					.description("Calls currently allowed in flight").tag("service", service)
+					.register(meterRegistry);
+			Gauge.builder("orch.concurrency.in-flight", limit, ConcurrencyLimit::getInFlight)
+					.description("Calls in flight").tag("service", service)
+					.register(meterRegistry);
+			dropped = Counter.builder("orch.concurrency.dropped")
+					.description("Calls shed because the concurrency limit was reached")
+					.tag("service", service).register(meterRegistry);
+		}
+	}
+}
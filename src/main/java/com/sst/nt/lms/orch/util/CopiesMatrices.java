@@ -0,0 +1,198 @@
+package com.sst.nt.lms.orch.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.MediaType;
+
+import com.sst.nt.lms.orch.model.Book;
+import com.sst.nt.lms.orch.model.Branch;
+import com.sst.nt.lms.orch.model.CopiesMatrix;
+
+/**
+ * Helpers for the all-branches copies matrix. The librarian service answers
+ * with a {@code Map<Branch, Map<Book, Integer>>}, which Jackson writes with each
+ * branch's and book's {@code toString()} as its key: every book is described in
+ * full once per branch, and since a book's string form leaves out its ID, the
+ * keys cannot be parsed back into branches and books. Clients that ask for it
+ * get the {@link CopiesMatrix columnar form} instead, built by matching those
+ * keys against the string forms of the librarian service's branches and books.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class CopiesMatrices {
+	/**
+	 * The media type of the columnar form, as a string.
+	 */
+	public static final String COLUMNAR_VALUE =
+			"application/vnd.novatech.copies-matrix+json";
+	/**
+	 * The media type of the columnar form.
+	 */
+	public static final MediaType COLUMNAR = MediaType.valueOf(COLUMNAR_VALUE);
+	/**
+	 * The query parameter that asks for the columnar form, for clients that
+	 * cannot set {@code Accept}.
+	 */
+	public static final String COLUMNAR_PARAM = "format=columnar";
+
+	/**
+	 * Do not instantiate.
+	 */
+	private CopiesMatrices() {
+		// static helpers only
+	}
+
+	/**
+	 * Convert the librarian service's copies matrix to its columnar form. Counts
+	 * for a branch or book not in the given lists, as can happen if one was added
+	 * between the requests for the matrix and the lists, are left out and
+	 * counted as unresolved; so are counts for a branch or book whose string
+	 * form is shared with another, such as two editions with the same title,
+	 * author and publisher, since we cannot tell which of them they are for.
+	 * @param matrix the matrix, keyed by branches' and then books' string forms
+	 * @param branches all branches
+	 * @param books all books
+	 * @return the columnar form
+	 */
+	public static CopiesMatrix columnar(final Map<String, Map<String, Integer>> matrix,
+			final Collection<Branch> branches, final Collection<Book> books) {
+		return convert(matrix, branches, books, false);
+	}
+
+	/**
+	 * Convert the librarian service's copies matrix to columnar form for
+	 * {@link InventoryIndex}. This is as {@link #columnar(Map, Collection,
+	 * Collection)}, except that a count left out because its book's string form
+	 * is shared is given as -1, meaning not known, for each of the books it
+	 * might be for, so that the index sends lookups of them downstream rather
+	 * than answering without them; and that a branch with any count for a book
+	 * not in the list, or with no number, is left out altogether, since there is
+	 * no book to give -1 for, and a branch listed without it would be answered
+	 * for as though it held no copies.
+	 * @param matrix the matrix, keyed by branches' and then books' string forms
+	 * @param branches all branches
+	 * @param books all books
+	 * @return the columnar form, with -1 for the counts that are not known
+	 */
+	public static CopiesMatrix indexable(final Map<String, Map<String, Integer>> matrix,
+			final Collection<Branch> branches, final Collection<Book> books) {
+		return convert(matrix, branches, books, true);
+	}
+
+	/**
+	 * Convert the librarian service's copies matrix to columnar form.
+	 * @param matrix the matrix, keyed by branches' and then books' string forms
+	 * @param branches all branches
+	 * @param books all books
+	 * @param forIndex whether to give -1 for each book a count whose book's
+	 *        string form is shared might be for, and leave out branches with any
+	 *        count that cannot be resolved to a book
+	 * @return the columnar form
+	 */
+	private static CopiesMatrix convert(final Map<String, Map<String, Integer>> matrix,
+			final Collection<Branch> branches, final Collection<Book> books,
+			final boolean forIndex) {
+		final Map<String, List<Branch>> branchesByKey = byKey(branches);
+		final Map<String, List<Book>> booksByKey = byKey(books);
+		int size = 0;
+		for (final Map<String, Integer> row : matrix.values()) {
+			size += row.size();
+		}
+		int[] branchIds = new int[size];
+		int[] bookIds = new int[size];
+		int[] copies = new int[size];
+		final Map<Integer, Branch> usedBranches = new LinkedHashMap<>();
+		final Map<Integer, Book> usedBooks = new LinkedHashMap<>();
+		int count = 0;
+		int resolved = 0;
+		for (final Map.Entry<String, Map<String, Integer>> row : matrix.entrySet()) {
+			final List<Branch> branchCandidates = branchesByKey.get(row.getKey());
+			if (branchCandidates == null || branchCandidates.size() > 1) {
+				continue;
+			}
+			if (forIndex && !resolvable(row.getValue(), booksByKey)) {
+				continue;
+			}
+			final Branch branch = branchCandidates.get(0);
+			for (final Map.Entry<String, Integer> cell : row.getValue().entrySet()) {
+				final List<Book> bookCandidates = booksByKey.get(cell.getKey());
+				if (bookCandidates == null || cell.getValue() == null) {
+					continue;
+				} else if (bookCandidates.size() > 1 && !forIndex) {
+					continue;
+				}
+				final int value = bookCandidates.size() > 1 ? -1 : cell.getValue();
+				if (value >= 0) {
+					resolved++;
+				}
+				if (count + bookCandidates.size() > copies.length) {
+					final int capacity = Math.max(copies.length * 2,
+							count + bookCandidates.size());
+					branchIds = Arrays.copyOf(branchIds, capacity);
+					bookIds = Arrays.copyOf(bookIds, capacity);
+					copies = Arrays.copyOf(copies, capacity);
+				}
+				usedBranches.putIfAbsent(branch.getId(), branch);
+				for (final Book book : bookCandidates) {
+					usedBooks.putIfAbsent(book.getId(), book);
+					branchIds[count] = branch.getId();
+					bookIds[count] = book.getId();
+					copies[count] = value;
+					count++;
+				}
+			}
+		}
+		return new CopiesMatrix(new ArrayList<>(usedBranches.values()),
+				new ArrayList<>(usedBooks.values()), Arrays.copyOf(branchIds, count),
+				Arrays.copyOf(bookIds, count), Arrays.copyOf(copies, count),
+				size - resolved);
+	}
+
+	/**
+	 * Whether every count in a branch's row of the matrix is a number for a
+	 * book, or for books, that the list of books has.
+	 * @param row the row, keyed by books' string forms
+	 * @param booksByKey all books, keyed by string form
+	 * @return whether every count can be resolved
+	 */
+	private static boolean resolvable(final Map<String, Integer> row,
+			final Map<String, List<Book>> booksByKey) {
+		for (final Map.Entry<String, Integer> cell : row.entrySet()) {
+			if (cell.getValue() == null || !booksByKey.containsKey(cell.getKey())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Group branches or books by their string forms, which are all the copies
+	 * matrix identifies them by. More than one under a key means the key is
+	 * ambiguous.
+	 * @param items the branches or books
+	 * @param <T> their type
+	 * @return them, keyed by string form
+	 */
+	private static <T> Map<String, List<T>> byKey(final Collection<T> items) {
+		final Map<String, List<T>> retval = new HashMap<>(items.size() * 2);
+		for (final T item : items) {
+			final String key = item.toString();
+			final List<T> existing = retval.get(key);
+			if (existing == null) {
+				retval.put(key, Collections.singletonList(item));
+			} else {
+				final List<T> all = new ArrayList<>(existing);
+				all.add(item);
+				retval.put(key, all);
+			}
+		}
+		return retval;
+	}
+}
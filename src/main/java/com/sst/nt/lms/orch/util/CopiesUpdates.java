@@ -0,0 +1,75 @@
+package com.sst.nt.lms.orch.util;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.http.HttpStatus;
+
+import com.sst.nt.lms.orch.model.CopiesUpdate;
+
+/**
+ * Helpers for bulk updates of copy counts, which the librarian service can only
+ * take one at a time: each item is forwarded as its own request, several at
+ * once, and its outcome reported separately rather than failing the whole
+ * update.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class CopiesUpdates {
+	/**
+	 * Do not instantiate.
+	 */
+	private CopiesUpdates() {
+		// static helpers only
+	}
+
+	/**
+	 * Whether a bulk update may be made: it must not be too big, no count may be
+	 * negative, and no branch's count of a book may be set twice, since the
+	 * items are made concurrently and so in no particular order.
+	 * @param updates the items of the update
+	 * @param maxSize the most items allowed
+	 * @return whether it is acceptable
+	 */
+	public static boolean isValid(final List<CopiesUpdate> updates, final int maxSize) {
+		if (updates == null || updates.size() > maxSize) {
+			return false;
+		}
+		final Set<Long> seen = new HashSet<>(updates.size() * 2);
+		for (final CopiesUpdate update : updates) {
+			if (update == null || update.getCopies() < 0 || !seen.add(
+					((long) update.getBranchId() << 32) | (update.getBookId() & 0xffffffffL))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get the librarian service's URL for one item of a bulk update.
+	 * @param update the item
+	 * @return the URL to {@code PUT} to
+	 */
+	public static String url(final CopiesUpdate update) {
+		return "http://librarian-service/librarian/branches/" + update.getBranchId()
+				+ "/books/" + update.getBookId() + "?noOfCopies=" + update.getCopies();
+	}
+
+	/**
+	 * Get the status to report for an item whose downstream request failed, as
+	 * {@code DownstreamFailureHandler} would answer for a single update.
+	 * @param except why it failed
+	 * @return the status
+	 */
+	public static int statusOf(final Throwable except) {
+		if (except instanceof CircuitOpenException || except instanceof BulkheadFullException
+				|| except instanceof ConcurrencyLimitExceededException) {
+			return HttpStatus.SERVICE_UNAVAILABLE.value();
+		} else if (except instanceof DeadlineExceededException) {
+			return HttpStatus.GATEWAY_TIMEOUT.value();
+		} else {
+			return HttpStatus.BAD_GATEWAY.value();
+		}
+	}
+}
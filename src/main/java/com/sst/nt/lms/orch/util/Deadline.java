@@ -0,0 +1,208 @@
+package com.sst.nt.lms.orch.util;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A point in time by which work must be finished, in terms of
+ * {@link System#nanoTime()}. The deadline that applies to the current thread's
+ * work, if any, is kept in a thread-local: {@link DeadlineFilter} sets it from
+ * the client's request, {@link DeadlineInterceptor} narrows it for each
+ * downstream call, and code that hands work to other threads, such as
+ * {@link FanOutExecutor}, carries it over with {@link #wrap(Supplier)}.
+ *
+ * <p>A deadline remembers whether it is our client's, so that a call cut short
+ * by it can be told from one cut short by a timeout of our own: the first says
+ * nothing about the service called, but the second is the service being slow.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class Deadline {
+	/**
+	 * The deadline for the current thread's work, if any.
+	 */
+	private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+	/**
+	 * The deadline, per {@link System#nanoTime()}.
+	 */
+	private final long nanoTime;
+	/**
+	 * Whether this is the deadline our client set, rather than one of ours.
+	 */
+	private final boolean client;
+
+	/**
+	 * Constructor.
+	 * @param nanoTime the deadline, per {@link System#nanoTime()}
+	 * @param client whether this is the deadline our client set
+	 */
+	private Deadline(final long nanoTime, final boolean client) {
+		this.nanoTime = nanoTime;
+		this.client = client;
+	}
+
+	/**
+	 * Get a deadline of our own some time from now.
+	 * @param timeout how long from now
+	 * @return the deadline
+	 */
+	public static Deadline after(final Duration timeout) {
+		return new Deadline(System.nanoTime() + timeout.toNanos(), false);
+	}
+
+	/**
+	 * Get the deadline our client set, some time from now.
+	 * @param timeout how long from now
+	 * @return the deadline
+	 */
+	public static Deadline forClient(final Duration timeout) {
+		return new Deadline(System.nanoTime() + timeout.toNanos(), true);
+	}
+
+	/**
+	 * Get the deadline for the current thread's work.
+	 * @return the deadline, or null if there is none
+	 */
+	public static Deadline current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Whether the current thread's work has been given up on for its client's
+	 * sake, because the deadline the client set has passed, and was the one
+	 * that applied, or the client is known to have gone away; so that a call it
+	 * was making will have been aborted. Such a failure says nothing about the
+	 * service called, all the more as clients choose their own deadlines. A
+	 * call that ran out one of our own timeouts is not abandoned but slow.
+	 * @return true if its client's deadline has passed or its client has gone
+	 *         away
+	 */
+	public static boolean isAbandoned() {
+		final Deadline current = CURRENT.get();
+		return (current != null && current.client && current.isExpired())
+				|| ClientConnection.isClientGone();
+	}
+
+	/**
+	 * Set the deadline for the current thread's work.
+	 * @param deadline the deadline, or null for none
+	 * @return the deadline it replaced, for the caller to put back when done
+	 */
+	public static Deadline set(final Deadline deadline) {
+		final Deadline previous = CURRENT.get();
+		if (deadline == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(deadline);
+		}
+		return previous;
+	}
+
+	/**
+	 * Wrap a task so that, wherever it runs, it runs under the current thread's
+	 * deadline.
+	 * @param task the task
+	 * @param <T> the type of its result
+	 * @return the wrapped task
+	 */
+	public static <T> Supplier<T> wrap(final Supplier<T> task) {
+		return wrap(current(), task);
+	}
+
+	/**
+	 * Wrap a task so that, wherever it runs, it runs under a given deadline.
+	 * @param deadline the deadline, or null for none
+	 * @param task the task
+	 * @param <T> the type of its result
+	 * @return the wrapped task
+	 */
+	public static <T> Supplier<T> wrap(final Deadline deadline, final Supplier<T> task) {
+		if (deadline == null) {
+			return task;
+		}
+		return () -> {
+			final Deadline previous = set(deadline);
+			try {
+				return task.get();
+			} finally {
+				set(previous);
+			}
+		};
+	}
+
+	/**
+	 * Wrap a task so that, wherever it runs, it runs under a given deadline.
+	 * @param deadline the deadline, or null for none
+	 * @param task the task
+	 * @return the wrapped task
+	 */
+	public static Runnable wrap(final Deadline deadline, final Runnable task) {
+		if (deadline == null) {
+			return task;
+		}
+		return () -> {
+			final Deadline previous = set(deadline);
+			try {
+				task.run();
+			} finally {
+				set(previous);
+			}
+		};
+	}
+
+	/**
+	 * Get whichever of this deadline and another comes first.
+	 * @param other the other deadline, or null for none
+	 * @return the earlier deadline
+	 */
+	public Deadline min(final Deadline other) {
+		return other == null || nanoTime - other.nanoTime <= 0 ? this : other;
+	}
+
+	/**
+	 * Get the time left until the deadline.
+	 * @return the time left, in nanoseconds; zero or less once it has passed
+	 */
+	public long remainingNanos() {
+		return nanoTime - System.nanoTime();
+	}
+
+	/**
+	 * Get the time left until the deadline, as a header value.
+	 * @return the time left, in whole milliseconds, and never negative
+	 */
+	public long remainingMillis() {
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(remainingNanos()));
+	}
+
+	/**
+	 * Whether the deadline has passed.
+	 * @return true if there is no time left
+	 */
+	public boolean isExpired() {
+		return remainingNanos() <= 0;
+	}
+
+	/**
+	 * Whether this is one of our own deadlines, not our client's, and it has
+	 * passed, so that a call it applied to was too slow.
+	 * @return true if this deadline is ours and there is no time left
+	 */
+	public boolean isTimedOut() {
+		return !client && isExpired();
+	}
+
+	/**
+	 * Get the deadline itself.
+	 * @return the deadline, per {@link System#nanoTime()}
+	 */
+	public long getNanoTime() {
+		return nanoTime;
+	}
+
+	@Override
+	public String toString() {
+		return "Deadline in " + remainingMillis() + " ms";
+	}
+}
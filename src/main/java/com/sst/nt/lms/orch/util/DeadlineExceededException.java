@@ -0,0 +1,44 @@
+package com.sst.nt.lms.orch.util;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Thrown when a call to a downstream service runs out of its time budget, either
+ * before it was sent or while it was waiting for the response, in which case
+ * the request has been aborted.
+ *
+ * @author Jonathan Lovelace
+ */
+public class DeadlineExceededException extends RestClientException {
+	/**
+	 * Serialization version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * The service that did not answer in time.
+	 */
+	private final String service;
+
+	/**
+	 * Constructor.
+	 * @param service the service that did not answer in time
+	 */
+	public DeadlineExceededException(final String service) {
+		super("Deadline for call to " + service + " exceeded");
+		this.service = service;
+	}
+
+	/**
+	 * Constructor.
+	 * @param service the service that did not answer in time
+	 * @param cause the failure of the aborted request
+	 */
+	public DeadlineExceededException(final String service, final Throwable cause) {
+		super("Deadline for call to " + service + " exceeded", cause);
+		this.service = service;
+	}
+
+	public String getService() {
+		return service;
+	}
+}
@@ -0,0 +1,82 @@
+package com.sst.nt.lms.orch.util;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Takes the deadline our client set on its request, as the number of
+ * milliseconds it will wait in the configured header, and makes it the
+ * {@link Deadline} of the thread handling the request, so that the downstream
+ * calls made for it are cut short and told to hurry accordingly. A missing or
+ * unreadable header means no deadline beyond the calls' own timeouts; a value
+ * beyond an hour, which no call's own timeout comes near, is taken as an hour,
+ * so that it cannot overflow {@link System#nanoTime()} arithmetic.
+ *
+ * <p>Only the thread that first handles the request is given the deadline; in
+ * reactive mode that is the one that sends the downstream calls, and in either
+ * mode work handed to other threads is given it explicitly.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class DeadlineFilter extends OncePerRequestFilter {
+	/**
+	 * The longest deadline a client may set, in milliseconds.
+	 */
+	private static final long MAX_MILLIS = Duration.ofHours(1).toMillis();
+	/**
+	 * The header carrying the client's deadline.
+	 */
+	private final String header;
+
+	/**
+	 * Constructor.
+	 * @param header the header carrying the client's deadline
+	 */
+	public DeadlineFilter(final String header) {
+		this.header = header;
+	}
+
+	@Override
+	protected void doFilterInternal(final HttpServletRequest request,
+			final HttpServletResponse response, final FilterChain filterChain)
+			throws ServletException, IOException {
+		final Deadline deadline = parse(request.getHeader(header));
+		if (deadline == null) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+		final Deadline previous = Deadline.set(deadline);
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			Deadline.set(previous);
+		}
+	}
+
+	/**
+	 * Parse a deadline header.
+	 * @param value the header's value, if any
+	 * @return the deadline it gives, or null if there was none or it was not a
+	 *         number of milliseconds
+	 */
+	private static Deadline parse(final String value) {
+		if (value == null) {
+			return null;
+		}
+		final long millis;
+		try {
+			millis = Long.parseLong(value.trim());
+		} catch (final NumberFormatException except) {
+			return null;
+		}
+		return millis < 0 ? null
+				: Deadline.forClient(Duration.ofMillis(Math.min(millis, MAX_MILLIS)));
+	}
+}
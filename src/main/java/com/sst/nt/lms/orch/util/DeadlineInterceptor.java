@@ -0,0 +1,147 @@
+package com.sst.nt.lms.orch.util;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+import com.sst.nt.lms.orch.config.DeadlineProperties;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Gives every downstream call, from either the blocking or the non-blocking REST
+ * delegate, a {@link Deadline}: the timeout for its route, or the deadline of
+ * the work it is part of if that comes first. The time left is sent on in the
+ * configured header, so the downstream service can give up too once we have,
+ * and a call that runs out of time fails with a
+ * {@link DeadlineExceededException}. Like {@link DownstreamServiceInterceptor},
+ * this must run before the load balancer replaces the service name.
+ *
+ * <p>For the blocking delegate, the deadline is the current thread's while the
+ * call is made, and {@link PooledClientHttpRequestFactory} aborts the request
+ * when it passes. For the non-blocking one, the deadline is taken when the call
+ * is assembled, so this must be the first filter, and the exchange is cancelled
+ * when it passes; the filters after it can get the deadline with
+ * {@link #deadlineOf(ClientRequest)}, to tell that cancellation from others. Either way the budget covers waiting in bulkheads as well as
+ * for the response, but not reading its body.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class DeadlineInterceptor
+		implements ClientHttpRequestInterceptor, ExchangeFilterFunction {
+	/**
+	 * The request attribute holding a non-blocking call's deadline.
+	 */
+	private static final String DEADLINE = DeadlineInterceptor.class.getName()
+			+ ".deadline";
+	/**
+	 * Deadline settings.
+	 */
+	private final DeadlineProperties properties;
+	/**
+	 * Matcher for the route patterns.
+	 */
+	private final PathMatcher matcher = new AntPathMatcher();
+
+	/**
+	 * Constructor.
+	 * @param properties deadline settings
+	 */
+	public DeadlineInterceptor(final DeadlineProperties properties) {
+		this.properties = properties;
+	}
+
+	/**
+	 * Get the deadline this filter gave a non-blocking call.
+	 * @param request the request, as passed to a later filter
+	 * @return its deadline, or null if it has none
+	 */
+	public static Deadline deadlineOf(final ClientRequest request) {
+		return (Deadline) request.attribute(DEADLINE).orElse(null);
+	}
+
+	/**
+	 * Get the deadline for a call starting now.
+	 * @param service the name of the service it is to
+	 * @param path the path it is to
+	 * @return the earlier of the route's timeout from now and the current
+	 *         thread's deadline
+	 */
+	private Deadline deadlineFor(final String service, final String path) {
+		return Deadline.after(timeoutFor(service, path)).min(Deadline.current());
+	}
+
+	/**
+	 * Get the timeout for a route.
+	 * @param service the name of the service
+	 * @param path the path within it
+	 * @return the timeout for the first pattern the route matches, or the default
+	 */
+	private Duration timeoutFor(final String service, final String path) {
+		final String route = "/" + service + path;
+		for (final Map.Entry<String, Duration> entry : properties.getRoutes()
+				.entrySet()) {
+			if (matcher.match(entry.getKey(), route)) {
+				return entry.getValue();
+			}
+		}
+		return properties.getDefaultTimeout();
+	}
+
+	@Override
+	public ClientHttpResponse intercept(final HttpRequest request, final byte[] body,
+			final ClientHttpRequestExecution execution) throws IOException {
+		final String service = request.getURI().getHost();
+		final Deadline deadline = deadlineFor(service, request.getURI().getRawPath());
+		if (deadline.isExpired()) {
+			throw new DeadlineExceededException(service);
+		}
+		request.getHeaders().set(properties.getHeader(),
+				Long.toString(deadline.remainingMillis()));
+		final Deadline previous = Deadline.set(deadline);
+		try {
+			return execution.execute(request, body);
+		} catch (final IOException except) {
+			if (deadline.isExpired()) {
+				throw new DeadlineExceededException(service, except);
+			}
+			throw except;
+		} finally {
+			Deadline.set(previous);
+		}
+	}
+
+	@Override
+	public Mono<ClientResponse> filter(final ClientRequest request,
+			final ExchangeFunction next) {
+		final String service = request.url().getHost();
+		final Deadline deadline = deadlineFor(service, request.url().getRawPath());
+		return Mono.defer(() -> {
+			final long remaining = deadline.remainingNanos();
+			if (remaining <= 0) {
+				return Mono.error(new DeadlineExceededException(service));
+			}
+			return next.exchange(ClientRequest.from(request)
+					.headers(headers -> headers.set(properties.getHeader(),
+							Long.toString(deadline.remainingMillis())))
+					.attribute(DEADLINE, deadline).build())
+					// Rounded up to the whole milliseconds the timer counts in,
+					// so that the deadline has passed by the time it fires.
+					.timeout(Duration.ofMillis(TimeUnit.NANOSECONDS.toMillis(
+							remaining + TimeUnit.MILLISECONDS.toNanos(1) - 1)), Mono.defer(
+							() -> Mono.error(new DeadlineExceededException(service))));
+		});
+	}
+}
@@ -0,0 +1,156 @@
+package com.sst.nt.lms.orch.util;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+
+/**
+ * Times every downstream call, from either the blocking or the non-blocking REST
+ * delegate, in the timer {@code orch.downstream.requests}, tagged with the
+ * logical service it is addressed to, the HTTP method, and its
+ * {@link RequestOutcome}. A call is timed as a whole, however many attempts
+ * hedging made, and including calls turned away by our own resilience
+ * measures; like {@link DownstreamServiceInterceptor}, this must run before the
+ * load balancer replaces the service name. (How each instance does is timed by
+ * {@link InstanceLoadTracker}.)
+ *
+ * <p>Timers are looked up once per service, method, and outcome and then kept,
+ * so recording a call allocates nothing and takes no locks.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class DownstreamMetricsInterceptor
+		implements ClientHttpRequestInterceptor, ExchangeFilterFunction {
+	/**
+	 * How many outcomes there are, for indexing timers without copying
+	 * {@link RequestOutcome#values()} each time.
+	 */
+	private static final int OUTCOMES = RequestOutcome.values().length;
+	/**
+	 * The registry to record in.
+	 */
+	private final MeterRegistry registry;
+	/**
+	 * The timers for each service seen so far, keyed by service name.
+	 */
+	private final Map<String, ServiceTimers> services = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 * @param registry the registry to record in
+	 */
+	public DownstreamMetricsInterceptor(final MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Get the timers for a service, creating them if necessary.
+	 * @param service the service name
+	 * @return its timers
+	 */
+	private ServiceTimers timersFor(final String service) {
+		final ServiceTimers timers = services.get(service);
+		if (timers == null) {
+			return services.computeIfAbsent(service, ServiceTimers::new);
+		}
+		return timers;
+	}
+
+	@Override
+	public ClientHttpResponse intercept(final HttpRequest request, final byte[] body,
+			final ClientHttpRequestExecution execution) throws IOException {
+		final ServiceTimers timers = timersFor(request.getURI().getHost());
+		final HttpMethod method = request.getMethod();
+		final long start = System.nanoTime();
+		final ClientHttpResponse response;
+		try {
+			response = execution.execute(request, body);
+		} catch (final IOException | RuntimeException except) {
+			timers.record(method, RequestOutcome.forFailure(except), start);
+			throw except;
+		}
+		timers.record(method, RequestOutcome.forStatus(response.getRawStatusCode()),
+				start);
+		return response;
+	}
+
+	@Override
+	public Mono<ClientResponse> filter(final ClientRequest request,
+			final ExchangeFunction next) {
+		final ServiceTimers timers = timersFor(request.url().getHost());
+		final HttpMethod method = request.method();
+		// The rest of the chain is assembled now, while the caller's deadline is
+		// still on this thread; only the timing waits for the subscription.
+		final Mono<ClientResponse> exchange = next.exchange(request);
+		return Mono.defer(() -> {
+			final long start = System.nanoTime();
+			return exchange.doOnSuccess(response -> timers.record(method,
+					response == null ? RequestOutcome.CANCELLED
+							: RequestOutcome.forStatus(response.rawStatusCode()),
+					start))
+					.doOnError(except -> timers.record(method,
+							RequestOutcome.forFailure(except), start))
+					.doOnCancel(() -> timers.record(method, RequestOutcome.CANCELLED, start));
+		});
+	}
+
+	/**
+	 * The timers for one service, by method and outcome, each created when first
+	 * needed.
+	 */
+	private final class ServiceTimers {
+		/**
+		 * The service name.
+		 */
+		private final String service;
+		/**
+		 * The timers, indexed by method and then outcome.
+		 */
+		private final AtomicReferenceArray<Timer> timers = new AtomicReferenceArray<>(
+				HttpMethod.values().length * OUTCOMES);
+
+		/**
+		 * Constructor.
+		 * @param service the service name
+		 */
+		protected ServiceTimers(final String service) {
+			this.service = service;
+		}
+
+		/**
+		 * Record a call.
+		 * @param method its method
+		 * @param outcome its outcome
+		 * @param start when it started, per {@link System#nanoTime()}
+		 */
+		protected void record(final HttpMethod method, final RequestOutcome outcome,
+				final long start) {
+			final int index = method.ordinal() * OUTCOMES + outcome.ordinal();
+			Timer timer = timers.get(index);
+			if (timer == null) {
+				timer = Timer.builder("orch.downstream.requests")
+						.description("Calls to downstream services")
+						.tag("service", service).tag("method", method.name())
+						.tag("outcome", outcome.name()).register(registry);
+				timers.set(index, timer);
+			}
+			timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.sst.nt.lms.orch.util;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Records which logical downstream service (the host part of a URL such as
+ * {@code http://admin/books}) the current thread is calling. It must run before
+ * the load-balancer interceptor, which replaces that name with the address of a
+ * concrete instance, so that request factories further down the chain can still
+ * tell which service a request belongs to.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class DownstreamServiceInterceptor implements ClientHttpRequestInterceptor {
+	/**
+	 * The service the current thread is calling, if any.
+	 */
+	private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+	/**
+	 * Get the logical service the current thread is calling.
+	 *
+	 * @return the service name, or null if not inside a downstream exchange
+	 */
+	public static String currentService() {
+		return CURRENT.get();
+	}
+
+	@Override
+	public ClientHttpResponse intercept(final HttpRequest request, final byte[] body,
+			final ClientHttpRequestExecution execution) throws IOException {
+		final String previous = CURRENT.get();
+		CURRENT.set(request.getURI().getHost());
+		try {
+			return execution.execute(request, body);
+		} finally {
+			if (previous == null) {
+				CURRENT.remove();
+			} else {
+				CURRENT.set(previous);
+			}
+		}
+	}
+}
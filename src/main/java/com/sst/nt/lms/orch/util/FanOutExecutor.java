@@ -0,0 +1,215 @@
+package com.sst.nt.lms.orch.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.client.RestClientException;
+
+import com.sst.nt.lms.orch.model.BatchResponse;
+
+/**
+ * Runs the downstream requests of a fanned-out client request concurrently, on a
+ * pool shared by all such requests, with a cap on how many any one client
+ * request may have in flight at once so that a single large batch cannot
+ * monopolize the pool.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class FanOutExecutor implements DisposableBean {
+	/**
+	 * The shared pool.
+	 */
+	private final ExecutorService executor;
+	/**
+	 * The most tasks one call may run at once.
+	 */
+	private final int parallelism;
+	/**
+	 * The most IDs a client may ask for in one batch.
+	 */
+	private final int maxBatchSize;
+
+	/**
+	 * Constructor.
+	 * @param threads the size of the shared pool
+	 * @param parallelism the most tasks one call may run at once
+	 * @param maxBatchSize the most IDs a client may ask for in one batch
+	 */
+	public FanOutExecutor(final int threads, final int parallelism,
+			final int maxBatchSize) {
+		this(Executors.newFixedThreadPool(threads,
+				new CustomizableThreadFactory("orch-fan-out-")), parallelism,
+				maxBatchSize);
+	}
+
+	/**
+	 * Constructor.
+	 * @param executor the shared pool, such as one starting a virtual thread per
+	 *        task, which is shut down along with this
+	 * @param parallelism the most tasks one call may run at once
+	 * @param maxBatchSize the most IDs a client may ask for in one batch
+	 */
+	public FanOutExecutor(final ExecutorService executor, final int parallelism,
+			final int maxBatchSize) {
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * Run a task asynchronously on the shared pool, under the current thread's
+	 * {@link Deadline}.
+	 * @param task the task to run
+	 * @param <T> the type of its result
+	 * @return its eventual result
+	 */
+	public <T> CompletableFuture<T> submit(final Supplier<T> task) {
+		return submit(Deadline.current(), task);
+	}
+
+	/**
+	 * Run a task asynchronously on the shared pool, under a given deadline.
+	 * @param deadline the deadline for the task's downstream calls, or null for
+	 *        none
+	 * @param task the task to run
+	 * @param <T> the type of its result
+	 * @return its eventual result
+	 */
+	public <T> CompletableFuture<T> submit(final Deadline deadline,
+			final Supplier<T> task) {
+		return CompletableFuture.supplyAsync(Deadline.wrap(deadline, task), executor);
+	}
+
+	/**
+	 * Wait for the result of a task until a deadline, giving up on it if it has
+	 * not finished by then. Since the deadline is absolute, waiting on several
+	 * concurrent tasks one after another with the same deadline bounds each of
+	 * them, and the whole, by the same timeout.
+	 *
+	 * <p>Giving up on a task does not itself abort a downstream request it has
+	 * already sent; that runs on until its own {@link Deadline}. Submitting the
+	 * task with the same deadline makes the two coincide.
+	 *
+	 * @param future the task's eventual result
+	 * @param deadline the deadline, in terms of {@link System#nanoTime()}
+	 * @param <T> the type of its result
+	 * @return its result, or null if it failed or did not finish in time
+	 */
+	public static <T> T await(final Future<T> future, final long deadline) {
+		try {
+			return future.get(Math.max(deadline - System.nanoTime(), 0),
+					TimeUnit.NANOSECONDS);
+		} catch (final TimeoutException except) {
+			future.cancel(true);
+			return null;
+		} catch (final ExecutionException except) {
+			return null;
+		} catch (final InterruptedException except) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	/**
+	 * Apply a task to every one of a collection of keys, running at most the
+	 * configured number of them at once, and wait for all of them to finish. The
+	 * calling thread works through keys too, rather than sitting idle, and the
+	 * others work under its {@link Deadline}.
+	 *
+	 * @param keys the keys to apply the task to
+	 * @param task the task, which should handle its own expected failures
+	 * @param <K> the type of the keys
+	 * @param <V> the type of the task's results
+	 * @return the results, which may be null, in the iteration order of the keys
+	 * @throws RuntimeException the first unexpected failure of any task, once
+	 *                          those already started have finished; no more are
+	 *                          started after a failure
+	 */
+	public <K, V> Map<K, V> invokeAll(final Collection<K> keys,
+			final Function<K, V> task) {
+		final List<K> list = new ArrayList<>(keys);
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicReferenceArray<V> results = new AtomicReferenceArray<>(list.size());
+		final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+		final Runnable worker = () -> {
+			int index;
+			while ((index = next.getAndIncrement()) < list.size()) {
+				try {
+					results.set(index, task.apply(list.get(index)));
+				} catch (final RuntimeException except) {
+					failure.compareAndSet(null, except);
+					// Leave the rest undone.
+					next.set(list.size());
+				}
+			}
+		};
+		final Runnable helper = Deadline.wrap(Deadline.current(), worker);
+		final int helpers = Math.min(parallelism, keys.size()) - 1;
+		final CompletableFuture<?>[] futures = new CompletableFuture<?>[Math.max(helpers, 0)];
+		for (int i = 0; i < futures.length; i++) {
+			futures[i] = CompletableFuture.runAsync(helper, executor);
+		}
+		worker.run();
+		CompletableFuture.allOf(futures).join();
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+		final Map<K, V> retval = new LinkedHashMap<>();
+		for (int i = 0; i < list.size(); i++) {
+			retval.put(list.get(i), results.get(i));
+		}
+		return retval;
+	}
+
+	/**
+	 * Look up several objects by ID, one downstream request per distinct ID.
+	 * Downstream failures, including those that surface as exceptions, are
+	 * reported per ID in the result rather than failing the whole batch.
+	 *
+	 * @param ids the IDs the client asked for
+	 * @param getter the method that looks up a single object by ID
+	 * @param <T> the type of object looked up
+	 * @return the combined result, or a "bad request" response if the client asked
+	 *         for too many IDs at once
+	 */
+	public <T> ResponseEntity<BatchResponse<T>> getBatch(final Collection<Integer> ids,
+			final IntFunction<ResponseEntity<T>> getter) {
+		final Collection<Integer> distinct = new LinkedHashSet<>(ids);
+		if (distinct.size() > maxBatchSize) {
+			return ResponseEntity.badRequest().build();
+		}
+		return ResponseEntity.ok(BatchResponse.of(invokeAll(distinct, id -> {
+			try {
+				return getter.apply(id);
+			} catch (final RestClientException except) {
+				return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+			}
+		})));
+	}
+
+	@Override
+	public void destroy() {
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,153 @@
+package com.sst.nt.lms.orch.util;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Decides whether a hedge may be sent, for both the blocking and the
+ * non-blocking REST delegate. Hedges are sent below the interceptors, so on
+ * their own they would go past the circuit breaker, bulkhead and concurrency
+ * limit that the call they hedge went through. Instead, a hedge is sent only
+ * while its service's breaker is closed, and only if there is room for one
+ * more call under its limit and in its bulkhead, taken without waiting; while
+ * in flight it counts against both, like any other call.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class HedgeAdmission {
+	/**
+	 * The per-service adaptive concurrency limits.
+	 */
+	private final ConcurrencyLimitInterceptor limits;
+	/**
+	 * The per-service bulkheads.
+	 */
+	private final BulkheadInterceptor bulkheads;
+	/**
+	 * The per-service circuit breakers.
+	 */
+	private final CircuitBreakerInterceptor breakers;
+
+	/**
+	 * Constructor.
+	 * @param limits the per-service adaptive concurrency limits
+	 * @param bulkheads the per-service bulkheads
+	 * @param breakers the per-service circuit breakers
+	 */
+	public HedgeAdmission(final ConcurrencyLimitInterceptor limits,
+			final BulkheadInterceptor bulkheads, final CircuitBreakerInterceptor breakers) {
+		this.limits = limits;
+		this.bulkheads = bulkheads;
+		this.breakers = breakers;
+	}
+
+	/**
+	 * Admit a hedge to a service, if its breaker is closed and it has room.
+	 * @param service the name of the service
+	 * @return the hedge's slots under the service's limit and in its bulkhead,
+	 *         or null if the hedge should not be sent
+	 */
+	public Permit tryAdmit(final String service) {
+		if (!breakers.isClosed(service)) {
+			return null;
+		}
+		final ConcurrencyLimit limit = limits.limitOf(service);
+		if (limit != null && !limit.tryAcquire()) {
+			return null;
+		}
+		final Bulkhead bulkhead = bulkheads.bulkheadOf(service);
+		if (bulkhead != null && !bulkhead.tryAcquire()) {
+			if (limit != null) {
+				limit.onIgnored();
+			}
+			return null;
+		}
+		return new Permit(limit, bulkhead);
+	}
+
+	/**
+	 * The slots a hedge holds under its service's limit and in its bulkhead.
+	 * The limit's slot is given back, with what the hedge showed of the
+	 * service, by the first of {@link #answered(int, long)}, {@link #failed()}
+	 * and {@link #abandoned()}; the bulkhead's, by {@link #release()}.
+	 */
+	public static final class Permit {
+		/**
+		 * The limit the hedge counts against, or null if limits are disabled.
+		 */
+		private final ConcurrencyLimit limit;
+		/**
+		 * The bulkhead the hedge holds a slot in, or null if bulkheads are
+		 * disabled.
+		 */
+		private final Bulkhead bulkhead;
+		/**
+		 * Whether the limit's slot has been given back.
+		 */
+		private final AtomicBoolean counted = new AtomicBoolean();
+		/**
+		 * Whether the bulkhead's slot has been given back.
+		 */
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		/**
+		 * Constructor.
+		 * @param limit the limit the hedge counts against, or null
+		 * @param bulkhead the bulkhead the hedge holds a slot in, or null
+		 */
+		protected Permit(final ConcurrencyLimit limit, final Bulkhead bulkhead) {
+			this.limit = limit;
+			this.bulkhead = bulkhead;
+		}
+
+		/**
+		 * Record that the hedge's response headers have arrived.
+		 * @param status the response status
+		 * @param nanos how long they took, in nanoseconds
+		 */
+		public void answered(final int status, final long nanos) {
+			if (limit != null && counted.compareAndSet(false, true)) {
+				ConcurrencyLimitInterceptor.record(limit, status, nanos);
+			}
+		}
+
+		/**
+		 * Record that the hedge failed, or ran out its route's timeout.
+		 */
+		public void failed() {
+			if (limit != null && counted.compareAndSet(false, true)) {
+				limit.onDropped();
+			}
+		}
+
+		/**
+		 * Record that the hedge was given up on for reasons that say nothing
+		 * about the service, such as the other attempt being answered first.
+		 */
+		public void abandoned() {
+			if (limit != null && counted.compareAndSet(false, true)) {
+				limit.onIgnored();
+			}
+		}
+
+		/**
+		 * Give back the hedge's slot in the bulkhead.
+		 */
+		public void release() {
+			if (bulkhead != null && released.compareAndSet(false, true)) {
+				bulkhead.release();
+			}
+		}
+
+		/**
+		 * Hand the bulkhead's slot on to the hedge's response, as the bulkhead
+		 * does for any blocking call, so that a body still being read counts.
+		 * @param response the hedge's response
+		 * @return a response that gives the slot back when it is closed
+		 */
+		public ClientHttpResponse holding(final ClientHttpResponse response) {
+			return new BulkheadInterceptor.ReleasingResponse(response, this::release);
+		}
+	}
+}
@@ -0,0 +1,354 @@
+package com.sst.nt.lms.orch.util;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.sst.nt.lms.orch.config.HedgingProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * The policy shared by the blocking and non-blocking ways of hedging requests:
+ * which requests to hedge, how long to wait before hedging one, whether the
+ * budget allows another hedge, and which instance to send it to.
+ *
+ * <p>The wait is the configured percentile of the service's recent response
+ * times. The budget is a token bucket per service, which every hedgeable
+ * request adds a fraction of a token to and every hedge takes a whole token
+ * from, so that hedges stay within the configured percentage of requests.
+ *
+ * <p>Hedges are counted in {@code orch.hedging.requests}, tagged with the
+ * service and whether the hedge was sent, won (its response was used), or not
+ * sent for want of budget or of another instance, or because the service's
+ * breaker, bulkhead or limit refused it (see {@link HedgeAdmission}).
+ *
+ * @author Jonathan Lovelace
+ */
+public final class Hedging implements MeterBinder {
+	/**
+	 * How many of a service's recent response times we keep.
+	 */
+	private static final int SAMPLES = 512;
+	/**
+	 * How many response times we need before trusting the percentile, and how
+	 * many we collect between recomputing it.
+	 */
+	private static final int RECOMPUTE = 64;
+	/**
+	 * The most hedges a service's budget can save up.
+	 */
+	private static final double MAX_TOKENS = 10;
+	/**
+	 * How many times to ask the load balancer for an instance other than the one
+	 * the first request went to.
+	 */
+	private static final int CHOICES = 3;
+	/**
+	 * The results hedges are counted by in {@code orch.hedging.requests}, in the
+	 * order of the indexes below.
+	 */
+	private static final String[] RESULTS = { "sent", "won", "over-budget",
+			"no-alternative", "refused" };
+	/**
+	 * The index of hedges sent.
+	 */
+	private static final int SENT = 0;
+	/**
+	 * The index of hedges whose response was used.
+	 */
+	private static final int WON = 1;
+	/**
+	 * The index of hedges not sent for want of budget.
+	 */
+	private static final int OVER_BUDGET = 2;
+	/**
+	 * The index of hedges not sent for want of another instance.
+	 */
+	private static final int NO_ALTERNATIVE = 3;
+	/**
+	 * The index of hedges the service's breaker, bulkhead or limit refused.
+	 */
+	private static final int REFUSED = 4;
+	/**
+	 * Hedging settings.
+	 */
+	private final HedgingProperties properties;
+	/**
+	 * Matcher for the route patterns.
+	 */
+	private final PathMatcher matcher = new AntPathMatcher();
+	/**
+	 * The load balancer hedges' instances are chosen by.
+	 */
+	private final LoadBalancerClient loadBalancer;
+	/**
+	 * Response times, budget and metrics, keyed by service name.
+	 */
+	private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+	/**
+	 * The registry hedges are counted in, once we have been bound to one.
+	 */
+	private volatile MeterRegistry registry;
+
+	/**
+	 * Constructor.
+	 * @param properties hedging settings
+	 * @param loadBalancer the load balancer to choose hedges' instances
+	 */
+	public Hedging(final HedgingProperties properties,
+			final LoadBalancerClient loadBalancer) {
+		this.properties = properties;
+		this.loadBalancer = loadBalancer;
+	}
+
+	/**
+	 * Whether a request should be hedged.
+	 * @param method the request method
+	 * @param service the name of the service it is addressed to
+	 * @param path the request path
+	 * @return true if it is a GET to a configured route
+	 */
+	public boolean isHedged(final HttpMethod method, final String service,
+			final String path) {
+		if (!properties.isEnabled() || method != HttpMethod.GET || service == null) {
+			return false;
+		}
+		final String route = "/" + service + path;
+		for (final String pattern : properties.getRoutes()) {
+			if (matcher.match(pattern, route)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Note that a hedgeable request to a service is starting.
+	 * @param service the name of the service
+	 * @return how long to wait for its response before hedging, in nanoseconds
+	 */
+	public long start(final String service) {
+		final Stats current = statsFor(service);
+		current.deposit(properties.getBudgetPercent() / 100);
+		final long delay = current.delay;
+		return delay < 0 ? properties.getInitialDelay().toNanos()
+				: Math.max(delay, properties.getMinDelay().toNanos());
+	}
+
+	/**
+	 * Record how long a hedgeable request took to be answered, by whichever
+	 * attempt answered it.
+	 * @param service the name of the service
+	 * @param nanos the response time, in nanoseconds
+	 */
+	public void record(final String service, final long nanos) {
+		statsFor(service).record(nanos, properties.getPercentile());
+	}
+
+	/**
+	 * Decide whether to send a hedge and, if so, where.
+	 * @param service the name of the service
+	 * @param primary the URI the first request went to, on a concrete instance
+	 * @return the same URI on another instance of the service, or null if there
+	 *         is no budget or no other instance to hedge to
+	 */
+	public URI alternative(final String service, final URI primary) {
+		final Stats current = statsFor(service);
+		if (!current.withdraw()) {
+			current.count(OVER_BUDGET);
+			return null;
+		}
+		for (int i = 0; i < CHOICES; i++) {
+			final ServiceInstance instance = loadBalancer.choose(service);
+			if (instance == null) {
+				break;
+			} else if (!instance.getHost().equals(primary.getHost())
+					|| instance.getPort() != primary.getPort()) {
+				current.count(SENT);
+				return UriComponentsBuilder.fromUri(primary).host(instance.getHost())
+						.port(instance.getPort()).build(true).toUri();
+			}
+		}
+		current.deposit(1);
+		current.count(NO_ALTERNATIVE);
+		return null;
+	}
+
+	/**
+	 * Note that a hedge's response was used instead of the first request's.
+	 * @param service the name of the service
+	 */
+	public void won(final String service) {
+		statsFor(service).count(WON);
+	}
+
+	/**
+	 * Note that a hedge was not sent because the service's circuit breaker,
+	 * bulkhead or concurrency limit would not admit it.
+	 * @param service the name of the service
+	 */
+	public void refused(final String service) {
+		statsFor(service).count(REFUSED);
+	}
+
+	/**
+	 * Get the statistics for a service, creating them if necessary.
+	 * @param service the name of the service
+	 * @return its statistics
+	 */
+	private Stats statsFor(final String service) {
+		final Stats current = stats.get(service);
+		if (current == null) {
+			return stats.computeIfAbsent(service, this::create);
+		}
+		return current;
+	}
+
+	/**
+	 * Create the statistics for a service.
+	 * @param service the name of the service
+	 * @return new statistics for it
+	 */
+	private Stats create(final String service) {
+		final Stats retval = new Stats(service);
+		final MeterRegistry current = registry;
+		if (current != null) {
+			retval.bindTo(current);
+		}
+		return retval;
+	}
+
+	@Override
+	public void bindTo(final MeterRegistry meterRegistry) {
+		registry = meterRegistry;
+		stats.values().forEach(current -> current.bindTo(meterRegistry));
+	}
+
+	/**
+	 * A service's recent response times, hedge budget, and hedge counters, which
+	 * are registered when it is bound to a registry rather than on each hedge.
+	 */
+	private static final class Stats {
+		/**
+		 * The name of the service.
+		 */
+		private final String service;
+		/**
+		 * The hedge counters, indexed as {@link #RESULTS}, or null if not yet
+		 * bound.
+		 */
+		private volatile Counter[] results;
+		/**
+		 * Recent response times, in nanoseconds, as a ring buffer.
+		 */
+		private final long[] samples = new long[SAMPLES];
+		/**
+		 * How many slots of the buffer are filled.
+		 */
+		private int count;
+		/**
+		 * The slot the next response time goes in.
+		 */
+		private int next;
+		/**
+		 * How many response times have come in since the delay was computed.
+		 */
+		private int sinceComputed;
+		/**
+		 * The configured percentile of the recent response times, in
+		 * nanoseconds, or -1 if there are too few of them yet.
+		 */
+		private volatile long delay = -1;
+		/**
+		 * The hedges the budget currently allows.
+		 */
+		private double tokens = 1;
+
+		/**
+		 * Constructor.
+		 * @param service the name of the service
+		 */
+		protected Stats(final String service) {
+			this.service = service;
+		}
+
+		/**
+		 * Record a response time, recomputing the delay from time to time.
+		 * @param nanos the response time, in nanoseconds
+		 * @param percentile the percentile the delay is
+		 */
+		protected synchronized void record(final long nanos, final double percentile) {
+			samples[next] = nanos;
+			next = (next + 1) % SAMPLES;
+			if (count < SAMPLES) {
+				count++;
+			}
+			sinceComputed++;
+			if (count >= RECOMPUTE && sinceComputed >= RECOMPUTE) {
+				final long[] sorted = Arrays.copyOf(samples, count);
+				Arrays.sort(sorted);
+				final int index = (int) Math.ceil(percentile / 100 * count) - 1;
+				delay = sorted[Math.max(0, Math.min(count - 1, index))];
+				sinceComputed = 0;
+			}
+		}
+
+		/**
+		 * Add to the budget.
+		 * @param amount how many hedges to add
+		 */
+		protected synchronized void deposit(final double amount) {
+			tokens = Math.min(MAX_TOKENS, tokens + amount);
+		}
+
+		/**
+		 * Take one hedge from the budget, if it allows one.
+		 * @return true if it did
+		 */
+		protected synchronized boolean withdraw() {
+			if (tokens < 1) {
+				return false;
+			}
+			tokens -= 1;
+			return true;
+		}
+
+		/**
+		 * Count a hedging decision in the metrics, if we have been bound to a
+		 * registry.
+		 * @param result the index of what was decided
+		 */
+		protected void count(final int result) {
+			final Counter[] current = results;
+			if (current != null) {
+				current[result].increment();
+			}
+		}
+
+		/**
+		 * Register the hedge counters in a registry.
+		 * @param meterRegistry the registry
+		 */
+		protected void bindTo(final MeterRegistry meterRegistry) {
+			final Counter[] counters = new Counter[RESULTS.length];
+			for (int i = 0; i < RESULTS.length; i++) {
+				counters[i] = Counter.builder("orch.hedging.requests")
+						.description("Hedge requests, by what became of them")
+						.tag("service", service).tag("result", RESULTS[i])
+						.register(meterRegistry);
+			}
+			results = counters;
+		}
+	}
+}
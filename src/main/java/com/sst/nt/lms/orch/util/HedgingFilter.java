@@ -0,0 +1,149 @@
+package com.sst.nt.lms.orch.util;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Hedges the requests {@link Hedging} picks out for the non-blocking REST
+ * delegate: if the first attempt has not been answered by the time the policy
+ * says, a second goes to another instance, and whichever is answered first is
+ * used while the other is cancelled, or its response released if it has one.
+ * Only slowness is hedged; an attempt that fails outright fails the request,
+ * as it would unhedged. As this runs below the breakers, bulkheads and limits,
+ * each hedge goes through {@link HedgeAdmission} instead, and is not sent if
+ * the service's breaker is not closed or it has no room for one more call.
+ *
+ * <p>This must run after the load balancer, so that it knows which instance the
+ * first attempt went to; since by then the service name is gone from the URL,
+ * {@link #serviceTagger()} must run before the load balancer to keep it.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class HedgingFilter implements ExchangeFilterFunction {
+	/**
+	 * The request attribute holding the logical service name.
+	 */
+	private static final String SERVICE = HedgingFilter.class.getName() + ".service";
+	/**
+	 * The hedging policy.
+	 */
+	private final Hedging hedging;
+	/**
+	 * Decides whether each hedge may be sent.
+	 */
+	private final HedgeAdmission admission;
+
+	/**
+	 * Constructor.
+	 * @param hedging the hedging policy
+	 * @param admission decides whether each hedge may be sent
+	 */
+	public HedgingFilter(final Hedging hedging, final HedgeAdmission admission) {
+		this.hedging = hedging;
+		this.admission = admission;
+	}
+
+	/**
+	 * Get a filter that notes the service each request is addressed to, for this
+	 * filter's use after the load balancer has replaced it.
+	 * @return the filter
+	 */
+	public static ExchangeFilterFunction serviceTagger() {
+		return (request, next) -> next.exchange(ClientRequest.from(request)
+				.attribute(SERVICE, request.url().getHost()).build());
+	}
+
+	@Override
+	public Mono<ClientResponse> filter(final ClientRequest request,
+			final ExchangeFunction next) {
+		final String service = (String) request.attribute(SERVICE).orElse(null);
+		if (!hedging.isHedged(request.method(), service, request.url().getRawPath())) {
+			return next.exchange(request);
+		}
+		final Deadline deadline = DeadlineInterceptor.deadlineOf(request);
+		return Mono.defer(() -> {
+			final long start = System.nanoTime();
+			// Set by whichever attempt is answered (or fails) first; the other's
+			// response, if it comes, is released rather than left to leak its
+			// connection.
+			final AtomicBoolean decided = new AtomicBoolean();
+			final Mono<ClientResponse> primary = next.exchange(request)
+					.onErrorResume(except -> decided.compareAndSet(false, true)
+							? Mono.error(except) : Mono.never())
+					.flatMap(response -> choose(decided, response, service, start, false));
+			final Mono<ClientResponse> hedge = Mono
+					.delay(Duration.ofNanos(hedging.start(service))).flatMap(tick -> {
+						if (decided.get()) {
+							return Mono.never();
+						}
+						final HedgeAdmission.Permit permit = admission.tryAdmit(service);
+						if (permit == null) {
+							hedging.refused(service);
+							return Mono.never();
+						}
+						final URI alternative = hedging.alternative(service, request.url());
+						if (alternative == null) {
+							permit.abandoned();
+							permit.release();
+							return Mono.never();
+						}
+						final long sent = System.nanoTime();
+						return next.exchange(ClientRequest.from(request).url(alternative).build())
+								.doOnSuccess(response -> {
+									if (response == null) {
+										permit.abandoned();
+									} else {
+										permit.answered(response.rawStatusCode(),
+												System.nanoTime() - sent);
+									}
+								}).doOnError(except -> permit.failed())
+								.doOnCancel(() -> {
+									// Cut short by one of our own timeouts, the service
+									// was too slow; otherwise the other attempt won, or
+									// our client gave up.
+									if (deadline != null && deadline.isTimedOut()) {
+										permit.failed();
+									} else {
+										permit.abandoned();
+									}
+								}).doFinally(signal -> permit.release())
+								.onErrorResume(except -> Mono.never())
+								.flatMap(response -> choose(decided, response, service, start,
+										true));
+					});
+			return Mono.first(primary, hedge);
+		});
+	}
+
+	/**
+	 * Use an attempt's response if no other has been chosen, or else release it.
+	 * @param decided whether a response has been chosen
+	 * @param response the attempt's response
+	 * @param service the name of the service the request is to
+	 * @param start when the first attempt started, per {@link System#nanoTime()}
+	 * @param hedged whether this attempt is the hedge
+	 * @return the response if it was chosen, or else a Mono that never emits
+	 */
+	private Mono<ClientResponse> choose(final AtomicBoolean decided,
+			final ClientResponse response, final String service, final long start,
+			final boolean hedged) {
+		if (decided.compareAndSet(false, true)) {
+			hedging.record(service, System.nanoTime() - start);
+			if (hedged) {
+				hedging.won(service);
+			}
+			return Mono.just(response);
+		}
+		// Released apart from this attempt, which the race is about to cancel.
+		response.bodyToMono(Void.class).onErrorResume(except -> Mono.empty()).subscribe();
+		return Mono.never();
+	}
+}
@@ -0,0 +1,365 @@
+package com.sst.nt.lms.orch.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.StreamUtils;
+
+/**
+ * A request factory that hedges the requests {@link Hedging} picks out. The
+ * first attempt runs on the calling thread as usual; if it has not been
+ * answered by the time the policy says, a second attempt goes to another
+ * instance from a small pool of our own. Whichever is answered first is used,
+ * and the other is aborted.
+ *
+ * <p>This sits below the interceptors, so the URIs it sees are on concrete
+ * instances, and bulkheads, circuit breakers, and so on see one call however
+ * many attempts it took. The hedge is counted apart, through
+ * {@link HedgeAdmission}: it is not sent while the service's breaker is not
+ * closed or it would not fit under the service's limit or in its bulkhead, and
+ * it holds slots in both while it is in flight. Both attempts share the call's
+ * {@link Deadline}.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class HedgingRequestFactory implements ClientHttpRequestFactory,
+		DisposableBean {
+	/**
+	 * The factory that makes each attempt.
+	 */
+	private final PooledClientHttpRequestFactory delegate;
+	/**
+	 * The hedging policy.
+	 */
+	private final Hedging hedging;
+	/**
+	 * Decides whether each hedge may be sent.
+	 */
+	private final HedgeAdmission admission;
+	/**
+	 * The pool that waits out the hedging delays and sends hedges.
+	 */
+	private final ScheduledThreadPoolExecutor executor;
+
+	/**
+	 * Constructor.
+	 * @param delegate the factory that makes each attempt
+	 * @param hedging the hedging policy
+	 * @param admission decides whether each hedge may be sent
+	 * @param threads the size of the pool that sends hedges
+	 */
+	public HedgingRequestFactory(final PooledClientHttpRequestFactory delegate,
+			final Hedging hedging, final HedgeAdmission admission, final int threads) {
+		this.delegate = delegate;
+		this.hedging = hedging;
+		this.admission = admission;
+		executor = new ScheduledThreadPoolExecutor(threads,
+				new CustomizableThreadFactory("orch-hedge-"));
+		executor.setRemoveOnCancelPolicy(true);
+	}
+
+	@Override
+	public ClientHttpRequest createRequest(final URI uri, final HttpMethod httpMethod)
+			throws IOException {
+		final String service = DownstreamServiceInterceptor.currentService();
+		if (hedging.isHedged(httpMethod, service, uri.getRawPath())) {
+			return new HedgedRequest(uri, httpMethod, service);
+		} else {
+			return delegate.createRequest(uri, httpMethod);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * One attempt at a hedged request.
+	 */
+	private final class Attempt {
+		/**
+		 * The URI this attempt goes to.
+		 */
+		private final URI uri;
+		/**
+		 * Aborts the underlying request, once it has been created.
+		 */
+		private volatile Runnable abort;
+		/**
+		 * Whether this attempt has been told to abort.
+		 */
+		private volatile boolean aborted;
+
+		/**
+		 * Constructor.
+		 * @param uri the URI this attempt goes to
+		 */
+		protected Attempt(final URI uri) {
+			this.uri = uri;
+		}
+
+		/**
+		 * Make the attempt.
+		 * @param request the request being hedged
+		 * @param headers its headers
+		 * @param body its body
+		 * @return the response
+		 * @throws IOException on I/O error, including being aborted
+		 */
+		protected ClientHttpResponse execute(final HedgedRequest request,
+				final HttpHeaders headers, final byte[] body) throws IOException {
+			// The hedge is created on our pool, so give it the caller's deadline.
+			final Deadline previous = Deadline.set(request.deadline);
+			final ClientHttpRequest attempt;
+			try {
+				attempt = delegate.createRequest(uri, request.getMethod(), request.service,
+						action -> {
+							abort = action;
+							if (aborted) {
+								action.run();
+							}
+						});
+			} finally {
+				Deadline.set(previous);
+			}
+			attempt.getHeaders().putAll(headers);
+			if (body.length > 0) {
+				StreamUtils.copy(body, attempt.getBody());
+			}
+			return attempt.execute();
+		}
+
+		/**
+		 * Abort the attempt, now or as soon as its request is created.
+		 */
+		protected void abort() {
+			aborted = true;
+			final Runnable action = abort;
+			if (action != null) {
+				action.run();
+			}
+		}
+	}
+
+	/**
+	 * A request that may be sent more than once.
+	 */
+	private final class HedgedRequest extends AbstractClientHttpRequest {
+		/**
+		 * The URI of the first attempt.
+		 */
+		private final URI uri;
+		/**
+		 * The request method.
+		 */
+		private final HttpMethod method;
+		/**
+		 * The name of the service the request is to.
+		 */
+		private final String service;
+		/**
+		 * The deadline of the call, shared by every attempt, or null if none.
+		 */
+		private final Deadline deadline = Deadline.current();
+		/**
+		 * The request body.
+		 */
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream(0);
+		/**
+		 * Whether an attempt's response has been chosen.
+		 */
+		private final AtomicBoolean decided = new AtomicBoolean();
+		/**
+		 * Whether it has been settled if there is to be a hedge: set by the
+		 * timer when it goes off, or by the first attempt if it fails before
+		 * then, so that it knows whether there is a hedge to wait for.
+		 */
+		private final AtomicBoolean hedgeSettled = new AtomicBoolean();
+		/**
+		 * The hedge's response if it was chosen, or null if it was not (or no
+		 * hedge was sent).
+		 */
+		private final CompletableFuture<ClientHttpResponse> hedgeResult =
+				new CompletableFuture<>();
+		/**
+		 * The hedge attempt, once there is one.
+		 */
+		private volatile Attempt hedge;
+
+		/**
+		 * Constructor.
+		 * @param uri the URI of the first attempt
+		 * @param method the request method
+		 * @param service the name of the service the request is to
+		 */
+		protected HedgedRequest(final URI uri, final HttpMethod method,
+				final String service) {
+			this.uri = uri;
+			this.method = method;
+			this.service = service;
+		}
+
+		@Override
+		public String getMethodValue() {
+			return method.name();
+		}
+
+		@Override
+		public URI getURI() {
+			return uri;
+		}
+
+		@Override
+		protected OutputStream getBodyInternal(final HttpHeaders headers) {
+			return body;
+		}
+
+		@Override
+		protected ClientHttpResponse executeInternal(final HttpHeaders headers)
+				throws IOException {
+			final byte[] bytes = body.toByteArray();
+			final long start = System.nanoTime();
+			final Attempt primary = new Attempt(uri);
+			final ScheduledFuture<?> timer = executor.schedule(
+					() -> sendHedge(primary, headers, bytes, start),
+					hedging.start(service), TimeUnit.NANOSECONDS);
+			final ClientHttpResponse response;
+			try {
+				response = primary.execute(this, headers, bytes);
+			} catch (final IOException | RuntimeException except) {
+				// Cancelling the timer cannot tell us whether the hedge is being
+				// sent, as it also succeeds while the timer is running.
+				timer.cancel(false);
+				if (hedgeSettled.compareAndSet(false, true)) {
+					throw except;
+				}
+				return awaitHedge(except);
+			}
+			timer.cancel(false);
+			if (decided.compareAndSet(false, true)) {
+				final Attempt current = hedge;
+				if (current != null) {
+					current.abort();
+				}
+				hedging.record(service, System.nanoTime() - start);
+				return response;
+			}
+			// The hedge was answered first, while this response was on its way.
+			response.close();
+			return awaitHedge(null);
+		}
+
+		/**
+		 * Send the hedge, if the policy and the service's breaker, limit and
+		 * bulkhead allow, and take its response if it is answered first. Runs on
+		 * our pool.
+		 * @param primary the first attempt
+		 * @param headers the request headers
+		 * @param bytes the request body
+		 * @param start when the first attempt started, per {@link System#nanoTime()}
+		 */
+		private void sendHedge(final Attempt primary, final HttpHeaders headers,
+				final byte[] bytes, final long start) {
+			if (!hedgeSettled.compareAndSet(false, true)) {
+				// The first attempt has already failed, and is not waiting.
+				return;
+			}
+			if (decided.get()) {
+				hedgeResult.complete(null);
+				return;
+			}
+			final HedgeAdmission.Permit permit = admission.tryAdmit(service);
+			if (permit == null) {
+				hedging.refused(service);
+				hedgeResult.complete(null);
+				return;
+			}
+			final URI alternative = hedging.alternative(service, uri);
+			if (alternative == null) {
+				permit.abandoned();
+				permit.release();
+				hedgeResult.complete(null);
+				return;
+			}
+			final Attempt current = new Attempt(alternative);
+			hedge = current;
+			if (decided.get()) {
+				// The first attempt was answered before it could see the hedge.
+				permit.abandoned();
+				permit.release();
+				hedgeResult.complete(null);
+				return;
+			}
+			final long sent = System.nanoTime();
+			try {
+				final ClientHttpResponse response = current.execute(this, headers, bytes);
+				permit.answered(response.getRawStatusCode(), System.nanoTime() - sent);
+				if (decided.compareAndSet(false, true)) {
+					primary.abort();
+					hedging.record(service, System.nanoTime() - start);
+					hedging.won(service);
+					hedgeResult.complete(permit.holding(response));
+				} else {
+					response.close();
+					permit.release();
+					hedgeResult.complete(null);
+				}
+			} catch (final IOException | RuntimeException except) {
+				// Aborted because the first attempt won, or given up on with it.
+				if (decided.get() || (deadline != null && deadline.isExpired()
+						&& !deadline.isTimedOut())) {
+					permit.abandoned();
+				} else {
+					permit.failed();
+				}
+				permit.release();
+				hedgeResult.complete(null);
+			}
+		}
+
+		/**
+		 * Wait for the hedge, after the first attempt failed or lost.
+		 * @param failure why the first attempt failed, or null if it lost
+		 * @return the hedge's response
+		 * @throws IOException if the hedge was not sent or did not succeed either
+		 */
+		private ClientHttpResponse awaitHedge(final Exception failure)
+				throws IOException {
+			final ClientHttpResponse response;
+			try {
+				response = hedgeResult.get();
+			} catch (final InterruptedException except) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted waiting for hedged request", except);
+			} catch (final ExecutionException except) {
+				throw new IOException("Hedged request failed", except.getCause());
+			}
+			if (response != null) {
+				return response;
+			} else if (failure instanceof IOException) {
+				throw (IOException) failure;
+			} else if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			} else {
+				throw new IOException("Neither attempt at hedged request succeeded");
+			}
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.sst.nt.lms.orch.util;
+
+import java.io.IOException;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Drops hop-by-hop headers (see {@link Passthrough#isRelayed(String)}) from
+ * downstream responses, for both the blocking and the non-blocking REST
+ * delegate. Many routes return the downstream {@code ResponseEntity} as-is,
+ * headers and all, and a relayed {@code Transfer-Encoding: chunked} contradicts
+ * the framing the servlet container (or a filter that buffers the body and sets
+ * {@code Content-Length}) actually uses. {@code Content-Length} is dropped
+ * too: it describes the downstream body, which we often parse and write out
+ * again differently, and a stale one truncates the response to the client.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class HopByHopHeaderInterceptor
+		implements ClientHttpRequestInterceptor, ExchangeFilterFunction {
+	/**
+	 * Whether a downstream response header is to be dropped.
+	 * @param name the header name
+	 * @return true if it is hop-by-hop, or gives the downstream body's length
+	 */
+	private static boolean isDropped(final String name) {
+		return !Passthrough.isRelayed(name)
+				|| HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name);
+	}
+
+	@Override
+	public ClientHttpResponse intercept(final HttpRequest request, final byte[] body,
+			final ClientHttpRequestExecution execution) throws IOException {
+		final ClientHttpResponse response = execution.execute(request, body);
+		response.getHeaders().keySet().removeIf(HopByHopHeaderInterceptor::isDropped);
+		return response;
+	}
+
+	@Override
+	public Mono<ClientResponse> filter(final ClientRequest request,
+			final ExchangeFunction next) {
+		return next.exchange(request).map(response -> ClientResponse.from(response)
+				.headers(headers -> headers.keySet()
+						.removeIf(HopByHopHeaderInterceptor::isDropped))
+				.body(response.bodyToFlux(DataBuffer.class)).build());
+	}
+}
@@ -0,0 +1,373 @@
+package com.sst.nt.lms.orch.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+import com.sst.nt.lms.orch.config.LoadBalancingProperties;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps track of how each downstream instance is doing, for {@link PeakEwmaRule}
+ * to choose between them: how many requests it has in flight, and a
+ * "peak EWMA" of how long it takes to answer. That is an exponentially weighted
+ * moving average that jumps straight up to any response time above it, so that
+ * an instance that slows down is avoided at once, and only comes back down
+ * gradually, including while the instance is not being called.
+ *
+ * <p>Requests are seen on their way to a concrete instance, after the load
+ * balancer: {@link PooledClientHttpRequestFactory} passes every request the
+ * blocking REST delegate makes through {@link #track(ClientHttpRequest,
+ * BooleanSupplier)}, and
+ * this is a filter for the non-blocking one. Either way each hedge attempt counts
+ * separately, and one abandoned because the other attempt won counts only while
+ * it is in flight.
+ *
+ * <p>Each instance's latency average and requests in flight are reported as the
+ * gauges {@code orch.load-balancing.latency} and
+ * {@code orch.load-balancing.in-flight}, tagged with the instance's host and port;
+ * and each call it finishes is timed in {@code orch.downstream.instance.requests},
+ * tagged with the instance and whether the call succeeded.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class InstanceLoadTracker implements ExchangeFilterFunction, MeterBinder {
+	/**
+	 * Load-balancing settings.
+	 */
+	private final LoadBalancingProperties properties;
+	/**
+	 * The instances seen so far, keyed by host and port.
+	 */
+	private final Map<String, Instance> instances = new ConcurrentHashMap<>();
+	/**
+	 * The registry instance metrics are reported to, once we have been bound to
+	 * one.
+	 */
+	private volatile MeterRegistry registry;
+
+	/**
+	 * Constructor.
+	 * @param properties load-balancing settings
+	 */
+	public InstanceLoadTracker(final LoadBalancingProperties properties) {
+		this.properties = properties;
+	}
+
+	/**
+	 * How costly it would be to send another request to an instance: its latency
+	 * average, forgiven for the time since it last answered, times one more than
+	 * its requests in flight. An instance that has not answered yet costs
+	 * nothing if it is idle, and a failure's worth per request if it is not.
+	 * @param host the instance's host
+	 * @param port the instance's port
+	 * @return the cost, lower being better
+	 */
+	public double cost(final String host, final int port) {
+		final Instance instance = instances.get(host + ':' + port);
+		if (instance == null) {
+			return 0;
+		}
+		return instance.cost(System.nanoTime(), properties.getDecayTime().toNanos(),
+				properties.getFailurePenalty().toNanos());
+	}
+
+	/**
+	 * Wrap a blocking request so its outcome is recorded against its instance.
+	 * @param request the request, to a concrete instance
+	 * @param aborted whether the request has been aborted, as the losing attempt
+	 *        at a hedged request is, so that its failure is not held against the
+	 *        instance
+	 * @return the wrapped request
+	 */
+	public ClientHttpRequest track(final ClientHttpRequest request,
+			final BooleanSupplier aborted) {
+		return new TrackedRequest(request, aborted);
+	}
+
+	@Override
+	public Mono<ClientResponse> filter(final ClientRequest request,
+			final ExchangeFunction next) {
+		return Mono.defer(() -> {
+			final Call call = begin(request.url());
+			return next.exchange(request)
+					.doOnSuccess(response -> call.finish(
+							response == null || response.rawStatusCode() >= 500))
+					.doOnError(except -> call.finish(true)).doOnCancel(call::abandon);
+		});
+	}
+
+	/**
+	 * Note that a request to an instance is starting.
+	 * @param uri the request's URI
+	 * @return the call, to be finished or abandoned
+	 */
+	private Call begin(final URI uri) {
+		final String key = uri.getHost() + ':' + uri.getPort();
+		final Instance instance = instances.computeIfAbsent(key, this::create);
+		instance.inFlight.incrementAndGet();
+		return new Call(instance);
+	}
+
+	/**
+	 * Create the record of an instance.
+	 * @param key the instance's host and port
+	 * @return a new record for it
+	 */
+	private Instance create(final String key) {
+		final Instance instance = new Instance();
+		final MeterRegistry current = registry;
+		if (current != null) {
+			bindTo(current, key, instance);
+		}
+		return instance;
+	}
+
+	@Override
+	public void bindTo(final MeterRegistry meterRegistry) {
+		registry = meterRegistry;
+		instances.forEach((key, instance) -> bindTo(meterRegistry, key, instance));
+	}
+
+	/**
+	 * Report an instance's load to a registry.
+	 * @param meterRegistry the registry
+	 * @param key the instance's host and port
+	 * @param instance the instance's record
+	 */
+	private void bindTo(final MeterRegistry meterRegistry, final String key,
+			final Instance instance) {
+		final long decay = properties.getDecayTime().toNanos();
+		Gauge.builder("orch.load-balancing.latency", instance,
+				i -> i.latency(System.nanoTime(), decay) / TimeUnit.SECONDS.toNanos(1))
+				.description("Peak-weighted moving average of response time")
+				.baseUnit("seconds").tag("instance", key).register(meterRegistry);
+		Gauge.builder("orch.load-balancing.in-flight", instance, i -> i.inFlight.get())
+				.description("Requests awaiting a response").tag("instance", key)
+				.register(meterRegistry);
+		instance.succeeded = instanceTimer(meterRegistry, key, "SUCCESS");
+		instance.failed = instanceTimer(meterRegistry, key, "FAILURE");
+	}
+
+	/**
+	 * Get the timer for an instance's calls with a given outcome.
+	 * @param meterRegistry the registry
+	 * @param key the instance's host and port
+	 * @param outcome the outcome
+	 * @return the timer
+	 */
+	private static Timer instanceTimer(final MeterRegistry meterRegistry,
+			final String key, final String outcome) {
+		return Timer.builder("orch.downstream.instance.requests")
+				.description("Calls answered, or failed, by each downstream instance")
+				.tag("instance", key).tag("outcome", outcome).register(meterRegistry);
+	}
+
+	/**
+	 * What we know of how an instance is doing.
+	 */
+	private static final class Instance {
+		/**
+		 * How many requests to it are awaiting a response.
+		 */
+		protected final AtomicInteger inFlight = new AtomicInteger();
+		/**
+		 * The latency average, in nanoseconds, as of {@link #stamp}, or 0 if it has
+		 * not answered yet.
+		 */
+		private double latency;
+		/**
+		 * When the latency average was last updated, per {@link System#nanoTime()}.
+		 */
+		private long stamp;
+		/**
+		 * The timer for its successful calls, once bound to a registry.
+		 */
+		protected volatile Timer succeeded;
+		/**
+		 * The timer for its failed calls, once bound to a registry.
+		 */
+		protected volatile Timer failed;
+
+		/**
+		 * Record a response time.
+		 * @param nanos the response time, in nanoseconds
+		 * @param now the current time, per {@link System#nanoTime()}
+		 * @param decay the decay time, in nanoseconds
+		 */
+		protected synchronized void observe(final double nanos, final long now,
+				final long decay) {
+			if (nanos > latency) {
+				latency = nanos;
+			} else {
+				final double weight = Math.exp(-(double) (now - stamp) / decay);
+				latency = latency * weight + nanos * (1 - weight);
+			}
+			stamp = now;
+		}
+
+		/**
+		 * Get the latency average, forgiven for the time since it was last updated.
+		 * @param now the current time, per {@link System#nanoTime()}
+		 * @param decay the decay time, in nanoseconds
+		 * @return the latency average, in nanoseconds
+		 */
+		protected synchronized double latency(final long now, final long decay) {
+			return latency * Math.exp(-(double) (now - stamp) / decay);
+		}
+
+		/**
+		 * Get the cost of sending the instance another request.
+		 * @param now the current time, per {@link System#nanoTime()}
+		 * @param decay the decay time, in nanoseconds
+		 * @param penalty the latency charged for a failure, in nanoseconds
+		 * @return the cost
+		 * @see InstanceLoadTracker#cost(String, int)
+		 */
+		protected double cost(final long now, final long decay, final long penalty) {
+			final int pending = inFlight.get();
+			final double current = latency(now, decay);
+			if (current == 0 && pending > 0) {
+				return (double) penalty * pending;
+			}
+			return current * (pending + 1);
+		}
+	}
+
+	/**
+	 * One request to an instance, which is finished or abandoned only once.
+	 */
+	private final class Call {
+		/**
+		 * The instance it is to.
+		 */
+		private final Instance instance;
+		/**
+		 * When it started, per {@link System#nanoTime()}.
+		 */
+		private final long start = System.nanoTime();
+		/**
+		 * Whether it has been finished or abandoned.
+		 */
+		private final AtomicBoolean done = new AtomicBoolean();
+
+		/**
+		 * Constructor.
+		 * @param instance the instance the request is to
+		 */
+		protected Call(final Instance instance) {
+			this.instance = instance;
+		}
+
+		/**
+		 * Note that the instance has answered, or failed to.
+		 * @param failed whether it failed, so its response time is at least the
+		 *        failure penalty
+		 */
+		protected void finish(final boolean failed) {
+			if (done.compareAndSet(false, true)) {
+				final long now = System.nanoTime();
+				final long elapsed = now - start;
+				instance.observe(failed ? Math.max(elapsed,
+						properties.getFailurePenalty().toNanos()) : elapsed, now,
+						properties.getDecayTime().toNanos());
+				instance.inFlight.decrementAndGet();
+				final Timer timer = failed ? instance.failed : instance.succeeded;
+				if (timer != null) {
+					timer.record(elapsed, TimeUnit.NANOSECONDS);
+				}
+			}
+		}
+
+		/**
+		 * Note that the request was given up on before it was answered, which
+		 * says nothing about the instance.
+		 */
+		protected void abandon() {
+			if (done.compareAndSet(false, true)) {
+				instance.inFlight.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * A blocking request whose outcome is recorded when it is executed.
+	 */
+	private final class TrackedRequest implements ClientHttpRequest {
+		/**
+		 * The request.
+		 */
+		private final ClientHttpRequest delegate;
+		/**
+		 * Whether the request has been aborted.
+		 */
+		private final BooleanSupplier aborted;
+
+		/**
+		 * Constructor.
+		 * @param delegate the request
+		 * @param aborted whether the request has been aborted
+		 */
+		protected TrackedRequest(final ClientHttpRequest delegate,
+				final BooleanSupplier aborted) {
+			this.delegate = delegate;
+			this.aborted = aborted;
+		}
+
+		@Override
+		public String getMethodValue() {
+			return delegate.getMethodValue();
+		}
+
+		@Override
+		public URI getURI() {
+			return delegate.getURI();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return delegate.getHeaders();
+		}
+
+		@Override
+		public OutputStream getBody() throws IOException {
+			return delegate.getBody();
+		}
+
+		@Override
+		public ClientHttpResponse execute() throws IOException {
+			final Call call = begin(delegate.getURI());
+			try {
+				final ClientHttpResponse response = delegate.execute();
+				call.finish(response.getRawStatusCode() >= 500);
+				return response;
+			} catch (final IOException | RuntimeException except) {
+				if (aborted.getAsBoolean()) {
+					call.abandon();
+				} else {
+					call.finish(true);
+				}
+				throw except;
+			}
+		}
+	}
+}
@@ -0,0 +1,801 @@
+package com.sst.nt.lms.orch.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+import com.sst.nt.lms.orch.model.Book;
+import com.sst.nt.lms.orch.model.Branch;
+import com.sst.nt.lms.orch.model.BranchCopies;
+import com.sst.nt.lms.orch.model.CopiesDelta;
+import com.sst.nt.lms.orch.model.CopiesMatrix;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * An in-memory copy of how many copies of each book each branch holds, so that
+ * lookups of those counts can be answered without a downstream call.
+ *
+ * <p>Counts are kept in an open-addressing hash table keyed by the branch and
+ * book IDs packed into one {@code long}, with the counts themselves in a
+ * parallel {@code int} array, so that a lookup neither boxes nor allocates
+ * until it builds its answer. Branches and books are looked up the same way,
+ * by ID, in tables of their positions in arrays of the branches and books
+ * themselves; and for each branch the IDs of the books it has counts for are
+ * kept in order, so that listing a branch's counts costs as much as the branch
+ * has rather than as the whole table. Lookups take no lock unless a write
+ * overlaps them, in which case they retry under a read lock.
+ *
+ * <p>The table is filled from the librarian service's copies matrix by
+ * {@link #load(Supplier)}, which is called periodically; and between loads it is
+ * kept up to date by the orchestrator's own writes, through {@link #set(int, int,
+ * int)} and {@link #adjust(int, int, int)}. A load builds its table without
+ * holding the lock and swaps it in, replaying any writes made while it was
+ * fetching. Once the last successful load is older than the staleness bound,
+ * every lookup misses, so that callers go to the downstream service instead.
+ *
+ * <p>Every change to a count, whether by one of our writes or found by a load,
+ * is given the next version number and kept in a ring buffer of the most recent
+ * changes, so that {@link #changesSince(String, long)} can tell a client that
+ * has seen up to some version only what has changed since. Versions mean
+ * nothing outside the index that issued them, so each index has a random epoch
+ * that is given out and checked along with them; a client holding a version
+ * from another instance, or from before a restart, is sent every count rather
+ * than changes it cannot apply.
+ *
+ * <p>Hits and misses are counted in {@code orch.inventory.lookups}, and the
+ * gauges {@code orch.inventory.entries} and {@code orch.inventory.age} report
+ * how many counts are held and how old they are.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class InventoryIndex implements MeterBinder {
+	/**
+	 * The count held for a key whose count we cannot know without asking the
+	 * downstream service again.
+	 */
+	private static final int UNKNOWN = -1;
+	/**
+	 * How long counts may be served after the load they came from started, in
+	 * nanoseconds.
+	 */
+	private final long maxStaleness;
+	/**
+	 * Guards {@link #snapshot}, {@link #loaded}, {@link #loadedAt},
+	 * {@link #pending} and the change log.
+	 */
+	private final StampedLock lock = new StampedLock();
+	/**
+	 * Held for the whole of a load, so that only one runs at a time. A lock
+	 * rather than a monitor, since a load waits on the downstream service while
+	 * holding it, which would pin a virtual thread to its carrier.
+	 */
+	private final ReentrantLock loading = new ReentrantLock();
+	/**
+	 * Identifies this index among all others, so that versions from elsewhere
+	 * are not mistaken for ours.
+	 */
+	private final String epoch = UUID.randomUUID().toString();
+	/**
+	 * The current contents.
+	 */
+	private Snapshot snapshot = new Snapshot();
+	/**
+	 * Whether any load has succeeded.
+	 */
+	private boolean loaded;
+	/**
+	 * When the last successful load started, per {@link System#nanoTime()}.
+	 */
+	private long loadedAt;
+	/**
+	 * The writes made while a load is fetching, to be replayed over what it
+	 * fetched, or null if no load is in progress.
+	 */
+	private LongIntTable pending;
+	/**
+	 * The latest version.
+	 */
+	private long version;
+	/**
+	 * The earliest version a client may ask for changes since; before the first
+	 * load, or for a client from before it, only every count will do.
+	 */
+	private long floor;
+	/**
+	 * The packed branch and book IDs of the most recent changes, each at its
+	 * version modulo the length, which is a power of two.
+	 */
+	private final long[] changedKeys;
+	/**
+	 * The count each of the most recent changes left.
+	 */
+	private final int[] changedCopies;
+	/**
+	 * Lookups answered from memory, once bound to a registry.
+	 */
+	private volatile Counter hits;
+	/**
+	 * Lookups left to the downstream service, once bound to a registry.
+	 */
+	private volatile Counter misses;
+
+	/**
+	 * Constructor.
+	 * @param maxStaleness how long counts may be served after the load they came
+	 *        from started
+	 * @param changeLogSize how many of the most recent changes to keep, rounded
+	 *        up to a power of two
+	 */
+	public InventoryIndex(final Duration maxStaleness, final int changeLogSize) {
+		this.maxStaleness = maxStaleness.toNanos();
+		final int capacity = Integer.highestOneBit(Math.max(changeLogSize, 2) * 2 - 1);
+		changedKeys = new long[capacity];
+		changedCopies = new int[capacity];
+	}
+
+	/**
+	 * Pack a branch and book ID into a key.
+	 * @param branchId the branch ID
+	 * @param bookId the book ID
+	 * @return the key
+	 */
+	private static long key(final int branchId, final int bookId) {
+		return ((long) branchId << 32) | (bookId & 0xffffffffL);
+	}
+
+	/**
+	 * Whether counts loaded at a given time may still be served. Call only
+	 * while holding the lock, or inside an optimistic read.
+	 * @param now the current time, per {@link System#nanoTime()}
+	 * @return whether a load has succeeded recently enough
+	 */
+	private boolean fresh(final long now) {
+		return loaded && now - loadedAt <= maxStaleness;
+	}
+
+	/**
+	 * Whether lookups can currently be answered from memory.
+	 * @return whether a load has succeeded within the staleness bound
+	 */
+	public boolean isFresh() {
+		final long now = System.nanoTime();
+		long stamp = lock.tryOptimisticRead();
+		boolean result = fresh(now);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				result = fresh(now);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Look up how many copies of a book a branch holds.
+	 * @param branchId the branch's ID
+	 * @param bookId the book's ID
+	 * @return the count, with the branch and book, or null if it is not known or
+	 *         not fresh enough to serve
+	 */
+	public BranchCopies get(final int branchId, final int bookId) {
+		final long key = key(branchId, bookId);
+		final long now = System.nanoTime();
+		long stamp = lock.tryOptimisticRead();
+		Snapshot current = snapshot;
+		boolean fresh = fresh(now);
+		int copies = current.counts.get(key);
+		int branch = current.branchPositions.get(branchId);
+		int book = current.bookPositions.get(bookId);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				current = snapshot;
+				fresh = fresh(now);
+				copies = current.counts.get(key);
+				branch = current.branchPositions.get(branchId);
+				book = current.bookPositions.get(bookId);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		if (!fresh || copies == UNKNOWN || branch < 0 || book < 0) {
+			count(misses);
+			return null;
+		}
+		count(hits);
+		return new BranchCopies(current.books[book], current.branches[branch], copies);
+	}
+
+	/**
+	 * Look up how many copies of each book a branch holds.
+	 * @param branchId the branch's ID
+	 * @return the counts, with the branch and books, in order of book ID; or null
+	 *         if the branch is not known, any of its counts is not known, or they
+	 *         are not fresh enough to serve
+	 */
+	public List<BranchCopies> getAll(final int branchId) {
+		final long now = System.nanoTime();
+		final long stamp = lock.readLock();
+		final Snapshot current;
+		final int branch;
+		final int[] bookIds;
+		final int[] copies;
+		try {
+			current = snapshot;
+			branch = current.branchPositions.get(branchId);
+			if (!fresh(now) || branch < 0) {
+				count(misses);
+				return null;
+			}
+			bookIds = current.bookIds[branch];
+			copies = new int[bookIds.length];
+			for (int i = 0; i < bookIds.length; i++) {
+				copies[i] = current.counts.get(key(branchId, bookIds[i]));
+				if (copies[i] == UNKNOWN) {
+					count(misses);
+					return null;
+				}
+			}
+		} finally {
+			lock.unlockRead(stamp);
+		}
+		final List<BranchCopies> result = new ArrayList<>(bookIds.length);
+		for (int i = 0; i < bookIds.length; i++) {
+			final int book = current.bookPositions.get(bookIds[i]);
+			if (book < 0) {
+				count(misses);
+				return null;
+			}
+			result.add(new BranchCopies(current.books[book], current.branches[branch],
+					copies[i]));
+		}
+		count(hits);
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Record how many copies of a book a branch now holds, as the librarian
+	 * service has just confirmed.
+	 * @param branchId the branch's ID
+	 * @param bookId the book's ID
+	 * @param copies the number of copies
+	 */
+	public void set(final int branchId, final int bookId, final int copies) {
+		final long key = key(branchId, bookId);
+		final long stamp = lock.writeLock();
+		try {
+			final int value = copies < 0 ? UNKNOWN : copies;
+			if (snapshot.counts.get(key) != value) {
+				record(key, value);
+			}
+			snapshot.put(key, value);
+			if (pending != null) {
+				pending = pending.with(key, value);
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Record that a branch has gained or lost copies of a book, as a return or a
+	 * loan the borrower service has just confirmed. If we did not know the count,
+	 * or it would go negative, it is left unknown until the next load.
+	 * @param branchId the branch's ID
+	 * @param bookId the book's ID
+	 * @param delta the number of copies gained, or minus the number lost
+	 */
+	public void adjust(final int branchId, final int bookId, final int delta) {
+		final long key = key(branchId, bookId);
+		final long stamp = lock.writeLock();
+		try {
+			final int copies = snapshot.counts.get(key);
+			if (copies != UNKNOWN) {
+				final int updated = copies + delta < 0 ? UNKNOWN : copies + delta;
+				snapshot.counts.replace(key, updated);
+				record(key, updated);
+			}
+			// A load in progress may have fetched the count from before or after
+			// this change, so we cannot say what it should be.
+			if (pending != null) {
+				pending = pending.with(key, UNKNOWN);
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Replace the contents with a freshly fetched copies matrix. Only one load
+	 * runs at a time.
+	 * @param source fetches the matrix, returning null or throwing if it cannot
+	 * @return whether the load succeeded; if it did not, the old contents are
+	 *         kept, and age as they would have
+	 */
+	public boolean load(final Supplier<CopiesMatrix> source) {
+		loading.lock();
+		try {
+			return reload(source);
+		} finally {
+			loading.unlock();
+		}
+	}
+
+	/**
+	 * Replace the contents with a freshly fetched copies matrix. Call only while
+	 * holding {@link #loading}.
+	 * @param source fetches the matrix, returning null or throwing if it cannot
+	 * @return whether the load succeeded
+	 */
+	private boolean reload(final Supplier<CopiesMatrix> source) {
+		final long started = System.nanoTime();
+		long stamp = lock.writeLock();
+		try {
+			pending = new LongIntTable(16);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+		Snapshot next = null;
+		try {
+			final CopiesMatrix matrix = source.get();
+			if (matrix != null) {
+				next = new Snapshot(matrix);
+			}
+		} finally {
+			stamp = lock.writeLock();
+			try {
+				if (next != null) {
+					final LongIntTable writes = pending;
+					for (int slot = 0; slot < writes.keys.length; slot++) {
+						if (writes.keys[slot] != LongIntTable.EMPTY) {
+							next.put(writes.keys[slot], writes.values[slot]);
+						}
+					}
+					if (loaded) {
+						recordDifferences(snapshot.counts, next.counts);
+					} else {
+						// Nobody can have had counts before the first load.
+						version++;
+						floor = version;
+					}
+					snapshot = next;
+					loadedAt = started;
+					loaded = true;
+				}
+				pending = null;
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+		return next != null;
+	}
+
+	/**
+	 * Give a change to a count the next version. Call only while holding the
+	 * write lock.
+	 * @param key the packed branch and book IDs
+	 * @param copies the count it changed to, or {@link #UNKNOWN}
+	 */
+	private void record(final long key, final int copies) {
+		version++;
+		final int slot = (int) version & (changedKeys.length - 1);
+		changedKeys[slot] = key;
+		changedCopies[slot] = copies;
+	}
+
+	/**
+	 * Record every count a load has changed, added or removed. Call only while
+	 * holding the write lock.
+	 * @param before the counts before the load
+	 * @param after the counts it loaded
+	 */
+	private void recordDifferences(final LongIntTable before, final LongIntTable after) {
+		for (int slot = 0; slot < after.keys.length; slot++) {
+			final long key = after.keys[slot];
+			if (key != LongIntTable.EMPTY && before.get(key) != after.values[slot]) {
+				record(key, after.values[slot]);
+			}
+		}
+		for (int slot = 0; slot < before.keys.length; slot++) {
+			final long key = before.keys[slot];
+			if (key != LongIntTable.EMPTY && before.values[slot] != UNKNOWN
+					&& after.find(key) < 0) {
+				record(key, UNKNOWN);
+			}
+		}
+	}
+
+	/**
+	 * Get the counts that have changed since a version, or every count if that
+	 * version is too old for the changes since to still be held, or is from
+	 * another epoch than ours.
+	 * @param epoch the epoch of the version the client has
+	 * @param since the version the client has
+	 * @return the changes or counts, with the version they bring the client up
+	 *         to; or null if the counts are not fresh enough to serve
+	 */
+	public CopiesDelta changesSince(final String epoch, final long since) {
+		final long now = System.nanoTime();
+		final long stamp = lock.readLock();
+		try {
+			if (!fresh(now)) {
+				return null;
+			}
+			final Snapshot current = snapshot;
+			if (!this.epoch.equals(epoch) || since > version || since < floor
+					|| version - since > changedKeys.length) {
+				return new CopiesDelta(this.epoch, version, true,
+						current.matrix(current.counts));
+			}
+			// Keep only the latest change to each count.
+			final LongIntTable latest = new LongIntTable((int) (version - since));
+			final int mask = changedKeys.length - 1;
+			for (long changed = since + 1; changed <= version; changed++) {
+				final int slot = (int) changed & mask;
+				latest.put(changedKeys[slot], changedCopies[slot]);
+			}
+			return new CopiesDelta(this.epoch, version, false, current.matrix(latest));
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Count a lookup, if we have been bound to a registry.
+	 * @param counter the counter, or null if not yet bound
+	 */
+	private static void count(final Counter counter) {
+		if (counter != null) {
+			counter.increment();
+		}
+	}
+
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		Gauge.builder("orch.inventory.entries", this, InventoryIndex::entries)
+				.description("Copy counts held in memory").register(registry);
+		Gauge.builder("orch.inventory.age", this, InventoryIndex::age)
+				.description("Time since the copy counts held in memory were loaded")
+				.baseUnit("seconds").register(registry);
+		hits = Counter.builder("orch.inventory.lookups")
+				.description("Copy-count lookups, by whether they were answered from memory")
+				.tag("result", "hit").register(registry);
+		misses = Counter.builder("orch.inventory.lookups")
+				.description("Copy-count lookups, by whether they were answered from memory")
+				.tag("result", "miss").register(registry);
+	}
+
+	/**
+	 * Get the number of counts held, for reporting.
+	 * @return the number of counts held
+	 */
+	private double entries() {
+		final long stamp = lock.readLock();
+		try {
+			return snapshot.counts.size;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Get the time since the last successful load started, for reporting.
+	 * @return the time, in seconds, or NaN if no load has succeeded
+	 */
+	private double age() {
+		final long now = System.nanoTime();
+		final long stamp = lock.readLock();
+		try {
+			return loaded ? (double) (now - loadedAt) / TimeUnit.SECONDS.toNanos(1)
+					: Double.NaN;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * The contents as of one load, plus the writes since.
+	 */
+	private static final class Snapshot {
+		/**
+		 * Copy counts, keyed by packed branch and book IDs.
+		 */
+		protected LongIntTable counts;
+		/**
+		 * Positions in {@link #branches}, keyed by branch ID.
+		 */
+		protected final LongIntTable branchPositions;
+		/**
+		 * Positions in {@link #books}, keyed by book ID.
+		 */
+		protected final LongIntTable bookPositions;
+		/**
+		 * The branches the counts are for.
+		 */
+		protected final Branch[] branches;
+		/**
+		 * The books the counts are for.
+		 */
+		protected final Book[] books;
+		/**
+		 * For each of {@link #branches}, the IDs of the books it has counts for,
+		 * in order. Each array is replaced rather than changed, so that one
+		 * fetched under the lock may be read after it is released.
+		 */
+		protected final int[][] bookIds;
+
+		/**
+		 * Constructor for the contents before the first load.
+		 */
+		protected Snapshot() {
+			counts = new LongIntTable(16);
+			branchPositions = new LongIntTable(16);
+			bookPositions = new LongIntTable(16);
+			branches = new Branch[0];
+			books = new Book[0];
+			bookIds = new int[0][];
+		}
+
+		/**
+		 * Constructor.
+		 * @param matrix the copies matrix to hold, in which a count of -1 is one
+		 *        we cannot know, such as for a book the matrix cannot tell apart
+		 *        from another; it is held as {@link #UNKNOWN}, so that lookups of
+		 *        it miss
+		 */
+		protected Snapshot(final CopiesMatrix matrix) {
+			branches = matrix.getBranches().toArray(new Branch[0]);
+			books = matrix.getBooks().toArray(new Book[0]);
+			branchPositions = new LongIntTable(branches.length);
+			for (int i = 0; i < branches.length; i++) {
+				branchPositions.put(branches[i].getId(), i);
+			}
+			bookPositions = new LongIntTable(books.length);
+			for (int i = 0; i < books.length; i++) {
+				bookPositions.put(books[i].getId(), i);
+			}
+			final int[] branchIds = matrix.getBranchIds();
+			final int[] bookIds = matrix.getBookIds();
+			final int[] copies = matrix.getCopies();
+			counts = new LongIntTable(copies.length);
+			final int[] held = new int[branches.length];
+			for (int i = 0; i < copies.length; i++) {
+				counts.put(key(branchIds[i], bookIds[i]), copies[i]);
+				final int branch = branchPositions.get(branchIds[i]);
+				if (branch >= 0) {
+					held[branch]++;
+				}
+			}
+			this.bookIds = new int[branches.length][];
+			for (int i = 0; i < branches.length; i++) {
+				this.bookIds[i] = new int[held[i]];
+				held[i] = 0;
+			}
+			for (int i = 0; i < copies.length; i++) {
+				final int branch = branchPositions.get(branchIds[i]);
+				if (branch >= 0) {
+					this.bookIds[branch][held[branch]++] = bookIds[i];
+				}
+			}
+			for (final int[] ids : this.bookIds) {
+				Arrays.sort(ids);
+			}
+		}
+
+		/**
+		 * Set a count, adding its book to its branch's if it is new. Call only
+		 * while holding the write lock, or before the snapshot is published.
+		 * @param key the packed branch and book IDs
+		 * @param value the count
+		 */
+		protected void put(final long key, final int value) {
+			if (counts.find(key) < 0) {
+				final int branch = branchPositions.get(key >>> 32);
+				if (branch >= 0) {
+					final int[] ids = bookIds[branch];
+					final int at = -Arrays.binarySearch(ids, (int) key) - 1;
+					final int[] added = new int[ids.length + 1];
+					System.arraycopy(ids, 0, added, 0, at);
+					added[at] = (int) key;
+					System.arraycopy(ids, at, added, at + 1, ids.length - at);
+					bookIds[branch] = added;
+				}
+			}
+			counts = counts.with(key, value);
+		}
+
+		/**
+		 * Describe some counts in columnar form, in order of branch and then book,
+		 * with whichever of our branches and books they mention.
+		 * @param table the counts, keyed by packed branch and book IDs
+		 * @return the counts
+		 */
+		protected CopiesMatrix matrix(final LongIntTable table) {
+			final long[] keys = new long[table.size];
+			int count = 0;
+			for (final long key : table.keys) {
+				if (key != LongIntTable.EMPTY) {
+					keys[count++] = key;
+				}
+			}
+			Arrays.sort(keys);
+			final int[] branchIds = new int[count];
+			final int[] bookIds = new int[count];
+			final int[] copies = new int[count];
+			final boolean[] branchUsed = new boolean[branches.length];
+			final boolean[] bookUsed = new boolean[books.length];
+			for (int i = 0; i < count; i++) {
+				branchIds[i] = (int) (keys[i] >>> 32);
+				bookIds[i] = (int) keys[i];
+				copies[i] = table.get(keys[i]);
+				final int branch = branchPositions.get(branchIds[i]);
+				if (branch >= 0) {
+					branchUsed[branch] = true;
+				}
+				final int book = bookPositions.get(bookIds[i]);
+				if (book >= 0) {
+					bookUsed[book] = true;
+				}
+			}
+			final List<Branch> usedBranches = new ArrayList<>();
+			for (int i = 0; i < branches.length; i++) {
+				if (branchUsed[i]) {
+					usedBranches.add(branches[i]);
+				}
+			}
+			final List<Book> usedBooks = new ArrayList<>();
+			for (int i = 0; i < books.length; i++) {
+				if (bookUsed[i]) {
+					usedBooks.add(books[i]);
+				}
+			}
+			return new CopiesMatrix(usedBranches, usedBooks, branchIds, bookIds, copies, 0);
+		}
+	}
+
+	/**
+	 * An open-addressing hash table from {@code long} to {@code int}, in which
+	 * a missing key reads as -1, with linear probing, which is never more than half full. It
+	 * does not grow in place: {@link #with(long, int)} returns a bigger copy
+	 * instead, so that a reader that has fetched the arrays without the lock
+	 * never sees them change size under it.
+	 */
+	private static final class LongIntTable {
+		/**
+		 * The key of an empty slot. Packed IDs cannot be this, as IDs are not
+		 * negative.
+		 */
+		protected static final long EMPTY = Long.MIN_VALUE;
+		/**
+		 * The keys, or {@link #EMPTY}. The length is a power of two.
+		 */
+		protected final long[] keys;
+		/**
+		 * The value for each key.
+		 */
+		protected final int[] values;
+		/**
+		 * The number of keys.
+		 */
+		protected int size;
+
+		/**
+		 * Constructor.
+		 * @param expected how many keys the table must hold without growing
+		 */
+		protected LongIntTable(final int expected) {
+			final int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) * 2;
+			keys = new long[capacity];
+			Arrays.fill(keys, EMPTY);
+			values = new int[capacity];
+		}
+
+		/**
+		 * The slot to start probing at for a key.
+		 * @param key the key
+		 * @param mask one less than the table's capacity
+		 * @return the slot
+		 */
+		private static int start(final long key, final int mask) {
+			final long hash = key * 0x9E3779B97F4A7C15L;
+			return (int) (hash ^ (hash >>> 32)) & mask;
+		}
+
+		/**
+		 * Find the slot holding a key. Safe to call without the lock, as the
+		 * probe never runs past the end or goes round more than once.
+		 * @param key the key
+		 * @return its slot, or -1 if it is not present
+		 */
+		private int find(final long key) {
+			final long[] keys = this.keys;
+			final int mask = keys.length - 1;
+			int slot = start(key, mask);
+			for (int probes = 0; probes <= mask; probes++) {
+				final long found = keys[slot];
+				if (found == key) {
+					return slot;
+				} else if (found == EMPTY) {
+					return -1;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+
+		/**
+		 * Get the value for a key.
+		 * @param key the key
+		 * @return its value, or -1 if it is not present
+		 */
+		protected int get(final long key) {
+			final int slot = find(key);
+			return slot < 0 ? -1 : values[slot];
+		}
+
+		/**
+		 * Replace the value of a key, if it is present.
+		 * @param key the key
+		 * @param value its new value
+		 */
+		protected void replace(final long key, final int value) {
+			final int slot = find(key);
+			if (slot >= 0) {
+				values[slot] = value;
+			}
+		}
+
+		/**
+		 * Set the value of a key, which there must be room for.
+		 * @param key the key
+		 * @param value its value
+		 */
+		protected void put(final long key, final int value) {
+			final int mask = keys.length - 1;
+			int slot = start(key, mask);
+			while (keys[slot] != EMPTY && keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			if (keys[slot] == EMPTY) {
+				keys[slot] = key;
+				size++;
+			}
+			values[slot] = value;
+		}
+
+		/**
+		 * Set the value of a key, copying the table into a bigger one first if
+		 * it is half full and the key is new.
+		 * @param key the key
+		 * @param value its value
+		 * @return this table, or the bigger copy
+		 */
+		protected LongIntTable with(final long key, final int value) {
+			if (find(key) < 0 && (size + 1) * 2 > keys.length) {
+				final LongIntTable bigger = new LongIntTable(keys.length);
+				for (int slot = 0; slot < keys.length; slot++) {
+					if (keys[slot] != EMPTY) {
+						bigger.put(keys[slot], values[slot]);
+					}
+				}
+				bigger.put(key, value);
+				return bigger;
+			}
+			put(key, value);
+			return this;
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package com.sst.nt.lms.orch.util;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.client.RestTemplate;
+
+import com.sst.nt.lms.orch.model.Book;
+import com.sst.nt.lms.orch.model.Branch;
+import com.sst.nt.lms.orch.model.CopiesMatrix;
+
+/**
+ * Reloads an {@link InventoryIndex} from the librarian service in the
+ * background: once the application is ready, as the REST delegate cannot reach
+ * services by name until then, and then after each interval.
+ * The matrix's keys are resolved to branches and books as for the
+ * {@link CopiesMatrices#columnar(Map, java.util.Collection,
+ * java.util.Collection) columnar form}, except that counts under a key shared by
+ * several books are loaded as not known for each of them, and a branch with
+ * counts for books we could not resolve is left out (see
+ * {@link CopiesMatrices#indexable(Map, java.util.Collection,
+ * java.util.Collection)}), so that lookups of them go downstream. A load that
+ * fails leaves the index as it was, to go stale if the failures go on.
+ *
+ * <p>Every load is a full reload: the librarian service cannot say what has
+ * changed since a given time, so each one fetches the whole matrix and every
+ * branch and book again, and rebuilds the index from them. Its cost grows with
+ * the inventory, and the interval should be chosen with that in mind.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class InventoryRefresher
+		implements ApplicationListener<ApplicationReadyEvent>, DisposableBean {
+	/**
+	 * The thread loads run on.
+	 */
+	private final ScheduledExecutorService executor;
+	/**
+	 * The index to load.
+	 */
+	private final InventoryIndex index;
+	/**
+	 * REST delegate.
+	 */
+	private final RestTemplate restTemplate;
+	/**
+	 * How long to wait after each load before the next.
+	 */
+	private final Duration interval;
+
+	/**
+	 * Constructor.
+	 * @param index the index to load
+	 * @param restTemplate the REST delegate
+	 * @param interval how long to wait after each load before the next
+	 */
+	public InventoryRefresher(final InventoryIndex index, final RestTemplate restTemplate,
+			final Duration interval) {
+		this.index = index;
+		this.restTemplate = restTemplate;
+		this.interval = interval;
+		final CustomizableThreadFactory threads =
+				new CustomizableThreadFactory("orch-inventory-");
+		threads.setDaemon(true);
+		executor = Executors.newSingleThreadScheduledExecutor(threads);
+	}
+
+	/**
+	 * Start loading, with the first load at once.
+	 * @param event the application having started
+	 */
+	@Override
+	public void onApplicationEvent(final ApplicationReadyEvent event) {
+		executor.scheduleWithFixedDelay(this::refresh, 0, interval.toNanos(),
+				TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Load the index once. Failures are swallowed, as one that escaped would
+	 * cancel the later loads.
+	 */
+	private void refresh() {
+		try {
+			index.load(this::fetch);
+		} catch (final RuntimeException except) {
+			// Try again next time; until then the index ages.
+		}
+	}
+
+	/**
+	 * Fetch the copies matrix, and the branches and books to resolve its keys.
+	 * @return the matrix in columnar form, or null if any request did not succeed
+	 */
+	private CopiesMatrix fetch() {
+		final ResponseEntity<Map<String, Map<String, Integer>>> matrix = restTemplate
+				.exchange("http://librarian-service/librarian/branches/books/copies",
+						HttpMethod.GET, null,
+						new ParameterizedTypeReference<Map<String, Map<String, Integer>>>() {});
+		final ResponseEntity<List<Branch>> branches = restTemplate.exchange(
+				"http://librarian-service/librarian/branches", HttpMethod.GET, null,
+				new ParameterizedTypeReference<List<Branch>>() {});
+		final ResponseEntity<List<Book>> books = restTemplate.exchange(
+				"http://librarian-service/librarian/books", HttpMethod.GET, null,
+				new ParameterizedTypeReference<List<Book>>() {});
+		if (!succeeded(matrix) || !succeeded(branches) || !succeeded(books)) {
+			return null;
+		}
+		return CopiesMatrices.indexable(matrix.getBody(), branches.getBody(),
+				books.getBody());
+	}
+
+	/**
+	 * Whether a request succeeded.
+	 * @param response its response
+	 * @return whether it was a success with a body
+	 */
+	private static boolean succeeded(final ResponseEntity<?> response) {
+		return response.getStatusCode().is2xxSuccessful() && response.getBody() != null;
+	}
+
+	@Override
+	public void destroy() {
+		executor.shutdownNow();
+	}
+}
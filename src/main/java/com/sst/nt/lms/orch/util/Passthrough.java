@@ -0,0 +1,163 @@
+package com.sst.nt.lms.orch.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Helpers for routes that relay a downstream response to the client byte for
+ * byte, instead of deserializing it into an object graph only to serialize it
+ * again. We use this for the large "list" routes, where that round trip costs
+ * the most heap and CPU and buys nothing: the orchestrator neither inspects nor
+ * changes the data.
+ *
+ * <p>A client's {@code If-None-Match} is forwarded downstream, and the
+ * downstream service's tag (or its 304), if any, is relayed. The blocking
+ * variant always tells the entity-tag filter not to buffer and hash the
+ * response, since that would hold the whole body before sending any of it,
+ * and hide a client's going away until it was all in hand; so its responses
+ * carry only the downstream service's tag, if it sends one.
+ *
+ * <p>Spring MVC can only stream a reactive body in a streaming media type, so the
+ * reactive variant holds the raw bytes of the response rather than streaming
+ * them; it still never parses them. As it holds them anyway, the entity-tag
+ * filter tags the response if the downstream service did not.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class Passthrough {
+	/**
+	 * Headers that describe a single connection rather than the response, so must
+	 * not be relayed (RFC 7230 section 6.1); the servlet container supplies its
+	 * own.
+	 */
+	private static final Set<String> HOP_BY_HOP = Collections.unmodifiableSet(
+			new TreeSet<>(Arrays.asList("connection", "keep-alive",
+					"proxy-authenticate", "proxy-authorization", "te", "trailer",
+					"transfer-encoding", "upgrade")));
+
+	/**
+	 * Do not instantiate.
+	 */
+	private Passthrough() {
+		// static helpers only
+	}
+
+	/**
+	 * Whether a downstream response header should be relayed to the client.
+	 * @param name the header name
+	 * @return false if it is a hop-by-hop header, true otherwise
+	 */
+	public static boolean isRelayed(final String name) {
+		return !HOP_BY_HOP.contains(name.toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * Copy the headers of a downstream response that should be relayed.
+	 * @param headers the downstream response headers
+	 * @return those that should be relayed to the client
+	 */
+	public static HttpHeaders relayedHeaders(final HttpHeaders headers) {
+		final HttpHeaders retval = new HttpHeaders();
+		headers.forEach((name, values) -> {
+			if (isRelayed(name)) {
+				retval.put(name, values);
+			}
+		});
+		return retval;
+	}
+
+	/**
+	 * Copy the client's validator, if any, to a downstream request.
+	 * @param request the client's request
+	 * @param headers the headers of the downstream request
+	 */
+	private static void forwardValidator(final HttpServletRequest request,
+			final HttpHeaders headers) {
+		final String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+		if (ifNoneMatch != null) {
+			headers.set(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+		}
+	}
+
+	/**
+	 * If the downstream service tagged its response, leave the response to the
+	 * client untagged by the entity-tag filter, which would otherwise replace the
+	 * downstream tag with its own.
+	 * @param request the client's request
+	 * @param headers the headers of the downstream response
+	 */
+	private static void useDownstreamValidator(final HttpServletRequest request,
+			final HttpHeaders headers) {
+		if (headers.getETag() != null) {
+			ShallowEtagHeaderFilter.disableContentCaching(request);
+		}
+	}
+
+	/**
+	 * Send a GET request downstream and stream its response, status and headers
+	 * included, straight to the client. The body is copied through a small buffer
+	 * and never held in memory as a whole, not even by the entity-tag filter.
+	 *
+	 * @param delegate the REST delegate
+	 * @param url the URL to send the request to
+	 * @param request the client's request
+	 * @param response the response to the client
+	 */
+	public static void get(final RestTemplate delegate, final String url,
+			final HttpServletRequest request, final HttpServletResponse response) {
+		delegate.execute(url, HttpMethod.GET,
+				downstreamRequest -> {
+					ShallowEtagHeaderFilter.disableContentCaching(request);
+					downstreamRequest.getHeaders()
+							.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+					forwardValidator(request, downstreamRequest.getHeaders());
+				},
+				downstream -> {
+					response.setStatus(downstream.getRawStatusCode());
+					downstream.getHeaders().forEach((name, values) -> {
+						if (isRelayed(name)) {
+							values.forEach(value -> response.addHeader(name, value));
+						}
+					});
+					StreamUtils.copy(downstream.getBody(), response.getOutputStream());
+					return null;
+				});
+	}
+
+	/**
+	 * Send a GET request downstream and relay its response, status and headers
+	 * included, to the client without parsing it.
+	 *
+	 * @param delegate the non-blocking REST delegate
+	 * @param url the URL to send the request to
+	 * @param request the client's request
+	 * @return the response to relay to the client, once it arrives
+	 */
+	public static Mono<ResponseEntity<byte[]>> get(final WebClient delegate,
+			final String url, final HttpServletRequest request) {
+		return delegate.get().uri(url).accept(MediaType.APPLICATION_JSON)
+				.headers(headers -> forwardValidator(request, headers)).exchange()
+				.flatMap(downstream -> downstream.toEntity(byte[].class))
+				.doOnNext(entity -> useDownstreamValidator(request, entity.getHeaders()))
+				.map(entity -> ResponseEntity.status(entity.getStatusCodeValue())
+						.headers(relayedHeaders(entity.getHeaders()))
+						.body(entity.getBody()));
+	}
+}
@@ -0,0 +1,81 @@
+package com.sst.nt.lms.orch.util;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.netflix.client.config.IClientConfig;
+import com.netflix.loadbalancer.AbstractLoadBalancerRule;
+import com.netflix.loadbalancer.ILoadBalancer;
+import com.netflix.loadbalancer.Server;
+
+/**
+ * A Ribbon rule that chooses between a service's instances by the "power of two
+ * choices": pick two of them at random, and use the one the
+ * {@link InstanceLoadTracker} says is cheaper to call, by its recent latency
+ * and requests in flight. This steers traffic away from an instance that is
+ * slow or backed up almost as well as always picking the best instance would,
+ * without every request herding onto whichever instance looked best a moment
+ * ago.
+ *
+ * <p>Ribbon's zone-aware load balancer makes a copy of its rule for each zone,
+ * through the no-argument constructor. Those copies know nothing of how
+ * instances are doing, and so choose at random; but they are only used when a
+ * service's instances span several zones, which ours do not.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class PeakEwmaRule extends AbstractLoadBalancerRule {
+	/**
+	 * Where instances' load is tracked, or null if we do not know.
+	 */
+	private final InstanceLoadTracker tracker;
+
+	/**
+	 * Constructor for the copies Ribbon makes by reflection, which choose at
+	 * random.
+	 */
+	public PeakEwmaRule() {
+		this(null);
+	}
+
+	/**
+	 * Constructor.
+	 * @param tracker where instances' load is tracked, or null to choose at
+	 *        random
+	 */
+	public PeakEwmaRule(final InstanceLoadTracker tracker) {
+		this.tracker = tracker;
+	}
+
+	@Override
+	public void initWithNiwsConfig(final IClientConfig clientConfig) {
+		// Nothing to configure per client.
+	}
+
+	@Override
+	public Server choose(final Object key) {
+		final ILoadBalancer loadBalancer = getLoadBalancer();
+		if (loadBalancer == null) {
+			return null;
+		}
+		final List<Server> servers = loadBalancer.getReachableServers();
+		final int count = servers.size();
+		if (count == 0) {
+			return null;
+		} else if (count == 1) {
+			return servers.get(0);
+		}
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final int first = random.nextInt(count);
+		// Any index but the first, with equal probability.
+		final int second = (first + 1 + random.nextInt(count - 1)) % count;
+		final Server one = servers.get(first);
+		final Server other = servers.get(second);
+		if (tracker == null || tracker.cost(one.getHost(), one.getPort())
+				<= tracker.cost(other.getHost(), other.getPort())) {
+			return one;
+		} else {
+			return other;
+		}
+	}
+}
@@ -0,0 +1,670 @@
+package com.sst.nt.lms.orch.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.sst.nt.lms.orch.config.HttpClientProperties;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * A request factory that keeps a separate pool of keep-alive connections for
+ * each downstream service, so that one service exhausting its pool cannot take
+ * connections away from the others. The service a request belongs to is the one
+ * recorded by {@link DownstreamServiceInterceptor}; requests made outside of it
+ * share a default pool.
+ *
+ * <p>A request created while the current thread has a {@link Deadline} is
+ * aborted if it has not been answered by then, and fails at once if it is
+ * executed after the deadline has passed. A response closed once our client
+ * is known to have gone away (see {@link ClientConnection}) is aborted rather
+ * than read to the end.
+ *
+ * <p>If given an {@link InstanceLoadTracker}, it sees every request made, so
+ * that the load balancer can tell how each instance is doing.
+ *
+ * <p>When requests are made on virtual threads, a request first waits for a
+ * fair share of its pool's connections, overall and to its instance, on
+ * semaphores of our own sized like the pool. HttpClient waits for a free
+ * connection while holding a monitor, which would pin the virtual thread to
+ * its carrier for as long as the pool stays exhausted; with the gate in front
+ * of it, the pool always has a connection to spare by the time it is asked.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class PooledClientHttpRequestFactory
+		implements ClientHttpRequestFactory, MeterBinder, DisposableBean {
+	/**
+	 * The name of the pool used for requests not attributed to any service.
+	 */
+	public static final String DEFAULT_POOL = "default";
+	/**
+	 * Where to hand a way of aborting the request being created, if anywhere. The
+	 * request factories we wrap do not expose the underlying request except to
+	 * subclasses, while it is being created.
+	 */
+	private static final ThreadLocal<Consumer<Runnable>> ABORT_HANDLER =
+			new ThreadLocal<>();
+	/**
+	 * Pool settings.
+	 */
+	private final HttpClientProperties properties;
+	/**
+	 * The pools created so far, keyed by service name.
+	 */
+	private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+	/**
+	 * Where requests' outcomes are recorded against their instances, if anywhere.
+	 */
+	private final InstanceLoadTracker tracker;
+	/**
+	 * Whether requests wait for a connection at our own gate before leasing one
+	 * from the pool.
+	 */
+	private final boolean gateLeases;
+	/**
+	 * The thread that aborts requests whose deadline has passed.
+	 */
+	private final ScheduledThreadPoolExecutor timer;
+	/**
+	 * The registry pool metrics are reported to, once we have been bound to one.
+	 */
+	private volatile MeterRegistry registry;
+
+	/**
+	 * Constructor. Pools for the services named in the settings are created
+	 * eagerly; others are created on first use.
+	 *
+	 * @param properties the pool settings
+	 */
+	public PooledClientHttpRequestFactory(final HttpClientProperties properties) {
+		this(properties, null);
+	}
+
+	/**
+	 * Constructor. Pools for the services named in the settings are created
+	 * eagerly; others are created on first use.
+	 *
+	 * @param properties the pool settings
+	 * @param tracker where to record requests' outcomes against their instances,
+	 *        or null not to
+	 */
+	public PooledClientHttpRequestFactory(final HttpClientProperties properties,
+			final InstanceLoadTracker tracker) {
+		this(properties, tracker, false);
+	}
+
+	/**
+	 * Constructor. Pools for the services named in the settings are created
+	 * eagerly; others are created on first use.
+	 *
+	 * @param properties the pool settings
+	 * @param tracker where to record requests' outcomes against their instances,
+	 *        or null not to
+	 * @param gateLeases whether requests should wait for a connection at our own
+	 *        gate before leasing one from the pool, as they should if made on
+	 *        virtual threads
+	 */
+	public PooledClientHttpRequestFactory(final HttpClientProperties properties,
+			final InstanceLoadTracker tracker, final boolean gateLeases) {
+		this.properties = properties;
+		this.tracker = tracker;
+		this.gateLeases = gateLeases;
+		timer = new ScheduledThreadPoolExecutor(1,
+				new CustomizableThreadFactory("orch-deadline-"));
+		timer.setRemoveOnCancelPolicy(true);
+		for (final String service : properties.getServices().keySet()) {
+			poolFor(service);
+		}
+	}
+
+	@Override
+	public ClientHttpRequest createRequest(final URI uri, final HttpMethod httpMethod)
+			throws IOException {
+		return createRequest(uri, httpMethod,
+				DownstreamServiceInterceptor.currentService(), null);
+	}
+
+	/**
+	 * Create a request that can be aborted from another thread, for a named
+	 * service rather than the one the current thread is calling.
+	 *
+	 * @param uri the URI to request
+	 * @param httpMethod the HTTP method
+	 * @param service the name of the service, or null for the default pool
+	 * @param abortHandler given an action that aborts the request, including
+	 *        while it is waiting for the response, or null if not wanted
+	 * @return the request
+	 * @throws IOException on I/O error creating the request
+	 */
+	public ClientHttpRequest createRequest(final URI uri, final HttpMethod httpMethod,
+			final String service, final Consumer<Runnable> abortHandler)
+			throws IOException {
+		final Deadline deadline = Deadline.current();
+		final AtomicBoolean aborted = new AtomicBoolean();
+		final AtomicReference<Runnable> abort = new AtomicReference<>();
+		ABORT_HANDLER.set(action -> {
+			abort.set(action);
+			if (abortHandler != null) {
+				abortHandler.accept(() -> {
+					aborted.set(true);
+					action.run();
+				});
+			}
+		});
+		final Pool pool = poolFor(service);
+		final ClientHttpRequest created;
+		try {
+			created = pool.requestFactory.createRequest(uri, httpMethod);
+		} finally {
+			ABORT_HANDLER.remove();
+		}
+		final ClientHttpRequest request =
+				new AbortableRequest(created, service, deadline, abort.get(), pool.gate);
+		// A request aborted for running out of time still counts against its
+		// instance, unlike one aborted because another attempt won.
+		return tracker == null ? request : tracker.track(request, aborted::get);
+	}
+
+	/**
+	 * Get the pool for a service, creating it if necessary.
+	 * @param service the name of the service, or null for the default pool
+	 * @return its pool
+	 */
+	private Pool poolFor(final String service) {
+		return pools.computeIfAbsent(service == null ? DEFAULT_POOL : service,
+				this::createPool);
+	}
+
+	/**
+	 * Create the pool for a service.
+	 * @param service the name of the service
+	 * @return a new pool for it
+	 */
+	private Pool createPool(final String service) {
+		final PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager(
+				properties.getTimeToLive().toMillis(), TimeUnit.MILLISECONDS);
+		manager.setMaxTotal(properties.maxTotalFor(service));
+		manager.setDefaultMaxPerRoute(properties.maxPerRouteFor(service));
+		manager.setValidateAfterInactivity(
+				(int) properties.getValidateAfterInactivity().toMillis());
+		final HttpClientBuilder builder = HttpClients.custom()
+				.setConnectionManager(manager)
+				.evictExpiredConnections()
+				.evictIdleConnections(properties.getIdleTimeout().toMillis(),
+						TimeUnit.MILLISECONDS);
+		// Content compression (Accept-Encoding: gzip,deflate, with responses
+		// decoded and their Content-Encoding and Content-Length headers dropped)
+		// is on by default in HttpClient.
+		if (!properties.isCompression()) {
+			builder.disableContentCompression();
+		}
+		final CloseableHttpClient client = builder.build();
+		final HttpComponentsClientHttpRequestFactory requestFactory =
+				new HttpComponentsClientHttpRequestFactory(client) {
+					@Override
+					protected void postProcessHttpRequest(final HttpUriRequest request) {
+						final Consumer<Runnable> abortHandler = ABORT_HANDLER.get();
+						if (abortHandler != null) {
+							abortHandler.accept(request::abort);
+						}
+					}
+				};
+		requestFactory.setConnectionRequestTimeout(
+				(int) properties.getLeaseTimeout().toMillis());
+		requestFactory.setConnectTimeout((int) properties.getConnectTimeout().toMillis());
+		requestFactory.setReadTimeout((int) properties.getReadTimeout().toMillis());
+		final LeaseGate gate = gateLeases ? new LeaseGate(properties.maxTotalFor(service),
+				properties.maxPerRouteFor(service), properties.getLeaseTimeout().toNanos())
+				: null;
+		final Pool pool = new Pool(manager, requestFactory, gate);
+		final MeterRegistry current = registry;
+		if (current != null) {
+			pool.bindTo(current, service);
+		}
+		return pool;
+	}
+
+	/**
+	 * Get the pools created so far.
+	 * @return an unmodifiable view of the pools' connection managers, keyed by
+	 *         service name
+	 */
+	public Map<String, PoolingHttpClientConnectionManager> getPools() {
+		final Map<String, PoolingHttpClientConnectionManager> retval = new ConcurrentHashMap<>();
+		pools.forEach((service, pool) -> retval.put(service, pool.manager));
+		return Collections.unmodifiableMap(retval);
+	}
+
+	@Override
+	public void bindTo(final MeterRegistry meterRegistry) {
+		registry = meterRegistry;
+		pools.forEach((service, pool) -> pool.bindTo(meterRegistry, service));
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		timer.shutdownNow();
+		for (final Pool pool : pools.values()) {
+			pool.requestFactory.destroy();
+		}
+	}
+
+	/**
+	 * A request that is aborted if it has not been answered by its deadline, and
+	 * whose response is aborted rather than read to the end if it is closed after
+	 * our client has gone away. If its pool is gated, it holds its place at the
+	 * gate from before it is sent until its response is closed.
+	 */
+	private final class AbortableRequest implements ClientHttpRequest {
+		/**
+		 * The request.
+		 */
+		private final ClientHttpRequest delegate;
+		/**
+		 * The name of the service it is to, or null if unknown.
+		 */
+		private final String service;
+		/**
+		 * Its deadline, or null if none.
+		 */
+		private final Deadline deadline;
+		/**
+		 * Aborts it, or null if it cannot be aborted.
+		 */
+		private final Runnable abort;
+		/**
+		 * The gate in front of its pool, or null if the pool is not gated.
+		 */
+		private final LeaseGate gate;
+
+		/**
+		 * Constructor.
+		 * @param delegate the request
+		 * @param service the name of the service it is to, or null if unknown
+		 * @param deadline its deadline, or null if none
+		 * @param abort aborts it, or null if it cannot be aborted
+		 * @param gate the gate in front of its pool, or null if none
+		 */
+		protected AbortableRequest(final ClientHttpRequest delegate,
+				final String service, final Deadline deadline, final Runnable abort,
+				final LeaseGate gate) {
+			this.delegate = delegate;
+			this.service = service;
+			this.deadline = deadline;
+			this.abort = abort;
+			this.gate = gate;
+		}
+
+		@Override
+		public String getMethodValue() {
+			return delegate.getMethodValue();
+		}
+
+		@Override
+		public URI getURI() {
+			return delegate.getURI();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return delegate.getHeaders();
+		}
+
+		@Override
+		public OutputStream getBody() throws IOException {
+			return delegate.getBody();
+		}
+
+		@Override
+		public ClientHttpResponse execute() throws IOException {
+			if (deadline != null && deadline.isExpired()) {
+				throw expired();
+			}
+			final Runnable release = gate == null ? null : gate.enter(getURI(), deadline);
+			if (release != null && deadline != null && deadline.isExpired()) {
+				// It ran out while waiting at the gate.
+				release.run();
+				throw expired();
+			} else if (abort == null && release == null) {
+				return delegate.execute();
+			}
+			final ScheduledFuture<?> expiry = deadline == null || abort == null ? null
+					: timer.schedule(abort, deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+			final ClientHttpResponse response;
+			try {
+				response = delegate.execute();
+			} catch (final IOException | RuntimeException except) {
+				if (release != null) {
+					release.run();
+				}
+				throw except;
+			} finally {
+				if (expiry != null) {
+					expiry.cancel(false);
+				}
+			}
+			return new AbortableResponse(response, abort, release);
+		}
+
+		/**
+		 * Get the exception for a request executed once its deadline has passed.
+		 * @return the exception
+		 */
+		private DeadlineExceededException expired() {
+			return new DeadlineExceededException(
+					service == null ? delegate.getURI().getHost() : service);
+		}
+	}
+
+	/**
+	 * A response that is aborted rather than read to the end if it is closed
+	 * after our client has gone away, and that gives up its request's place at
+	 * the gate once it, or its body, is closed and its connection is back in the
+	 * pool.
+	 */
+	private static final class AbortableResponse implements ClientHttpResponse {
+		/**
+		 * The response.
+		 */
+		private final ClientHttpResponse delegate;
+		/**
+		 * Aborts the request it answers, or null if it cannot be aborted.
+		 */
+		private final Runnable abort;
+		/**
+		 * Gives up the request's place at the gate, or null if it has none.
+		 */
+		private final Runnable release;
+
+		/**
+		 * Constructor.
+		 * @param delegate the response
+		 * @param abort aborts the request it answers, or null if it cannot be
+		 *        aborted
+		 * @param release gives up the request's place at the gate, or null if it
+		 *        has none
+		 */
+		protected AbortableResponse(final ClientHttpResponse delegate,
+				final Runnable abort, final Runnable release) {
+			this.delegate = delegate;
+			this.abort = abort;
+			this.release = release;
+		}
+
+		@Override
+		public HttpStatus getStatusCode() throws IOException {
+			return delegate.getStatusCode();
+		}
+
+		@Override
+		public int getRawStatusCode() throws IOException {
+			return delegate.getRawStatusCode();
+		}
+
+		@Override
+		public String getStatusText() throws IOException {
+			return delegate.getStatusText();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return delegate.getHeaders();
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			return new FilterInputStream(delegate.getBody()) {
+				@Override
+				public void close() throws IOException {
+					abortIfClientGone();
+					try {
+						super.close();
+					} finally {
+						release();
+					}
+				}
+			};
+		}
+
+		@Override
+		public void close() {
+			abortIfClientGone();
+			try {
+				delegate.close();
+			} finally {
+				release();
+			}
+		}
+
+		/**
+		 * Give up the request's place at the gate, if it has one.
+		 */
+		private void release() {
+			if (release != null) {
+				release.run();
+			}
+		}
+
+		/**
+		 * Abort the request if our client has gone away. Closing the response, or
+		 * its body, reads the rest of the body so that the connection can be
+		 * reused, which is not worth waiting for once nobody will see it.
+		 */
+		private void abortIfClientGone() {
+			if (abort != null && ClientConnection.isClientGone()) {
+				abort.run();
+			}
+		}
+	}
+
+	/**
+	 * The gate in front of a pool: fair semaphores with as many permits as the
+	 * pool has connections overall and to each instance. A request waits for
+	 * one of each, to its instance first, for at most the lease timeout or
+	 * until its deadline, whichever comes first. An instance's semaphore is
+	 * dropped once no request holds or waits for its permits, so that instances
+	 * the load balancer has stopped choosing are not kept for ever.
+	 */
+	private static final class LeaseGate {
+		/**
+		 * Permits for the pool as a whole.
+		 */
+		private final Semaphore total;
+		/**
+		 * Permits for each instance with a request holding or waiting for them,
+		 * keyed by host and port.
+		 */
+		private final Map<String, Route> routes = new ConcurrentHashMap<>();
+		/**
+		 * How many permits each instance gets.
+		 */
+		private final int maxPerRoute;
+		/**
+		 * How long to wait for permits, in nanoseconds.
+		 */
+		private final long timeout;
+
+		/**
+		 * Constructor.
+		 * @param maxTotal the most connections in the pool
+		 * @param maxPerRoute the most connections to any one instance
+		 * @param timeout how long to wait for permits, in nanoseconds
+		 */
+		protected LeaseGate(final int maxTotal, final int maxPerRoute,
+				final long timeout) {
+			total = new Semaphore(maxTotal, true);
+			this.maxPerRoute = maxPerRoute;
+			this.timeout = timeout;
+		}
+
+		/**
+		 * Wait for permits to send a request.
+		 * @param uri the request's URI, on a concrete instance
+		 * @param deadline the request's deadline, or null if none
+		 * @return gives the permits back; only the first call does anything
+		 * @throws IOException if the permits could not be had in time, as
+		 *         HttpClient would have thrown had it waited for a connection
+		 *         itself
+		 */
+		protected Runnable enter(final URI uri, final Deadline deadline)
+				throws IOException {
+			final String key = uri.getHost() + ':' + uri.getPort();
+			final Route route = routes.compute(key, (k, existing) -> {
+				final Route entry = existing == null ? new Route(maxPerRoute) : existing;
+				entry.users++;
+				return entry;
+			});
+			final long end = System.nanoTime()
+					+ (deadline == null ? timeout : Math.min(timeout, deadline.remainingNanos()));
+			try {
+				if (!route.permits.tryAcquire(end - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+					leave(key);
+					throw new ConnectionPoolTimeoutException(
+							"Timeout waiting for connection from pool");
+				} else if (!total.tryAcquire(end - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+					route.permits.release();
+					leave(key);
+					throw new ConnectionPoolTimeoutException(
+							"Timeout waiting for connection from pool");
+				}
+			} catch (final InterruptedException except) {
+				leave(key);
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for connection");
+			}
+			final AtomicBoolean released = new AtomicBoolean();
+			return () -> {
+				if (released.compareAndSet(false, true)) {
+					total.release();
+					route.permits.release();
+					leave(key);
+				}
+			};
+		}
+
+		/**
+		 * Note that a request no longer holds or waits for an instance's permits,
+		 * dropping the instance's semaphore if no other does.
+		 * @param key the instance's host and port
+		 */
+		private void leave(final String key) {
+			routes.computeIfPresent(key, (k, entry) -> --entry.users == 0 ? null : entry);
+		}
+	}
+
+	/**
+	 * One instance's permits, with a count of the requests holding or waiting
+	 * for them. The count is only changed inside the map's per-key
+	 * {@code compute} methods, so that a semaphore is never dropped while any
+	 * request still uses it; once it is dropped, none of its permits are
+	 * taken, so a new one with all of them may replace it.
+	 */
+	private static final class Route {
+		/**
+		 * The permits.
+		 */
+		protected final Semaphore permits;
+		/**
+		 * How many requests hold or wait for a permit.
+		 */
+		protected int users;
+
+		/**
+		 * Constructor.
+		 * @param maxPerRoute how many permits the instance gets
+		 */
+		protected Route(final int maxPerRoute) {
+			permits = new Semaphore(maxPerRoute, true);
+		}
+	}
+
+	/**
+	 * A service's connection manager and the request factory that uses it.
+	 */
+	private static final class Pool {
+		/**
+		 * The connection pool.
+		 */
+		private final PoolingHttpClientConnectionManager manager;
+		/**
+		 * The request factory drawing on that pool.
+		 */
+		private final HttpComponentsClientHttpRequestFactory requestFactory;
+		/**
+		 * The gate requests wait at before leasing a connection, or null if none.
+		 */
+		private final LeaseGate gate;
+
+		/**
+		 * Constructor.
+		 * @param manager the connection pool
+		 * @param requestFactory the request factory drawing on that pool
+		 * @param gate the gate requests wait at before leasing a connection, or
+		 *        null if none
+		 */
+		protected Pool(final PoolingHttpClientConnectionManager manager,
+				final HttpComponentsClientHttpRequestFactory requestFactory,
+				final LeaseGate gate) {
+			this.manager = manager;
+			this.requestFactory = requestFactory;
+			this.gate = gate;
+		}
+
+		/**
+		 * Report this pool's usage to a registry.
+		 * @param registry the registry
+		 * @param service the service the pool belongs to
+		 */
+		protected void bindTo(final MeterRegistry registry, final String service) {
+			Gauge.builder("orch.http.pool.leased", manager,
+					m -> m.getTotalStats().getLeased())
+					.description("Connections currently in use").tag("service", service)
+					.register(registry);
+			Gauge.builder("orch.http.pool.available", manager,
+					m -> m.getTotalStats().getAvailable())
+					.description("Idle connections kept alive for reuse")
+					.tag("service", service).register(registry);
+			Gauge.builder("orch.http.pool.pending", manager,
+					m -> m.getTotalStats().getPending())
+					.description("Requests waiting for a connection")
+					.tag("service", service).register(registry);
+			Gauge.builder("orch.http.pool.max", manager,
+					m -> m.getTotalStats().getMax())
+					.description("Maximum size of the pool").tag("service", service)
+					.register(registry);
+		}
+	}
+}
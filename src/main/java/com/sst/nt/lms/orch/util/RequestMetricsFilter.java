@@ -0,0 +1,233 @@
+package com.sst.nt.lms.orch.util;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Times every request we handle in the timer {@code orch.requests}, tagged with
+ * the handler method that served it (e.g. {@code getAllCopies}), the route
+ * pattern it was mapped by, and its {@link RequestOutcome}: its status class, or
+ * {@link RequestOutcome#CANCELLED} if its client went away first. A request
+ * answered asynchronously, as in reactive mode, is timed until its response is
+ * complete.
+ *
+ * <p>Timers are looked up once per handler, route, and outcome and then kept, so
+ * recording a request allocates nothing and takes no locks.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class RequestMetricsFilter extends OncePerRequestFilter {
+	/**
+	 * The tag value for requests no handler was found for.
+	 */
+	private static final String UNMAPPED = "UNMAPPED";
+	/**
+	 * The registry to record in.
+	 */
+	private final MeterRegistry registry;
+	/**
+	 * The timers for each handler seen so far, by route pattern. Handlers are
+	 * keyed by their {@link java.lang.reflect.Method}, since the
+	 * {@link HandlerMethod} itself is usually created afresh for each request.
+	 */
+	private final Map<Object, Map<String, RouteTimers>> handlers =
+			new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 * @param registry the registry to record in
+	 */
+	public RequestMetricsFilter(final MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	protected void doFilterInternal(final HttpServletRequest request,
+			final HttpServletResponse response, final FilterChain filterChain)
+			throws ServletException, IOException {
+		final long start = System.nanoTime();
+		final ClientConnection connection = ClientConnection.current();
+		try {
+			filterChain.doFilter(request, response);
+		} catch (final IOException | ServletException | RuntimeException except) {
+			record(request, RequestOutcome.SERVER_ERROR, start);
+			throw except;
+		}
+		if (request.isAsyncStarted()) {
+			request.getAsyncContext().addListener(new AsyncListener() {
+				@Override
+				public void onComplete(final AsyncEvent event) {
+					record(request, outcome(response, connection), start);
+				}
+
+				@Override
+				public void onTimeout(final AsyncEvent event) {
+					// Recorded on completion, which follows.
+				}
+
+				@Override
+				public void onError(final AsyncEvent event) {
+					// Recorded on completion, which follows.
+				}
+
+				@Override
+				public void onStartAsync(final AsyncEvent event) {
+					// Not restarted.
+				}
+			});
+		} else {
+			record(request, outcome(response, connection), start);
+		}
+	}
+
+	/**
+	 * Get the outcome of a request that was answered, or abandoned.
+	 * @param response the response
+	 * @param connection the connection to the client, if we know it
+	 * @return the outcome
+	 */
+	private static RequestOutcome outcome(final HttpServletResponse response,
+			final ClientConnection connection) {
+		if (connection != null && connection.isClosed()) {
+			return RequestOutcome.CANCELLED;
+		}
+		return RequestOutcome.forStatus(response.getStatus());
+	}
+
+	/**
+	 * Record a request.
+	 * @param request the request
+	 * @param outcome its outcome
+	 * @param start when it started, per {@link System#nanoTime()}
+	 */
+	private void record(final HttpServletRequest request, final RequestOutcome outcome,
+			final long start) {
+		final Object handler =
+				request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+		final Object pattern =
+				request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		final Object key;
+		if (handler instanceof HandlerMethod) {
+			key = ((HandlerMethod) handler).getMethod();
+		} else if (handler == null) {
+			key = UNMAPPED;
+		} else {
+			key = handler;
+		}
+		final String route = pattern == null ? UNMAPPED : pattern.toString();
+		timersFor(key, handler, route).record(outcome, start);
+	}
+
+	/**
+	 * Get the timers for a handler and route, creating them if necessary.
+	 * @param key the key for the handler
+	 * @param handler the handler, or null if there is none
+	 * @param route the route pattern
+	 * @return the timers
+	 */
+	private RouteTimers timersFor(final Object key, final Object handler,
+			final String route) {
+		Map<String, RouteTimers> routes = handlers.get(key);
+		if (routes == null) {
+			routes = handlers.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+		}
+		final RouteTimers timers = routes.get(route);
+		if (timers == null) {
+			return routes.computeIfAbsent(route,
+					r -> new RouteTimers(handlerName(handler), routeName(r)));
+		}
+		return timers;
+	}
+
+	/**
+	 * Get the tag value for a handler.
+	 * @param handler the handler, or null if there is none
+	 * @return its method name, or else its class name
+	 */
+	private static String handlerName(final Object handler) {
+		if (handler instanceof HandlerMethod) {
+			return ((HandlerMethod) handler).getMethod().getName();
+		} else if (handler == null) {
+			return UNMAPPED;
+		} else {
+			return handler.getClass().getSimpleName();
+		}
+	}
+
+	/**
+	 * Get the tag value for a route pattern, which should be the same whether or
+	 * not the client used a trailing slash.
+	 * @param pattern the pattern
+	 * @return the tag value
+	 */
+	private static String routeName(final String pattern) {
+		if (pattern.length() > 1 && pattern.endsWith("/")) {
+			return pattern.substring(0, pattern.length() - 1);
+		}
+		return pattern;
+	}
+
+	/**
+	 * The timers for one handler and route, by outcome, each created when first
+	 * needed.
+	 */
+	private final class RouteTimers {
+		/**
+		 * The handler tag value.
+		 */
+		private final String handler;
+		/**
+		 * The route tag value.
+		 */
+		private final String route;
+		/**
+		 * The timers, indexed by outcome.
+		 */
+		private final AtomicReferenceArray<Timer> timers =
+				new AtomicReferenceArray<>(RequestOutcome.values().length);
+
+		/**
+		 * Constructor.
+		 * @param handler the handler tag value
+		 * @param route the route tag value
+		 */
+		protected RouteTimers(final String handler, final String route) {
+			this.handler = handler;
+			this.route = route;
+		}
+
+		/**
+		 * Record a request.
+		 * @param outcome its outcome
+		 * @param start when it started, per {@link System#nanoTime()}
+		 */
+		protected void record(final RequestOutcome outcome, final long start) {
+			Timer timer = timers.get(outcome.ordinal());
+			if (timer == null) {
+				timer = Timer.builder("orch.requests")
+						.description("Requests handled, by handler, route, and outcome")
+						.tag("handler", handler).tag("route", route)
+						.tag("outcome", outcome.name()).register(registry);
+				timers.set(outcome.ordinal(), timer);
+			}
+			timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package com.sst.nt.lms.orch.util;
+
+import java.io.IOException;
+
+/**
+ * How a request, ours or one we made downstream, turned out, as a metric tag.
+ *
+ * @author Jonathan Lovelace
+ */
+public enum RequestOutcome {
+	/**
+	 * Answered with a 1xx status.
+	 */
+	INFORMATIONAL,
+	/**
+	 * Answered with a 2xx status.
+	 */
+	SUCCESS,
+	/**
+	 * Answered with a 3xx status.
+	 */
+	REDIRECTION,
+	/**
+	 * Answered with a 4xx status.
+	 */
+	CLIENT_ERROR,
+	/**
+	 * Answered with a 5xx status, or failed with an exception on our side.
+	 */
+	SERVER_ERROR,
+	/**
+	 * Not answered before its deadline.
+	 */
+	TIMEOUT,
+	/**
+	 * Not sent, because a circuit breaker, bulkhead, or concurrency limit turned
+	 * it away.
+	 */
+	REJECTED,
+	/**
+	 * Failed with an I/O error, such as a refused connection.
+	 */
+	IO_ERROR,
+	/**
+	 * Given up on before it was answered, with no error.
+	 */
+	CANCELLED;
+
+	/**
+	 * Get the outcome of a request that was answered.
+	 * @param status the status it was answered with
+	 * @return the outcome
+	 */
+	public static RequestOutcome forStatus(final int status) {
+		if (status < 200) {
+			return INFORMATIONAL;
+		} else if (status < 300) {
+			return SUCCESS;
+		} else if (status < 400) {
+			return REDIRECTION;
+		} else if (status < 500) {
+			return CLIENT_ERROR;
+		} else {
+			return SERVER_ERROR;
+		}
+	}
+
+	/**
+	 * Get the outcome of a downstream request that failed.
+	 * @param except why it failed
+	 * @return the outcome
+	 */
+	public static RequestOutcome forFailure(final Throwable except) {
+		if (except instanceof DeadlineExceededException) {
+			return TIMEOUT;
+		} else if (except instanceof CircuitOpenException
+				|| except instanceof BulkheadFullException
+				|| except instanceof ConcurrencyLimitExceededException) {
+			return REJECTED;
+		} else if (except instanceof IOException
+				|| except.getCause() instanceof IOException) {
+			return IO_ERROR;
+		} else {
+			return SERVER_ERROR;
+		}
+	}
+}
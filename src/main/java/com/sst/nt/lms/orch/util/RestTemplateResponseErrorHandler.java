@@ -5,6 +5,12 @@ import java.io.IOException;
 import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.web.client.ResponseErrorHandler;
 
+/**
+ * Treats every downstream response as a successful exchange, so that the
+ * controllers can relay its status (a 404, say) to the client as-is. Failures of
+ * the downstream service itself are tracked by {@link CircuitBreakerInterceptor},
+ * which counts 5xx responses as well as I/O errors.
+ */
 public class RestTemplateResponseErrorHandler implements ResponseErrorHandler {
 
 	@Override
@@ -0,0 +1,209 @@
+package com.sst.nt.lms.orch.util;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Collapses identical GET requests that are in flight at the same time into a
+ * single downstream request: the first caller (the "leader") makes the request,
+ * and every caller that asks for the same URL before it completes waits for and
+ * shares its response. Only routes matching one of the configured patterns are
+ * coalesced; since the shared response is read whole into memory, these should
+ * not include routes that are streamed through to the client.
+ *
+ * <p>A caller waits for the leader no longer than its own {@link Deadline}
+ * allows, failing with a {@link DeadlineExceededException} if that passes
+ * first. If the leader gives up on its request because its own deadline passed
+ * or its client went away (see {@link Deadline#isAbandoned()}), that failure is
+ * not shared: the callers waiting on it try again, one of them leading.
+ *
+ * <p>This must run before the load-balancer interceptor, so that requests are
+ * keyed by the logical URL rather than by whichever instance was chosen.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class SingleFlightInterceptor implements ClientHttpRequestInterceptor {
+	/**
+	 * Whether coalescing is enabled.
+	 */
+	private final boolean enabled;
+	/**
+	 * Patterns of the routes to coalesce.
+	 */
+	private final List<String> routes;
+	/**
+	 * Matcher for those patterns.
+	 */
+	private final PathMatcher matcher = new AntPathMatcher();
+	/**
+	 * Requests currently in flight, keyed by URL, accepted media types, and any
+	 * validator the request is conditional on (since a "not modified" response to
+	 * one client's validator says nothing to a client with another). A request
+	 * its leader gave up on completes with null.
+	 */
+	private final ConcurrentMap<String, CompletableFuture<BufferedClientHttpResponse>> inFlight =
+			new ConcurrentHashMap<>();
+	/**
+	 * Count of coalescible requests that went downstream.
+	 */
+	private final Counter leaders;
+	/**
+	 * Count of coalescible requests that shared another's response.
+	 */
+	private final Counter followers;
+
+	/**
+	 * Constructor.
+	 * @param enabled whether coalescing is enabled
+	 * @param routes patterns of the routes to coalesce, matched against "/"
+	 *        followed by the service name and path
+	 * @param registry the registry to report the coalescing ratio to
+	 */
+	public SingleFlightInterceptor(final boolean enabled, final List<String> routes,
+			final MeterRegistry registry) {
+		this.enabled = enabled;
+		this.routes = routes;
+		leaders = Counter.builder("orch.coalescing.requests").tag("result", "leader")
+				.description("Coalescible requests sent downstream").register(registry);
+		followers = Counter.builder("orch.coalescing.requests")
+				.tag("result", "coalesced")
+				.description("Requests answered with another request's response")
+				.register(registry);
+		registry.gauge("orch.coalescing.in.flight", inFlight, ConcurrentMap::size);
+	}
+
+	/**
+	 * Whether a request is one we should coalesce.
+	 * @param request the request
+	 * @return true if it is a GET to a configured route
+	 */
+	private boolean isCoalescible(final HttpRequest request) {
+		if (!enabled || request.getMethod() != HttpMethod.GET) {
+			return false;
+		}
+		final String route = "/" + request.getURI().getHost()
+				+ request.getURI().getRawPath();
+		for (final String pattern : routes) {
+			if (matcher.match(pattern, route)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public ClientHttpResponse intercept(final HttpRequest request, final byte[] body,
+			final ClientHttpRequestExecution execution) throws IOException {
+		if (!isCoalescible(request)) {
+			return execution.execute(request, body);
+		}
+		final String key = request.getURI() + " "
+				+ request.getHeaders().getFirst(HttpHeaders.ACCEPT) + " "
+				+ request.getHeaders().getFirst(HttpHeaders.IF_NONE_MATCH);
+		while (true) {
+			final CompletableFuture<BufferedClientHttpResponse> ours =
+					new CompletableFuture<>();
+			final CompletableFuture<BufferedClientHttpResponse> theirs =
+					inFlight.putIfAbsent(key, ours);
+			if (theirs == null) {
+				return lead(key, ours, request, body, execution);
+			}
+			final BufferedClientHttpResponse response =
+					await(theirs, request.getURI().getHost());
+			if (response != null) {
+				followers.increment();
+				return response.copy();
+			}
+			// The leader gave up on its own account; try again.
+		}
+	}
+
+	/**
+	 * Make a request on behalf of every caller that asks for the same thing
+	 * before it completes.
+	 * @param key the request's key in {@link #inFlight}
+	 * @param ours the request's entry there, to be completed
+	 * @param request the request
+	 * @param body its body
+	 * @param execution the rest of the chain
+	 * @return our copy of the response
+	 * @throws IOException if the request fails with an I/O error
+	 */
+	private ClientHttpResponse lead(final String key,
+			final CompletableFuture<BufferedClientHttpResponse> ours,
+			final HttpRequest request, final byte[] body,
+			final ClientHttpRequestExecution execution) throws IOException {
+		leaders.increment();
+		final BufferedClientHttpResponse response;
+		try {
+			response = BufferedClientHttpResponse.of(execution.execute(request, body));
+		} catch (final IOException | RuntimeException except) {
+			// Removed before it is completed, so that callers trying again do not
+			// find it again.
+			inFlight.remove(key, ours);
+			if (Deadline.isAbandoned()) {
+				ours.complete(null);
+			} else {
+				ours.completeExceptionally(except);
+			}
+			throw except;
+		}
+		inFlight.remove(key, ours);
+		ours.complete(response);
+		return response.copy();
+	}
+
+	/**
+	 * Wait for the leader's response, for no longer than the current thread's
+	 * deadline allows, rethrowing its failure if it failed.
+	 * @param leader the leader's pending response
+	 * @param service the name of the service requested
+	 * @return the leader's response, or null if the leader gave up on it
+	 * @throws IOException if the leader's request failed with an I/O error
+	 * @throws DeadlineExceededException if the current thread's deadline passes
+	 *         first
+	 */
+	private static BufferedClientHttpResponse await(
+			final CompletableFuture<BufferedClientHttpResponse> leader,
+			final String service) throws IOException {
+		final Deadline deadline = Deadline.current();
+		try {
+			if (deadline == null) {
+				return leader.get();
+			}
+			return leader.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+		} catch (final TimeoutException except) {
+			throw new DeadlineExceededException(service);
+		} catch (final InterruptedException except) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted waiting for coalesced request", except);
+		} catch (final ExecutionException except) {
+			final Throwable cause = except.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else {
+				throw new IOException("Coalesced request failed", cause);
+			}
+		}
+	}
+}
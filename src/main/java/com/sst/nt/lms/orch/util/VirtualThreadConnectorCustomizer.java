@@ -0,0 +1,49 @@
+package com.sst.nt.lms.orch.util;
+
+import java.util.concurrent.ExecutorService;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+
+/**
+ * Has the servlet container handle each client request on a virtual thread of
+ * its own, instead of on its bounded pool of worker threads, so that a request
+ * blocked on a downstream call holds only a small heap-allocated stack rather
+ * than a platform thread. How many requests are handled at once is then bounded
+ * by the container's connection limit ({@code server.tomcat.max-connections})
+ * and by our own bulkheads and connection pools, not by
+ * {@code server.tomcat.max-threads}, which no longer applies.
+ *
+ * <p>The container does not shut down an executor it was given, so we do,
+ * once it has stopped.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class VirtualThreadConnectorCustomizer
+		implements WebServerFactoryCustomizer<TomcatServletWebServerFactory>,
+		DisposableBean {
+	/**
+	 * The executor starting a virtual thread per request.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Constructor.
+	 * @throws IllegalStateException if this runtime has no virtual threads
+	 */
+	public VirtualThreadConnectorCustomizer() {
+		executor = VirtualThreads.newExecutor("orch-request-");
+	}
+
+	@Override
+	public void customize(final TomcatServletWebServerFactory factory) {
+		factory.addConnectorCustomizers(
+				connector -> connector.getProtocolHandler().setExecutor(executor));
+	}
+
+	@Override
+	public void destroy() {
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,108 @@
+package com.sst.nt.lms.orch.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads, which we build for Java 8 and so must reach
+ * reflectively. They exist from Java 21 on; on an earlier runtime
+ * {@link #isAvailable()} is false and the rest of these methods throw.
+ *
+ * @author Jonathan Lovelace
+ */
+public final class VirtualThreads {
+	/**
+	 * {@code Thread.ofVirtual()}, or null if there are no virtual threads.
+	 */
+	private static final Method OF_VIRTUAL;
+	/**
+	 * {@code Thread.Builder.name(String, long)}, which names threads with a
+	 * prefix and a counter.
+	 */
+	private static final Method NAME;
+	/**
+	 * {@code Thread.Builder.factory()}.
+	 */
+	private static final Method FACTORY;
+	/**
+	 * {@code Executors.newThreadPerTaskExecutor(ThreadFactory)}.
+	 */
+	private static final Method PER_TASK;
+
+	static {
+		Method ofVirtual = null;
+		Method name = null;
+		Method factory = null;
+		Method perTask = null;
+		try {
+			final Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			name = builder.getMethod("name", String.class, long.class);
+			factory = builder.getMethod("factory");
+			perTask = Executors.class.getMethod("newThreadPerTaskExecutor",
+					ThreadFactory.class);
+		} catch (final ReflectiveOperationException except) {
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		NAME = name;
+		FACTORY = factory;
+		PER_TASK = perTask;
+	}
+
+	/**
+	 * Do not instantiate.
+	 */
+	private VirtualThreads() {
+		// static helpers only
+	}
+
+	/**
+	 * Whether this runtime has virtual threads.
+	 * @return true if it does
+	 */
+	public static boolean isAvailable() {
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Get a factory of virtual threads.
+	 * @param prefix the prefix of the threads' names, which are numbered from 0
+	 * @return the factory
+	 * @throws IllegalStateException if this runtime has no virtual threads
+	 */
+	public static ThreadFactory factory(final String prefix) {
+		if (!isAvailable()) {
+			throw new IllegalStateException("Virtual threads require Java 21 or later");
+		}
+		try {
+			final Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 0L);
+			return (ThreadFactory) FACTORY.invoke(builder);
+		} catch (final IllegalAccessException except) {
+			throw new IllegalStateException(except);
+		} catch (final InvocationTargetException except) {
+			throw new IllegalStateException(except.getCause());
+		}
+	}
+
+	/**
+	 * Get an executor that runs each task on a new virtual thread. It must be
+	 * shut down when no longer needed.
+	 * @param prefix the prefix of its threads' names
+	 * @return the executor
+	 * @throws IllegalStateException if this runtime has no virtual threads
+	 */
+	public static ExecutorService newExecutor(final String prefix) {
+		final ThreadFactory factory = factory(prefix);
+		try {
+			return (ExecutorService) PER_TASK.invoke(null, factory);
+		} catch (final IllegalAccessException except) {
+			throw new IllegalStateException(except);
+		} catch (final InvocationTargetException except) {
+			throw new IllegalStateException(except.getCause());
+		}
+	}
+}